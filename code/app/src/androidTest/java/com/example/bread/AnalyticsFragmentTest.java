@@ -18,6 +18,7 @@ import androidx.test.filters.LargeTest;
 import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodAnalyticsRepository;
 import com.example.bread.view.HomePage;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
@@ -74,6 +75,9 @@ public class AnalyticsFragmentTest {
 
     @Before
     public void seedDatabase() {
+        // Drop rollups left by earlier tests, so the analytics are built from the events seeded here
+        MoodAnalyticsRepository.getInstance().clear();
+
         // Seed the database with some mood events
         FirebaseFirestore db = new FirebaseService().getDb();
         CollectionReference participants = db.collection("participants");
@@ -114,8 +118,9 @@ public class AnalyticsFragmentTest {
         onView(withId(R.id.streak_text)).check(matches(isDisplayed()));
         onView(withId(R.id.longest_streak_text)).check(matches(isDisplayed()));
 
-        onView(withId(R.id.streak_text)).check(matches(withText("3")));
-        onView(withId(R.id.longest_streak_text)).check(matches(withText("3")));
+        // Streaks count days, and all three moods were recorded today
+        onView(withId(R.id.streak_text)).check(matches(withText("1")));
+        onView(withId(R.id.longest_streak_text)).check(matches(withText("1")));
 
         onView(withId(R.id.line_monthly_chart)).perform(scrollTo()).check(matches(isDisplayed()));
     }
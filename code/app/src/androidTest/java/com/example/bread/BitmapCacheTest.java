@@ -0,0 +1,81 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.bread.utils.BitmapCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class BitmapCacheTest {
+
+    private BitmapCache cache;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        BitmapCache.initialize(context);
+        cache = BitmapCache.getInstance();
+        cache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+    }
+
+    private Bitmap solid(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(16, 16, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+
+    @Test
+    public void testGet_AfterPut_IsMemoryHit() {
+        Bitmap bitmap = solid(Color.RED);
+        cache.put("red", bitmap);
+
+        long hits = cache.getMemoryHitCount();
+        assertSame(bitmap, cache.get("red"));
+        assertEquals(hits + 1, cache.getMemoryHitCount());
+    }
+
+    @Test
+    public void testGet_UnknownKey_IsMiss() {
+        long misses = cache.getMissCount();
+        assertNull(cache.get("unknown"));
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testGetFromDisk_RestoresPixels() throws InterruptedException {
+        cache.put("blue", solid(Color.BLUE));
+
+        // Disk writes happen in the background, so poll until the entry lands
+        long diskHits = cache.getDiskHitCount();
+        Bitmap restored = null;
+        for (int attempt = 0; attempt < 20 && restored == null; attempt++) {
+            restored = cache.getFromDisk("blue");
+            if (restored == null) {
+                Thread.sleep(50);
+            }
+        }
+
+        assertNotNull(restored);
+        assertEquals(diskHits + 1, cache.getDiskHitCount());
+        assertEquals(16, restored.getWidth());
+        // Disk entries are JPEG, so colors come back close to but not always exactly as stored
+        int pixel = restored.getPixel(3, 7);
+        assertTrue(Color.red(pixel) < 8 && Color.green(pixel) < 8 && Color.blue(pixel) > 247);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.FollowEdgeIndex;
+import com.example.bread.repository.FollowGraphChecker;
+import com.example.bread.repository.ParticipantRepository;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class FollowEdgeIndexTest {
+
+    private FirebaseFirestore db;
+    private FollowEdgeIndex edgeIndex;
+
+    @BeforeClass
+    public static void setupEmulators() {
+        FirebaseEmulatorRule.initializeEmulators();
+    }
+
+    @Before
+    public void seedDatabase() throws Exception {
+        FirebaseService firebaseService = new FirebaseService();
+        db = firebaseService.getDb();
+        edgeIndex = new FollowEdgeIndex(firebaseService);
+
+        WriteBatch batch = db.batch();
+        for (String username : Arrays.asList("edgeAlice", "edgeBob", "edgeCarol", "edgeLegacy")) {
+            Participant participant = new Participant();
+            participant.setUsername(username);
+            batch.set(db.collection("participants").document(username), participant);
+        }
+        // An account from before the index existed: followers only in the subcollection
+        for (String follower : Arrays.asList("edgeCarol", "edgeBob")) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("username", follower);
+            batch.set(db.collection("participants").document("edgeLegacy").collection("followers").document(follower), doc);
+        }
+        Tasks.await(batch.commit());
+    }
+
+    private void addEdge(String follower, String followee) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        edgeIndex.addEdge(follower, followee, unused -> latch.countDown(), e -> fail(e.getMessage()));
+        assertTrue("Timed out adding edge", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private void removeEdge(String follower, String followee) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        edgeIndex.removeEdge(follower, followee, unused -> latch.countDown(), e -> fail(e.getMessage()));
+        assertTrue("Timed out removing edge", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private List<String> fetchEdges(String username, ParticipantRepository.ListType type) throws InterruptedException {
+        Object[] result = new Object[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        edgeIndex.fetchEdges(username, type, usernames -> {
+            result[0] = usernames;
+            latch.countDown();
+        }, e -> fail(e.getMessage()));
+        assertTrue("Timed out fetching edges", latch.await(10, TimeUnit.SECONDS));
+        @SuppressWarnings("unchecked")
+        List<String> usernames = (List<String>) result[0];
+        return usernames;
+    }
+
+    private boolean contains(String username, ParticipantRepository.ListType type, String member) throws InterruptedException {
+        boolean[] result = new boolean[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        edgeIndex.contains(username, type, member, found -> {
+            result[0] = found;
+            latch.countDown();
+        }, e -> fail(e.getMessage()));
+        assertTrue("Timed out checking edge", latch.await(10, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    private long count(String username, String field) throws Exception {
+        DocumentSnapshot doc = Tasks.await(db.collection("participants").document(username).get());
+        Long value = doc.getLong(field);
+        return value != null ? value : 0;
+    }
+
+    @Test
+    public void addEdge_UpdatesBothListsAndCountsOnce() throws Exception {
+        addEdge("edgeAlice", "edgeBob");
+        addEdge("edgeAlice", "edgeBob"); // already there, counts must not move
+
+        assertEquals(Collections.singletonList("edgeAlice"), fetchEdges("edgeBob", ParticipantRepository.ListType.FOLLOWERS));
+        assertEquals(Collections.singletonList("edgeBob"), fetchEdges("edgeAlice", ParticipantRepository.ListType.FOLLOWING));
+        assertTrue(contains("edgeAlice", ParticipantRepository.ListType.FOLLOWING, "edgeBob"));
+        assertFalse(contains("edgeAlice", ParticipantRepository.ListType.FOLLOWING, "edgeCarol"));
+        assertEquals(1, count("edgeBob", "followerCount"));
+        assertEquals(1, count("edgeAlice", "followingCount"));
+        assertTrue(Tasks.await(db.collection("participants").document("edgeBob")
+                .collection("followers").document("edgeAlice").get()).exists());
+    }
+
+    @Test
+    public void removeEdge_ClearsEdgeAndCounts() throws Exception {
+        addEdge("edgeAlice", "edgeBob");
+        removeEdge("edgeAlice", "edgeBob");
+        removeEdge("edgeAlice", "edgeBob"); // already gone, counts must not go negative
+
+        assertTrue(fetchEdges("edgeBob", ParticipantRepository.ListType.FOLLOWERS).isEmpty());
+        assertFalse(contains("edgeAlice", ParticipantRepository.ListType.FOLLOWING, "edgeBob"));
+        assertEquals(0, count("edgeBob", "followerCount"));
+        assertEquals(0, count("edgeAlice", "followingCount"));
+    }
+
+    @Test
+    public void fetchEdges_ReadsLegacySubcollectionAndBackfills() throws Exception {
+        assertTrue(contains("edgeLegacy", ParticipantRepository.ListType.FOLLOWERS, "edgeBob"));
+        assertEquals(Arrays.asList("edgeBob", "edgeCarol"), fetchEdges("edgeLegacy", ParticipantRepository.ListType.FOLLOWERS));
+
+        // The backfill is written in the background; wait for the index to appear
+        boolean indexed = false;
+        for (int i = 0; i < 20 && !indexed; i++) {
+            indexed = !Tasks.await(db.collection("participants").document("edgeLegacy")
+                    .collection("edgeIndex").whereEqualTo("type", "followers").get()).isEmpty();
+            if (!indexed) {
+                Thread.sleep(250);
+            }
+        }
+        assertTrue("Index was not backfilled", indexed);
+        assertEquals(Arrays.asList("edgeBob", "edgeCarol"), fetchEdges("edgeLegacy", ParticipantRepository.ListType.FOLLOWERS));
+    }
+
+    @Test
+    public void followGraphMutations_LeaveGraphConsistent() throws Exception {
+        // The seeded legacy account has no reverse edges or counts; only the edges made below should be checked
+        WriteBatch cleanup = db.batch();
+        for (String follower : Arrays.asList("edgeCarol", "edgeBob")) {
+            cleanup.delete(db.collection("participants").document("edgeLegacy").collection("followers").document(follower));
+        }
+        Tasks.await(cleanup.commit());
+
+        ParticipantRepository participantRepository = new ParticipantRepository(new FirebaseService());
+        CountDownLatch sent = new CountDownLatch(2);
+        participantRepository.sendFollowRequest("edgeAlice", "edgeBob", unused -> sent.countDown(), e -> fail(e.getMessage()));
+        participantRepository.sendFollowRequest("edgeCarol", "edgeBob", unused -> sent.countDown(), e -> fail(e.getMessage()));
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch accepted = new CountDownLatch(2);
+        participantRepository.acceptFollowRequest("edgeBob", "edgeAlice", unused -> accepted.countDown(), e -> fail(e.getMessage()));
+        participantRepository.acceptFollowRequest("edgeBob", "edgeCarol", unused -> accepted.countDown(), e -> fail(e.getMessage()));
+        assertTrue(accepted.await(10, TimeUnit.SECONDS));
+        assertEquals("accepted", Tasks.await(db.collection("participants").document("edgeBob")
+                .collection("followRequests").document("edgeAlice").get()).getString("status"));
+
+        CountDownLatch unfollowed = new CountDownLatch(1);
+        participantRepository.unfollowUser("edgeCarol", "edgeBob", unused -> unfollowed.countDown(), e -> fail(e.getMessage()));
+        assertTrue(unfollowed.await(10, TimeUnit.SECONDS));
+        assertFalse("Unfollowing must delete the request so a new one can be sent", Tasks.await(db.collection("participants")
+                .document("edgeBob").collection("followRequests").document("edgeCarol").get()).exists());
+
+        Object[] result = new Object[1];
+        CountDownLatch checked = new CountDownLatch(1);
+        new FollowGraphChecker(new FirebaseService()).check(mismatches -> {
+            result[0] = mismatches;
+            checked.countDown();
+        }, e -> fail(e.getMessage()));
+        assertTrue(checked.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), result[0]);
+    }
+
+    @Test
+    public void acceptFollowRequest_FailsWithoutRequest() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        edgeIndex.acceptRequest("edgeAlice", "edgeBob", unused -> fail("Accepted a request that was never sent"), e -> failed.countDown());
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+
+        // Nothing of the edge may have been written
+        assertFalse(contains("edgeAlice", ParticipantRepository.ListType.FOLLOWING, "edgeBob"));
+        assertEquals(0, count("edgeBob", "followerCount"));
+    }
+
+    @After
+    public void tearDown() {
+        String projectId = BuildConfig.FIREBASE_PROJECT_ID;
+        String firestoreUrl = "http://10.0.2.2:8080/emulator/v1/projects/"
+                + projectId
+                + "/databases/(default)/documents";
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(firestoreUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("DELETE");
+
+            int responseCode = connection.getResponseCode();
+            Log.i("tearDown", "Cleared Firestore emulator, response code: " + responseCode);
+        } catch (IOException e) {
+            Log.e("tearDown", "Error clearing Firestore emulator", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -64,4 +64,39 @@ public class ImageHandlerTest {
     public void testBase64ToBitmap_EmptyInput_ReturnsNull() {
         assertNull("Empty base64 string should return null bitmap", ImageHandler.base64ToBitmap(""));
     }
+
+    @Test
+    public void testCreateThumbnailBase64_FitsThumbnailSize() {
+        Bitmap large = Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888);
+        byte[] jpeg = ImageHandler.compressBitmapToJpeg(large);
+
+        Bitmap thumbnail = ImageHandler.base64ToBitmap(ImageHandler.createThumbnailBase64(jpeg));
+
+        assertNotNull("Thumbnail should decode", thumbnail);
+        assertEquals(ImageHandler.THUMBNAIL_SIZE, thumbnail.getWidth());
+        assertEquals(ImageHandler.THUMBNAIL_SIZE / 2, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testCreateThumbnailBase64_NullInput_ReturnsNull() {
+        assertNull(ImageHandler.createThumbnailBase64(null));
+    }
+
+    @Test
+    public void testCalculateInSampleSize_KeepsLongestSideAtLeastRequested() {
+        assertEquals(1, ImageHandler.calculateInSampleSize(100, 80, 128));
+        assertEquals(2, ImageHandler.calculateInSampleSize(4000, 3000, 1024));
+        assertEquals(16, ImageHandler.calculateInSampleSize(4000, 3000, 128));
+        assertEquals(1, ImageHandler.calculateInSampleSize(4000, 3000, 0));
+    }
+
+    @Test
+    public void testDecodeSampledBitmap_DownsamplesAtDecodeTime() {
+        byte[] jpeg = ImageHandler.compressBitmapToJpeg(Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888));
+
+        Bitmap decoded = ImageHandler.decodeSampledBitmap(jpeg, 100);
+
+        assertNotNull(decoded);
+        assertEquals(100, decoded.getWidth());
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageIngestionStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(AndroidJUnit4.class)
+public class ImageIngestionTest {
+    private static final String TAG = "ImageIngestionTest";
+    private static final int PHOTO_WIDTH = 4000;
+    private static final int PHOTO_HEIGHT = 3000;
+
+    private Context context;
+    private File photo;
+    private final AtomicReference<ImageIngestionStats> reported = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        photo = new File(context.getCacheDir(), "ingestion-test.jpg");
+        // A 12 MP landscape photo, speckled so it does not compress trivially
+        Bitmap bitmap = Bitmap.createBitmap(PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.rgb(40, 120, 200));
+        for (int x = 0; x < PHOTO_WIDTH; x += 7) {
+            for (int y = 0; y < PHOTO_HEIGHT; y += 5) {
+                bitmap.setPixel(x, y, Color.rgb(x % 256, y % 256, (x + y) % 256));
+            }
+        }
+        try (OutputStream out = new FileOutputStream(photo)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        bitmap.recycle();
+        ImageHandler.setIngestionListener(reported::set);
+    }
+
+    @After
+    public void tearDown() {
+        ImageHandler.setIngestionListener(null);
+        photo.delete();
+    }
+
+    @Test
+    public void testCompressImageToJpeg_DecodesSampledAndReportsPeakHeap() throws IOException {
+        byte[] jpeg = ImageHandler.compressImageToJpeg(context, Uri.fromFile(photo));
+
+        assertNotNull(jpeg);
+        assertTrue(jpeg.length <= ImageHandler.MAX_IMAGE_SIZE);
+        ImageIngestionStats stats = reported.get();
+        assertNotNull("Ingestion should be reported", stats);
+        Log.i(TAG, stats.toString());
+
+        assertEquals(PHOTO_WIDTH, stats.getSourceWidth());
+        assertTrue(stats.getSampleSize() > 1);
+        assertEquals(Bitmap.Config.RGB_565, stats.getConfig());
+        assertTrue((long) stats.getDecodedWidth() * stats.getDecodedHeight() < 4L * ImageHandler.MAX_ENCODE_PIXELS);
+        // Far below the 48 MB a full-resolution ARGB decode would need
+        long fullDecodeBytes = (long) PHOTO_WIDTH * PHOTO_HEIGHT * 4;
+        assertTrue(stats.getPeakJavaHeapBytes() + stats.getPeakNativeHeapBytes() < fullDecodeBytes / 4);
+    }
+
+    @Test
+    public void testCompressImageToJpeg_HonoursExifRotation() throws IOException {
+        ExifInterface exif = new ExifInterface(photo.getAbsolutePath());
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+        exif.saveAttributes();
+
+        byte[] jpeg = ImageHandler.compressImageToJpeg(context, Uri.fromFile(photo));
+
+        assertNotNull(jpeg);
+        assertEquals(90, reported.get().getRotationDegrees());
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        assertTrue("A rotated landscape photo should come out portrait", options.outHeight > options.outWidth);
+    }
+
+    @Test
+    public void testCompressImageToBase64_MatchesJpegBytes() throws IOException {
+        byte[] jpeg = ImageHandler.compressImageToJpeg(context, Uri.fromFile(photo));
+        String base64 = ImageHandler.compressImageToBase64(context, Uri.fromFile(photo));
+
+        assertArrayEquals(jpeg, Base64.decode(base64, Base64.DEFAULT));
+    }
+}
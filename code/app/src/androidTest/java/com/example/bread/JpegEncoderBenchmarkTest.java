@@ -0,0 +1,139 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.JpegEncoder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Compares the budgeted JPEG search with the previous step-down loop on generated photo-like bitmaps
+ */
+@RunWith(AndroidJUnit4.class)
+public class JpegEncoderBenchmarkTest {
+    private static final String TAG = "JpegEncoderBenchmark";
+
+    private static class BitmapImage implements JpegEncoder.Image {
+        final Bitmap bitmap;
+
+        BitmapImage(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        public void encode(int quality, @NonNull OutputStream out) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        }
+
+        @Override
+        public int getWidth() {
+            return bitmap.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return bitmap.getHeight();
+        }
+
+        @NonNull
+        @Override
+        public JpegEncoder.Image scale(float factor) {
+            return new BitmapImage(Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(getWidth() * factor)),
+                    Math.max(1, Math.round(getHeight() * factor)), true));
+        }
+    }
+
+    /**
+     * A gradient with noise, which compresses about as poorly as a camera photo
+     */
+    private static Bitmap samplePhoto(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, width, height, Color.rgb(30, 90, 160), Color.rgb(230, 180, 60), Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, width, height, paint);
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y += 2) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(41) - 20;
+                int c = row[x];
+                row[x] = Color.rgb(clamp(Color.red(c) + noise), clamp(Color.green(c) + noise), clamp(Color.blue(c) + noise));
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * The previous algorithm, counting its full encodes
+     */
+    private static int legacyCompress(Bitmap bitmap) {
+        int encodes = 1;
+        int quality = 100;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outputStream);
+        while (outputStream.toByteArray().length > ImageHandler.MAX_IMAGE_SIZE) {
+            outputStream.reset();
+            quality -= 10;
+            if (quality <= 10) {
+                quality = 70;
+                bitmap = Bitmap.createScaledBitmap(bitmap, (int) (bitmap.getWidth() * 0.7f), (int) (bitmap.getHeight() * 0.7f), true);
+            }
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outputStream);
+            encodes++;
+        }
+        return encodes;
+    }
+
+    @Test
+    public void testBudgetedEncoding_FewerEncodesAndFasterThanLegacy() {
+        int[][] sizes = {{640, 480}, {1600, 1200}, {3000, 2000}};
+        for (int[] size : sizes) {
+            Bitmap photo = samplePhoto(size[0], size[1]);
+
+            long start = System.nanoTime();
+            int legacyEncodes = legacyCompress(photo);
+            long legacyMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Mirror compressImageToJpeg: downsample to the pixel budget first, then search quality
+            start = System.nanoTime();
+            Bitmap input = photo;
+            long pixels = (long) photo.getWidth() * photo.getHeight();
+            if (pixels > ImageHandler.MAX_ENCODE_PIXELS) {
+                float scale = (float) Math.sqrt((double) ImageHandler.MAX_ENCODE_PIXELS / pixels);
+                input = Bitmap.createScaledBitmap(photo, Math.round(photo.getWidth() * scale), Math.round(photo.getHeight() * scale), true);
+            }
+            JpegEncoder.Result result = JpegEncoder.encodeToBudget(new BitmapImage(input), ImageHandler.MAX_IMAGE_SIZE);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            Log.i(TAG, size[0] + "x" + size[1] + ": legacy " + legacyEncodes + " encodes in " + legacyMillis + " ms, budgeted "
+                    + result.getEncodeCount() + " encodes in " + millis + " ms at quality " + result.getQuality()
+                    + " (" + result.getWidth() + "x" + result.getHeight() + ", " + result.getBytes().length + " bytes)");
+            assertTrue(result.getBytes().length <= ImageHandler.MAX_IMAGE_SIZE);
+            assertTrue(result.getEncodeCount() <= legacyEncodes);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import androidx.test.filters.LargeTest;
 import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.view.HomePage;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
@@ -139,13 +140,15 @@ public class MapFragmentTest {
         moodEvent2.setSocialSituation(MoodEvent.SocialSituation.ALONE);
         moodEvent2.setGeoInfo(geoInfo2);
 
-        CollectionReference moodEvents = db.collection("moodEvents");
+        // Written through the repository so the followed users' map entries are maintained as well
+        MoodEventRepository moodEventRepository = new MoodEventRepository();
         MoodEvent[] events = {
                 moodEvent1, moodEvent2
         };
 
         for (MoodEvent event : events) {
-            moodEvents.document(event.getId()).set(event);
+            moodEventRepository.addMoodEvent(event, unused -> {
+            }, null);
         }
         scenario = ActivityScenario.launch(HomePage.class);
     }
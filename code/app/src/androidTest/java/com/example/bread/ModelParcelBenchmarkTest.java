@@ -0,0 +1,156 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.os.Parcel;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.model.Comment;
+import com.example.bread.model.FollowRequest;
+import com.example.bread.model.ModelCodec;
+import com.example.bread.model.MoodEvent;
+import com.example.bread.model.Participant;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Checks the Parcelable implementations of the model classes and compares them and the binary codec with the
+ * Serializable path a Bundle used before
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModelParcelBenchmarkTest {
+    private static final String TAG = "ModelParcelBenchmark";
+    private static final int ROUNDS = 200;
+
+    private static MoodEvent event(int i) {
+        MoodEvent event = new MoodEvent("Title " + i, "Reason number " + i + " for this mood",
+                MoodEvent.EmotionalState.values()[i % 10], null);
+        event.setTimestamp(new Date(1_740_000_000_000L + i * 60_000L));
+        event.setSocialSituation(MoodEvent.SocialSituation.values()[i % 8]);
+        Map<String, Object> geoInfo = new HashMap<>();
+        geoInfo.put("geohash", "c3nfk" + (i % 4));
+        geoInfo.put("latitude", 53.5 + i * 0.001);
+        geoInfo.put("longitude", -113.5 - i * 0.001);
+        event.setGeoInfo(geoInfo);
+        return event;
+    }
+
+    private static <T> T roundTrip(T value, BiConsumer<Parcel, T> write, Function<Parcel, T> read) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            write.accept(parcel, value);
+            parcel.setDataPosition(0);
+            return read.apply(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void testMoodEvent_RoundTripsWithoutImageContent() {
+        MoodEvent event = event(3);
+        event.setParticipantRef(FirebaseFirestore.getInstance().collection("participants").document("alice"));
+        event.setAttachedImageThumbnail("dGh1bWI=");
+        event.setAttachedImageHash("5f1c");
+
+        MoodEvent read = roundTrip(event, (parcel, value) -> parcel.writeParcelable(value, 0),
+                parcel -> parcel.readParcelable(MoodEvent.class.getClassLoader()));
+        assertEquals(event.getId(), read.getId());
+        assertEquals(event.getTimestamp(), read.getTimestamp());
+        assertEquals(event.getEmotionalState(), read.getEmotionalState());
+        assertEquals(event.getGeoInfo(), read.getGeoInfo());
+        assertEquals(event.getParticipantRef(), read.getParticipantRef());
+        assertEquals("5f1c", read.getAttachedImageHash());
+        assertNull(read.getAttachedImageThumbnail());
+    }
+
+    @Test
+    public void testCommentAndParticipant_RoundTrip() {
+        Comment comment = new Comment(FirebaseFirestore.getInstance().collection("participants").document("bob"), "Nice one");
+        comment.setTimestamp(new Date());
+        Comment readComment = roundTrip(comment, (parcel, value) -> parcel.writeParcelable(value, 0),
+                parcel -> parcel.readParcelable(Comment.class.getClassLoader()));
+        assertEquals(comment.getText(), readComment.getText());
+        assertEquals(comment.getParticipantRef(), readComment.getParticipantRef());
+        assertEquals(comment.getTimestamp(), readComment.getTimestamp());
+
+        Participant participant = new Participant("alice", "alice@example.com", "alice", "smith");
+        participant.setProfilePicture("cGljdHVyZQ==");
+        participant.setFollowers(new ArrayList<>(Arrays.asList("bob", "carol")));
+        participant.setFollowRequests(new ArrayList<>(Arrays.asList(new FollowRequest("dave"))));
+        Participant read = roundTrip(participant, (parcel, value) -> parcel.writeParcelable(value, 0),
+                parcel -> parcel.readParcelable(Participant.class.getClassLoader()));
+        assertEquals("alice", read.getUsername());
+        assertEquals(Arrays.asList("bob", "carol"), read.getFollowers());
+        assertEquals(2, read.getFollowerCount());
+        assertEquals("dave", read.getFollowRequests().get(0).getFromUsername());
+        assertEquals(participant.getFollowRequests().get(0).getTimestamp(), read.getFollowRequests().get(0).getTimestamp());
+        assertNull(read.getProfilePicture());
+    }
+
+    /**
+     * Reports the time and size of each path. Only the sizes are asserted; times vary with the device and its load.
+     * Participant references are left out, since a Firestore DocumentReference is not Serializable.
+     */
+    @Test
+    public void testBenchmark_ParcelableAgainstSerializable() throws IOException {
+        ArrayList<MoodEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(event(i));
+        }
+
+        long start = System.nanoTime();
+        int serializableBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            Parcel parcel = Parcel.obtain();
+            parcel.writeSerializable(events);
+            serializableBytes = parcel.dataSize();
+            parcel.setDataPosition(0);
+            assertNotNull(parcel.readSerializable());
+            parcel.recycle();
+        }
+        long serializableMicros = (System.nanoTime() - start) / ROUNDS / 1000;
+
+        start = System.nanoTime();
+        int parcelableBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            Parcel parcel = Parcel.obtain();
+            parcel.writeTypedList(events);
+            parcelableBytes = parcel.dataSize();
+            parcel.setDataPosition(0);
+            List<MoodEvent> read = parcel.createTypedArrayList(MoodEvent.CREATOR);
+            assertEquals(events.size(), read.size());
+            parcel.recycle();
+        }
+        long parcelableMicros = (System.nanoTime() - start) / ROUNDS / 1000;
+
+        start = System.nanoTime();
+        int codecBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            byte[] encoded = ModelCodec.encodeMoodEvents(events);
+            codecBytes = encoded.length;
+            assertEquals(events.size(), ModelCodec.decodeMoodEvents(encoded, path -> null).size());
+        }
+        long codecMicros = (System.nanoTime() - start) / ROUNDS / 1000;
+
+        Log.i(TAG, "200 mood events, Serializable: " + serializableBytes + " bytes in " + serializableMicros
+                + " us, Parcelable: " + parcelableBytes + " bytes in " + parcelableMicros + " us, codec: "
+                + codecBytes + " bytes in " + codecMicros + " us");
+        assertTrue(parcelableBytes < serializableBytes);
+        assertTrue(codecBytes < serializableBytes);
+    }
+}
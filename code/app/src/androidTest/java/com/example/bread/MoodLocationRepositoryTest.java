@@ -0,0 +1,191 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.MoodEvent;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodEventRepository;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+@RunWith(AndroidJUnit4.class)
+public class MoodLocationRepositoryTest {
+
+    private static final String VIEWER = "mapViewer";
+    private static final String FRIEND = "mapFriend";
+    private static final String FAR_FRIEND = "mapFarFriend";
+    private static final String STRANGER = "mapStranger";
+
+    private FirebaseFirestore db;
+    private MoodEventRepository moodEventRepository;
+
+    @BeforeClass
+    public static void setupEmulators() {
+        FirebaseEmulatorRule.initializeEmulators();
+    }
+
+    @Before
+    public void seedDatabase() throws Exception {
+        FirebaseService firebaseService = new FirebaseService();
+        db = firebaseService.getDb();
+        moodEventRepository = new MoodEventRepository(firebaseService);
+
+        for (String username : new String[]{VIEWER, FRIEND, FAR_FRIEND, STRANGER}) {
+            Participant participant = new Participant();
+            participant.setUsername(username);
+            Tasks.await(db.collection("participants").document(username).set(participant));
+        }
+        // VIEWER follows FRIEND and FAR_FRIEND
+        for (String followed : new String[]{FRIEND, FAR_FRIEND}) {
+            Map<String, String> following = new HashMap<>();
+            following.put("username", followed);
+            Tasks.await(db.collection("participants").document(VIEWER).collection("following").document(followed).set(following));
+        }
+    }
+
+    @Test
+    public void fetchInRadius_ReturnsLatestNearbyEventOfFollowedUsersOnly() throws Exception {
+        MoodEvent older = newEvent(FRIEND, "Older", 37.4220, -122.0841, 60_000);
+        MoodEvent newer = newEvent(FRIEND, "Newer", 37.4230, -122.0850, 0);
+        await((s, f) -> moodEventRepository.addMoodEvent(newer, s, f));
+        await((s, f) -> moodEventRepository.addMoodEvent(older, s, f)); // written last, but older: must not replace
+        await((s, f) -> moodEventRepository.addMoodEvent(newEvent(FAR_FRIEND, "Far", 40.7128, -74.0060, 0), s, f));
+        await((s, f) -> moodEventRepository.addMoodEvent(newEvent(STRANGER, "Nearby stranger", 37.4221, -122.0842, 0), s, f));
+        assertTrue(waitForEntry(FRIEND, newer.getId()));
+
+        Map<String, MoodEvent> events = fetchInRadius();
+
+        assertEquals(1, events.size());
+        assertEquals(newer.getId(), events.get(FRIEND).getId());
+    }
+
+    @Test
+    public void deletingLatestEvent_FallsBackToPreviousLocatedEvent() throws Exception {
+        MoodEvent older = newEvent(FRIEND, "Older", 37.4220, -122.0841, 60_000);
+        MoodEvent newer = newEvent(FRIEND, "Newer", 37.4230, -122.0850, 0);
+        await((s, f) -> moodEventRepository.addMoodEvent(older, s, f));
+        assertTrue(waitForEntry(FRIEND, older.getId()));
+        await((s, f) -> moodEventRepository.addMoodEvent(newer, s, f));
+        assertTrue(waitForEntry(FRIEND, newer.getId()));
+
+        await((s, f) -> moodEventRepository.deleteMoodEvent(newer, s, f));
+
+        assertTrue(waitForEntry(FRIEND, older.getId()));
+        assertEquals(older.getId(), fetchInRadius().get(FRIEND).getId());
+    }
+
+    @Test
+    public void makingLatestEventPrivate_RemovesItFromTheMap() throws Exception {
+        MoodEvent event = newEvent(FRIEND, "Public then private", 37.4220, -122.0841, 0);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+        assertTrue(waitForEntry(FRIEND, event.getId()));
+
+        event.setVisibility(MoodEvent.Visibility.PRIVATE);
+        await((s, f) -> moodEventRepository.updateMoodEvent(event, s, f));
+
+        assertTrue(waitForEntry(FRIEND, null));
+        assertTrue(fetchInRadius().isEmpty());
+    }
+
+    private MoodEvent newEvent(String author, String title, double latitude, double longitude, long ageMillis) {
+        MoodEvent event = new MoodEvent(title, "reason", MoodEvent.EmotionalState.HAPPY, db.collection("participants").document(author));
+        event.setTimestamp(new Date(System.currentTimeMillis() - ageMillis));
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        event.setGeoInfo(event.generateGeoInfo(location));
+        return event;
+    }
+
+    private Map<String, MoodEvent> fetchInRadius() throws InterruptedException {
+        Location here = new Location(LocationManager.GPS_PROVIDER);
+        here.setLatitude(37.4219999);
+        here.setLongitude(-122.0840575);
+        Object[] result = new Object[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        moodEventRepository.fetchForInRadiusEventsFromFollowing(VIEWER, here, 5.0, events -> {
+            result[0] = events;
+            latch.countDown();
+        }, e -> fail(e.getMessage()));
+        assertTrue("Timed out fetching map events", latch.await(10, TimeUnit.SECONDS));
+        @SuppressWarnings("unchecked")
+        Map<String, MoodEvent> events = (Map<String, MoodEvent>) result[0];
+        return events;
+    }
+
+    /**
+     * The map entry is maintained after the mood event write completes, so poll until it holds the expected event,
+     * or is gone when {@code eventId} is null
+     */
+    private boolean waitForEntry(String username, String eventId) throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            DocumentSnapshot entry = Tasks.await(db.collection("moodLocations").document(username).get());
+            if (eventId == null ? !entry.exists() : eventId.equals(entry.getString("id"))) {
+                return true;
+            }
+            Thread.sleep(250);
+        }
+        return false;
+    }
+
+    private void await(BiConsumer<OnSuccessListener<Void>, OnFailureListener> call) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        call.accept(unused -> latch.countDown(), e -> {
+            failure[0] = e;
+            latch.countDown();
+        });
+        assertTrue("Timed out waiting for repository call", latch.await(10, TimeUnit.SECONDS));
+        assertNull(failure[0]);
+    }
+
+    @After
+    public void tearDown() {
+        String projectId = BuildConfig.FIREBASE_PROJECT_ID;
+        String firestoreUrl = "http://10.0.2.2:8080/emulator/v1/projects/"
+                + projectId
+                + "/databases/(default)/documents";
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(firestoreUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("DELETE");
+
+            int responseCode = connection.getResponseCode();
+            Log.i("tearDown", "Cleared Firestore emulator, response code: " + responseCode);
+        } catch (IOException e) {
+            Log.e("tearDown", "Error clearing Firestore emulator", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.ParticipantBatch;
+import com.example.bread.repository.ParticipantRepository;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class ParticipantRepositoryTest {
+
+    // More than one whereIn chunk
+    private static final int PARTICIPANT_COUNT = 45;
+
+    private ParticipantRepository participantRepository;
+    private final List<String> usernames = new ArrayList<>();
+
+    @BeforeClass
+    public static void setupEmulators() {
+        FirebaseEmulatorRule.initializeEmulators();
+    }
+
+    @Before
+    public void seedDatabase() throws Exception {
+        FirebaseService firebaseService = new FirebaseService();
+        FirebaseFirestore db = firebaseService.getDb();
+        participantRepository = new ParticipantRepository(firebaseService);
+
+        WriteBatch batch = db.batch();
+        for (int i = 0; i < PARTICIPANT_COUNT; i++) {
+            String username = "bulkUser" + i;
+            usernames.add(username);
+            participantRepository.invalidateParticipant(username);
+            Participant participant = new Participant();
+            participant.setUsername(username);
+            batch.set(db.collection("participants").document(username), participant);
+        }
+        Tasks.await(batch.commit());
+    }
+
+    @Test
+    public void fetchParticipants_StreamsChunksAndReportsMisses() throws Exception {
+        List<String> requested = new ArrayList<>(usernames);
+        requested.add("bulkGhost1");
+        requested.add("bulkGhost2");
+        requested.add(usernames.get(0)); // duplicates are read once
+
+        List<ParticipantBatch> chunks = new ArrayList<>();
+        ParticipantBatch[] result = new ParticipantBatch[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        participantRepository.fetchParticipants(requested, chunks::add, batch -> {
+            result[0] = batch;
+            latch.countDown();
+        }, e -> fail(e.getMessage()));
+
+        assertTrue("Timed out waiting for participants", latch.await(10, TimeUnit.SECONDS));
+        assertTrue("Expected more than one chunk, got " + chunks.size(), chunks.size() > 1);
+        assertEquals(PARTICIPANT_COUNT, result[0].getParticipants().size());
+        assertEquals("bulkUser7", result[0].get("bulkUser7").getUsername());
+        assertTrue(result[0].getMissing().contains("bulkGhost1"));
+        assertTrue(result[0].getMissing().contains("bulkGhost2"));
+        assertTrue(result[0].getFailed().isEmpty());
+    }
+
+    @Test
+    public void fetchParticipants_FillsSharedCache() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        participantRepository.fetchParticipants(usernames, null, batch -> latch.countDown(), e -> fail(e.getMessage()));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertNotNull(participantRepository.getCachedParticipant(participantRepository.getParticipantRef("bulkUser3")));
+    }
+
+    @Test
+    public void scheduleUserSearch_RapidTypingDeliversOnlyLatestQuery() throws Exception {
+        String[] keystrokes = {"b", "bu", "bul", "bulk", "bulku", "bulkus", "bulkuser", "bulkUser4"};
+        long samplesBefore = participantRepository.getUserSearchLatency().getCount();
+        List<String> deliveredFor = new ArrayList<>();
+        List<Participant> results = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        // Fire every keystroke without waiting, as a fast typist with no debounce would
+        for (String query : keystrokes) {
+            participantRepository.scheduleUserSearch(query, null, participants -> {
+                deliveredFor.add(query);
+                results.addAll(participants);
+                latch.countDown();
+            }, e -> fail(e.getMessage()));
+        }
+
+        assertTrue("Timed out waiting for search results", latch.await(10, TimeUnit.SECONDS));
+        // Let the superseded queries land too; each one is recorded and then discarded
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (participantRepository.getUserSearchLatency().getCount() - samplesBefore < keystrokes.length
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(keystrokes.length, participantRepository.getUserSearchLatency().getCount() - samplesBefore);
+        assertEquals(Collections.singletonList("bulkUser4"), deliveredFor);
+
+        // bulkUser4 and bulkUser40..44 match exactly and rank ahead of near misses such as bulkUser1
+        List<String> exact = new ArrayList<>();
+        for (Participant participant : results.subList(0, 6)) {
+            exact.add(participant.getUsername());
+        }
+        Collections.sort(exact);
+        assertEquals(Arrays.asList("bulkUser4", "bulkUser40", "bulkUser41", "bulkUser42", "bulkUser43", "bulkUser44"), exact);
+    }
+
+    @After
+    public void tearDown() {
+        for (String username : usernames) {
+            participantRepository.invalidateParticipant(username);
+        }
+        String projectId = BuildConfig.FIREBASE_PROJECT_ID;
+        String firestoreUrl = "http://10.0.2.2:8080/emulator/v1/projects/"
+                + projectId
+                + "/databases/(default)/documents";
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(firestoreUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("DELETE");
+
+            int responseCode = connection.getResponseCode();
+            Log.i("tearDown", "Cleared Firestore emulator, response code: " + responseCode);
+        } catch (IOException e) {
+            Log.e("tearDown", "Error clearing Firestore emulator", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.FollowRequest;
+import com.example.bread.model.MoodEvent;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodEventRepository;
+import com.example.bread.repository.ParticipantRepository;
+import com.example.bread.repository.TimelineRepository;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+@RunWith(AndroidJUnit4.class)
+public class TimelineRepositoryTest {
+
+    private static final String AUTHOR = "timelineAuthor";
+    private static final String FOLLOWER = "timelineFollower";
+    private static final String NEW_FOLLOWER = "timelineNewFollower";
+
+    private FirebaseFirestore db;
+    private MoodEventRepository moodEventRepository;
+    private ParticipantRepository participantRepository;
+
+    @BeforeClass
+    public static void setupEmulators() {
+        FirebaseEmulatorRule.initializeEmulators();
+    }
+
+    @Before
+    public void seedDatabase() throws Exception {
+        FirebaseService firebaseService = new FirebaseService();
+        db = firebaseService.getDb();
+        moodEventRepository = new MoodEventRepository(firebaseService);
+        participantRepository = new ParticipantRepository(firebaseService);
+
+        for (String username : new String[]{AUTHOR, FOLLOWER, NEW_FOLLOWER}) {
+            Participant participant = new Participant();
+            participant.setUsername(username);
+            Tasks.await(db.collection("participants").document(username).set(participant));
+        }
+
+        // FOLLOWER already follows AUTHOR
+        Map<String, String> follower = new HashMap<>();
+        follower.put("username", FOLLOWER);
+        Tasks.await(db.collection("participants").document(AUTHOR).collection("followers").document(FOLLOWER).set(follower));
+        Map<String, String> following = new HashMap<>();
+        following.put("username", AUTHOR);
+        Tasks.await(db.collection("participants").document(FOLLOWER).collection("following").document(AUTHOR).set(following));
+    }
+
+    @Test
+    public void addPublicEvent_IsFannedOutToFollowers() throws Exception {
+        MoodEvent event = newEvent("Fan out", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), true));
+        assertFalse(Tasks.await(timelineEntry(AUTHOR, event.getId()).get()).exists());
+    }
+
+    @Test
+    public void privateEvent_IsNotFannedOut_AndRemovedWhenMadePrivate() throws Exception {
+        MoodEvent hidden = newEvent("Private", MoodEvent.Visibility.PRIVATE);
+        await((s, f) -> moodEventRepository.addMoodEvent(hidden, s, f));
+
+        MoodEvent event = newEvent("Public then private", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), true));
+
+        event.setVisibility(MoodEvent.Visibility.PRIVATE);
+        await((s, f) -> moodEventRepository.updateMoodEvent(event, s, f));
+
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), false));
+        assertFalse(Tasks.await(timelineEntry(FOLLOWER, hidden.getId()).get()).exists());
+    }
+
+    @Test
+    public void deleteEvent_IsRemovedFromTimelines() throws Exception {
+        MoodEvent event = newEvent("Delete me", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), true));
+
+        await((s, f) -> moodEventRepository.deleteMoodEvent(event, s, f));
+
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), false));
+    }
+
+    @Test
+    public void acceptFollowRequest_BackfillsTimeline_AndUnfollowCleansUp() throws Exception {
+        MoodEvent event = newEvent("Before follow", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+
+        Tasks.await(db.collection("participants").document(AUTHOR).collection("followRequests")
+                .document(NEW_FOLLOWER).set(new FollowRequest(NEW_FOLLOWER).toMap()));
+        await((s, f) -> participantRepository.acceptFollowRequest(AUTHOR, NEW_FOLLOWER, s, f));
+
+        assertTrue(waitForTimelineEntry(NEW_FOLLOWER, event.getId(), true));
+
+        await((s, f) -> participantRepository.unfollowUser(NEW_FOLLOWER, AUTHOR, s, f));
+
+        assertTrue(waitForTimelineEntry(NEW_FOLLOWER, event.getId(), false));
+    }
+
+    @Test
+    public void removeFollower_CleansUpFollowerTimeline() throws Exception {
+        MoodEvent event = newEvent("Removed follower", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> moodEventRepository.addMoodEvent(event, s, f));
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), true));
+
+        await((s, f) -> participantRepository.removeFollower(AUTHOR, FOLLOWER, s, f));
+
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), false));
+    }
+
+    @Test
+    public void homeFeed_BeforeTimelineIsComplete_ReadsFollowsAndBackfillsOnce() throws Exception {
+        // Written without fan-out, like events posted before timelines existed
+        FirebaseService firebaseService = new FirebaseService();
+        MoodEventRepository legacyRepository = new MoodEventRepository(firebaseService, new TimelineRepository(firebaseService, false));
+        MoodEvent event = newEvent("Before fan-out", MoodEvent.Visibility.PUBLIC);
+        await((s, f) -> legacyRepository.addMoodEvent(event, s, f));
+        assertFalse(Tasks.await(timelineEntry(FOLLOWER, event.getId()).get()).exists());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        List<MoodEvent>[] feed = new List[1];
+        moodEventRepository.fetchHomeFeed(FOLLOWER, events -> {
+            feed[0] = events;
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(feed[0]);
+        assertEquals(1, feed[0].size());
+        assertEquals(event.getId(), feed[0].get(0).getId());
+
+        assertTrue(waitForTimelineEntry(FOLLOWER, event.getId(), true));
+        DocumentReference state = db.collection("participants").document(FOLLOWER).collection("stats").document("timeline");
+        for (int attempt = 0; attempt < 20 && !Tasks.await(state.get()).exists(); attempt++) {
+            Thread.sleep(250);
+        }
+        assertEquals(Boolean.TRUE, Tasks.await(state.get()).getBoolean("complete"));
+    }
+
+    private MoodEvent newEvent(String title, MoodEvent.Visibility visibility) {
+        DocumentReference authorRef = db.collection("participants").document(AUTHOR);
+        MoodEvent event = new MoodEvent(title, "reason", MoodEvent.EmotionalState.HAPPY, authorRef);
+        event.setVisibility(visibility);
+        return event;
+    }
+
+    private DocumentReference timelineEntry(String username, String eventId) {
+        return db.collection("participants").document(username).collection("timeline").document(eventId);
+    }
+
+    /**
+     * Fan-out runs after the mood event write completes, so poll until the timeline reaches the expected state
+     */
+    private boolean waitForTimelineEntry(String username, String eventId, boolean shouldExist) throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            if (Tasks.await(timelineEntry(username, eventId).get()).exists() == shouldExist) {
+                return true;
+            }
+            Thread.sleep(250);
+        }
+        return false;
+    }
+
+    private void await(BiConsumer<OnSuccessListener<Void>, OnFailureListener> call) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        call.accept(unused -> latch.countDown(), e -> {
+            failure[0] = e;
+            latch.countDown();
+        });
+        assertTrue("Timed out waiting for repository call", latch.await(10, TimeUnit.SECONDS));
+        assertNull(failure[0]);
+    }
+
+    @After
+    public void tearDown() {
+        String projectId = BuildConfig.FIREBASE_PROJECT_ID;
+        String firestoreUrl = "http://10.0.2.2:8080/emulator/v1/projects/"
+                + projectId
+                + "/databases/(default)/documents";
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(firestoreUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("DELETE");
+
+            int responseCode = connection.getResponseCode();
+            Log.i("tearDown", "Cleared Firestore emulator, response code: " + responseCode);
+        } catch (IOException e) {
+            Log.e("tearDown", "Error clearing Firestore emulator", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -17,7 +17,7 @@ import com.example.bread.model.Comment;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.EmotionUtils;
-import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 import com.example.bread.utils.TimestampUtils;
 
 import java.util.List;
@@ -124,15 +124,11 @@ public class EventDetailAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
                 socialSituationText.setVisibility(View.INVISIBLE);
             }
             reasonText.setText(event.getReason());
-            if (event.getAttachedImage() != null) {
-                eventImage.setImageBitmap(ImageHandler.base64ToBitmap(event.getAttachedImage()));
-            }
+            ImageLoader.loadMoodImage(eventImage, event);
             int colorResId = EmotionUtils.getColorResource(event.getEmotionalState());
             cardLayout.setBackgroundResource(colorResId);
             participantRepository.fetchParticipantByRef(event.getParticipantRef(), participant -> {
-                if (participant.getProfilePicture() != null) {
-                    profileImage.setImageBitmap(ImageHandler.base64ToBitmap(participant.getProfilePicture()));
-                }
+                ImageLoader.loadProfilePicture(profileImage, participant, true);
             }, e -> {
                 // Handle errors if needed
                 Log.e(TAG, "Error fetching participant", e);
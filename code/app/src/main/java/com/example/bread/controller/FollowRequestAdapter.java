@@ -13,7 +13,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.bread.R;
 import com.example.bread.model.FollowRequest;
 import com.example.bread.repository.ParticipantRepository;
-import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 
 import java.util.List;
 
@@ -104,11 +104,7 @@ public class FollowRequestAdapter extends RecyclerView.Adapter<FollowRequestAdap
                     nameText.setText(participant.getDisplayName());
 
                     // Set profile image if available
-                    if (participant.getProfilePicture() != null) {
-                        profileImage.setImageBitmap(ImageHandler.base64ToBitmap(participant.getProfilePicture()));
-                    } else {
-                        profileImage.setImageResource(R.drawable.default_avatar);
-                    }
+                    ImageLoader.loadProfilePicture(profileImage, participant, false, R.drawable.default_avatar);
                 }
             }, null);
 
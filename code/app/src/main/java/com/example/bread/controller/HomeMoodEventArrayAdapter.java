@@ -2,8 +2,6 @@ package com.example.bread.controller;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,12 +16,14 @@ import androidx.constraintlayout.widget.ConstraintLayout;
 import com.example.bread.R;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodEventFeedModel;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.EmotionUtils;
-import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 import com.example.bread.utils.TimestampUtils;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * HomeMoodEventArrayAdapter
@@ -31,23 +31,21 @@ import java.util.ArrayList;
  * Role / Purpose
  * ArrayAdapter that displays most recent MoodEvent entries in the HomeFragment ListView.
  * Shows MoodEvent information (emotional state, participant info, mood title, social situation, and any attached image)
- * Supports participant caching via LruCache to improve performance and reduce network calls.
+ * Participants are looked up through the shared participant cache to improve performance and reduce network calls.
  * <p>
  * Design Patterns
  * Adapter Pattern: Binds MoodEvent model data to UI views in a ListView.
  * ViewHolder Pattern: Optimizes scrolling performance by caching view lookups.
  * Repository Pattern: Separates data-fetching concerns using ParticipantRepository.
- * Caching Pattern: Uses LruCache to minimize redundant participant lookups.
+ * Caching Pattern: Relies on the shared participant cache of ParticipantRepository to minimize redundant lookups.
  * Observer Pattern: Clicks on items are handled through event listeners.
  * <p>
  * Outstanding Issues
- * Repetitive image decoding may cause UI jank on slower devices.
+ * Participant lookups for rows scrolled past are not cancelled; their results are only dropped.
  */
 
 public class HomeMoodEventArrayAdapter extends MoodEventArrayAdapter {
 
-    // Static cache for participants shared across adapter instances
-    private static final LruCache<String, Participant> participantCache = new LruCache<>(50);
     private final ParticipantRepository userRepo;
 
     public HomeMoodEventArrayAdapter(@NonNull Context context, ArrayList<MoodEvent> events) {
@@ -65,6 +63,7 @@ public class HomeMoodEventArrayAdapter extends MoodEventArrayAdapter {
         ImageView moodImage;
         CardView miniImageHolder;
         ConstraintLayout eventLayout;
+        String boundRefPath; // participant the row is currently bound to
     }
 
     @SuppressLint("SetTextI18n")
@@ -97,16 +96,9 @@ public class HomeMoodEventArrayAdapter extends MoodEventArrayAdapter {
             loadParticipantInfo(moodEvent, holder);
 
             // Handle mood event images - fix to properly hide the holder when no image
-            if (moodEvent.getAttachedImage() != null && !moodEvent.getAttachedImage().isEmpty()) {
-                Bitmap imageBitmap = ImageHandler.base64ToBitmap(moodEvent.getAttachedImage());
-                if (imageBitmap != null) {
-                    holder.moodImage.setImageBitmap(imageBitmap);
-                    holder.moodImage.setVisibility(View.VISIBLE);
-                    holder.miniImageHolder.setVisibility(View.VISIBLE);
-                } else {
-                    holder.moodImage.setVisibility(View.GONE);
-                    holder.miniImageHolder.setVisibility(View.GONE);
-                }
+            if (ImageLoader.loadMoodImage(holder.moodImage, moodEvent)) {
+                holder.moodImage.setVisibility(View.VISIBLE);
+                holder.miniImageHolder.setVisibility(View.VISIBLE);
             } else {
                 holder.moodImage.setVisibility(View.GONE);
                 holder.miniImageHolder.setVisibility(View.GONE);
@@ -132,6 +124,32 @@ public class HomeMoodEventArrayAdapter extends MoodEventArrayAdapter {
         return convertView;
     }
 
+    /**
+     * Applies the sequential edits of a live feed update to the backing list and repaints once,
+     * instead of clearing and re-adding every row
+     *
+     * @param changes the changes produced by {@link MoodEventFeedModel}
+     */
+    public void applyChanges(@NonNull List<MoodEventFeedModel.FeedChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (MoodEventFeedModel.FeedChange change : changes) {
+            switch (change.getType()) {
+                case INSERTED:
+                    events.add(change.getPosition(), change.getMoodEvent());
+                    break;
+                case CHANGED:
+                    events.set(change.getPosition(), change.getMoodEvent());
+                    break;
+                case REMOVED:
+                    events.remove(change.getPosition());
+                    break;
+            }
+        }
+        notifyDataSetChanged();
+    }
+
     /**
      * Loads participant information from cache or network
      * This method improves performance by caching participant data and avoiding
@@ -142,51 +160,41 @@ public class HomeMoodEventArrayAdapter extends MoodEventArrayAdapter {
      */
     private void loadParticipantInfo(MoodEvent moodEvent, ViewHolder holder) {
         if (moodEvent.getParticipantRef() == null) {
+            holder.boundRefPath = null;
             holder.username.setText("Unknown");
-            holder.profilePic.setImageResource(R.drawable.ic_baseline_profile_24);
+            ImageLoader.loadProfilePicture(holder.profilePic, null, false, R.drawable.ic_baseline_profile_24);
             return;
         }
 
         String refPath = moodEvent.getParticipantRef().getPath();
+        holder.boundRefPath = refPath;
 
-        Participant cachedParticipant = participantCache.get(refPath);
+        Participant cachedParticipant = userRepo.getCachedParticipant(moodEvent.getParticipantRef());
         if (cachedParticipant != null) {
             holder.username.setText(cachedParticipant.getUsername());
 
-            String base64Image = cachedParticipant.getProfilePicture();
-            if (base64Image != null && !base64Image.isEmpty()) {
-                Bitmap bitmap = ImageHandler.base64ToBitmap(base64Image);
-                if (bitmap != null) {
-                    holder.profilePic.setImageBitmap(bitmap);
-                } else {
-                    holder.profilePic.setImageResource(R.drawable.ic_baseline_profile_24);
-                }
-            } else {
-                holder.profilePic.setImageResource(R.drawable.ic_baseline_profile_24);
-            }
+            ImageLoader.loadProfilePicture(holder.profilePic, cachedParticipant, false, R.drawable.ic_baseline_profile_24);
             return;
         }
 
         holder.username.setText("Loading...");
-        holder.profilePic.setImageResource(R.drawable.ic_baseline_profile_24);
+        ImageLoader.loadProfilePicture(holder.profilePic, null, false, R.drawable.ic_baseline_profile_24);
 
         userRepo.fetchParticipantByRef(moodEvent.getParticipantRef(), participant -> {
+            // The row may have been recycled for another participant while fetching
+            if (!refPath.equals(holder.boundRefPath)) {
+                return;
+            }
             if (participant != null) {
-                participantCache.put(refPath, participant);
-
                 holder.username.setText(participant.getUsername());
-                String base64Image = participant.getProfilePicture();
-                if (base64Image != null && !base64Image.isEmpty()) {
-                    Bitmap bitmap = ImageHandler.base64ToBitmap(base64Image);
-                    if (bitmap != null) {
-                        holder.profilePic.setImageBitmap(bitmap);
-                    }
-                }
+                ImageLoader.loadProfilePicture(holder.profilePic, participant, false, R.drawable.ic_baseline_profile_24);
             } else {
                 holder.username.setText("Unknown");
             }
         }, e -> {
-            holder.username.setText("Unknown");
+            if (refPath.equals(holder.boundRefPath)) {
+                holder.username.setText("Unknown");
+            }
         });
     }
 }
\ No newline at end of file
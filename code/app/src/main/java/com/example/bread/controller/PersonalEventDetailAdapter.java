@@ -20,7 +20,7 @@ import com.example.bread.model.MoodEvent;
 
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.EmotionUtils;
-import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 import com.example.bread.utils.TimestampUtils;
 
 import java.util.List;
@@ -122,15 +122,11 @@ public class PersonalEventDetailAdapter extends RecyclerView.Adapter<RecyclerVie
                 socialSituationText.setVisibility(View.INVISIBLE);
             }
             reasonText.setText(event.getReason());
-            if (event.getAttachedImage() != null) {
-                eventImage.setImageBitmap(ImageHandler.base64ToBitmap(event.getAttachedImage()));
-            }
+            ImageLoader.loadMoodImage(eventImage, event);
             int colorResId = EmotionUtils.getColorResource(event.getEmotionalState());
             cardLayout.setBackgroundResource(colorResId);
             participantRepository.fetchParticipantByRef(event.getParticipantRef(), participant -> {
-                if (participant.getProfilePicture() != null) {
-                    profileImage.setImageBitmap(ImageHandler.base64ToBitmap(participant.getProfilePicture()));
-                }
+                ImageLoader.loadProfilePicture(profileImage, participant, true);
             }, e -> Log.e(TAG, "Error fetching participant", e));
 
             // Set up your edit button action
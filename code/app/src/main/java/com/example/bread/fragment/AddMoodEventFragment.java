@@ -31,6 +31,7 @@ import androidx.fragment.app.DialogFragment;
 
 import com.example.bread.R;
 import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.ImageRepository;
 import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.ImageHandler;
@@ -72,7 +73,10 @@ public class AddMoodEventFragment extends DialogFragment {
     private MoodEventRepository moodEventRepository;
     private ParticipantRepository participantRepository;
     private LocationHandler locationHandler;
-    private String imageBase64; // To store the attached image
+    private ImageRepository imageRepository;
+    private byte[] imageBytes; // To store the attached image
+    private int imageRequest; // Incremented per selection, so a stale compression result is ignored
+    private boolean isCompressingImage;
     private ActivityResultLauncher<Intent> imagePickerLauncher;
     private ActivityResultLauncher<String> requestPermissionLauncher;
 
@@ -106,8 +110,27 @@ public class AddMoodEventFragment extends DialogFragment {
                             Uri imageUri = result.getData().getData();
                             if (imageUri != null) {
                                 imageAddButton.setImageURI(imageUri);
-                                imageBase64 = ImageHandler.compressImageToBase64(requireContext(), imageUri);
-                                Log.d(TAG, "Image selected and converted: " + imageBase64);
+                                // Compress in the background; the mood cannot be saved until this finishes
+                                int request = ++imageRequest;
+                                imageBytes = null;
+                                isCompressingImage = true;
+                                ImageHandler.compressImageToJpegAsync(requireContext(), imageUri, jpeg -> {
+                                    if (request != imageRequest) {
+                                        return;
+                                    }
+                                    isCompressingImage = false;
+                                    imageBytes = jpeg;
+                                    Log.d(TAG, "Image selected and compressed: " + (jpeg != null ? jpeg.length : 0) + " bytes");
+                                }, e -> {
+                                    if (request != imageRequest) {
+                                        return;
+                                    }
+                                    isCompressingImage = false;
+                                    Log.e(TAG, "Failed to compress image", e);
+                                    if (isAdded()) {
+                                        Toast.makeText(requireContext(), "Could not attach image", Toast.LENGTH_SHORT).show();
+                                    }
+                                });
                                 Toast.makeText(requireContext(), "Image attached", Toast.LENGTH_SHORT).show();
                                 // Show the remove button
                                 removeImageButton.setVisibility(View.VISIBLE);
@@ -155,6 +178,7 @@ public class AddMoodEventFragment extends DialogFragment {
 
         moodEventRepository = new MoodEventRepository();
         participantRepository = new ParticipantRepository();
+        imageRepository = new ImageRepository();
         locationHandler = LocationHandler.getInstance(requireContext());
         Log.d(TAG, "Repositories and location handler initialized");
 
@@ -192,7 +216,9 @@ public class AddMoodEventFragment extends DialogFragment {
 
         // Set up remove image button listener
         removeImageButton.setOnClickListener(v -> {
-            imageBase64 = null;
+            imageBytes = null;
+            imageRequest++;
+            isCompressingImage = false;
             imageAddButton.setImageResource(R.drawable.material_camera); // Reset to default icon
             removeImageButton.setVisibility(View.GONE);
             Toast.makeText(requireContext(), "Image removed", Toast.LENGTH_SHORT).show();
@@ -237,6 +263,11 @@ public class AddMoodEventFragment extends DialogFragment {
 
         boolean isValid = true;
 
+        if (isCompressingImage) {
+            Toast.makeText(requireContext(), "Image is still being processed, please try again", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         // Validate eventTitle (example: non-empty required)
         if (eventTitle.isEmpty()) {
             Log.w(TAG, "Validation failed: Event title is empty");
@@ -289,7 +320,6 @@ public class AddMoodEventFragment extends DialogFragment {
         MoodEvent moodEvent = new MoodEvent(eventTitle, reason, emotionalState, participantRef);
         moodEvent.setSocialSituation(socialSituation);
         moodEvent.setVisibility(visibility);
-        moodEvent.setAttachedImage(imageBase64); // Set the attached image (may be null if removed)
         Log.d(TAG, "MoodEvent created: " + moodEvent);
         Log.d(TAG, "Timestamp (before save): " + (moodEvent.getTimestamp() != null ? moodEvent.getTimestamp().toString() : "null (to be set by server)"));
 
@@ -310,33 +340,41 @@ public class AddMoodEventFragment extends DialogFragment {
             Log.d(TAG, "No location attached (chip unchecked or location null)");
         }
 
-        // Save to Firebase
-        Log.i(TAG, "Saving mood event to Firebase");
-        moodEventRepository.addMoodEvent(
-                moodEvent,
-                aVoid -> {
-                    Log.i(TAG, "Mood event saved successfully");
-                    Toast.makeText(requireContext(), "Mood saved!", Toast.LENGTH_SHORT).show();
-
-                    // Dismiss the dialog
-                    dismiss();
-
-                    // Navigate back to HomeFragment
-                    requireActivity().getSupportFragmentManager()
-                            .beginTransaction().setCustomAnimations(
-                                    R.anim.slide_in, R.anim.fade_out, R.anim.fade_in, R.anim.slide_out
-                            )
-                            .replace(R.id.frame_layout, new HomeFragment())
-                            .commit();
-
-                    if (getActivity() instanceof HomePage) {
-                        ((HomePage) getActivity()).selectHomeNavigation();
+        // Upload the attached image (may be null if removed) before the event that references it is saved
+        imageRepository.attachImage(moodEvent, imageBytes, attached -> {
+            // Save to Firebase
+            Log.i(TAG, "Saving mood event to Firebase");
+            moodEventRepository.addMoodEvent(
+                    attached,
+                    aVoid -> {
+                        Log.i(TAG, "Mood event saved successfully");
+                        Toast.makeText(requireContext(), "Mood saved!", Toast.LENGTH_SHORT).show();
+
+                        // Dismiss the dialog
+                        dismiss();
+
+                        // Navigate back to HomeFragment
+                        requireActivity().getSupportFragmentManager()
+                                .beginTransaction().setCustomAnimations(
+                                        R.anim.slide_in, R.anim.fade_out, R.anim.fade_in, R.anim.slide_out
+                                )
+                                .replace(R.id.frame_layout, new HomeFragment())
+                                .commit();
+
+                        if (getActivity() instanceof HomePage) {
+                            ((HomePage) getActivity()).selectHomeNavigation();
+                        }
+                    },
+                    e -> {
+                        Log.e(TAG, "Failed to save mood event: " + e.getMessage(), e);
                     }
-                },
-                e -> {
-                    Log.e(TAG, "Failed to save mood event: " + e.getMessage(), e);
-                }
-        );
+            );
+        }, e -> {
+            Log.e(TAG, "Failed to upload image, mood event not saved", e);
+            if (isAdded()) {
+                Toast.makeText(requireContext(), "Failed to upload image, please try again", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
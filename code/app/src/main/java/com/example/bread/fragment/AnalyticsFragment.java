@@ -3,18 +3,28 @@ package com.example.bread.fragment;
 import static com.github.mikephil.charting.utils.ColorTemplate.rgb;
 
 import android.graphics.Color;
+import android.graphics.Rect;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.ScrollView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.Pair;
 import androidx.fragment.app.Fragment;
 
 import com.example.bread.R;
 import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.AnalyticsRange;
+import com.example.bread.repository.MoodAnalyticsRepository;
+import com.example.bread.repository.MoodRollups;
+import com.example.bread.utils.MoodTimeSeries;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.charts.PieChart;
@@ -26,13 +36,16 @@ import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.data.PieData;
 import com.github.mikephil.charting.data.PieDataSet;
 import com.github.mikephil.charting.data.PieEntry;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.datepicker.MaterialDatePicker;
 
-import java.io.Serializable;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * AnalyticsFragment
@@ -41,37 +54,53 @@ import java.util.Map;
  * A Fragment that visualizes the user's mood data using interactive charts.
  * Displays:
  * - Current streak and longest streak of daily mood logging.
- * - A pie chart representing the frequency of each emotional state.
- * - A stacked bar chart showing monthly mood distributions for the current year.
- * - A line chart with a 30-day trend and 7-day moving average of mood scores.
+ * - A range selector: the last week, the last 30 days, the last twelve months, all time or custom dates.
+ * - A pie chart representing the frequency of each emotional state in the range.
+ * - A stacked bar chart showing the mood distribution of each day or month of the range.
+ * - A line chart with the average mood score of each day or month of the range and its moving average.
  * <p>
- * The mood events are passed in as arguments via the `newInstance()` factory method and rendered using the MPAndroidChart library.
+ * Only the username is passed in as an argument via the `newInstance()` factory method. The streaks and the chart values
+ * are computed from the user's mood rollups (see {@link MoodRollups}) by {@link MoodAnalyticsRepository} and rendered
+ * using the MPAndroidChart library; the raw mood events are never read here. A chart asks for its values only once it
+ * is scrolled into view, and again when the range changes while it is visible; the repository caches the values of
+ * each range, so switching back to a range is instant.
  * <p>
  * Design Patterns:
  * - Factory Pattern: Uses a static `newInstance()` method to create a configured fragment instance.
  * - MVC Pattern: Fragment acts as a controller, coordinating data processing and chart rendering.
- * - Observer Pattern: UI updates react to data passed in via arguments (though not LiveData or ViewModel-based).
+ * - Observer Pattern: Charts are drawn when the repository delivers their values (though not LiveData or ViewModel-based).
  * - Strategy Pattern (conceptually): Different chart types encapsulate different data visualization strategies.
+ * - Lazy Loading: Chart values are only requested for charts that are on screen.
  * <p>
  * Outstanding Issues:
  * - Chart interactions (e.g., tapping, zooming) are not enabled or configured.
- * - Data passed via arguments must implement Serializable; may be better with Parcelable or ViewModel for large datasets.
- * - Streak calculations assume fixed 24-hour periods; may not account for timezone or edge cases.
+ * - Streaks count calendar days in the device time zone at the time each mood was recorded.
  * - Pie chart, bar chart, and line chart could be extracted to helper methods or a utility class for better separation of concerns.
- * - No unit tests or input validation on mood data consistency.
+ * - The charts are snapshots taken when they are drawn; they do not update while the screen is shown.
+ * - The charts stay empty until the streaks arrive, which takes a full history read the first time on a device.
+ * - The selected range is not kept when the fragment is recreated.
  */
 
 public class AnalyticsFragment extends Fragment {
 
-    private static final String ARG_PARAM1 = "moodEvents";
+    private static final String TAG = "AnalyticsFragment";
+    private static final String ARG_USERNAME = "username";
 
-    private List<MoodEvent> moodEvents;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private String username;
+    private AnalyticsRange range = AnalyticsRange.MONTH;
+    // The range each chart last asked for, or null if it has not asked yet
+    private AnalyticsRange pieRange, barRange, lineRange;
+    private boolean rollupsReady = false;
     private TextView streakTextView, longestStreakTextView;
+    private ScrollView scrollView;
+    private ChipGroup rangeChipGroup;
+    private Chip customRangeChip;
     PieChart pieChart;
     BarChart barChart;
     LineChart lineChart;
-    private final Map<String, Map<String, Integer>> monthMoodMap = new HashMap<>();
-    private final List<String> sortedMonthKeys = new ArrayList<>();
 
     public AnalyticsFragment() {
         // Required empty public constructor
@@ -86,13 +115,13 @@ public class AnalyticsFragment extends Fragment {
      * Use this factory method to create a new instance of
      * this fragment using the provided parameters.
      *
-     * @param events List of MoodEvent.
+     * @param username The user whose moods are summarized.
      * @return A new instance of fragment AnalyticsFragment.
      */
-    public static AnalyticsFragment newInstance(List<MoodEvent> events) {
+    public static AnalyticsFragment newInstance(@NonNull String username) {
         AnalyticsFragment fragment = new AnalyticsFragment();
         Bundle args = new Bundle();
-        args.putSerializable(ARG_PARAM1, (Serializable) events);
+        args.putString(ARG_USERNAME, username);
         fragment.setArguments(args);
         return fragment;
     }
@@ -101,7 +130,7 @@ public class AnalyticsFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
-            moodEvents = (List<MoodEvent>) getArguments().getSerializable(ARG_PARAM1);
+            username = getArguments().getString(ARG_USERNAME);
         }
     }
 
@@ -112,6 +141,9 @@ public class AnalyticsFragment extends Fragment {
 
         streakTextView = view.findViewById(R.id.streak_text);
         longestStreakTextView = view.findViewById(R.id.longest_streak_text);
+        scrollView = view.findViewById(R.id.scrollView2);
+        rangeChipGroup = view.findViewById(R.id.range_chip_group);
+        customRangeChip = view.findViewById(R.id.range_custom_chip);
         pieChart = view.findViewById(R.id.pie_chart);
         barChart = view.findViewById(R.id.bar_monthly_chart);
         lineChart = view.findViewById(R.id.line_monthly_chart);
@@ -122,97 +154,187 @@ public class AnalyticsFragment extends Fragment {
             ).remove(AnalyticsFragment.this).commit();
         });
 
-        calculateStreak();
-        calculateLongestStreak();
+        pieRange = barRange = lineRange = null;
+        rollupsReady = false;
+        checkRangeChip();
+        rangeChipGroup.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            AnalyticsRange selected = checkedIds.isEmpty() ? null : rangeForChip(checkedIds.get(0));
+            if (selected != null) {
+                setRange(selected);
+            }
+        });
+        customRangeChip.setOnClickListener(v -> pickCustomRange());
+        scrollView.setOnScrollChangeListener((v, scrollX, scrollY, oldScrollX, oldScrollY) -> loadVisibleCharts());
 
-        drawPieChart();
-        drawBarChart();
-        drawLineChart();
+        if (username != null) {
+            MoodAnalyticsRepository.getInstance().fetchSummary(username, summary -> {
+                if (getView() == null) {
+                    return;
+                }
+                showStreaks(summary);
+                // The rollups are complete once the summary arrives, so the charts never start a history read themselves
+                rollupsReady = true;
+                scrollView.post(this::loadVisibleCharts);
+            }, e -> {
+                Log.e(TAG, "Failed to load mood analytics", e);
+                if (getContext() != null) {
+                    Toast.makeText(getContext(), "Failed to load analytics", Toast.LENGTH_SHORT).show();
+                }
+            });
+        }
 
         return view;
     }
 
     /**
-     * Calculates mood addition streak (how many days in a row user has added a mood)
+     * Shows the streaks from the summary
+     */
+    private void showStreaks(MoodRollups.Summary summary) {
+        streakTextView.setText(String.valueOf(summary != null ? summary.getCurrentStreak() : 0));
+        longestStreakTextView.setText(String.valueOf(summary != null ? summary.getLongestStreak() : 0));
+    }
+
+    /**
+     * Switches the charts to a range; visible charts are redrawn now and the others once they are scrolled into view
      */
-    private void calculateStreak() {
-        if (moodEvents == null || moodEvents.isEmpty()) {
-            streakTextView.setText("0");
+    private void setRange(@NonNull AnalyticsRange selected) {
+        if (selected.equals(range)) {
             return;
         }
+        range = selected;
+        loadVisibleCharts();
+    }
 
-        moodEvents.sort(Comparator.naturalOrder());
-
-        MoodEvent lastEvent = moodEvents.get(moodEvents.size() - 1);
-        long diffToNow = System.currentTimeMillis() - lastEvent.getTimestamp().getTime();
-        if (diffToNow > 86400000) {
-            streakTextView.setText("0");
-            return;
+    @Nullable
+    private static AnalyticsRange rangeForChip(int chipId) {
+        if (chipId == R.id.range_week_chip) {
+            return AnalyticsRange.WEEK;
+        } else if (chipId == R.id.range_month_chip) {
+            return AnalyticsRange.MONTH;
+        } else if (chipId == R.id.range_year_chip) {
+            return AnalyticsRange.YEAR;
+        } else if (chipId == R.id.range_all_chip) {
+            return AnalyticsRange.ALL_TIME;
         }
+        return null; // The custom chip picks its range in a dialog
+    }
 
-        int streakCount = 1;
-        for (int i = moodEvents.size() - 1; i > 0; i--) {
-            MoodEvent currentEvent = moodEvents.get(i);
-            MoodEvent previousEvent = moodEvents.get(i - 1);
-            long diff = currentEvent.getTimestamp().getTime() - previousEvent.getTimestamp().getTime();
-            if (diff <= 86400000) {
-                streakCount++;
-            } else {
+    /**
+     * Checks the chip of the current range
+     */
+    private void checkRangeChip() {
+        switch (range.getKind()) {
+            case WEEK:
+                rangeChipGroup.check(R.id.range_week_chip);
+                break;
+            case YEAR:
+                rangeChipGroup.check(R.id.range_year_chip);
+                break;
+            case ALL_TIME:
+                rangeChipGroup.check(R.id.range_all_chip);
+                break;
+            case CUSTOM:
+                rangeChipGroup.check(R.id.range_custom_chip);
+                break;
+            default:
+                rangeChipGroup.check(R.id.range_month_chip);
                 break;
-            }
         }
+    }
 
-        streakTextView.setText(String.valueOf(streakCount));
+    /**
+     * Lets the user pick the first and last day of a custom range; cancelling keeps the current range
+     */
+    private void pickCustomRange() {
+        MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                .setTitleText("Select dates")
+                .build();
+        picker.addOnPositiveButtonClickListener(selection -> {
+            if (selection.first == null || selection.second == null) {
+                return;
+            }
+            // The picker reports midnight UTC of each picked date, which is that date's day number in any time zone
+            int firstDay = MoodTimeSeries.dayOf(selection.first, UTC);
+            int lastDay = MoodTimeSeries.dayOf(selection.second, UTC);
+            customRangeChip.setText(dayLabel(firstDay) + " – " + dayLabel(lastDay));
+            setRange(AnalyticsRange.custom(firstDay, lastDay));
+        });
+        picker.addOnDismissListener(dialog -> {
+            if (getView() != null) {
+                checkRangeChip();
+            }
+        });
+        picker.show(getParentFragmentManager(), "analytics_range_picker");
     }
 
     /**
-     * Calculates longest streak for current user (longest time theyve added a mood every day)
+     * Asks for the values of every chart that is on screen and not yet drawn for the current range
      */
-    private void calculateLongestStreak() {
-        if (moodEvents == null || moodEvents.isEmpty()) {
-            longestStreakTextView.setText("0");
+    private void loadVisibleCharts() {
+        if (!rollupsReady || username == null || getView() == null) {
             return;
         }
+        MoodAnalyticsRepository repository = MoodAnalyticsRepository.getInstance();
+        AnalyticsRange requested = range;
+        if (!requested.equals(pieRange) && isOnScreen(pieChart)) {
+            pieRange = requested;
+            repository.fetchTotal(username, requested, total -> {
+                if (getView() != null && requested.equals(range)) {
+                    drawPieChart(total);
+                }
+            }, e -> onChartFailure(e, pieChart));
+        }
+        if (!requested.equals(barRange) && isOnScreen(barChart)) {
+            barRange = requested;
+            repository.fetchSeries(username, requested, series -> {
+                if (getView() != null && requested.equals(range)) {
+                    drawBarChart(series);
+                }
+            }, e -> onChartFailure(e, barChart));
+        }
+        if (!requested.equals(lineRange) && isOnScreen(lineChart)) {
+            lineRange = requested;
+            repository.fetchTrend(username, requested, trend -> {
+                if (getView() != null && requested.equals(range)) {
+                    drawLineChart(trend);
+                }
+            }, e -> onChartFailure(e, lineChart));
+        }
+    }
 
-        moodEvents.sort(Comparator.naturalOrder());
-
-        int longestStreak = 1;
-        int currentStreak = 1;
-
-        for (int i = 1; i < moodEvents.size(); i++) {
-            long currentTime = moodEvents.get(i).getTimestamp().getTime();
-            long previousTime = moodEvents.get(i - 1).getTimestamp().getTime();
+    private boolean isOnScreen(View chart) {
+        return chart.isShown() && chart.getLocalVisibleRect(new Rect());
+    }
 
-            if (currentTime - previousTime <= 86400000) {
-                currentStreak++;
-            } else {
-                longestStreak = Math.max(longestStreak, currentStreak);
-                currentStreak = 1;
-            }
+    /**
+     * Lets a chart whose values could not be computed ask again the next time it is scrolled into view
+     */
+    private void onChartFailure(Exception e, View chart) {
+        Log.e(TAG, "Failed to load chart values", e);
+        if (chart == pieChart) {
+            pieRange = null;
+        } else if (chart == barChart) {
+            barRange = null;
+        } else {
+            lineRange = null;
         }
-
-        longestStreak = Math.max(longestStreak, currentStreak);
-        longestStreakTextView.setText(String.valueOf(longestStreak));
     }
 
     /**
      * Backend for pie chart data
+     * @param total the sums of the events in the range
      * @return PieData (to be displayed)
      */
-    private PieData generatePieData() {
+    private PieData generatePieData(MoodRollups.Bucket total) {
         ArrayList<PieEntry> entries = new ArrayList<>();
 
-        if (moodEvents != null && !moodEvents.isEmpty()) {
-            Map<String, Integer> freqMap = new HashMap<>();
-            for (MoodEvent event : moodEvents) {
-                String mood = event.getEmotionalState().toString();
-                if (mood != null) {
-                    freqMap.put(mood, freqMap.getOrDefault(mood, 0) + 1);
+        if (total.getCount() > 0) {
+            for (MoodEvent.EmotionalState state : MoodEvent.EmotionalState.values()) {
+                int count = total.getEmotionCount(state);
+                if (count > 0) {
+                    entries.add(new PieEntry(count, state.toString()));
                 }
             }
-            for (Map.Entry<String, Integer> entry : freqMap.entrySet()) {
-                entries.add(new PieEntry(entry.getValue().floatValue(), entry.getKey()));
-            }
         } else {
             entries.add(new PieEntry(1f, "No Data"));
         }
@@ -237,7 +359,7 @@ public class AnalyticsFragment extends Fragment {
     /**
      * Frontend for pie chart display, assigns / sets up display
      */
-    private void drawPieChart() {
+    private void drawPieChart(MoodRollups.Bucket total) {
         pieChart.getDescription().setEnabled(false);
         pieChart.setDrawHoleEnabled(true);
         pieChart.setHoleColor(Color.TRANSPARENT);
@@ -254,76 +376,48 @@ public class AnalyticsFragment extends Fragment {
         legend.setOrientation(Legend.LegendOrientation.HORIZONTAL);
         legend.setTextColor(Color.WHITE);
 
-        PieData data = generatePieData();
+        PieData data = generatePieData(total);
         pieChart.setData(data);
         pieChart.invalidate();
     }
 
     /**
      * Backends for bar chart feature
+     * @param series the days or months of the range
      * @return BarData
      */
-    private BarData generateBarData() {
-        if (moodEvents == null || moodEvents.isEmpty()) {
-            return new BarData();
-        }
-
-        int currentYear = java.util.Calendar.getInstance().get(java.util.Calendar.YEAR);
-        monthMoodMap.clear();
-        sortedMonthKeys.clear();
-
-        List<String> allMoods = new ArrayList<>();
-
-        for (MoodEvent event : moodEvents) {
-            java.util.Calendar cal = java.util.Calendar.getInstance();
-            cal.setTime(event.getTimestamp());
-            int year = cal.get(java.util.Calendar.YEAR);
-
-            // Only process events from the current year
-            if (year != currentYear) {
-                continue;
-            }
-
-            int month = cal.get(java.util.Calendar.MONTH) + 1;
-            String yearMonthKey = String.format("%04d-%02d", year, month);
-
-            monthMoodMap.putIfAbsent(yearMonthKey, new HashMap<>());
-            Map<String, Integer> moodCountMap = monthMoodMap.get(yearMonthKey);
-
-            String moodStr = event.getEmotionalState().toString();
-            if (moodStr != null) {
-                moodCountMap.put(moodStr, moodCountMap.getOrDefault(moodStr, 0) + 1);
-
-                if (!allMoods.contains(moodStr)) {
-                    allMoods.add(moodStr);
+    private BarData generateBarData(MoodRollups.Series series) {
+        // Moods that appear in any bucket of the range, sorted by name
+        List<MoodEvent.EmotionalState> allMoods = new ArrayList<>();
+        for (MoodEvent.EmotionalState state : MoodEvent.EmotionalState.values()) {
+            for (int i = 0; i < series.size(); i++) {
+                if (series.getBucket(i).getEmotionCount(state) > 0) {
+                    allMoods.add(state);
+                    break;
                 }
             }
         }
+        allMoods.sort((a, b) -> a.toString().compareTo(b.toString()));
+        String[] moodLabels = new String[allMoods.size()];
+        for (int m = 0; m < allMoods.size(); m++) {
+            moodLabels[m] = allMoods.get(m).toString();
+        }
 
-        allMoods.sort(String::compareTo);
-
-        sortedMonthKeys.addAll(monthMoodMap.keySet());
-        sortedMonthKeys.sort(String::compareTo);
-
-        List<BarEntry> barEntries = new ArrayList<>();
-        for (int i = 0; i < sortedMonthKeys.size(); i++) {
-            String monthKey = sortedMonthKeys.get(i);
-            Map<String, Integer> moodCountMap = monthMoodMap.get(monthKey);
-
+        List<BarEntry> barEntries = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
             float[] stackValues = new float[allMoods.size()];
             for (int m = 0; m < allMoods.size(); m++) {
-                String mood = allMoods.get(m);
-                int count = moodCountMap.getOrDefault(mood, 0);
-                stackValues[m] = count;
+                stackValues[m] = series.getBucket(i).getEmotionCount(allMoods.get(m));
             }
             barEntries.add(new BarEntry(i, stackValues));
         }
 
         com.github.mikephil.charting.data.BarDataSet dataSet =
                 new com.github.mikephil.charting.data.BarDataSet(barEntries, "");
-        dataSet.setStackLabels(allMoods.toArray(new String[0]));
+        dataSet.setStackLabels(moodLabels);
         dataSet.setColors(MOOD_COLORS);
         dataSet.setValueTextColor(Color.WHITE);
+        dataSet.setDrawValues(series.size() <= 12);
 
         BarData barData = new BarData(dataSet);
         barData.setBarWidth(0.5f);
@@ -333,8 +427,8 @@ public class AnalyticsFragment extends Fragment {
     /**
      * UI display for bar chart, sets up and assigns all visual displays
      */
-    private void drawBarChart() {
-        BarData barData = generateBarData();
+    private void drawBarChart(MoodRollups.Series series) {
+        BarData barData = generateBarData(series);
 
         barChart.setData(barData);
 
@@ -350,8 +444,8 @@ public class AnalyticsFragment extends Fragment {
             @Override
             public String getFormattedValue(float value) {
                 int index = (int) value;
-                if (index >= 0 && index < sortedMonthKeys.size()) {
-                    return convertMonthKeysToMonthNames(sortedMonthKeys.get(index));
+                if (index >= 0 && index < series.size()) {
+                    return bucketLabel(series.getResolution(), series.getFirstBucket() + index);
                 }
                 return "";
             }
@@ -369,94 +463,50 @@ public class AnalyticsFragment extends Fragment {
     }
 
     /**
-     * Helper function to turn names of the months
-     * @param yearMonthKey
-     * @return String (month name)
+     * Helper function to name a day or month on a chart axis
+     * @param resolution whether the bucket is a day or a month
+     * @param bucket the day or month number
+     * @return String (e.g. "Mar 9" or "Mar 2025")
      */
-    private String convertMonthKeysToMonthNames(String yearMonthKey) {
-        String[] monthNames = new String[]{
-                "January", "February", "March", "April", "May", "June",
-                "July", "August", "September", "October", "November", "December"
-        };
-
-        String[] parts = yearMonthKey.split("-");
-        int monthIndex = Integer.parseInt(parts[1]) - 1;
-        return monthNames[monthIndex] + " " + parts[0];
+    private static String bucketLabel(AnalyticsRange.Resolution resolution, int bucket) {
+        return resolution == AnalyticsRange.Resolution.DAY ? dayLabel(bucket) : monthLabel(bucket);
+    }
+
+    private static String dayLabel(int day) {
+        return formatDay(day, "MMM d");
+    }
+
+    private static String monthLabel(int month) {
+        return formatDay(MoodTimeSeries.firstDayOfMonth(month), "MMM yyyy");
+    }
+
+    private static String formatDay(int day, String pattern) {
+        // Day numbers count local calendar days, so midnight UTC of the day number has the same date
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.getDefault());
+        format.setTimeZone(UTC);
+        return format.format(new Date(day * DAY_MS));
     }
 
     /**
      * Backend functionality for line data
+     * @param trend the average scores of the days or months of the range
      * @return LineData
      */
-    private LineData generateLineData() {
-        java.util.Calendar cal = java.util.Calendar.getInstance();
-        // Set to midnight today for consistency
-        cal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-        cal.set(java.util.Calendar.MINUTE, 0);
-        cal.set(java.util.Calendar.SECOND, 0);
-        cal.set(java.util.Calendar.MILLISECOND, 0);
-        java.util.Date today = cal.getTime();
-        java.util.Calendar startCal = (java.util.Calendar) cal.clone();
-        startCal.add(java.util.Calendar.DAY_OF_MONTH, -29);
-        java.util.Date startDate = startCal.getTime();
-
-        // Prepare maps to aggregate scores per day (using day midnight timestamp as key)
-        Map<Long, Float> dailySum = new HashMap<>();
-        Map<Long, Integer> dailyCount = new HashMap<>();
-
-        // Aggregate mood events that fall within the last 30 days
-        for (MoodEvent event : moodEvents) {
-            java.util.Date eventDate = event.getTimestamp();
-            // Only include events within our time window
-            if (eventDate.before(startDate) || eventDate.after(today)) {
-                continue;
-            }
-            // Normalize event date to midnight
-            java.util.Calendar eventCal = java.util.Calendar.getInstance();
-            eventCal.setTime(eventDate);
-            eventCal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-            eventCal.set(java.util.Calendar.MINUTE, 0);
-            eventCal.set(java.util.Calendar.SECOND, 0);
-            eventCal.set(java.util.Calendar.MILLISECOND, 0);
-            long dayKey = eventCal.getTimeInMillis();
-            dailySum.put(dayKey, dailySum.getOrDefault(dayKey, 0f) + event.getScore());
-            dailyCount.put(dayKey, dailyCount.getOrDefault(dayKey, 0) + 1);
-        }
-
-        List<Float> dailyAverages = new ArrayList<>();
-        List<com.github.mikephil.charting.data.Entry> rawEntries = new ArrayList<>();
-        int totalDays = 30;
-        java.util.Calendar iterCal = (java.util.Calendar) startCal.clone();
-
-        for (int i = 0; i < totalDays; i++) {
-            long dayKey = iterCal.getTimeInMillis();
-            float average = 0f;
-            if (dailyCount.containsKey(dayKey)) {
-                average = dailySum.get(dayKey) / dailyCount.get(dayKey);
-            }
-            dailyAverages.add(average);
-            // x value is the day index (0-based)
-            rawEntries.add(new com.github.mikephil.charting.data.Entry(i, average));
-            iterCal.add(java.util.Calendar.DAY_OF_MONTH, 1);
-        }
-
-        // Calculate 7-day moving average (smoothing out daily fluctuations)
-        List<com.github.mikephil.charting.data.Entry> movingAvgEntries = new ArrayList<>();
-        int window = 7;
-        for (int i = 0; i < dailyAverages.size(); i++) {
-            int startWindow = Math.max(0, i - window + 1);
-            float sum = 0f;
-            int count = 0;
-            for (int j = startWindow; j <= i; j++) {
-                sum += dailyAverages.get(j);
-                count++;
-            }
-            float movingAvg = sum / count;
-            movingAvgEntries.add(new com.github.mikephil.charting.data.Entry(i, movingAvg));
+    private LineData generateLineData(MoodRollups.Trend trend) {
+        float[] averages = trend.getAverages();
+        // Moving average smoothing out daily or monthly fluctuations, computed with the trend off the main thread
+        float[] movingAverages = trend.getMovingAverages();
+        List<com.github.mikephil.charting.data.Entry> rawEntries = new ArrayList<>(averages.length);
+        List<com.github.mikephil.charting.data.Entry> movingAvgEntries = new ArrayList<>(averages.length);
+        for (int i = 0; i < averages.length; i++) {
+            // x value is the bucket index (0-based)
+            rawEntries.add(new com.github.mikephil.charting.data.Entry(i, averages[i]));
+            movingAvgEntries.add(new com.github.mikephil.charting.data.Entry(i, movingAverages[i]));
         }
+        boolean daily = trend.getResolution() == AnalyticsRange.Resolution.DAY;
 
         com.github.mikephil.charting.data.LineDataSet rawDataSet =
-                new com.github.mikephil.charting.data.LineDataSet(rawEntries, "Daily Average");
+                new com.github.mikephil.charting.data.LineDataSet(rawEntries, daily ? "Daily Average" : "Monthly Average");
         rawDataSet.setColor(Color.WHITE);
         rawDataSet.setLineWidth(2f);
         rawDataSet.setCircleRadius(3f);
@@ -468,7 +518,8 @@ public class AnalyticsFragment extends Fragment {
         rawDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
 
         com.github.mikephil.charting.data.LineDataSet movingAvgDataSet =
-                new com.github.mikephil.charting.data.LineDataSet(movingAvgEntries, "7-Day Moving Average");
+                new com.github.mikephil.charting.data.LineDataSet(movingAvgEntries,
+                        trend.getWindow() + (daily ? "-Day" : "-Month") + " Moving Average");
         movingAvgDataSet.setColor(Color.CYAN);
         movingAvgDataSet.setLineWidth(3f);
         movingAvgDataSet.setDrawCircles(false);
@@ -481,8 +532,8 @@ public class AnalyticsFragment extends Fragment {
     /**
      * Line chart UI, handles display on screen
      */
-    private void drawLineChart() {
-        com.github.mikephil.charting.data.LineData lineData = generateLineData();
+    private void drawLineChart(MoodRollups.Trend trend) {
+        com.github.mikephil.charting.data.LineData lineData = generateLineData(trend);
         lineChart.setData(lineData);
         lineChart.getDescription().setEnabled(false);
         lineChart.setDrawGridBackground(false);
@@ -490,23 +541,11 @@ public class AnalyticsFragment extends Fragment {
         com.github.mikephil.charting.components.XAxis xAxis = lineChart.getXAxis();
         xAxis.setPosition(com.github.mikephil.charting.components.XAxis.XAxisPosition.BOTTOM);
         xAxis.setTextColor(Color.WHITE);
-
-        java.util.Calendar calendar = java.util.Calendar.getInstance();
-        calendar.set(java.util.Calendar.HOUR_OF_DAY, 0);
-        calendar.set(java.util.Calendar.MINUTE, 0);
-        calendar.set(java.util.Calendar.SECOND, 0);
-        calendar.set(java.util.Calendar.MILLISECOND, 0);
-        calendar.add(java.util.Calendar.DAY_OF_MONTH, -29);
-        final java.util.Date startDate = calendar.getTime();
-        final java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MMM d");
-
+        xAxis.setGranularity(1f);
         xAxis.setValueFormatter(new com.github.mikephil.charting.formatter.ValueFormatter() {
             @Override
             public String getFormattedValue(float value) {
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTime(startDate);
-                cal.add(java.util.Calendar.DAY_OF_MONTH, (int) value);
-                return sdf.format(cal.getTime());
+                return bucketLabel(trend.getResolution(), trend.getFirstBucket() + (int) value);
             }
         });
 
@@ -3,7 +3,6 @@ package com.example.bread.fragment;
 import android.app.AlertDialog;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
-import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -13,6 +12,7 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 
+import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -23,6 +23,7 @@ import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.Comment;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.repository.MoodEventRepository;
+import com.example.bread.repository.MoodEventStore;
 import com.example.bread.repository.ParticipantRepository;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
@@ -51,11 +52,12 @@ import java.util.Objects;
 public class EventDetail extends Fragment {
 
     private static final String TAG = "EventDetail";
-    private static final String MOOD_PARAM = "moodEvent";
+    private static final String MOOD_ID_PARAM = "moodEventId";
 
     private MoodEventRepository moodEventRepository;
     private ParticipantRepository participantRepository;
 
+    private String moodEventId;
     private MoodEvent moodEvent;
 
     private ImageView closeImage;
@@ -70,14 +72,16 @@ public class EventDetail extends Fragment {
     /**
      * Use this factory method to create a new instance of
      * this fragment using the provided parameters.
+     * The event is kept in the {@link MoodEventStore} and only its id is passed as an argument.
      *
-     * @param event Parameter 1.
+     * @param event The mood event to show.
      * @return A new instance of fragment EventDetail.
      */
-    public static EventDetail newInstance(MoodEvent event) {
+    public static EventDetail newInstance(@NonNull MoodEvent event) {
+        MoodEventStore.getInstance().put(event);
         EventDetail fragment = new EventDetail();
         Bundle args = new Bundle();
-        args.putSerializable(MOOD_PARAM, event);
+        args.putString(MOOD_ID_PARAM, event.getId());
         fragment.setArguments(args);
         return fragment;
     }
@@ -86,11 +90,9 @@ public class EventDetail extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                moodEvent = getArguments().getSerializable(MOOD_PARAM, MoodEvent.class);
-            } else {
-                moodEvent = (MoodEvent) getArguments().getSerializable(MOOD_PARAM);
-            }
+            moodEventId = getArguments().getString(MOOD_ID_PARAM);
+            // Null if the store no longer holds the event; it is then fetched again before the comments
+            moodEvent = moodEventId != null ? MoodEventStore.getInstance().get(moodEventId) : null;
         }
         moodEventRepository = new MoodEventRepository();
         participantRepository = new ParticipantRepository();
@@ -139,6 +141,9 @@ public class EventDetail extends Fragment {
      * Provides immediate UI feedback by updating the comment list.
      */
     private void launchAddCommentDialog() {
+        if (moodEvent == null) {
+            return; // Still being fetched
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext(), R.style.CustomAlertDialog);
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_add_comment, null);
         builder.setView(dialogView);
@@ -204,6 +209,10 @@ public class EventDetail extends Fragment {
      * Updates the RecyclerView UI with a sorted list of comments using EventDetailAdapter.
      */
     private void fetchComments() {
+        if (moodEvent == null) {
+            fetchMoodEventThenComments();
+            return;
+        }
         moodEventRepository.fetchComments(moodEvent, comments -> {
             comments.sort(Comparator.reverseOrder());
             eventDetailAdapter = new EventDetailAdapter(moodEvent, comments, participantRepository);
@@ -212,6 +221,27 @@ public class EventDetail extends Fragment {
         }, e -> Log.e(TAG, "Error fetching comments", e));
     }
 
+    /**
+     * Fetches the mood event this screen was opened for when the {@link MoodEventStore} no longer holds it,
+     * then its comments. Closes the screen if the event was deleted.
+     */
+    private void fetchMoodEventThenComments() {
+        if (moodEventId == null) {
+            return;
+        }
+        moodEventRepository.fetchMoodEvent(moodEventId, event -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (event == null) {
+                getParentFragmentManager().beginTransaction().remove(this).commit();
+                return;
+            }
+            moodEvent = event;
+            fetchComments();
+        }, e -> Log.e(TAG, "Error fetching mood event: " + moodEventId, e));
+    }
+
 
 
 }
\ No newline at end of file
@@ -30,7 +30,9 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -67,6 +69,7 @@ public class FollowersListFragment extends Fragment implements FollowerAdapter.O
     private final List<Participant> filteredList = new ArrayList<>();
     private FollowerAdapter followerAdapter;
     private ParticipantRepository participantRepository;
+    private boolean isLoading; // participants are still arriving, so an empty list is not final yet
 
     private String usernameText;
     private final UserProfileFragment userProfileFragment = new UserProfileFragment();
@@ -172,8 +175,8 @@ public class FollowersListFragment extends Fragment implements FollowerAdapter.O
     }
 
     /**
-     * Fetches detailed participant data for a list of usernames and populates both the original and filtered participant lists. \
-     * Notifies the adapter once all participants are loaded.
+     * Fetches detailed participant data for a list of usernames and populates both the original and filtered participant lists.
+     * Participants are read in bulk and the list is updated as each chunk arrives, keeping the order of the usernames.
      *
      * @param usernames A list of usernames to fetch Participant data for.
      */
@@ -186,33 +189,44 @@ public class FollowersListFragment extends Fragment implements FollowerAdapter.O
 
         originalList.clear();
         filteredList.clear();
+        isLoading = true;
 
-        final int[] count = {usernames.size()};
-
-        for (String username : usernames) {
-            participantRepository.fetchBaseParticipant(username, participant -> {
+        Map<String, Participant> loaded = new HashMap<>();
+        participantRepository.fetchParticipants(usernames, chunk -> {
+            if (getView() == null || chunk.getParticipants().isEmpty()) {
+                return;
+            }
+            loaded.putAll(chunk.getParticipants());
+            originalList.clear();
+            for (String username : usernames) {
+                Participant participant = loaded.get(username);
                 if (participant != null) {
                     originalList.add(participant);
-                    filteredList.add(participant);
-                }
-
-                count[0]--;
-                if (count[0] <= 0) {
-                    // All participants loaded
-                    followerAdapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
                 }
-            }, e -> {
-                Log.e(TAG, "Error fetching participant: " + username, e);
+            }
+            filterList(currentQuery());
+        }, result -> {
+            if (!result.getMissing().isEmpty() || !result.getFailed().isEmpty()) {
+                Log.w(TAG, "Could not load participants, missing: " + result.getMissing() + ", failed: " + result.getFailed());
+            }
+            finishLoading();
+        }, e -> {
+            Log.e(TAG, "Error fetching participants", e);
+            finishLoading();
+        });
+    }
 
-                count[0]--;
-                if (count[0] <= 0) {
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                }
-            });
+    private void finishLoading() {
+        isLoading = false;
+        if (getView() == null) {
+            return;
         }
+        progressBar.setVisibility(View.GONE);
+        updateEmptyView();
+    }
+
+    private String currentQuery() {
+        return searchEditText != null ? searchEditText.getText().toString().toLowerCase().trim() : "";
     }
 
     /**
@@ -244,7 +258,7 @@ public class FollowersListFragment extends Fragment implements FollowerAdapter.O
      * Displays an appropriate message or shows the participant list.
      */
     private void updateEmptyView() {
-        if (filteredList.isEmpty()) {
+        if (filteredList.isEmpty() && !isLoading) {
             String message = listType == ParticipantRepository.ListType.FOLLOWERS ?
                     "No followers found" : "Not following anyone";
             emptyView.setText(message);
@@ -276,7 +290,7 @@ public class FollowersListFragment extends Fragment implements FollowerAdapter.O
             Toast.makeText(getContext(), "Tapped on " + participant.getUsername(), Toast.LENGTH_SHORT).show();
             Bundle bundle = new Bundle();
             bundle.putString("text", usernameText);
-            bundle.putSerializable("participant", participant);
+            bundle.putParcelable("participant", participant);
             userProfileFragment.setArguments(bundle);
 
             FragmentTransaction transaction = getParentFragmentManager().beginTransaction();
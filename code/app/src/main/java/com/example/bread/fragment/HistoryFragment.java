@@ -8,6 +8,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
@@ -23,6 +24,8 @@ import androidx.fragment.app.FragmentTransaction;
 import com.example.bread.R;
 import com.example.bread.controller.HistoryMoodEventArrayAdapter;
 import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventFilter;
+import com.example.bread.repository.MoodEventFilterIndex;
 import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.repository.ParticipantRepository;
 import com.google.android.gms.tasks.OnSuccessListener;
@@ -31,12 +34,10 @@ import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -55,10 +56,18 @@ public class HistoryFragment extends Fragment {
     private String currentUsername;
     private DocumentReference participantRef;
 
+    // Paging state
+    private static final int LOAD_MORE_THRESHOLD = 5;
+    private DocumentSnapshot nextPageCursor = null;
+    private boolean hasMorePages = true;
+    private boolean isLoadingPage = false;
+    // Incremented on every reload so callbacks of pages requested before it are dropped
+    private int loadGeneration = 0;
+
     // Filter-related variables
     private FloatingActionButton filterButton;
     private final ArrayList<MoodEvent> allMoodEvents = new ArrayList<>();
-    private final ArrayList<MoodEvent> analyticsMoodEvents = new ArrayList<>();
+    private final MoodEventFilterIndex filterIndex = new MoodEventFilterIndex();
     private boolean isFilteringByWeek = false;
     private MoodEvent.EmotionalState selectedEmotionalState = null;
     private String searchKeyword = "";
@@ -83,15 +92,21 @@ public class HistoryFragment extends Fragment {
             if (moodEventArrayList.isEmpty()) {
                 Toast.makeText(getContext(), "No mood events to display", Toast.LENGTH_SHORT).show();
             } else {
-                List<MoodEvent> moodEvents = new ArrayList<>(analyticsMoodEvents);
-                AnalyticsFragment fragment = AnalyticsFragment.newInstance(moodEvents);
-                FragmentManager fragmentManager = getParentFragmentManager();
-                FragmentTransaction transaction = fragmentManager.beginTransaction().setCustomAnimations(
-                        R.anim.slide_in, R.anim.fade_out, R.anim.fade_in, R.anim.slide_out
-                );
-                transaction.add(R.id.frame_layout, fragment);
-                transaction.addToBackStack(null);
-                transaction.commit();
+                showAnalytics();
+            }
+        });
+
+        // Load the next page when the user scrolls close to the end of the loaded history
+        moodEventListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - LOAD_MORE_THRESHOLD) {
+                    loadNextPage();
+                }
             }
         });
 
@@ -127,38 +142,78 @@ public class HistoryFragment extends Fragment {
     }
 
     /**
-     * Uses listenForEventsWithParticipantRef() from MoodEventRepository class
-     * to actively retrieve mood events corresponding to user whenever added.
-     * Adds/alters user mood events to moodEventArrayList whenever there are changes.
-     * Sorts mood events by date and time added
+     * Resets the paging state and loads the first page of the user's mood events
      */
     private void loadMoodEvents() {
-        moodEventRepository.fetchEventsWithParticipantRef(participantRef, moodEvents -> {
-                    if (moodEvents != null) {
-                        moodEventArrayList.clear();
-                        moodEventArrayList.addAll(moodEvents);
-                        moodEventArrayList.sort((e1, e2) -> e2.compareTo(e1));
-
-                        // Save all mood events for filtering
-                        allMoodEvents.clear();
-                        allMoodEvents.addAll(moodEventArrayList);
-
-                        // Save mood events for analytics
-                        analyticsMoodEvents.clear();
-                        analyticsMoodEvents.addAll(moodEventArrayList);
-
-                        // Reapply any existing filters
-                        if (isFilteringByWeek || selectedEmotionalState != null || !searchKeyword.isEmpty()) {
-                            applyFilters();
-                        }
+        loadGeneration++;
+        nextPageCursor = null;
+        hasMorePages = true;
+        isLoadingPage = false;
+        moodEventArrayList.clear();
+        allMoodEvents.clear();
+        filterIndex.clear();
+        loadNextPage();
+    }
+
+    /**
+     * Uses fetchEventsPageWithParticipantRef() from MoodEventRepository class
+     * to retrieve the next page of mood events corresponding to the user, newest first.
+     * Appends the page to the loaded events and reapplies any active filters.
+     * Pages that arrive after the history was reloaded are dropped.
+     */
+    private void loadNextPage() {
+        if (participantRef == null || isLoadingPage || !hasMorePages) {
+            return;
+        }
+        isLoadingPage = true;
+        int generation = loadGeneration;
+        moodEventRepository.fetchEventsPageWithParticipantRef(participantRef, MoodEventRepository.DEFAULT_PAGE_SIZE, nextPageCursor, page -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    isLoadingPage = false;
+                    nextPageCursor = page.getCursor();
+                    hasMorePages = page.hasMore();
+
+                    // Save all loaded mood events for filtering
+                    allMoodEvents.addAll(page.getEvents());
+                    filterIndex.addAll(page.getEvents());
+
+                    // Reapply any existing filters
+                    if (currentFilter().isActive()) {
+                        applyFilters();
+                    } else {
+                        moodEventArrayList.addAll(page.getEvents());
+                        moodArrayAdapter.notifyDataSetChanged();
                     }
-                    moodArrayAdapter.notifyDataSetChanged();
                 },
                 error -> {
-                    Log.e("History Fragment", "Failed to listen for mood events", error);
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    isLoadingPage = false;
+                    Log.e("History Fragment", "Failed to fetch mood events", error);
                 });
     }
 
+    /**
+     * Opens the analytics screen. Analytics summarize the whole history, not just the loaded pages; the screen reads
+     * them from the participant's mood rollups, which are only built from the full history the first time.
+     */
+    private void showAnalytics() {
+        if (participantRef == null) {
+            return;
+        }
+        AnalyticsFragment fragment = AnalyticsFragment.newInstance(participantRef.getId());
+        FragmentManager fragmentManager = getParentFragmentManager();
+        FragmentTransaction transaction = fragmentManager.beginTransaction().setCustomAnimations(
+                R.anim.slide_in, R.anim.fade_out, R.anim.fade_in, R.anim.slide_out
+        );
+        transaction.add(R.id.frame_layout, fragment);
+        transaction.addToBackStack(null);
+        transaction.commit();
+    }
+
     /**
      * Shows detailed view for a selected mood event
      *
@@ -217,6 +272,7 @@ public class HistoryFragment extends Fragment {
             // Remove the event from the list before syncing for the ui to update when user is offline
             moodEventArrayList.remove(event);
             allMoodEvents.remove(event);
+            filterIndex.remove(event);
             repository.deleteMoodEvent(event, new OnSuccessListener<Void>() {
                 @Override
                 public void onSuccess(Void aVoid) {
@@ -287,70 +343,25 @@ public class HistoryFragment extends Fragment {
     }
 
     private void applyFilters() {
-        if (allMoodEvents.isEmpty() && !moodEventArrayList.isEmpty()) {
-            allMoodEvents.addAll(moodEventArrayList);
-        }
-
-        ArrayList<MoodEvent> filteredList = new ArrayList<>(allMoodEvents);
-
-        if (isFilteringByWeek) {
-            filteredList = filterByRecentWeek(filteredList);
-        }
-
-        if (selectedEmotionalState != null) {
-            filteredList = filterByEmotionalState(filteredList, selectedEmotionalState);
-        }
-
-        if (!searchKeyword.isEmpty()) {
-            filteredList = filterByKeyword(filteredList, searchKeyword);
-        }
+        MoodEventFilter filter = currentFilter();
+        ArrayList<MoodEvent> filteredList = filterIndex.query(filter);
 
         moodEventArrayList.clear();
         moodEventArrayList.addAll(filteredList);
         moodArrayAdapter.notifyDataSetChanged();
 
-        if (filteredList.isEmpty() && (isFilteringByWeek || selectedEmotionalState != null || !searchKeyword.isEmpty())) {
-            Toast.makeText(getContext(), "No mood events match the applied filters", Toast.LENGTH_SHORT).show();
-        }
-    }
-
-    private ArrayList<MoodEvent> filterByRecentWeek(ArrayList<MoodEvent> events) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -7);
-        Date oneWeekAgo = calendar.getTime();
-
-        for (MoodEvent event : events) {
-            if (event.getTimestamp().after(oneWeekAgo)) {
-                filteredList.add(event);
-            }
-        }
-
-        return filteredList;
-    }
-
-    private ArrayList<MoodEvent> filterByEmotionalState(ArrayList<MoodEvent> events, MoodEvent.EmotionalState state) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getEmotionalState() == state) {
-                filteredList.add(event);
+        if (filteredList.isEmpty() && filter.isActive()) {
+            // Nothing on the loaded pages matches and the empty list cannot be scrolled, so keep loading pages
+            if (hasMorePages) {
+                loadNextPage();
+                return;
             }
+            Toast.makeText(getContext(), "No mood events match the applied filters", Toast.LENGTH_SHORT).show();
         }
-
-        return filteredList;
     }
 
-    private ArrayList<MoodEvent> filterByKeyword(ArrayList<MoodEvent> events, String keyword) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getReason() != null && event.getReason().toLowerCase().contains(keyword)) {
-                filteredList.add(event);
-            }
-        }
-
-        return filteredList;
+    private MoodEventFilter currentFilter() {
+        return new MoodEventFilter(isFilteringByWeek, selectedEmotionalState, searchKeyword);
     }
 
     private void resetFilters() {
@@ -23,6 +23,7 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
@@ -34,6 +35,9 @@ import com.example.bread.controller.HomeMoodEventArrayAdapter;
 import com.example.bread.controller.UserAdapter;
 import com.example.bread.model.MoodEvent;
 import com.example.bread.model.Participant;
+import com.example.bread.repository.MoodEventFeedModel;
+import com.example.bread.repository.MoodEventFilter;
+import com.example.bread.repository.MoodEventFilterIndex;
 import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.view.LoginPage;
@@ -41,14 +45,12 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HomeFragment - Fragment
@@ -92,7 +94,6 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
     // User search
     private UserAdapter userAdapter;
     private final List<Participant> userList = new ArrayList<>();
-    private final AtomicBoolean isSearching = new AtomicBoolean(false);
 
     // Handler for delayed searches
     private Runnable searchRunnable;
@@ -101,7 +102,10 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
     // Filter-related variables
     private FloatingActionButton filterButton;
     private final ArrayList<MoodEvent> allMoodEvents = new ArrayList<>();
+    private final MoodEventFilterIndex filterIndex = new MoodEventFilterIndex();
     private boolean isFilteringByWeek = false;
+    private boolean isShowingPlaceholder = false;
+    private ListenerRegistration feedRegistration;
     private MoodEvent.EmotionalState selectedEmotionalState = null;
     private String searchKeyword = "";
 
@@ -171,12 +175,23 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
         // Set click listener for mood events
         moodEventArrayAdapter.setOnMoodEventClickListener(this::showMoodDetailsDialog);
 
-        // Fetch mood events
-        fetchMoodEvents();
-
         return view;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        // Listen for feed changes only while the fragment is visible
+        startLiveFeed();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        stopLiveFeed();
+        participantRepository.cancelUserSearch();
+    }
+
     /**
      * Sets up the search functionality UI and event listeners
      */
@@ -225,6 +240,7 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
      * Clears search results and resets UI state
      */
     private void clearSearchResults() {
+        participantRepository.cancelUserSearch();
         userList.clear();
         if (userAdapter != null) {
             userAdapter.notifyDataSetChanged();
@@ -276,42 +292,27 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
     }
 
     /**
-     * Fetches mood events from users the current user is following
+     * Starts listening for mood events from users the current user is following.
+     * Each update carries only the changed rows, which are applied to the list in place.
      */
-    private void fetchMoodEvents() {
+    private void startLiveFeed() {
         FirebaseUser user = mAuth.getCurrentUser();
         if (user != null) {
             String username = user.getDisplayName();
-            if (username != null) {
-                moodEventRepository.fetchForEventsFromFollowing(username, moodEvents -> {
-                    if (moodEvents != null) {
-                        moodEventArrayList.clear();
-
-                        if (moodEvents.isEmpty()) {
-                            // Inject a placeholder mood event to show empty view
-                            MoodEvent sampleEvent = new MoodEvent("Follow users to see their moods!", "", MoodEvent.EmotionalState.NEUTRAL, null);
-                            sampleEvent.setTimestamp(new Date());
-                            sampleEvent.setSocialSituation(MoodEvent.SocialSituation.ALONE);
-                            moodEventArrayList.add(sampleEvent);
-                        }
-
-                        moodEventArrayList.addAll(moodEvents);
-                        moodEventArrayList.sort(Comparator.reverseOrder());
-
-                        // Save all mood events for filtering
-                        allMoodEvents.clear();
-                        allMoodEvents.addAll(moodEventArrayList);
-
-                        // Reapply any existing filters
-                        if (isFilteringByWeek || selectedEmotionalState != null || !searchKeyword.isEmpty()) {
-                            applyFilters();
-                        } else {
-                            moodEventArrayAdapter.notifyDataSetChanged();
-                        }
+            if (username != null && feedRegistration == null) {
+                // A new listener starts from an empty feed and reports every event again
+                filterIndex.clear();
+                feedRegistration = moodEventRepository.listenForHomeFeed(username, new MoodEventRepository.HomeFeedListener() {
+                    @Override
+                    public void onFeedChanged(@NonNull List<MoodEventFeedModel.FeedChange> changes, @NonNull List<MoodEvent> events) {
+                        updateMoodEvents(changes, events);
+                    }
+
+                    @Override
+                    public void onFeedError(@NonNull Exception e) {
+                        Log.e(TAG, "Failed to listen for mood events for user: " + username, e);
+                        Toast.makeText(getContext(), "Failed to fetch mood events", Toast.LENGTH_SHORT).show();
                     }
-                }, e -> {
-                    Log.e(TAG, "Failed to fetch mood events for user: " + username, e);
-                    Toast.makeText(getContext(), "Failed to fetch mood events", Toast.LENGTH_SHORT).show();
                 });
             }
         } else {
@@ -323,20 +324,62 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
     }
 
     /**
-     * Performs search for users by username
+     * Stops listening for mood events
+     */
+    private void stopLiveFeed() {
+        if (feedRegistration != null) {
+            feedRegistration.remove();
+            feedRegistration = null;
+        }
+    }
+
+    /**
+     * Updates the list with a live feed change set
      *
-     * @param query The search query (username prefix)
+     * @param changes The changes since the previous update
+     * @param events  The full feed after the changes, newest first
      */
-    private void searchUsers(String query) {
-        if (isSearching.get()) {
-            return; // Prevent multiple concurrent searches
+    private void updateMoodEvents(List<MoodEventFeedModel.FeedChange> changes, List<MoodEvent> events) {
+        // Save all mood events for filtering
+        allMoodEvents.clear();
+        allMoodEvents.addAll(events);
+        filterIndex.applyChanges(changes);
+
+        boolean isFiltering = currentFilter().isActive();
+        if (events.isEmpty()) {
+            // Inject a placeholder mood event to show empty view
+            MoodEvent sampleEvent = new MoodEvent("Follow users to see their moods!", "", MoodEvent.EmotionalState.NEUTRAL, null);
+            sampleEvent.setTimestamp(new Date());
+            sampleEvent.setSocialSituation(MoodEvent.SocialSituation.ALONE);
+            moodEventArrayList.clear();
+            moodEventArrayList.add(sampleEvent);
+            moodEventArrayAdapter.notifyDataSetChanged();
+            isShowingPlaceholder = true;
+        } else if (isShowingPlaceholder || isFiltering) {
+            // The list does not mirror the feed, so rebuild it
+            isShowingPlaceholder = false;
+            moodEventArrayList.clear();
+            moodEventArrayList.addAll(events);
+            if (isFiltering) {
+                applyFilters();
+            } else {
+                moodEventArrayAdapter.notifyDataSetChanged();
+            }
+        } else {
+            moodEventArrayAdapter.applyChanges(changes);
         }
+    }
 
-        isSearching.set(true);
+    /**
+     * Performs search for users by username or name, ranked by the repository
+     *
+     * @param query The search query (username or name prefix)
+     */
+    private void searchUsers(String query) {
         searchProgressBar.setVisibility(View.VISIBLE);
         searchEmptyView.setVisibility(View.GONE);
 
-        participantRepository.searchUsersByUsername(query, participants -> {
+        participantRepository.scheduleUserSearch(query, currentUsername, participants -> {
             userList.clear();
 
             // Filter out the current user from results
@@ -349,12 +392,10 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
             userAdapter.notifyDataSetChanged();
             updateSearchEmptyView();
             searchProgressBar.setVisibility(View.GONE);
-            isSearching.set(false);
         }, e -> {
             Log.e(TAG, "Error searching users", e);
             Toast.makeText(getContext(), "Error searching users", Toast.LENGTH_SHORT).show();
             searchProgressBar.setVisibility(View.GONE);
-            isSearching.set(false);
             updateSearchEmptyView();
         });
     }
@@ -446,7 +487,7 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
             Toast.makeText(getContext(), "Tapped on " + participant.getUsername(), Toast.LENGTH_SHORT).show();
             Bundle bundle = new Bundle();
             bundle.putString("text", usernameText);
-            bundle.putSerializable("participant", participant);
+            bundle.putParcelable("participant", participant);
             userProfileFragment.setArguments(bundle);
 
             FragmentTransaction transaction = getParentFragmentManager().beginTransaction();
@@ -574,23 +615,8 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
      * Updates the adapter and notifies the user if no matches are found.
      */
     private void applyFilters() {
-        if (allMoodEvents.isEmpty() && !moodEventArrayList.isEmpty()) {
-            allMoodEvents.addAll(moodEventArrayList);
-        }
-
-        ArrayList<MoodEvent> filteredList = new ArrayList<>(allMoodEvents);
-
-        if (isFilteringByWeek) {
-            filteredList = filterByRecentWeek(filteredList);
-        }
-
-        if (selectedEmotionalState != null) {
-            filteredList = filterByEmotionalState(filteredList, selectedEmotionalState);
-        }
-
-        if (!searchKeyword.isEmpty()) {
-            filteredList = filterByKeyword(filteredList, searchKeyword);
-        }
+        MoodEventFilter filter = currentFilter();
+        ArrayList<MoodEvent> filteredList = filterIndex.query(filter);
 
         Log.d(TAG, "Filtered list size: " + filteredList.size());
 
@@ -603,68 +629,13 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
             Log.e(TAG, "MoodEventArrayAdapter is null!");
         }
 
-        if (filteredList.isEmpty() && (isFilteringByWeek || selectedEmotionalState != null || !searchKeyword.isEmpty())) {
+        if (filteredList.isEmpty() && filter.isActive()) {
             Toast.makeText(getContext(), "No mood events match the applied filters", Toast.LENGTH_SHORT).show();
         }
     }
 
-    /**
-     * Filters mood events from the past week
-     *
-     * @param events List of events to filter
-     * @return Filtered list containing only events from the past week
-     */
-    private ArrayList<MoodEvent> filterByRecentWeek(ArrayList<MoodEvent> events) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -7);
-        Date oneWeekAgo = calendar.getTime();
-
-        for (MoodEvent event : events) {
-            if (event.getTimestamp() != null && event.getTimestamp().after(oneWeekAgo)) {
-                filteredList.add(event);
-            }
-        }
-
-        return filteredList;
-    }
-
-    /**
-     * Filters mood events by emotional state
-     *
-     * @param events List of events to filter
-     * @param state  Emotional state to filter by
-     * @return Filtered list containing only events with the specified emotional state
-     */
-    private ArrayList<MoodEvent> filterByEmotionalState(ArrayList<MoodEvent> events, MoodEvent.EmotionalState state) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getEmotionalState() == state) {
-                filteredList.add(event);
-            }
-        }
-
-        return filteredList;
-    }
-
-    /**
-     * Filters mood events by keyword in reason
-     *
-     * @param events  List of events to filter
-     * @param keyword Keyword to search for in reason field
-     * @return Filtered list containing only events with reasons containing the keyword
-     */
-    private ArrayList<MoodEvent> filterByKeyword(ArrayList<MoodEvent> events, String keyword) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getReason() != null && event.getReason().toLowerCase().contains(keyword)) {
-                filteredList.add(event);
-            }
-        }
-
-        return filteredList;
+    private MoodEventFilter currentFilter() {
+        return new MoodEventFilter(isFilteringByWeek, selectedEmotionalState, searchKeyword);
     }
 
     /**
@@ -676,8 +647,8 @@ public class HomeFragment extends Fragment implements UserAdapter.UserInteractio
 
         if (!allMoodEvents.isEmpty()) {
             moodEventArrayList.clear();
+            // allMoodEvents is already in feed order, which keeps live updates aligned with the list
             moodEventArrayList.addAll(allMoodEvents);
-            moodEventArrayList.sort((e1, e2) -> e2.compareTo(e1));
 
             Log.d(TAG, "Mood events size after reset: " + moodEventArrayList.size());
 
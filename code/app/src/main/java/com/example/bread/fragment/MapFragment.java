@@ -2,10 +2,7 @@ package com.example.bread.fragment;
 
 import android.app.AlertDialog;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.drawable.ColorDrawable;
 import android.location.Location;
 import android.os.Bundle;
@@ -27,10 +24,14 @@ import androidx.fragment.app.Fragment;
 
 import com.example.bread.R;
 import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventFilter;
 import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.EmotionUtils;
 import com.example.bread.utils.LocationHandler;
+import com.example.bread.utils.MoodClusterer;
+import com.example.bread.utils.MoodMarkerIcons;
+import com.example.bread.utils.MoodSpatialIndex;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -38,7 +39,9 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.UiSettings;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MapStyleOptions;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -47,11 +50,14 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * MapFragment - Fragment
@@ -59,11 +65,16 @@ import java.util.Map;
  * Role / Purpose
  * Displays a map showing nearby mood events with filtering options.
  * Handles user location, mood filtering, and displays map markers with mood icons.
+ * Markers are clustered with {@link MoodClusterer} and only placed for the visible area, and are updated in place
+ * when the camera stops moving, so maps with thousands of personal moods pan smoothly. Followed users' moods are
+ * loaded for the area in view as the camera moves, instead of for a fixed radius around the user.
+ * Located moods are kept in a {@link MoodSpatialIndex}, so a render only reads the moods in the viewport.
  * <p>
  * Design Pattern
  * Fragment Pattern: Encapsulates map UI logic.
  * Singleton Pattern: Uses LocationHandler as a centralized utility.
- * Observer Pattern: Reacts to location and Firestore data updates.
+ * Observer Pattern: Reacts to location, camera and Firestore data updates.
+ * Flyweight Pattern: Marker icons are shared through {@link MoodMarkerIcons}.
  * <p>
  * Outstanding Issues / Comments
  * Initial fetch may occur before permissions are granted and should wait until after permission result.
@@ -72,6 +83,10 @@ import java.util.Map;
 public class MapFragment extends Fragment implements OnMapReadyCallback {
 
     private static final String TAG = "MapFragment";
+    private static final int CLUSTER_CELL_SIZE_PX = 64;
+    private static final double VIEWPORT_MARGIN = 0.25; // Markers are placed this far beyond each edge of the screen
+    private static final double MIN_FOLLOWING_RADIUS_KM = 5.0;
+    private static final double MAX_FOLLOWING_RADIUS_KM = 50.0;
     private FirebaseAuth mAuth;
     private MoodEventRepository moodEventRepo;
     private ParticipantRepository participantRepository;
@@ -90,6 +105,22 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
     // Arrays
     ArrayList<MoodEvent> moodEventsHistory = new ArrayList<>();
+    private boolean isHistoryLoaded = false;
+
+    // Latest mood of each followed user, for the areas in loadedFollowingAreas ({latitude, longitude, radius km})
+    private final Map<String, MoodEvent> followingEvents = new HashMap<>();
+    private final List<double[]> loadedFollowingAreas = new ArrayList<>();
+    private int followingGeneration = 0;
+    private boolean notifyIfFollowingEmpty = false;
+
+    // Located personal and follower moods, kept in sync with the lists above so a render only looks at the viewport
+    private final MoodSpatialIndex<MoodClusterer.Item> historyIndex = new MoodSpatialIndex<>();
+    private final MoodSpatialIndex<MoodClusterer.Item> followingIndex = new MoodSpatialIndex<>();
+
+    // Markers currently on the map, keyed by MoodClusterer.Cluster#getKey()
+    private final Map<String, Marker> renderedMarkers = new HashMap<>();
+    private Marker userLocationMarker;
+    private MoodMarkerIcons markerIcons;
 
     /**
      * These two fields are used to handle location permissions and fetching the user's location.
@@ -172,12 +203,15 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         moodEventRepo.fetchEventsWithParticipantRef(participantRepository.getParticipantRef(username), moodEvents -> {
             moodEventsHistory.clear();
+            historyIndex.clear();
             for (MoodEvent event : moodEvents) {
                 if (event.getGeoInfo() != null) {
                     Log.d(TAG, "Fetched mood event: " + event);
                     moodEventsHistory.add(event);
+                    indexItem(historyIndex, event.getId(), MoodClusterer.Item.of(username, event));
                 }
             }
+            isHistoryLoaded = true;
             onSuccessListener.onSuccess(moodEventsHistory);
         }, e -> {
             Log.e(TAG, "Failed to fetch mood events", e);
@@ -185,46 +219,91 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Calls location handler to fetch user location and calls helper function to retrieve events
-     * @param onSuccessListener
+     * Loads the latest moods of followed users for the area in view, unless an earlier load already covers it.
+     * The search radius follows the viewport, between {@link #MIN_FOLLOWING_RADIUS_KM} and {@link #MAX_FOLLOWING_RADIUS_KM}.
      */
-    private void fetchInRadiusMoodEventsFromFollowing(@NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener) {
-        Log.i(TAG, "Location not available yet, waiting for location callback");
-        locationHandler.fetchUserLocation(location -> {
-            Log.i(TAG, "Location callback received, fetching mood events");
-            doFetchInRadiusMoodEvents(location, onSuccessListener);
-        });
-    }
-
-    /**
-     * Calls method in mood repository to fetch all followed mood events within 5km
-     * @param currentLocation
-     * @param onSuccessListener
-     */
-    private void doFetchInRadiusMoodEvents(@NonNull Location currentLocation, @NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener) {
+    private void loadFollowingForViewport() {
+        // Wait until the camera has been moved to the user, rather than loading around the map's default position
+        if (mMap == null || !isFilteringByFollow || currentLocation == null) {
+            return;
+        }
         FirebaseUser user = mAuth.getCurrentUser();
-        if (user == null) {
+        if (user == null || user.getDisplayName() == null) {
             Log.e(TAG, "Cannot fetch mood events without a signed-in user");
             return;
         }
-        String username = user.getDisplayName();
-        if (username == null) {
-            Log.e(TAG, "Cannot fetch mood events without a username");
+
+        LatLngBounds visible = mMap.getProjection().getVisibleRegion().latLngBounds;
+        LatLng center = visible.getCenter();
+        float[] distance = new float[1];
+        Location.distanceBetween(center.latitude, center.longitude, visible.northeast.latitude, visible.northeast.longitude, distance);
+        double radiusKm = Math.min(MAX_FOLLOWING_RADIUS_KM, Math.max(MIN_FOLLOWING_RADIUS_KM, distance[0] / 1000.0));
+        if (isFollowingAreaLoaded(center, radiusKm)) {
             return;
         }
 
-        moodEventRepo.fetchForInRadiusEventsFromFollowing(username, currentLocation, 5.0, moodEventMaps -> {
-            Log.d(TAG, "Mood event map follower: " + moodEventMaps);
-            onSuccessListener.onSuccess(moodEventMaps);
+        double[] area = {center.latitude, center.longitude, radiusKm};
+        loadedFollowingAreas.add(area);
+        Location searchCenter = new Location("viewport");
+        searchCenter.setLatitude(center.latitude);
+        searchCenter.setLongitude(center.longitude);
+        int generation = followingGeneration;
+        moodEventRepo.fetchForInRadiusEventsFromFollowing(user.getDisplayName(), searchCenter, radiusKm, moodEventMaps -> {
+            // Ignore results for a load that a newer Apply has replaced, or that arrive after the view is gone
+            if (generation != followingGeneration || mMap == null || !isAdded()) {
+                return;
+            }
+            Log.d(TAG, "Loaded " + moodEventMaps.size() + " follower mood events within " + radiusKm + " km");
+            followingEvents.putAll(moodEventMaps);
+            for (Map.Entry<String, MoodEvent> entry : moodEventMaps.entrySet()) {
+                // One entry per followed user: a newer mood replaces the previous one
+                indexItem(followingIndex, entry.getKey(), MoodClusterer.Item.of(entry.getKey(), entry.getValue()));
+            }
+            if (notifyIfFollowingEmpty) {
+                notifyIfFollowingEmpty = false;
+                if (!anyMatchesFilters(followingEvents.values())) {
+                    Toast.makeText(getContext(), "No follower mood events match the applied filters", Toast.LENGTH_SHORT).show();
+                }
+            }
+            renderMarkers();
         }, e -> {
+            loadedFollowingAreas.remove(area);
             Log.e(TAG, "Failed to fetch mood events", e);
         });
     }
 
+    /**
+     * Returns whether the circle lies entirely inside an area that has already been loaded
+     */
+    private boolean isFollowingAreaLoaded(@NonNull LatLng center, double radiusKm) {
+        float[] distance = new float[1];
+        for (double[] area : loadedFollowingAreas) {
+            Location.distanceBetween(center.latitude, center.longitude, area[0], area[1], distance);
+            if (distance[0] / 1000.0 + radiusKm <= area[2]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
+        markerIcons = new MoodMarkerIcons();
         googleMap.setMapStyle(MapStyleOptions.loadRawResourceStyle(requireContext(), R.raw.map_style));
+        googleMap.setOnCameraIdleListener(() -> {
+            loadFollowingForViewport();
+            renderMarkers();
+        });
+        googleMap.setOnMarkerClickListener(marker -> {
+            // Tapping a cluster zooms in on it; single moods show their title as before
+            Object tag = marker.getTag();
+            if (tag instanceof MoodClusterer.Cluster && ((MoodClusterer.Cluster) tag).size() > 1) {
+                googleMap.animateCamera(CameraUpdateFactory.newLatLngZoom(marker.getPosition(), googleMap.getCameraPosition().zoom + 2));
+                return true;
+            }
+            return false;
+        });
         Log.i(TAG, "Location not available yet, waiting for location callback");
         locationHandler.fetchUserLocation(location -> {
             Log.i(TAG, "Location callback received");
@@ -233,6 +312,9 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             Log.d(TAG, "Current location: " + userLocation);
 
             currentLocation = new LatLng(userLocation.getLatitude(), userLocation.getLongitude());
+            if (mMap == null) {
+                return;
+            }
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(currentLocation, 13));
         });
 
@@ -249,30 +331,14 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         uiSettings.setIndoorLevelPickerEnabled(true);
     }
 
-    /**
-     * Converts text into a bitmap that we can display on the map
-     *
-     * @param text
-     * @return
-     */
-    public Bitmap textAsBitmap(String text) {
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint.setTextAlign(Paint.Align.LEFT);
-        paint.setTextSize(75);
-        float baseline = -paint.ascent(); // ascent() is negative
-        int width = (int) (paint.measureText(text) + 0.5f); // round
-        int height = (int) (baseline + paint.descent() + 0.5f);
-        Bitmap image = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(image);
-        canvas.drawText(text, 0, baseline, paint);
-        return image;
-    }
-
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         Log.i(TAG, "Fragment view destroyed, stopping location updates");
         locationHandler.stopLocationUpdates();
+        renderedMarkers.clear();
+        userLocationMarker = null;
+        mMap = null;
     }
 
     @Override
@@ -380,60 +446,34 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
             searchKeyword = keywordEditText.getText().toString().trim().toLowerCase();
 
-            mMap.clear();
-
             if (isFilteringByHistory) {
-                fetchSelfMoodEvents(filteredMoods -> {
-                    ArrayList<MoodEvent> finalFilteredList = applyFilters(filteredMoods);
-
-                    if (finalFilteredList.isEmpty()) {
-                        Toast.makeText(getContext(), "No personal mood events match the applied filters", Toast.LENGTH_SHORT).show();
-                    }
-
-                    Log.d(TAG, "Filtered user history list: " + finalFilteredList);
-
-                    putPersonalOnMap(finalFilteredList);
-                });
+                if (isHistoryLoaded) {
+                    notifyIfHistoryEmpty();
+                } else {
+                    fetchSelfMoodEvents(history -> {
+                        notifyIfHistoryEmpty();
+                        renderMarkers();
+                    });
+                }
             }
 
             if (isFilteringByFollow) {
-                fetchInRadiusMoodEventsFromFollowing(filteredMoods -> {
-                    Map<String, MoodEvent> finalFilteredList = filteredMoods;
-                    Map<String, MoodEvent> filteredMap = new HashMap<>();
-
-                    for (Map.Entry<String, MoodEvent> entry : finalFilteredList.entrySet()) {
-                        String userId = entry.getKey();
-                        MoodEvent event = entry.getValue();
-
-                        filteredMap.put(userId, event);  // Preserve User ID in map
-                    }
-
-                    // Convert Map values to List for filtering
-                    ArrayList<MoodEvent> moodArray = new ArrayList<>(filteredMap.values());
-
-                    // Apply additional filters
-                    ArrayList<MoodEvent> filteredArray = applyFilters(moodArray);
-
-                    if (filteredArray.isEmpty()) {
-                        Toast.makeText(getContext(), "No follower mood events match the applied filters", Toast.LENGTH_SHORT).show();
-                    }
-
-                    // Use filteredMap to ensure markers have correct User ID to MoodEvent mapping
-                    Map<String, MoodEvent> filteredMapFinal = new HashMap<>();
-                    for (MoodEvent event : filteredArray) {
-                        filteredMapFinal.put(event.getParticipantRef().getId(), event);
-                    }
-                    putMarkersOnMap(filteredMapFinal);
-                });
+                // Followed users may have posted since the last load, so start over for the area in view
+                followingGeneration++;
+                followingEvents.clear();
+                followingIndex.clear();
+                loadedFollowingAreas.clear();
+                notifyIfFollowingEmpty = true;
+                loadFollowingForViewport();
             }
 
+            renderMarkers();
             putUserLocationOnMap();
 
             dialog.dismiss();
         });
 
         resetButton.setOnClickListener(v -> {
-            mMap.clear();
 
             moodHistorySwitch.setChecked(false);
             followerMoodSwitch.setChecked(false);
@@ -447,154 +487,112 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             selectedEmotionalState = null;
             searchKeyword = "";
 
+            renderMarkers();
             putUserLocationOnMap();
 
             dialog.dismiss();
         });
     }
 
-    /**
-     * Applies the currently selected filters to the mood events list.
-     * Filters by recent week, emotional state, and keyword.
-     * Updates the adapter and notifies the user if no matches are found.
-     */
-    private ArrayList<MoodEvent> applyFilters(ArrayList<MoodEvent> moodEvents) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>(moodEvents);
+    private MoodEventFilter currentFilter() {
+        return new MoodEventFilter(isFilteringByWeek, selectedEmotionalState, searchKeyword);
+    }
 
-        if (isFilteringByWeek) {
-            filteredList = filterByRecentWeek(filteredList);
+    private boolean anyMatchesFilters(@NonNull Collection<MoodEvent> events) {
+        Predicate<MoodEvent> filter = currentFilter().toPredicate();
+        for (MoodEvent event : events) {
+            if (filter.test(event)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        if (selectedEmotionalState != null) {
-            filteredList = filterByEmotionalState(filteredList, selectedEmotionalState);
+    private void notifyIfHistoryEmpty() {
+        if (!anyMatchesFilters(moodEventsHistory)) {
+            Toast.makeText(getContext(), "No personal mood events match the applied filters", Toast.LENGTH_SHORT).show();
         }
+    }
 
-        if (!searchKeyword.isEmpty()) {
-            filteredList = filterByKeyword(filteredList, searchKeyword);
+    private static void indexItem(@NonNull MoodSpatialIndex<MoodClusterer.Item> index, String id, MoodClusterer.Item item) {
+        if (id == null) {
+            return;
         }
-
-        if (filteredList.isEmpty() && (isFilteringByWeek || selectedEmotionalState != null || !searchKeyword.isEmpty())) {
-            return new ArrayList<>(); // Return an empty list
+        if (item == null) {
+            index.remove(id);
+            return;
         }
-
-        return filteredList;
+        index.put(id, item.getLatitude(), item.getLongitude(), item);
     }
 
     /**
-     * Filters a list of mood events to only include those from the past 7 days.
-     *
-     * @param events The list of mood events to filter.
-     * @return A list of mood events that occurred within the past week.
+     * Adds the items of the index that are inside the viewport and pass the filters
      */
-    private ArrayList<MoodEvent> filterByRecentWeek(ArrayList<MoodEvent> events) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -7);
-        Date oneWeekAgo = calendar.getTime();
-
-        for (MoodEvent event : events) {
-            if (event.getTimestamp().after(oneWeekAgo)) {
-                filteredList.add(event);
+    private void addFilteredItems(@NonNull MoodSpatialIndex<MoodClusterer.Item> index, @NonNull MoodClusterer.Bounds viewport,
+                                  @NonNull List<MoodClusterer.Item> items) {
+        Predicate<MoodEvent> filter = currentFilter().toPredicate();
+        for (MoodClusterer.Item item : index.queryBounds(viewport.getSouth(), viewport.getWest(), viewport.getNorth(), viewport.getEast())) {
+            if (filter.test(item.getEvent())) {
+                items.add(item);
             }
         }
-
-        return filteredList;
     }
 
     /**
-     * Filters a list of mood events to only include those with a matching emotional state.
-     *
-     * @param events The list of mood events to filter.
-     * @param state The emotional state to match.
-     * @return A list of mood events with the specified emotional state.
+     * Places the markers for the area in view: personal and follower moods that pass the filters are clustered, markers
+     * that are still valid are kept, and only the ones that changed are added or removed
      */
-    private ArrayList<MoodEvent> filterByEmotionalState(ArrayList<MoodEvent> events, MoodEvent.EmotionalState state) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getEmotionalState() == state) {
-                filteredList.add(event);
-            }
+    private void renderMarkers() {
+        if (mMap == null || markerIcons == null) {
+            return;
         }
-
-        return filteredList;
-    }
-
-    /**
-     * Filters a list of mood events to only include those whose reason field contains a given keyword.
-     *
-     * @param events The list of mood events to filter.
-     * @param keyword The keyword to search for in the reason.
-     * @return A list of mood events whose reason contains the keyword.
-     */
-    private ArrayList<MoodEvent> filterByKeyword(ArrayList<MoodEvent> events, String keyword) {
-        ArrayList<MoodEvent> filteredList = new ArrayList<>();
-
-        for (MoodEvent event : events) {
-            if (event.getReason() != null && event.getReason().toLowerCase().contains(keyword)) {
-                filteredList.add(event);
+        LatLngBounds visible = mMap.getProjection().getVisibleRegion().latLngBounds;
+        MoodClusterer.Bounds viewport = new MoodClusterer.Bounds(visible.southwest.latitude, visible.southwest.longitude,
+                visible.northeast.latitude, visible.northeast.longitude).expandedBy(VIEWPORT_MARGIN);
+        List<MoodClusterer.Item> items = new ArrayList<>();
+        if (isFilteringByHistory) {
+            addFilteredItems(historyIndex, viewport, items);
+        }
+        if (isFilteringByFollow) {
+            addFilteredItems(followingIndex, viewport, items);
+        }
+        List<MoodClusterer.Cluster> clusters = MoodClusterer.cluster(items, mMap.getCameraPosition().zoom, CLUSTER_CELL_SIZE_PX, null);
+
+        Set<String> keys = new HashSet<>();
+        for (MoodClusterer.Cluster cluster : clusters) {
+            keys.add(cluster.getKey());
+            if (!renderedMarkers.containsKey(cluster.getKey())) {
+                Marker marker = mMap.addMarker(markerOptionsFor(cluster));
+                if (marker != null) {
+                    marker.setTag(cluster);
+                    renderedMarkers.put(cluster.getKey(), marker);
+                }
             }
         }
-
-        return filteredList;
-    }
-
-    /**
-     * Displays follower events on map with associated username
-     * @param eventsMap (username and mood event)
-     */
-    private void putMarkersOnMap(Map<String, MoodEvent> eventsMap) {
-        for (Map.Entry<String, MoodEvent> moodEvent : eventsMap.entrySet()) {
-            String userId = moodEvent.getKey();
-            MoodEvent event = moodEvent.getValue();
-
-            Log.d(TAG, "Event on map: " + event);
-
-            Map<String, Object> geo = event.getGeoInfo();
-            if (geo != null) {
-                double lat = (double) geo.get("latitude");
-                double lon = (double) geo.get("longitude");
-
-                LatLng eventPos = new LatLng(lat, lon);
-                MoodEvent.EmotionalState emotion = event.getEmotionalState();
-                String moodText = emotion.toString();
-                String emoji = EmotionUtils.getEmoticon(emotion);
-                String finalString = "@".concat(userId).concat(": ").concat(moodText).concat(emoji);
-
-                MarkerOptions testMark = new MarkerOptions().position(eventPos).title(finalString).icon(BitmapDescriptorFactory
-                        .fromBitmap(textAsBitmap(emoji)));
-
-                mMap.addMarker(testMark);
+        Iterator<Map.Entry<String, Marker>> iterator = renderedMarkers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Marker> rendered = iterator.next();
+            if (!keys.contains(rendered.getKey())) {
+                rendered.getValue().remove();
+                iterator.remove();
             }
         }
     }
 
     /**
-     * Displays personal events on map with associated mood and current user username.
-     * @param eventsArray (mood events of current user)
+     * Builds the marker of a cluster: a single mood shows its author and mood, a group shows how many moods it holds
      */
-    private void putPersonalOnMap(ArrayList<MoodEvent> eventsArray) {
-        for (MoodEvent event : eventsArray) {
-
-            Log.d(TAG, "Event on map: " + event);
-
-            Map<String, Object> geo = event.getGeoInfo();
-            if (geo != null) {
-                double lat = (double) geo.get("latitude");
-                double lon = (double) geo.get("longitude");
-
-                LatLng eventPos = new LatLng(lat, lon);
-                MoodEvent.EmotionalState emotion = event.getEmotionalState();
-                String moodText = emotion.toString();
-                String emoji = EmotionUtils.getEmoticon(emotion);
-                String finalString = "@".concat(username).concat(": ").concat(moodText).concat(emoji);
-
-                MarkerOptions testMark = new MarkerOptions().position(eventPos).title(finalString).icon(BitmapDescriptorFactory
-                        .fromBitmap(textAsBitmap(emoji)));
-
-                mMap.addMarker(testMark);
-            }
+    private MarkerOptions markerOptionsFor(@NonNull MoodClusterer.Cluster cluster) {
+        LatLng position = new LatLng(cluster.getLatitude(), cluster.getLongitude());
+        if (cluster.size() == 1) {
+            MoodClusterer.Item item = cluster.getItems().get(0);
+            MoodEvent.EmotionalState emotion = item.getEvent().getEmotionalState();
+            String finalString = "@".concat(item.getUsername()).concat(": ").concat(String.valueOf(emotion)).concat(EmotionUtils.getEmoticon(emotion));
+            return new MarkerOptions().position(position).title(finalString).icon(markerIcons.forState(emotion));
         }
+        return new MarkerOptions().position(position)
+                .title(cluster.size() + " moods")
+                .icon(markerIcons.forCluster(cluster.getDominantState(), cluster.size()));
     }
 
     /**
@@ -602,8 +600,14 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
      */
     private void putUserLocationOnMap() {
         locationHandler.fetchUserLocation(location -> {
+            if (mMap == null) {
+                return;
+            }
+            if (userLocationMarker != null) {
+                userLocationMarker.remove();
+            }
             LatLng userLocation = new LatLng(location.getLatitude(), location.getLongitude());
-            mMap.addMarker(new MarkerOptions().position(userLocation).title("You are here").icon(BitmapDescriptorFactory.defaultMarker()));
+            userLocationMarker = mMap.addMarker(new MarkerOptions().position(userLocation).title("You are here").icon(BitmapDescriptorFactory.defaultMarker()));
         });
     }
 }
\ No newline at end of file
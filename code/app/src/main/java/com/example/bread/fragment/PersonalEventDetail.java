@@ -25,6 +25,7 @@ import androidx.activity.result.ActivityResult;
 import androidx.activity.result.ActivityResultCallback;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.annotation.RequiresExtension;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -36,9 +37,13 @@ import com.example.bread.controller.PersonalEventDetailAdapter;
 import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.Comment;
 import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.ImageRepository;
 import com.example.bread.repository.MoodEventRepository;
+import com.example.bread.repository.MoodEventStore;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
+import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -54,11 +59,12 @@ import java.util.Objects;
 public class PersonalEventDetail extends Fragment implements PersonalEventDetailAdapter.OnEditMoodEventClickListener {
 
     private static final String TAG = "PersonalEventDetail";
-    private static final String MOOD_PARAM = "moodEvent";
+    private static final String MOOD_ID_PARAM = "moodEventId";
 
     private MoodEventRepository moodEventRepository;
     private ParticipantRepository participantRepository;
 
+    private String moodEventId;
     private MoodEvent moodEvent;
     private ImageView closeImage;
     private RecyclerView eventRecyclerView;
@@ -66,7 +72,11 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
     private FloatingActionButton addCommentButton;
     private ActivityResultLauncher<Intent> resultLauncher;
     private ImageButton editImage;
-    private String imageBase64;
+    private ImageRepository imageRepository;
+    private byte[] imageBytes;
+    private boolean imageRemoved;
+    private int imageRequest; // Incremented per selection, so a stale compression result is ignored
+    private boolean isCompressingImage;
 
     public PersonalEventDetail() {
         // Required empty public constructor
@@ -75,14 +85,16 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
     /**
      * Use this factory method to create a new instance of
      * this fragment using the provided parameters.
+     * The event is kept in the {@link MoodEventStore} and only its id is passed as an argument.
      *
-     * @param event Parameter 1.
+     * @param event The mood event to show.
      * @return A new instance of fragment PersonalEventDetail.
      */
-    public static PersonalEventDetail newInstance(MoodEvent event) {
+    public static PersonalEventDetail newInstance(@NonNull MoodEvent event) {
+        MoodEventStore.getInstance().put(event);
         PersonalEventDetail fragment = new PersonalEventDetail();
         Bundle args = new Bundle();
-        args.putSerializable(MOOD_PARAM, event);
+        args.putString(MOOD_ID_PARAM, event.getId());
         fragment.setArguments(args);
         return fragment;
     }
@@ -91,14 +103,13 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                moodEvent = getArguments().getSerializable(MOOD_PARAM, MoodEvent.class);
-            } else {
-                moodEvent = (MoodEvent) getArguments().getSerializable(MOOD_PARAM);
-            }
+            moodEventId = getArguments().getString(MOOD_ID_PARAM);
+            // Null if the store no longer holds the event; it is then fetched again before the comments
+            moodEvent = moodEventId != null ? MoodEventStore.getInstance().get(moodEventId) : null;
         }
         moodEventRepository = new MoodEventRepository();
         participantRepository = new ParticipantRepository();
+        imageRepository = new ImageRepository();
         // Image editing, required to ensure it is available throughout whole lifecycle
         registerResult();
     }
@@ -140,6 +151,10 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
     }
 
     private void fetchComments() {
+        if (moodEvent == null) {
+            fetchMoodEventThenComments();
+            return;
+        }
         moodEventRepository.fetchComments(moodEvent, comments -> {
             comments.sort(Comparator.reverseOrder());
             eventDetailAdapter = new PersonalEventDetailAdapter(moodEvent, comments, participantRepository);
@@ -150,7 +165,31 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
         }, e -> Log.e(TAG, "Error fetching comments", e));
     }
 
+    /**
+     * Fetches the mood event this screen was opened for when the {@link MoodEventStore} no longer holds it,
+     * then its comments. Closes the screen if the event was deleted.
+     */
+    private void fetchMoodEventThenComments() {
+        if (moodEventId == null) {
+            return;
+        }
+        moodEventRepository.fetchMoodEvent(moodEventId, event -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (event == null) {
+                getParentFragmentManager().beginTransaction().remove(this).commit();
+                return;
+            }
+            moodEvent = event;
+            fetchComments();
+        }, e -> Log.e(TAG, "Error fetching mood event: " + moodEventId, e));
+    }
+
     private void launchAddCommentDialog() {
+        if (moodEvent == null) {
+            return; // Still being fetched
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext(), R.style.CustomAlertDialog);
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_add_comment, null);
         builder.setView(dialogView);
@@ -231,8 +270,24 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
                                 // Changes image on the button if user changes image
                                 editImage.setImageURI(imageUri);
                                 // Assigns new image to our global variable that is then assigned to moodEvent
-                                imageBase64 = ImageHandler.compressImageToBase64(requireContext(), result.getData().getData());
-                                Log.d(TAG, "Image selected and converted: " + imageBase64);
+                                int request = ++imageRequest;
+                                imageBytes = null;
+                                imageRemoved = false;
+                                isCompressingImage = true;
+                                ImageHandler.compressImageToJpegAsync(requireContext(), imageUri, jpeg -> {
+                                    if (request != imageRequest) {
+                                        return;
+                                    }
+                                    isCompressingImage = false;
+                                    imageBytes = jpeg;
+                                    Log.d(TAG, "Image selected and compressed: " + (jpeg != null ? jpeg.length : 0) + " bytes");
+                                }, e -> {
+                                    if (request != imageRequest) {
+                                        return;
+                                    }
+                                    isCompressingImage = false;
+                                    Log.e(TAG, "Failed to compress image", e);
+                                });
                             } else {
                                 Log.e(TAG, "No image selected.");
                             }
@@ -275,7 +330,10 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
         titleEditText.setText(moodEvent.getTitle() != null ? moodEvent.getTitle() : "");
         reasonEditText.setText(moodEvent.getReason() !=
                 null ? moodEvent.getReason() : "");
-        imageBase64 = moodEvent.getAttachedImage();
+        imageBytes = null;
+        imageRemoved = false;
+        imageRequest++;
+        isCompressingImage = false;
 
         ArrayAdapter<EmotionalState> emotionAdapter = new ArrayAdapter<>(
                 getContext(),
@@ -285,9 +343,7 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
         emotionAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         emotionSpinner.setAdapter(emotionAdapter);
 
-        if (moodEvent.getAttachedImage() != null && !moodEvent.getAttachedImage().isEmpty()) {
-            editImage.setImageBitmap(ImageHandler.base64ToBitmap(moodEvent.getAttachedImage()));
-        } else {
+        if (!ImageLoader.loadMoodImage(editImage, moodEvent)) {
             editImage.setImageResource(R.drawable.camera_icon);
         }
 
@@ -314,7 +370,10 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
         }
 
         deleteImageButton.setOnClickListener(v -> {
-            imageBase64 = null;
+            imageBytes = null;
+            imageRemoved = true;
+            imageRequest++;
+            isCompressingImage = false;
             editImage.setImageDrawable(null);
             editImage.setImageResource(R.drawable.camera_icon);
         });
@@ -354,6 +413,10 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
                 Toast.makeText(getContext(), "Emotional state cannot be None", Toast.LENGTH_SHORT).show();
                 isValid = false;
             }
+            if (isCompressingImage) {
+                Toast.makeText(getContext(), "Image is still being processed, please try again", Toast.LENGTH_SHORT).show();
+                isValid = false;
+            }
             if (!isValid) {
                 return;
             }
@@ -362,35 +425,43 @@ public class PersonalEventDetail extends Fragment implements PersonalEventDetail
             moodEvent.setEmotionalState(newEmotionalState);
             moodEvent.setReason(newReason);
             moodEvent.setSocialSituation(newSocialSituation);
-            moodEvent.setAttachedImage(imageBase64);
             moodEvent.setVisibility(privateChip.isChecked() ? MoodEvent.Visibility.PRIVATE : MoodEvent.Visibility.PUBLIC);
 
-            // Update your local lists and notify changes as needed
-            // (Assuming moodEventArrayList, allMoodEvents, and moodArrayAdapter are managed in HistoryFragment)
-            // Here you might need to update these lists via a callback or shared ViewModel
-
-            moodEventRepository.updateMoodEvent(moodEvent,
-                    aVoid -> {
-                        if (isAdded() && getActivity() != null) {
-                            getActivity().runOnUiThread(() -> {
-                                if (getContext() != null) {
-                                    Toast.makeText(getContext(), "Mood updated successfully", Toast.LENGTH_SHORT).show();
-                                }
-                            });
-                        }
-                        dialog.dismiss();
-                    },
-                    e -> {
-                        if (isAdded() && getActivity() != null) {
-                            getActivity().runOnUiThread(() -> {
-                                if (getContext() != null) {
-                                    Toast.makeText(getContext(), "Failed to update mood", Toast.LENGTH_SHORT).show();
-                                    Log.e("HistoryFragment", "Error updating mood", e);
-                                }
-                            });
+            // The event is the instance HistoryFragment put in the MoodEventStore, so its list shows the edit as well
+            OnSuccessListener<MoodEvent> saveEvent = edited -> moodEventRepository.updateMoodEvent(edited,
+                        aVoid -> {
+                            if (isAdded() && getActivity() != null) {
+                                getActivity().runOnUiThread(() -> {
+                                    if (getContext() != null) {
+                                        Toast.makeText(getContext(), "Mood updated successfully", Toast.LENGTH_SHORT).show();
+                                    }
+                                });
+                            }
+                            dialog.dismiss();
+                        },
+                        e -> {
+                            if (isAdded() && getActivity() != null) {
+                                getActivity().runOnUiThread(() -> {
+                                    if (getContext() != null) {
+                                        Toast.makeText(getContext(), "Failed to update mood", Toast.LENGTH_SHORT).show();
+                                        Log.e("HistoryFragment", "Error updating mood", e);
+                                    }
+                                });
+                            }
                         }
-                    }
             );
+            // Only touch the image if it was replaced or removed, so an unchanged image is not uploaded again.
+            // The edit is saved once the new image is stored, so the event never references a missing image.
+            if (imageBytes != null || imageRemoved) {
+                imageRepository.attachImage(moodEvent, imageBytes, saveEvent, e -> {
+                    Log.e(TAG, "Failed to upload image, mood not updated", e);
+                    if (isAdded() && getContext() != null) {
+                        Toast.makeText(getContext(), "Failed to upload image, please try again", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            } else {
+                saveEvent.onSuccess(moodEvent);
+            }
         });
     }
 }
\ No newline at end of file
@@ -5,7 +5,6 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -30,13 +29,19 @@ import androidx.annotation.RequiresExtension;
 import androidx.fragment.app.Fragment;
 
 import com.example.bread.R;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.ImageRepository;
+import com.example.bread.repository.MoodAnalyticsRepository;
+import com.example.bread.repository.MoodEventStore;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 import com.example.bread.view.LoginPage;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
 
 import java.util.Objects;
 
@@ -67,12 +72,13 @@ public class SettingsFragment extends Fragment {
 
     // Image related variables
     private ActivityResultLauncher<Intent> imagePickerLauncher;
-    private String imageBase64;
+    private ImageRepository imageRepository;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         participantRepository = new ParticipantRepository();
+        imageRepository = new ImageRepository();
 
         // Get current username
         if (FirebaseAuth.getInstance().getCurrentUser() != null) {
@@ -134,8 +140,10 @@ public class SettingsFragment extends Fragment {
             SharedPreferences preferences = getActivity().getSharedPreferences("sharedPrefs", Context.MODE_PRIVATE);
             preferences.edit().clear().apply();
 
-            // Sign out from Firebase
+            // Sign out from Firebase and drop the mood events and analytics kept for this user
             FirebaseAuth.getInstance().signOut();
+            MoodEventStore.getInstance().clear();
+            MoodAnalyticsRepository.getInstance().clear();
 
             // Go back to login page
             Intent intent = new Intent(getActivity(), LoginPage.class);
@@ -147,18 +155,15 @@ public class SettingsFragment extends Fragment {
     }
 
     /**
-     * Loads the user's profile picture from Firestore and sets it on the profile image button.
-     * If a valid image exists, it is decoded from Base64 and displayed.
+     * Loads the user's profile picture and sets it on the profile image button.
+     * The thumbnail is shown first and replaced by the full-size picture once it is fetched.
      */
     private void loadProfilePicture() {
         if (currentUsername == null) return;
 
         participantRepository.fetchBaseParticipant(currentUsername, participant -> {
-            if (participant != null && participant.getProfilePicture() != null) {
-                Bitmap bitmap = ImageHandler.base64ToBitmap(participant.getProfilePicture());
-                if (bitmap != null && profileChangeButton != null) {
-                    profileChangeButton.setImageBitmap(bitmap);
-                }
+            if (profileChangeButton != null) {
+                ImageLoader.loadProfilePicture(profileChangeButton, participant, true);
             }
         }, e -> Log.e(TAG, "Error loading profile picture", e));
     }
@@ -175,7 +180,7 @@ public class SettingsFragment extends Fragment {
 
     /**
      * Registers an ActivityResultLauncher to handle the result of image selection.
-     * Converts the selected image to Base64 and triggers a profile update in Firestore.
+     * Compresses the selected image and triggers a profile update in Firestore.
      */
     private void registerImagePicker() {
         imagePickerLauncher = registerForActivityResult(
@@ -192,11 +197,15 @@ public class SettingsFragment extends Fragment {
                                         // Set the image on the button
                                         profileChangeButton.setImageURI(imageUri);
 
-                                        // Convert the image to Base64
-                                        imageBase64 = ImageHandler.compressImageToBase64(requireContext(), imageUri);
-
-                                        // Update the profile picture in Firestore
-                                        updateProfilePicture(imageBase64);
+                                        // Compress the image to JPEG in the background, then update the profile picture in Firestore
+                                        ImageHandler.compressImageToJpegAsync(requireContext(), imageUri,
+                                                SettingsFragment.this::updateProfilePicture,
+                                                e -> {
+                                                    Log.e(TAG, "Error processing selected image", e);
+                                                    if (isAdded()) {
+                                                        Toast.makeText(getContext(), "Error processing selected image", Toast.LENGTH_SHORT).show();
+                                                    }
+                                                });
                                     }
                                 } catch (Exception e) {
                                     Log.e(TAG, "Error processing selected image", e);
@@ -212,16 +221,37 @@ public class SettingsFragment extends Fragment {
     }
 
     /**
-     * Updates the profile picture of the current user in Firestore.
+     * Uploads the profile picture of the current user to the image store and, once it is stored, points the participant
+     * at it. The participant document only keeps the image hash and a small thumbnail; any old inline picture is removed.
      *
-     * @param base64Image The new profile picture encoded as a Base64 string.
+     * @param imageBytes The new profile picture as compressed JPEG bytes.
      */
-    private void updateProfilePicture(String base64Image) {
-        if (currentUsername == null || base64Image == null) return;
+    private void updateProfilePicture(byte[] imageBytes) {
+        if (currentUsername == null || imageBytes == null) return;
+
+        imageRepository.uploadImage(imageBytes, hash -> saveProfilePicture(hash, imageBytes), e -> {
+            Log.e(TAG, "Error uploading profile picture", e);
+            if (isAdded()) {
+                Toast.makeText(getContext(), "Failed to upload profile picture", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
+    /**
+     * Points the participant at a stored profile picture
+     *
+     * @param hash       The content hash of the stored picture
+     * @param imageBytes The picture as compressed JPEG bytes, for the thumbnail
+     */
+    private void saveProfilePicture(String hash, byte[] imageBytes) {
         DocumentReference userRef = participantRepository.getParticipantRef(currentUsername);
-        userRef.update("profilePicture", base64Image)
+        // Drop the cached participant now and again once the write lands, so no stale picture is cached in between
+        participantRepository.invalidateParticipant(currentUsername);
+        userRef.update("profilePictureHash", hash,
+                        "profilePictureThumbnail", ImageHandler.createThumbnailBase64(imageBytes),
+                        "profilePicture", FieldValue.delete())
                 .addOnSuccessListener(aVoid -> {
+                    participantRepository.invalidateParticipant(currentUsername);
                     Toast.makeText(getContext(), "Profile picture updated successfully", Toast.LENGTH_SHORT).show();
                     Log.d(TAG, "Profile picture updated successfully");
                 })
@@ -276,14 +306,21 @@ public class SettingsFragment extends Fragment {
             String newFirstName = editFirstname.getText().toString().trim();
             String newLastName = editLastname.getText().toString().trim();
 
-            //update values in firebase
+            Participant renamed = new Participant();
+            renamed.setFirstName(newFirstName);
+            renamed.setLastName(newLastName);
+
+            //update values in firebase, dropping the cached copy so other screens pick up the new name
+            userRepo.invalidateParticipant(username);
             participantRef
                     .update(
                             "firstName", newFirstName,
-                            "lastName", newLastName)
+                            "lastName", newLastName,
+                            "displayNameLower", renamed.getDisplayNameLower())
                     .addOnSuccessListener(new OnSuccessListener<Void>() {
                         @Override
                         public void onSuccess(Void aVoid) {
+                            userRepo.invalidateParticipant(username);
                             Log.d(TAG, "DocumentSnapshot successfully updated!");
                             Toast.makeText(getContext(), "Name updated successfully", Toast.LENGTH_SHORT).show();
                         }
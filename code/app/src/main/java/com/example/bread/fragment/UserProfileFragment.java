@@ -1,6 +1,5 @@
 package com.example.bread.fragment;
 
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -21,7 +20,7 @@ import com.example.bread.model.Participant;
 import com.example.bread.repository.MoodEventRepository;
 import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.EmotionUtils;
-import com.example.bread.utils.ImageHandler;
+import com.example.bread.utils.ImageLoader;
 import com.example.bread.utils.TimestampUtils;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -29,7 +28,6 @@ import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 
 /**
  * UserProfileFragment - Fragment
@@ -171,13 +169,10 @@ public class UserProfileFragment extends Fragment {
 
         DocumentReference participantRef = participantRepository.getParticipantRef(followedUsername);
 
-        // Changed from listenForEventsWithParticipantRef to fetchEventsWithParticipantRef
-        moodEventRepository.fetchEventsWithParticipantRef(participantRef, moodEvents -> {
+        // Only the newest mood event is shown, so fetch a single-event page instead of the full history
+        moodEventRepository.fetchEventsPageWithParticipantRef(participantRef, 1, null, page -> {
             userMoodEvents.clear();
-            userMoodEvents.addAll(moodEvents);
-
-            // Sort by date (newest first)
-            userMoodEvents.sort(Comparator.reverseOrder());
+            userMoodEvents.addAll(page.getEvents());
 
             // Display most recent mood event
             updateRecentMoodEvent();
@@ -224,9 +219,9 @@ public class UserProfileFragment extends Fragment {
             }
 
             // Handle image visibility
-            if (recentMood.getAttachedImage() != null && !recentMood.getAttachedImage().isEmpty()) {
+            if (ImageLoader.hasImage(recentMood)) {
                 if (moodImageView != null) {
-                    moodImageView.setImageBitmap(ImageHandler.base64ToBitmap(recentMood.getAttachedImage()));
+                    ImageLoader.loadMoodImage(moodImageView, recentMood);
                     moodImageView.setVisibility(View.VISIBLE);
                 }
                 if (imageContainer != null) {
@@ -244,11 +239,7 @@ public class UserProfileFragment extends Fragment {
             // Set profile picture for the recent mood event
             if (profileImageView != null) {
                 participantRepository.fetchBaseParticipant(followedUsername, participant -> {
-                    if (participant != null && participant.getProfilePicture() != null) {
-                        profileImageView.setImageBitmap(ImageHandler.base64ToBitmap(participant.getProfilePicture()));
-                    } else {
-                        profileImageView.setImageResource(R.drawable.ic_baseline_profile_24);
-                    }
+                    ImageLoader.loadProfilePicture(profileImageView, participant, false, R.drawable.ic_baseline_profile_24);
                 }, e -> Log.e(TAG, "Error loading profile image", e));
             }
 
@@ -303,13 +294,8 @@ public class UserProfileFragment extends Fragment {
         }
 
         // Set profile picture if available
-        if (participant.getProfilePicture() != null && profileImageView != null) {
-            Bitmap bitmap = ImageHandler.base64ToBitmap(participant.getProfilePicture());
-            if (bitmap != null) {
-                profileImageView.setImageBitmap(bitmap);
-            } else {
-                profileImageView.setImageResource(R.drawable.ic_baseline_profile_24);
-            }
+        if (profileImageView != null) {
+            ImageLoader.loadProfilePicture(profileImageView, participant, true, R.drawable.ic_baseline_profile_24);
         }
     }
 
@@ -29,7 +29,6 @@ import com.google.firebase.auth.FirebaseAuth;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * UserSearchFragment - Fragment
@@ -59,7 +58,6 @@ public class UserSearchFragment extends Fragment implements UserAdapter.UserInte
     private ParticipantRepository participantRepository;
     private String currentUsername;
     private final List<Participant> userList = new ArrayList<>();
-    private final AtomicBoolean isSearching = new AtomicBoolean(false);
 
     private String usernameText;
     private final UserProfileFragment userProfileFragment = new UserProfileFragment();
@@ -108,7 +106,8 @@ public class UserSearchFragment extends Fragment implements UserAdapter.UserInte
                 if (query.length() >= 2) {
                     searchUsers(query);
                 } else {
-                    // Clear results when search is cleared
+                    // Clear results when search is cleared, ignoring a search still in flight
+                    participantRepository.cancelUserSearch();
                     userList.clear();
                     userAdapter.notifyDataSetChanged();
                     emptyView.setVisibility(View.GONE);
@@ -120,22 +119,24 @@ public class UserSearchFragment extends Fragment implements UserAdapter.UserInte
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Results arriving after this would update views that no longer exist
+        participantRepository.cancelUserSearch();
+    }
+
     /**
-     * Performs a search for users whose usernames match the given query.
+     * Performs a search for users whose usernames or names match the given query, ranked by the repository.
      * Filters out the current user from the results and updates the RecyclerView.
      *
-     * @param query The search term to filter users by username.
+     * @param query The search term to filter users by username or name.
      */
     private void searchUsers(String query) {
-        if (isSearching.get()) {
-            return; // Prevent multiple concurrent searches
-        }
-
-        isSearching.set(true);
         progressBar.setVisibility(View.VISIBLE);
         emptyView.setVisibility(View.GONE);
 
-        participantRepository.searchUsersByUsername(query, participants -> {
+        participantRepository.scheduleUserSearch(query, currentUsername, participants -> {
             userList.clear();
 
             // Filter out the current user from results
@@ -148,12 +149,10 @@ public class UserSearchFragment extends Fragment implements UserAdapter.UserInte
             userAdapter.notifyDataSetChanged();
             updateEmptyView();
             progressBar.setVisibility(View.GONE);
-            isSearching.set(false);
         }, e -> {
             Log.e(TAG, "Error searching users", e);
             Toast.makeText(getContext(), "Error searching users", Toast.LENGTH_SHORT).show();
             progressBar.setVisibility(View.GONE);
-            isSearching.set(false);
             updateEmptyView();
         });
     }
@@ -233,7 +232,7 @@ public class UserSearchFragment extends Fragment implements UserAdapter.UserInte
 
             Bundle bundle = new Bundle();
             bundle.putString("text", usernameText);
-            bundle.putSerializable("participant", participant);
+            bundle.putParcelable("participant", participant);
             userProfileFragment.setArguments(bundle);
 
             FragmentTransaction transaction = getParentFragmentManager().beginTransaction();
@@ -1,5 +1,8 @@
 package com.example.bread.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import androidx.annotation.NonNull;
 
 import com.google.firebase.firestore.DocumentReference;
@@ -11,9 +14,9 @@ import java.util.UUID;
 
 /**
  * Represents a comment, encapsulating the user's comment and the timestamp of the comment.
- * Implements {@link Serializable} and {@link Comparable} for sorting.
+ * Implements {@link Serializable}, {@link Parcelable} and {@link Comparable} for sorting.
  */
-public class Comment implements Serializable, Comparable<Comment> {
+public class Comment implements Serializable, Parcelable, Comparable<Comment> {
 
     private String id;
     private DocumentReference participantRef;
@@ -21,6 +24,9 @@ public class Comment implements Serializable, Comparable<Comment> {
     private Date timestamp;
     private String text;
 
+    // Written to a parcel in place of a missing timestamp
+    private static final long NO_TIME = Long.MIN_VALUE;
+
     /**
      * Default constructor for Firestore serialization
      */
@@ -38,6 +44,50 @@ public class Comment implements Serializable, Comparable<Comment> {
         this.participantRef = participantRef;
     }
 
+    /**
+     * Restores a comment written by {@link #writeToParcel(Parcel, int)}
+     *
+     * @param in the parcel to read from
+     */
+    protected Comment(Parcel in) {
+        id = in.readString();
+        participantRef = ModelCodec.documentAt(in.readString());
+        long time = in.readLong();
+        timestamp = time != NO_TIME ? new Date(time) : null;
+        text = in.readString();
+    }
+
+    public static final Creator<Comment> CREATOR = new Creator<Comment>() {
+        @Override
+        public Comment createFromParcel(Parcel in) {
+            return new Comment(in);
+        }
+
+        @Override
+        public Comment[] newArray(int size) {
+            return new Comment[size];
+        }
+    };
+
+    /**
+     * Writes this comment to a parcel, with the participant as its document path and the timestamp as epoch milliseconds
+     *
+     * @param dest  the parcel to write to
+     * @param flags additional flags about how the object should be written
+     */
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeString(participantRef != null ? participantRef.getPath() : null);
+        dest.writeLong(timestamp != null ? timestamp.getTime() : NO_TIME);
+        dest.writeString(text);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
     /**
      * Returns the UUID of the comment
      *
@@ -0,0 +1,600 @@
+package com.example.bread.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * ModelCodec - Model
+ * <p>
+ * Role / Purpose
+ * Compact binary encoding of {@link MoodEvent}, {@link Comment} and {@link Participant}, written by hand instead of
+ * through reflection-based Java serialization. Every object starts with a bit mask of the fields it has, so absent
+ * fields take no space. Enums are written as their ordinal, dates as epoch milliseconds, integers as variable-length
+ * numbers, and participant references as their document path. Strings are interned per stream: the first occurrence
+ * is written in full and every repeat (a username, a participant path, a status) as a small index, and decoded objects
+ * share one instance of each repeated string. Ids in the canonical UUID form take 16 bytes instead of 36. Image content (inline Base64 images and thumbnails) is never encoded;
+ * only the content hash of an image in the image store is kept, so an image is loaded again when it is shown.
+ * <p>
+ * Design Patterns
+ * Utility Class Pattern: Static entry points, with a {@link Writer} and {@link Reader} holding the string table of a stream.
+ * <p>
+ * Outstanding Issues
+ * - The format is versioned but only version 1 is read; a change of fields needs a new version.
+ * - Geo information other than the geohash, latitude and longitude is dropped.
+ * - Only a format for now: nothing in the app stores or sends encoded lists yet. The Parcelable implementations use its
+ *   enum and reference helpers, and {@link #encodeMoodEvents(List)} is meant for a future on-disk event cache.
+ */
+
+public final class ModelCodec {
+    public static final int FORMAT_VERSION = 1;
+
+    // Field masks of a mood event
+    private static final int EVENT_ID = 1;
+    private static final int EVENT_TITLE = 1 << 1;
+    private static final int EVENT_TIMESTAMP = 1 << 2;
+    private static final int EVENT_REASON = 1 << 3;
+    private static final int EVENT_GEO = 1 << 4;
+    private static final int EVENT_PARTICIPANT = 1 << 5;
+    private static final int EVENT_EMOTION = 1 << 6;
+    private static final int EVENT_SOCIAL = 1 << 7;
+    private static final int EVENT_IMAGE_HASH = 1 << 8;
+    private static final int EVENT_VISIBILITY = 1 << 9;
+
+    // Field masks of a comment
+    private static final int COMMENT_ID = 1;
+    private static final int COMMENT_PARTICIPANT = 1 << 1;
+    private static final int COMMENT_TIMESTAMP = 1 << 2;
+    private static final int COMMENT_TEXT = 1 << 3;
+
+    // Field masks of a participant
+    private static final int PARTICIPANT_USERNAME = 1;
+    private static final int PARTICIPANT_EMAIL = 1 << 1;
+    private static final int PARTICIPANT_FIRST_NAME = 1 << 2;
+    private static final int PARTICIPANT_LAST_NAME = 1 << 3;
+    private static final int PARTICIPANT_PICTURE_HASH = 1 << 4;
+    private static final int PARTICIPANT_FOLLOWERS = 1 << 5;
+    private static final int PARTICIPANT_FOLLOWING = 1 << 6;
+    private static final int PARTICIPANT_REQUESTS = 1 << 7;
+
+    // Field masks of a follow request
+    private static final int REQUEST_FROM = 1;
+    private static final int REQUEST_STATUS = 1 << 1;
+    private static final int REQUEST_TIMESTAMP = 1 << 2;
+
+    // String tags; tags from STRING_INDEX on refer to the string table
+    private static final int STRING_NULL = 0;
+    private static final int STRING_LITERAL = 1;
+    private static final int STRING_UUID = 2;
+    private static final int STRING_INDEX = 3;
+
+    private ModelCodec() {
+    }
+
+    /**
+     * Encodes a list of mood events as one stream, so strings repeated across events are written once
+     *
+     * @param moodEvents the events
+     * @return the encoded bytes
+     */
+    @NonNull
+    public static byte[] encodeMoodEvents(@NonNull List<MoodEvent> moodEvents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            Writer writer = new Writer(new DataOutputStream(bytes));
+            writer.writeVarInt(moodEvents.size());
+            for (MoodEvent moodEvent : moodEvents) {
+                writer.writeMoodEvent(moodEvent);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory cannot fail", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes mood events written by {@link #encodeMoodEvents(List)}
+     *
+     * @param bytes      the encoded bytes
+     * @param references resolves a document path to a participant reference
+     * @return the events
+     * @throws IOException if the bytes are not a supported encoding
+     */
+    @NonNull
+    public static List<MoodEvent> decodeMoodEvents(@NonNull byte[] bytes, @NonNull Function<String, DocumentReference> references) throws IOException {
+        Reader reader = new Reader(new DataInputStream(new ByteArrayInputStream(bytes)), references);
+        int count = reader.readCount();
+        List<MoodEvent> moodEvents = new ArrayList<>(Math.min(count, bytes.length));
+        for (int i = 0; i < count; i++) {
+            moodEvents.add(reader.readMoodEvent());
+        }
+        return moodEvents;
+    }
+
+    /**
+     * Resolves a document path with the default Firestore instance
+     *
+     * @param path the document path, or null
+     * @return the reference, or null if the path is null
+     */
+    @Nullable
+    static DocumentReference documentAt(@Nullable String path) {
+        return path != null ? FirebaseFirestore.getInstance().document(path) : null;
+    }
+
+    /**
+     * @return the ordinal of an enum value, or -1 for null
+     */
+    static int ordinalOf(@Nullable Enum<?> value) {
+        return value != null ? value.ordinal() : -1;
+    }
+
+    /**
+     * @return the enum value with the given ordinal, or null if it is out of range
+     */
+    @Nullable
+    static <E extends Enum<E>> E enumAt(@NonNull E[] values, int ordinal) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : null;
+    }
+
+    /**
+     * Writes model objects to one stream, interning the strings written to it
+     */
+    public static final class Writer {
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        /**
+         * Starts a stream by writing the format version
+         *
+         * @param out the output
+         * @throws IOException if the output fails
+         */
+        public Writer(@NonNull DataOutput out) throws IOException {
+            this.out = out;
+            out.writeByte(FORMAT_VERSION);
+        }
+
+        public void writeMoodEvent(@NonNull MoodEvent moodEvent) throws IOException {
+            Map<String, Object> geoInfo = moodEvent.getGeoInfo();
+            boolean hasGeo = geoInfo != null && geoInfo.get("latitude") instanceof Number && geoInfo.get("longitude") instanceof Number;
+            int mask = (moodEvent.getId() != null ? EVENT_ID : 0)
+                    | (moodEvent.getTitle() != null ? EVENT_TITLE : 0)
+                    | (moodEvent.getTimestamp() != null ? EVENT_TIMESTAMP : 0)
+                    | (moodEvent.getReason() != null ? EVENT_REASON : 0)
+                    | (hasGeo ? EVENT_GEO : 0)
+                    | (moodEvent.getParticipantRef() != null ? EVENT_PARTICIPANT : 0)
+                    | (moodEvent.getEmotionalState() != null ? EVENT_EMOTION : 0)
+                    | (moodEvent.getSocialSituation() != null ? EVENT_SOCIAL : 0)
+                    | (moodEvent.getAttachedImageHash() != null ? EVENT_IMAGE_HASH : 0)
+                    | (moodEvent.getVisibility() != null ? EVENT_VISIBILITY : 0);
+            writeVarInt(mask);
+            if ((mask & EVENT_ID) != 0) {
+                writeString(moodEvent.getId());
+            }
+            if ((mask & EVENT_TITLE) != 0) {
+                writeString(moodEvent.getTitle());
+            }
+            if ((mask & EVENT_TIMESTAMP) != 0) {
+                writeDate(moodEvent.getTimestamp());
+            }
+            if ((mask & EVENT_REASON) != 0) {
+                writeString(moodEvent.getReason());
+            }
+            if ((mask & EVENT_GEO) != 0) {
+                Object geohash = geoInfo.get("geohash");
+                writeString(geohash instanceof String ? (String) geohash : null);
+                out.writeDouble(((Number) geoInfo.get("latitude")).doubleValue());
+                out.writeDouble(((Number) geoInfo.get("longitude")).doubleValue());
+            }
+            if ((mask & EVENT_PARTICIPANT) != 0) {
+                writeString(moodEvent.getParticipantRef().getPath());
+            }
+            if ((mask & EVENT_EMOTION) != 0) {
+                out.writeByte(moodEvent.getEmotionalState().ordinal());
+            }
+            if ((mask & EVENT_SOCIAL) != 0) {
+                out.writeByte(moodEvent.getSocialSituation().ordinal());
+            }
+            if ((mask & EVENT_IMAGE_HASH) != 0) {
+                writeString(moodEvent.getAttachedImageHash());
+            }
+            if ((mask & EVENT_VISIBILITY) != 0) {
+                out.writeByte(moodEvent.getVisibility().ordinal());
+            }
+        }
+
+        public void writeComment(@NonNull Comment comment) throws IOException {
+            int mask = (comment.getId() != null ? COMMENT_ID : 0)
+                    | (comment.getParticipantRef() != null ? COMMENT_PARTICIPANT : 0)
+                    | (comment.getTimestamp() != null ? COMMENT_TIMESTAMP : 0)
+                    | (comment.getText() != null ? COMMENT_TEXT : 0);
+            writeVarInt(mask);
+            if ((mask & COMMENT_ID) != 0) {
+                writeString(comment.getId());
+            }
+            if ((mask & COMMENT_PARTICIPANT) != 0) {
+                writeString(comment.getParticipantRef().getPath());
+            }
+            if ((mask & COMMENT_TIMESTAMP) != 0) {
+                writeDate(comment.getTimestamp());
+            }
+            if ((mask & COMMENT_TEXT) != 0) {
+                writeString(comment.getText());
+            }
+        }
+
+        public void writeParticipant(@NonNull Participant participant) throws IOException {
+            int mask = (participant.getUsername() != null ? PARTICIPANT_USERNAME : 0)
+                    | (participant.getEmail() != null ? PARTICIPANT_EMAIL : 0)
+                    | (participant.getFirstName() != null ? PARTICIPANT_FIRST_NAME : 0)
+                    | (participant.getLastName() != null ? PARTICIPANT_LAST_NAME : 0)
+                    | (participant.getProfilePictureHash() != null ? PARTICIPANT_PICTURE_HASH : 0)
+                    | (participant.getFollowers() != null ? PARTICIPANT_FOLLOWERS : 0)
+                    | (participant.getFollowing() != null ? PARTICIPANT_FOLLOWING : 0)
+                    | (participant.getFollowRequests() != null ? PARTICIPANT_REQUESTS : 0);
+            writeVarInt(mask);
+            if ((mask & PARTICIPANT_USERNAME) != 0) {
+                writeString(participant.getUsername());
+            }
+            if ((mask & PARTICIPANT_EMAIL) != 0) {
+                writeString(participant.getEmail());
+            }
+            if ((mask & PARTICIPANT_FIRST_NAME) != 0) {
+                writeString(participant.getFirstName());
+            }
+            if ((mask & PARTICIPANT_LAST_NAME) != 0) {
+                writeString(participant.getLastName());
+            }
+            if ((mask & PARTICIPANT_PICTURE_HASH) != 0) {
+                writeString(participant.getProfilePictureHash());
+            }
+            if ((mask & PARTICIPANT_FOLLOWERS) != 0) {
+                writeStrings(participant.getFollowers());
+            }
+            if ((mask & PARTICIPANT_FOLLOWING) != 0) {
+                writeStrings(participant.getFollowing());
+            }
+            if ((mask & PARTICIPANT_REQUESTS) != 0) {
+                writeVarInt(participant.getFollowRequests().size());
+                for (FollowRequest request : participant.getFollowRequests()) {
+                    writeFollowRequest(request);
+                }
+            }
+            // Counts come last, since they can differ from the sizes of the (possibly unloaded) lists
+            writeVarInt(participant.getFollowerCount());
+            writeVarInt(participant.getFollowingCount());
+        }
+
+        private void writeFollowRequest(FollowRequest request) throws IOException {
+            int mask = (request.getFromUsername() != null ? REQUEST_FROM : 0)
+                    | (request.getStatus() != null ? REQUEST_STATUS : 0)
+                    | (request.getTimestamp() != null ? REQUEST_TIMESTAMP : 0);
+            writeVarInt(mask);
+            if ((mask & REQUEST_FROM) != 0) {
+                writeString(request.getFromUsername());
+            }
+            if ((mask & REQUEST_STATUS) != 0) {
+                writeString(request.getStatus());
+            }
+            if ((mask & REQUEST_TIMESTAMP) != 0) {
+                writeVarLong(zigZag(request.getTimestamp().getSeconds()));
+                writeVarInt(request.getTimestamp().getNanoseconds());
+            }
+        }
+
+        private void writeStrings(List<String> values) throws IOException {
+            writeVarInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeString(@Nullable String value) throws IOException {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(STRING_INDEX + index);
+                return;
+            }
+            UUID uuid = asUuid(value);
+            if (uuid != null) {
+                writeVarInt(STRING_UUID);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(STRING_LITERAL);
+                writeVarInt(bytes.length);
+                out.write(bytes);
+            }
+            strings.put(value, strings.size());
+        }
+
+        private void writeDate(Date date) throws IOException {
+            writeVarLong(zigZag(date.getTime()));
+        }
+
+        void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Reads model objects from a stream written by a {@link Writer}
+     */
+    public static final class Reader {
+        private final DataInput in;
+        private final Function<String, DocumentReference> references;
+        private final List<String> strings = new ArrayList<>();
+
+        /**
+         * Starts reading a stream by checking its format version
+         *
+         * @param in         the input
+         * @param references resolves a document path to a participant reference
+         * @throws IOException if the input fails or has an unsupported version
+         */
+        public Reader(@NonNull DataInput in, @NonNull Function<String, DocumentReference> references) throws IOException {
+            this.in = in;
+            this.references = references;
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported model format version: " + version);
+            }
+        }
+
+        /**
+         * Starts reading a stream, resolving participant references with the default Firestore instance
+         *
+         * @param in the input
+         * @throws IOException if the input fails or has an unsupported version
+         */
+        public Reader(@NonNull DataInput in) throws IOException {
+            this(in, ModelCodec::documentAt);
+        }
+
+        @NonNull
+        public MoodEvent readMoodEvent() throws IOException {
+            MoodEvent moodEvent = new MoodEvent();
+            int mask = readVarInt();
+            if ((mask & EVENT_ID) != 0) {
+                moodEvent.setId(readString());
+            }
+            if ((mask & EVENT_TITLE) != 0) {
+                moodEvent.setTitle(readString());
+            }
+            if ((mask & EVENT_TIMESTAMP) != 0) {
+                moodEvent.setTimestamp(readDate());
+            }
+            if ((mask & EVENT_REASON) != 0) {
+                moodEvent.setReason(readString());
+            }
+            if ((mask & EVENT_GEO) != 0) {
+                Map<String, Object> geoInfo = new HashMap<>();
+                String geohash = readString();
+                if (geohash != null) {
+                    geoInfo.put("geohash", geohash);
+                }
+                geoInfo.put("latitude", in.readDouble());
+                geoInfo.put("longitude", in.readDouble());
+                moodEvent.setGeoInfo(geoInfo);
+            }
+            if ((mask & EVENT_PARTICIPANT) != 0) {
+                moodEvent.setParticipantRef(references.apply(readString()));
+            }
+            if ((mask & EVENT_EMOTION) != 0) {
+                moodEvent.setEmotionalState(readEnum(MoodEvent.EmotionalState.values()));
+            }
+            if ((mask & EVENT_SOCIAL) != 0) {
+                moodEvent.setSocialSituation(readEnum(MoodEvent.SocialSituation.values()));
+            }
+            if ((mask & EVENT_IMAGE_HASH) != 0) {
+                moodEvent.setAttachedImageHash(readString());
+            }
+            if ((mask & EVENT_VISIBILITY) != 0) {
+                moodEvent.setVisibility(readEnum(MoodEvent.Visibility.values()));
+            }
+            return moodEvent;
+        }
+
+        @NonNull
+        public Comment readComment() throws IOException {
+            Comment comment = new Comment();
+            int mask = readVarInt();
+            if ((mask & COMMENT_ID) != 0) {
+                comment.setId(readString());
+            }
+            if ((mask & COMMENT_PARTICIPANT) != 0) {
+                comment.setParticipantRef(references.apply(readString()));
+            }
+            if ((mask & COMMENT_TIMESTAMP) != 0) {
+                comment.setTimestamp(readDate());
+            }
+            if ((mask & COMMENT_TEXT) != 0) {
+                comment.setText(readString());
+            }
+            return comment;
+        }
+
+        @NonNull
+        public Participant readParticipant() throws IOException {
+            Participant participant = new Participant();
+            int mask = readVarInt();
+            if ((mask & PARTICIPANT_USERNAME) != 0) {
+                participant.setUsername(readString());
+            }
+            if ((mask & PARTICIPANT_EMAIL) != 0) {
+                participant.setEmail(readString());
+            }
+            if ((mask & PARTICIPANT_FIRST_NAME) != 0) {
+                participant.setFirstName(readString());
+            }
+            if ((mask & PARTICIPANT_LAST_NAME) != 0) {
+                participant.setLastName(readString());
+            }
+            if ((mask & PARTICIPANT_PICTURE_HASH) != 0) {
+                participant.setProfilePictureHash(readString());
+            }
+            participant.setFollowers((mask & PARTICIPANT_FOLLOWERS) != 0 ? readStrings() : null);
+            participant.setFollowing((mask & PARTICIPANT_FOLLOWING) != 0 ? readStrings() : null);
+            List<FollowRequest> requests = null;
+            if ((mask & PARTICIPANT_REQUESTS) != 0) {
+                int count = readCount();
+                requests = new ArrayList<>(Math.min(count, 1024));
+                for (int i = 0; i < count; i++) {
+                    requests.add(readFollowRequest());
+                }
+            }
+            participant.setFollowRequests(requests);
+            participant.setFollowerCount(readVarInt());
+            participant.setFollowingCount(readVarInt());
+            return participant;
+        }
+
+        private FollowRequest readFollowRequest() throws IOException {
+            FollowRequest request = new FollowRequest();
+            int mask = readVarInt();
+            if ((mask & REQUEST_FROM) != 0) {
+                request.setFromUsername(readString());
+            }
+            if ((mask & REQUEST_STATUS) != 0) {
+                request.setStatus(readString());
+            }
+            if ((mask & REQUEST_TIMESTAMP) != 0) {
+                long seconds = unZigZag(readVarLong());
+                request.setTimestamp(new Timestamp(seconds, readVarInt()));
+            }
+            return request;
+        }
+
+        private List<String> readStrings() throws IOException {
+            int count = readCount();
+            List<String> values = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        @Nullable
+        private String readString() throws IOException {
+            int tag = readVarInt();
+            if (tag == STRING_NULL) {
+                return null;
+            }
+            String value;
+            if (tag == STRING_UUID) {
+                value = new UUID(in.readLong(), in.readLong()).toString();
+            } else if (tag == STRING_LITERAL) {
+                byte[] bytes = new byte[readCount()];
+                in.readFully(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                int index = tag - STRING_INDEX;
+                if (index < 0 || index >= strings.size()) {
+                    throw new IOException("String index out of range: " + index);
+                }
+                return strings.get(index);
+            }
+            strings.add(value);
+            return value;
+        }
+
+        private Date readDate() throws IOException {
+            return new Date(unZigZag(readVarLong()));
+        }
+
+        private <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+            int ordinal = in.readUnsignedByte();
+            E value = enumAt(values, ordinal);
+            if (value == null) {
+                throw new IOException("Unknown ordinal " + ordinal + " of " + values.getClass().getComponentType().getSimpleName());
+            }
+            return value;
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > 0xFFFFFFFFL) {
+                throw new IOException("Malformed variable-length integer");
+            }
+            return (int) value;
+        }
+
+        int readCount() throws IOException {
+            int count = readVarInt();
+            if (count < 0) {
+                throw new IOException("Negative count: " + count);
+            }
+            return count;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length number");
+        }
+    }
+
+    /**
+     * @return the UUID a string is the canonical form of, or null if it is not one
+     */
+    @Nullable
+    private static UUID asUuid(String value) {
+        if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-') {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            // fromString also accepts upper case and missing zeros, which would not read back the same
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.bread.model;
 
 import android.location.Location;
+import android.os.Parcel;
+import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -18,9 +20,10 @@ import java.util.UUID;
 
 /**
  * Represents a mood event, encapsulating the user's mood, emotional state, social situation, location
- * and other metadata. Implements {@link Serializable} and {@link Comparable} for sorting.
+ * and other metadata. Implements {@link Serializable}, {@link Parcelable} for passing it between screens
+ * (without image content, see {@link ModelCodec}) and {@link Comparable} for sorting.
  */
-public class MoodEvent implements Serializable, Comparable<MoodEvent> {
+public class MoodEvent implements Serializable, Parcelable, Comparable<MoodEvent> {
     /**
      * Enum representing the different emotional states a user can have
      */
@@ -119,8 +122,13 @@ public class MoodEvent implements Serializable, Comparable<MoodEvent> {
     private EmotionalState emotionalState;
     private SocialSituation socialSituation;
     private String attachedImage;
+    private String attachedImageHash;
+    private String attachedImageThumbnail;
     private Visibility visibility;
 
+    // Written to a parcel in place of a missing timestamp
+    private static final long NO_TIME = Long.MIN_VALUE;
+
 
     /**
      * Default constructor for MoodEvent.
@@ -146,6 +154,77 @@ public class MoodEvent implements Serializable, Comparable<MoodEvent> {
         this.visibility = Visibility.PUBLIC;
     }
 
+    /**
+     * Restores a mood event written by {@link #writeToParcel(Parcel, int)}.
+     *
+     * @param in the parcel to read from
+     */
+    protected MoodEvent(Parcel in) {
+        id = in.readString();
+        title = in.readString();
+        long time = in.readLong();
+        timestamp = time != NO_TIME ? new Date(time) : null;
+        reason = in.readString();
+        if (in.readInt() != 0) {
+            geoInfo = new HashMap<>();
+            String geohash = in.readString();
+            if (geohash != null) {
+                geoInfo.put("geohash", geohash);
+            }
+            geoInfo.put("latitude", in.readDouble());
+            geoInfo.put("longitude", in.readDouble());
+        }
+        participantRef = ModelCodec.documentAt(in.readString());
+        emotionalState = ModelCodec.enumAt(EmotionalState.values(), in.readInt());
+        socialSituation = ModelCodec.enumAt(SocialSituation.values(), in.readInt());
+        attachedImageHash = in.readString();
+        visibility = ModelCodec.enumAt(Visibility.values(), in.readInt());
+    }
+
+    public static final Creator<MoodEvent> CREATOR = new Creator<MoodEvent>() {
+        @Override
+        public MoodEvent createFromParcel(Parcel in) {
+            return new MoodEvent(in);
+        }
+
+        @Override
+        public MoodEvent[] newArray(int size) {
+            return new MoodEvent[size];
+        }
+    };
+
+    /**
+     * Writes this mood event to a parcel. Enums are written as ordinals, the timestamp as epoch milliseconds and the
+     * participant as its document path; the inline image and thumbnail are left out.
+     *
+     * @param dest  the parcel to write to
+     * @param flags additional flags about how the object should be written
+     */
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeString(title);
+        dest.writeLong(timestamp != null ? timestamp.getTime() : NO_TIME);
+        dest.writeString(reason);
+        boolean hasGeo = geoInfo != null && geoInfo.get("latitude") instanceof Number && geoInfo.get("longitude") instanceof Number;
+        dest.writeInt(hasGeo ? 1 : 0);
+        if (hasGeo) {
+            Object geohash = geoInfo.get("geohash");
+            dest.writeString(geohash instanceof String ? (String) geohash : null);
+            dest.writeDouble(((Number) geoInfo.get("latitude")).doubleValue());
+            dest.writeDouble(((Number) geoInfo.get("longitude")).doubleValue());
+        }
+        dest.writeString(participantRef != null ? participantRef.getPath() : null);
+        dest.writeInt(ModelCodec.ordinalOf(emotionalState));
+        dest.writeInt(ModelCodec.ordinalOf(socialSituation));
+        dest.writeString(attachedImageHash);
+        dest.writeInt(ModelCodec.ordinalOf(visibility));
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
 
     @NonNull
     @Override
@@ -290,9 +369,10 @@ public class MoodEvent implements Serializable, Comparable<MoodEvent> {
     }
 
     /**
-     * Returns the attached image URL for this mood event.
+     * Returns the inline Base64 image of this mood event. Only events written before images moved to the
+     * image store have one; newer events use {@link #getAttachedImageHash()}.
      *
-     * @return the image URL as a String.
+     * @return the image as a Base64 String.
      */
     public String getAttachedImage() {
         return attachedImage;
@@ -307,6 +387,42 @@ public class MoodEvent implements Serializable, Comparable<MoodEvent> {
         this.attachedImage = attachedImage;
     }
 
+    /**
+     * Returns the content hash of the full-size image in the image store.
+     *
+     * @return the image hash, or null if no image is attached.
+     */
+    public String getAttachedImageHash() {
+        return attachedImageHash;
+    }
+
+    /**
+     * Sets the content hash of the full-size image in the image store.
+     *
+     * @param attachedImageHash the image hash to set.
+     */
+    public void setAttachedImageHash(String attachedImageHash) {
+        this.attachedImageHash = attachedImageHash;
+    }
+
+    /**
+     * Returns the tiny Base64 thumbnail shown until the full-size image is loaded.
+     *
+     * @return the thumbnail as a Base64 String.
+     */
+    public String getAttachedImageThumbnail() {
+        return attachedImageThumbnail;
+    }
+
+    /**
+     * Sets the tiny Base64 thumbnail shown until the full-size image is loaded.
+     *
+     * @param attachedImageThumbnail the thumbnail to set.
+     */
+    public void setAttachedImageThumbnail(String attachedImageThumbnail) {
+        this.attachedImageThumbnail = attachedImageThumbnail;
+    }
+
     /**
      * Returns the geographical information for this mood event.
      *
@@ -1,26 +1,34 @@
 package com.example.bread.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import androidx.annotation.NonNull;
 
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.IgnoreExtraProperties;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Represents a participant in the app, containing user profile information such as username,
  * email, first name, last name, and profile picture. Implements {@link Serializable} to allow
- * easy storage and retrieval from the database.
+ * easy storage and retrieval from the database, and {@link Parcelable} for passing it between screens
+ * without its profile picture (see {@link ModelCodec}).
  */
 @IgnoreExtraProperties
-public class Participant implements Serializable {
+public class Participant implements Serializable, Parcelable {
     private String username;
     private String email;
     private String firstName;
     private String lastName;
     private String profilePicture;
+    private String profilePictureHash;
+    private String profilePictureThumbnail;
     private int followerCount;
     private int followingCount;
 
@@ -62,6 +70,86 @@ public class Participant implements Serializable {
         this.followingCount = 0;
     }
 
+    /**
+     * Restores a participant written by {@link #writeToParcel(Parcel, int)}.
+     *
+     * @param in the parcel to read from
+     */
+    protected Participant(Parcel in) {
+        username = in.readString();
+        email = in.readString();
+        firstName = in.readString();
+        lastName = in.readString();
+        profilePictureHash = in.readString();
+        followers = in.createStringArrayList();
+        following = in.createStringArrayList();
+        int requestCount = in.readInt();
+        if (requestCount >= 0) {
+            followRequests = new ArrayList<>(requestCount);
+            for (int i = 0; i < requestCount; i++) {
+                FollowRequest request = new FollowRequest();
+                request.setFromUsername(in.readString());
+                request.setStatus(in.readString());
+                if (in.readInt() != 0) {
+                    request.setTimestamp(new Timestamp(in.readLong(), in.readInt()));
+                }
+                followRequests.add(request);
+            }
+        }
+        followerCount = in.readInt();
+        followingCount = in.readInt();
+    }
+
+    public static final Creator<Participant> CREATOR = new Creator<Participant>() {
+        @Override
+        public Participant createFromParcel(Parcel in) {
+            return new Participant(in);
+        }
+
+        @Override
+        public Participant[] newArray(int size) {
+            return new Participant[size];
+        }
+    };
+
+    /**
+     * Writes this participant to a parcel. The inline profile picture and its thumbnail are left out;
+     * the hash of the picture in the image store is kept.
+     *
+     * @param dest  the parcel to write to
+     * @param flags additional flags about how the object should be written
+     */
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(username);
+        dest.writeString(email);
+        dest.writeString(firstName);
+        dest.writeString(lastName);
+        dest.writeString(profilePictureHash);
+        dest.writeStringList(followers);
+        dest.writeStringList(following);
+        dest.writeInt(followRequests != null ? followRequests.size() : -1);
+        if (followRequests != null) {
+            for (FollowRequest request : followRequests) {
+                dest.writeString(request.getFromUsername());
+                dest.writeString(request.getStatus());
+                Timestamp timestamp = request.getTimestamp();
+                dest.writeInt(timestamp != null ? 1 : 0);
+                if (timestamp != null) {
+                    dest.writeLong(timestamp.getSeconds());
+                    dest.writeInt(timestamp.getNanoseconds());
+                }
+            }
+        }
+        dest.writeInt(followerCount);
+        dest.writeInt(followingCount);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
     /**
      * Returns a string representation of the Participant.
      *
@@ -212,6 +300,42 @@ public class Participant implements Serializable {
         this.profilePicture = profilePicture;
     }
 
+    /**
+     * Gets the content hash of the participant's full-size profile picture in the image store.
+     *
+     * @return the profile picture hash, or null if none is set.
+     */
+    public String getProfilePictureHash() {
+        return profilePictureHash;
+    }
+
+    /**
+     * Sets the content hash of the participant's full-size profile picture in the image store.
+     *
+     * @param profilePictureHash the profile picture hash to set.
+     */
+    public void setProfilePictureHash(String profilePictureHash) {
+        this.profilePictureHash = profilePictureHash;
+    }
+
+    /**
+     * Gets the tiny Base64 thumbnail of the participant's profile picture, used for avatars in lists.
+     *
+     * @return the thumbnail as a Base64 String.
+     */
+    public String getProfilePictureThumbnail() {
+        return profilePictureThumbnail;
+    }
+
+    /**
+     * Sets the tiny Base64 thumbnail of the participant's profile picture.
+     *
+     * @param profilePictureThumbnail the thumbnail to set.
+     */
+    public void setProfilePictureThumbnail(String profilePictureThumbnail) {
+        this.profilePictureThumbnail = profilePictureThumbnail;
+    }
+
     /**
      * Gets the list of follow requests for this participant.
      * This field is excluded from Firestore storage.
@@ -241,6 +365,25 @@ public class Participant implements Serializable {
         return capitalize(firstName) + " " + capitalize(lastName);
     }
 
+    /**
+     * Gets the username in lower case. Stored alongside the username so searches can ignore case.
+     *
+     * @return Lower-cased username, or null if there is no username.
+     */
+    public String getUsernameLower() {
+        return username != null ? username.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Gets the first and last name in lower case, separated by a space. Stored so searches can match names.
+     *
+     * @return Lower-cased name, or null if neither name is set.
+     */
+    public String getDisplayNameLower() {
+        String name = ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+        return name.isEmpty() ? null : name.toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Gets the follower count.
      *
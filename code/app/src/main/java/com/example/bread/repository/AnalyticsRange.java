@@ -0,0 +1,143 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.utils.MoodTimeSeries;
+
+import java.util.Locale;
+
+/**
+ * AnalyticsRange - Repository
+ * <p>
+ * Role / Purpose
+ * A time range the analytics screen can show: the last week, the last 30 days, the last twelve calendar months, the
+ * whole history or custom days. A range is relative to today, so it is resolved to its first and last day number (see
+ * {@link MoodTimeSeries#dayOf(long, java.util.TimeZone)}) when a chart series is computed. Ranges of up to
+ * {@link #MAX_DAILY_BUCKETS} days are charted per day and longer ranges per month.
+ * <p>
+ * Design Patterns
+ * Value Object: Immutable, with equality and a cache key, so series computed for a range can be cached and reused.
+ * <p>
+ * Outstanding Issues
+ * - A custom range is stored as day numbers of the time zone it was picked in.
+ */
+
+public final class AnalyticsRange {
+    public static final int MAX_DAILY_BUCKETS = 62;
+    private static final int WEEK_DAYS = 7;
+    private static final int MONTH_DAYS = 30;
+    private static final int YEAR_MONTHS = 12;
+
+    public enum Kind {
+        WEEK, MONTH, YEAR, ALL_TIME, CUSTOM
+    }
+
+    public enum Resolution {
+        DAY, MONTH
+    }
+
+    public static final AnalyticsRange WEEK = new AnalyticsRange(Kind.WEEK, 0, 0);
+    public static final AnalyticsRange MONTH = new AnalyticsRange(Kind.MONTH, 0, 0);
+    public static final AnalyticsRange YEAR = new AnalyticsRange(Kind.YEAR, 0, 0);
+    public static final AnalyticsRange ALL_TIME = new AnalyticsRange(Kind.ALL_TIME, 0, 0);
+
+    private final Kind kind;
+    private final int customFirstDay;
+    private final int customLastDay;
+
+    private AnalyticsRange(Kind kind, int customFirstDay, int customLastDay) {
+        this.kind = kind;
+        this.customFirstDay = customFirstDay;
+        this.customLastDay = customLastDay;
+    }
+
+    /**
+     * Creates a range of the given days
+     *
+     * @param firstDay the first day number
+     * @param lastDay  the last day number, inclusive
+     * @throws IllegalArgumentException if the last day is before the first day
+     */
+    @NonNull
+    public static AnalyticsRange custom(int firstDay, int lastDay) {
+        if (lastDay < firstDay) {
+            throw new IllegalArgumentException("Last day " + lastDay + " is before first day " + firstDay);
+        }
+        return new AnalyticsRange(Kind.CUSTOM, firstDay, lastDay);
+    }
+
+    @NonNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the first day of the range
+     *
+     * @param today         the day number of today
+     * @param firstEventDay the day of the earliest event, or null if there are none
+     */
+    public int firstDay(int today, @Nullable Integer firstEventDay) {
+        switch (kind) {
+            case WEEK:
+                return today - WEEK_DAYS + 1;
+            case MONTH:
+                return today - MONTH_DAYS + 1;
+            case YEAR:
+                return MoodTimeSeries.firstDayOfMonth(MoodTimeSeries.monthOfDay(today) - YEAR_MONTHS + 1);
+            case ALL_TIME:
+                return firstEventDay != null ? Math.min(firstEventDay, today) : today;
+            default:
+                return customFirstDay;
+        }
+    }
+
+    /**
+     * Returns the last day of the range, inclusive
+     *
+     * @param today the day number of today
+     */
+    public int lastDay(int today) {
+        return kind == Kind.CUSTOM ? customLastDay : today;
+    }
+
+    /**
+     * @return how the days from first to last day are charted
+     */
+    @NonNull
+    public static Resolution resolutionOf(int firstDay, int lastDay) {
+        return lastDay - firstDay + 1 <= MAX_DAILY_BUCKETS ? Resolution.DAY : Resolution.MONTH;
+    }
+
+    /**
+     * @return a key that is equal for equal ranges
+     */
+    @NonNull
+    public String getKey() {
+        return kind == Kind.CUSTOM ? String.format(Locale.US, "CUSTOM:%d:%d", customFirstDay, customLastDay) : kind.name();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AnalyticsRange)) {
+            return false;
+        }
+        AnalyticsRange other = (AnalyticsRange) o;
+        return kind == other.kind && customFirstDay == other.customFirstDay && customLastDay == other.customLastDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return getKey().hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
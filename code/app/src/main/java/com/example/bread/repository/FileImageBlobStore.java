@@ -0,0 +1,94 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * FileImageBlobStore - Repository
+ * <p>
+ * Role / Purpose
+ * Stores image blobs as files named by their hash inside a single directory.
+ * Used as a stand-in for {@link FirestoreImageBlobStore} in tests and local tooling that run without Firebase.
+ * <p>
+ * Design Patterns
+ * Strategy Pattern: Interchangeable with any other {@link ImageBlobStore}.
+ * <p>
+ * Outstanding Issues
+ * - Listeners are called synchronously on the calling thread, unlike the Firestore store.
+ */
+
+public class FileImageBlobStore implements ImageBlobStore {
+    private final File directory;
+    private int putCount;
+
+    /**
+     * Creates a store that keeps its blobs in the given directory, creating it if needed
+     *
+     * @param directory the directory to store blobs in
+     */
+    public FileImageBlobStore(@NonNull File directory) {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create blob directory: " + directory);
+        }
+    }
+
+    /**
+     * Returns how many blobs have been written, so tests can check that duplicates are not uploaded again
+     *
+     * @return the number of successful puts
+     */
+    public synchronized int getPutCount() {
+        return putCount;
+    }
+
+    @Override
+    public void contains(@NonNull String hash, @NonNull OnSuccessListener<Boolean> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        onSuccessListener.onSuccess(new File(directory, hash).exists());
+    }
+
+    @Override
+    public void put(@NonNull String hash, @NonNull byte[] bytes, @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        try (OutputStream out = new FileOutputStream(new File(directory, hash))) {
+            out.write(bytes);
+        } catch (IOException e) {
+            onFailureListener.onFailure(e);
+            return;
+        }
+        synchronized (this) {
+            putCount++;
+        }
+        onSuccessListener.onSuccess(null);
+    }
+
+    @Override
+    public void get(@NonNull String hash, @NonNull OnSuccessListener<byte[]> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        File file = new File(directory, hash);
+        if (!file.exists()) {
+            onSuccessListener.onSuccess(null);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            onFailureListener.onFailure(e);
+            return;
+        }
+        onSuccessListener.onSuccess(bytes.toByteArray());
+    }
+}
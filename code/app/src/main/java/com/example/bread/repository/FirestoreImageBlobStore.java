@@ -0,0 +1,70 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.firebase.FirebaseService;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FirestoreImageBlobStore - Repository
+ * <p>
+ * Role / Purpose
+ * Stores image blobs in the `images/{hash}` collection, one document per image holding the raw bytes.
+ * Mood events and participants only reference the hash, so queries over them no longer carry image payloads.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Encapsulates the images collection behind {@link ImageBlobStore}.
+ * <p>
+ * Outstanding Issues
+ * - Images live in Firestore rather than a dedicated object store, so they are still bounded by the 1 MB document limit.
+ */
+
+public class FirestoreImageBlobStore implements ImageBlobStore {
+    private static final String DATA_FIELD = "data";
+
+    private final FirebaseService firebaseService;
+
+    public FirestoreImageBlobStore() {
+        firebaseService = new FirebaseService();
+    }
+
+    public FirestoreImageBlobStore(FirebaseService firebaseService) {
+        this.firebaseService = firebaseService;
+    }
+
+    private CollectionReference getImagesCollRef() {
+        return firebaseService.getDb().collection("images");
+    }
+
+    @Override
+    public void contains(@NonNull String hash, @NonNull OnSuccessListener<Boolean> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        getImagesCollRef().document(hash).get()
+                .addOnSuccessListener(snapshot -> onSuccessListener.onSuccess(snapshot.exists()))
+                .addOnFailureListener(onFailureListener);
+    }
+
+    @Override
+    public void put(@NonNull String hash, @NonNull byte[] bytes, @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(DATA_FIELD, Blob.fromBytes(bytes));
+        getImagesCollRef().document(hash).set(data)
+                .addOnSuccessListener(onSuccessListener)
+                .addOnFailureListener(onFailureListener);
+    }
+
+    @Override
+    public void get(@NonNull String hash, @NonNull OnSuccessListener<byte[]> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        getImagesCollRef().document(hash).get()
+                .addOnSuccessListener(snapshot -> {
+                    Blob blob = snapshot.exists() ? snapshot.getBlob(DATA_FIELD) : null;
+                    onSuccessListener.onSuccess(blob != null ? blob.toBytes() : null);
+                })
+                .addOnFailureListener(onFailureListener);
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.bread.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.firebase.FirebaseService;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FollowEdgeIndex - Repository
+ * <p>
+ * Role / Purpose
+ * Keeps a compact index of every participant's followers and following in `participants/{username}/edgeIndex`.
+ * Each direction is split over {@link #SHARD_COUNT} shard documents, and each shard holds a `members` map keyed by
+ * username, so a full list is one query over a fixed number of documents and a membership check is a single document
+ * read, instead of scanning the `followers` / `following` subcollections.
+ * Edges are added and removed in transactions that also keep `followerCount` / `followingCount` on the participant
+ * documents exact, so counts never need to be recomputed on read.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Hides the shard layout behind list, membership and edge operations.
+ * Observer Pattern: Uses success and failure listeners to report completion asynchronously.
+ * <p>
+ * Outstanding Issues
+ * - The `followers` / `following` subcollections are still written alongside the index for older app versions.
+ *   Participants whose index has not been backfilled yet are read from them once, and the index is backfilled from the result.
+ * - The backfill transaction reads every legacy edge document once so a racing follow change makes it retry, which
+ *   costs one read per edge for each account backfilled.
+ * - Follow changes run as transactions and therefore need a connection; they fail instead of being queued offline.
+ */
+
+public class FollowEdgeIndex {
+    private static final String TAG = "FollowEdgeIndex";
+    static final String EDGE_INDEX_COLLECTION = "edgeIndex";
+    static final int SHARD_COUNT = 4;
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_MEMBERS = "members";
+    private static final String FIELD_COMPLETE = "complete";
+
+    private final FirebaseService firebaseService;
+
+    public FollowEdgeIndex(FirebaseService firebaseService) {
+        this.firebaseService = firebaseService;
+    }
+
+    private CollectionReference getParticipantCollRef() {
+        return firebaseService.getDb().collection("participants");
+    }
+
+    /**
+     * Returns the shard a member of an edge list is stored in; stable across devices and app versions
+     *
+     * @param member The username of the member
+     * @return the shard number, from 0 to {@link #SHARD_COUNT} - 1
+     */
+    static int shardOf(@NonNull String member) {
+        return (member.hashCode() & Integer.MAX_VALUE) % SHARD_COUNT;
+    }
+
+    private static String typeName(@NonNull ParticipantRepository.ListType type) {
+        return type == ParticipantRepository.ListType.FOLLOWERS ? "followers" : "following";
+    }
+
+    private DocumentReference shardRef(@NonNull String username, @NonNull ParticipantRepository.ListType type, int shard) {
+        return getParticipantCollRef().document(username).collection(EDGE_INDEX_COLLECTION).document(typeName(type) + "_" + shard);
+    }
+
+    private DocumentReference legacyRef(@NonNull String username, @NonNull ParticipantRepository.ListType type, @NonNull String member) {
+        return getParticipantCollRef().document(username).collection(typeName(type)).document(member);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> members(@Nullable DocumentSnapshot shard) {
+        Object members = shard != null ? shard.get(FIELD_MEMBERS) : null;
+        return members instanceof Map ? (Map<String, Object>) members : Collections.emptyMap();
+    }
+
+    /**
+     * Whether a shard can be trusted on its own. Shards written by follow changes alone may be missing edges that only
+     * exist in the legacy subcollection until a backfill has merged them in.
+     */
+    private static boolean isComplete(@NonNull DocumentSnapshot shard) {
+        return shard.exists() && Boolean.TRUE.equals(shard.getBoolean(FIELD_COMPLETE));
+    }
+
+    /**
+     * Fetches the usernames in one edge list of a participant
+     *
+     * @param username          The username of the participant
+     * @param type              Whether to fetch the followers or the following
+     * @param onSuccessListener The listener to be called with the usernames, in alphabetical order
+     * @param onFailureListener The listener to be called when the list cannot be fetched
+     */
+    public void fetchEdges(@NonNull String username, @NonNull ParticipantRepository.ListType type,
+                           @NonNull OnSuccessListener<List<String>> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        getParticipantCollRef().document(username).collection(EDGE_INDEX_COLLECTION)
+                .whereEqualTo(FIELD_TYPE, typeName(type))
+                .get()
+                .addOnSuccessListener(shards -> {
+                    boolean complete = shards.size() == SHARD_COUNT;
+                    for (DocumentSnapshot shard : shards) {
+                        complete &= isComplete(shard);
+                    }
+                    if (!complete) {
+                        fetchLegacyEdges(username, type, onSuccessListener, onFailureListener);
+                        return;
+                    }
+                    List<String> usernames = new ArrayList<>();
+                    for (DocumentSnapshot shard : shards) {
+                        usernames.addAll(members(shard).keySet());
+                    }
+                    Collections.sort(usernames);
+                    onSuccessListener.onSuccess(usernames);
+                })
+                .addOnFailureListener(onFailureListener);
+    }
+
+    /**
+     * Checks whether a username is in one edge list of a participant
+     *
+     * @param username          The username of the participant
+     * @param type              Whether to check the followers or the following
+     * @param member            The username to look for
+     * @param onSuccessListener The listener to be called with the result
+     * @param onFailureListener The listener to be called when the check fails
+     */
+    public void contains(@NonNull String username, @NonNull ParticipantRepository.ListType type, @NonNull String member,
+                         @NonNull OnSuccessListener<Boolean> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        shardRef(username, type, shardOf(member)).get()
+                .addOnSuccessListener(shard -> {
+                    if (isComplete(shard)) {
+                        onSuccessListener.onSuccess(members(shard).containsKey(member));
+                        return;
+                    }
+                    // Not backfilled yet, so the legacy subcollection is the complete record
+                    legacyRef(username, type, member).get()
+                            .addOnSuccessListener(doc -> onSuccessListener.onSuccess(doc.exists()))
+                            .addOnFailureListener(onFailureListener);
+                })
+                .addOnFailureListener(onFailureListener);
+    }
+
+    /**
+     * Records that one participant follows another, updating both indexes and both counts in one transaction.
+     * Adding an edge that already exists changes nothing.
+     *
+     * @param followerUsername  The username of the participant who follows
+     * @param followeeUsername  The username of the participant being followed
+     * @param onSuccessListener The listener to be called when the edge is stored
+     * @param onFailureListener The listener to be called when the transaction fails
+     */
+    public void addEdge(@NonNull String followerUsername, @NonNull String followeeUsername,
+                        @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        updateEdge(followerUsername, followeeUsername, true, false, onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Accepts a pending follow request and records the follow edge in the same transaction, so the request is never
+     * marked accepted without the edge, or the other way round. Fails if the request does not exist.
+     *
+     * @param followerUsername  The username of the participant who sent the request
+     * @param followeeUsername  The username of the participant accepting it
+     * @param onSuccessListener The listener to be called when the request is accepted
+     * @param onFailureListener The listener to be called when the transaction fails
+     */
+    public void acceptRequest(@NonNull String followerUsername, @NonNull String followeeUsername,
+                              @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        updateEdge(followerUsername, followeeUsername, true, true, onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Removes a follow edge, updating both indexes and both counts in one transaction. The follow request that created
+     * the edge is deleted in the same transaction so a new request can be sent.
+     * Removing an edge that does not exist changes nothing.
+     *
+     * @param followerUsername  The username of the participant who follows
+     * @param followeeUsername  The username of the participant being followed
+     * @param onSuccessListener The listener to be called when the edge is removed
+     * @param onFailureListener The listener to be called when the transaction fails
+     */
+    public void removeEdge(@NonNull String followerUsername, @NonNull String followeeUsername,
+                           @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        updateEdge(followerUsername, followeeUsername, false, true, onSuccessListener, onFailureListener);
+    }
+
+    private void updateEdge(@NonNull String followerUsername, @NonNull String followeeUsername, boolean add, boolean resolveRequest,
+                            @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        DocumentReference followerRef = getParticipantCollRef().document(followerUsername);
+        DocumentReference followeeRef = getParticipantCollRef().document(followeeUsername);
+        DocumentReference followersShard = shardRef(followeeUsername, ParticipantRepository.ListType.FOLLOWERS, shardOf(followerUsername));
+        DocumentReference followingShard = shardRef(followerUsername, ParticipantRepository.ListType.FOLLOWING, shardOf(followeeUsername));
+        DocumentReference legacyFollower = legacyRef(followeeUsername, ParticipantRepository.ListType.FOLLOWERS, followerUsername);
+        DocumentReference legacyFollowing = legacyRef(followerUsername, ParticipantRepository.ListType.FOLLOWING, followeeUsername);
+        DocumentReference requestRef = followeeRef.collection("followRequests").document(followerUsername);
+
+        firebaseService.getDb().runTransaction((Transaction.Function<Void>) transaction -> {
+            // All reads come before any write in a transaction
+            boolean hasFollower = hasMember(transaction, followersShard, legacyFollower, followerUsername);
+            boolean hasFollowing = hasMember(transaction, followingShard, legacyFollowing, followeeUsername);
+
+            if (hasFollower != add) {
+                transaction.update(followeeRef, "followerCount", FieldValue.increment(add ? 1 : -1));
+            }
+            if (hasFollowing != add) {
+                transaction.update(followerRef, "followingCount", FieldValue.increment(add ? 1 : -1));
+            }
+            transaction.set(followersShard, shardEntry(ParticipantRepository.ListType.FOLLOWERS, followerUsername, add), SetOptions.merge());
+            transaction.set(followingShard, shardEntry(ParticipantRepository.ListType.FOLLOWING, followeeUsername, add), SetOptions.merge());
+            if (add) {
+                transaction.set(legacyFollower, legacyEntry(followerUsername));
+                transaction.set(legacyFollowing, legacyEntry(followeeUsername));
+                if (resolveRequest) {
+                    // update, not set: accepting a request that was withdrawn must fail
+                    transaction.update(requestRef, "status", "accepted");
+                }
+            } else {
+                transaction.delete(legacyFollower);
+                transaction.delete(legacyFollowing);
+                if (resolveRequest) {
+                    transaction.delete(requestRef);
+                }
+            }
+            return null;
+        })
+                .addOnSuccessListener(onSuccessListener)
+                .addOnFailureListener(onFailureListener);
+    }
+
+    /**
+     * Reads whether an edge exists inside a transaction. The legacy document is only read when the shard has not been
+     * backfilled yet, which keeps the transaction at two reads for indexed accounts.
+     */
+    private static boolean hasMember(@NonNull Transaction transaction, @NonNull DocumentReference shardRef,
+                                     @NonNull DocumentReference legacyRef, @NonNull String member) throws FirebaseFirestoreException {
+        DocumentSnapshot shard = transaction.get(shardRef);
+        if (isComplete(shard)) {
+            return members(shard).containsKey(member);
+        }
+        return transaction.get(legacyRef).exists();
+    }
+
+    private static Map<String, Object> shardEntry(@NonNull ParticipantRepository.ListType type, @NonNull String member, boolean add) {
+        Map<String, Object> members = new HashMap<>();
+        members.put(member, add ? true : FieldValue.delete());
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(FIELD_TYPE, typeName(type));
+        entry.put(FIELD_MEMBERS, members);
+        return entry;
+    }
+
+    private static Map<String, Object> legacyEntry(@NonNull String member) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("username", member);
+        return entry;
+    }
+
+    /**
+     * Reads an edge list from the subcollection of an account that has no index yet, then writes the index for it
+     */
+    private void fetchLegacyEdges(@NonNull String username, @NonNull ParticipantRepository.ListType type,
+                                  @NonNull OnSuccessListener<List<String>> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        getParticipantCollRef().document(username).collection(typeName(type)).get()
+                .addOnSuccessListener(snapshot -> {
+                    List<String> usernames = new ArrayList<>();
+                    for (DocumentSnapshot doc : snapshot) {
+                        String member = doc.getString("username");
+                        usernames.add(member != null ? member : doc.getId());
+                    }
+                    Collections.sort(usernames);
+                    backfill(username, type, usernames);
+                    onSuccessListener.onSuccess(usernames);
+                })
+                .addOnFailureListener(onFailureListener);
+    }
+
+    /**
+     * Marks the shards of an edge list complete in a transaction. Follow changes made since the legacy list was read
+     * have already been merged into the shards, and every edge of the list is read again inside the transaction, so a
+     * follow change racing the backfill makes it retry instead of being overwritten.
+     */
+    private void backfill(@NonNull String username, @NonNull ParticipantRepository.ListType type, @NonNull List<String> usernames) {
+        firebaseService.getDb().runTransaction((Transaction.Function<Void>) transaction -> {
+            // All reads come before any write in a transaction
+            List<DocumentSnapshot> shards = new ArrayList<>();
+            for (int shard = 0; shard < SHARD_COUNT; shard++) {
+                shards.add(transaction.get(shardRef(username, type, shard)));
+            }
+            List<Map<String, Object>> shardMembers = new ArrayList<>();
+            for (DocumentSnapshot shard : shards) {
+                shardMembers.add(new HashMap<>(members(shard)));
+            }
+            for (String member : usernames) {
+                int shard = shardOf(member);
+                if (!isComplete(shards.get(shard)) && transaction.get(legacyRef(username, type, member)).exists()) {
+                    shardMembers.get(shard).put(member, true);
+                }
+            }
+            for (int shard = 0; shard < SHARD_COUNT; shard++) {
+                if (isComplete(shards.get(shard))) {
+                    continue;
+                }
+                Map<String, Object> entry = new HashMap<>();
+                entry.put(FIELD_TYPE, typeName(type));
+                entry.put(FIELD_MEMBERS, shardMembers.get(shard));
+                entry.put(FIELD_COMPLETE, true);
+                transaction.set(shardRef(username, type, shard), entry);
+            }
+            return null;
+        })
+                .addOnSuccessListener(unused -> Log.d(TAG, "Backfilled " + typeName(type) + " index of " + username))
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to backfill " + typeName(type) + " index of " + username, e));
+    }
+}
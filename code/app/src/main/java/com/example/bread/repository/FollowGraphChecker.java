@@ -0,0 +1,284 @@
+package com.example.bread.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.firebase.FirebaseService;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * FollowGraphChecker - Repository
+ * <p>
+ * Role / Purpose
+ * Reads the whole follow graph and reports every place where it is inconsistent: stored follower / following counts
+ * that differ from the edges, edges recorded on one side only, edges pointing at participants that do not exist, and
+ * {@link FollowEdgeIndex} shards that disagree with the legacy subcollections.
+ * Intended for the emulator and for debugging; it reads every participant and every edge document.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Hides the collection group queries behind a single check operation.
+ * Observer Pattern: Uses success and failure listeners to deliver the report asynchronously.
+ * <p>
+ * Outstanding Issues
+ * - The four reads are not a consistent snapshot, so a follow change made while the check runs can show up as a mismatch.
+ */
+
+public class FollowGraphChecker {
+    private static final String TAG = "FollowGraphChecker";
+
+    /**
+     * One inconsistency in the follow graph
+     */
+    public static class Mismatch {
+        public enum Kind {
+            FOLLOWER_COUNT,
+            FOLLOWING_COUNT,
+            ONE_WAY_EDGE,
+            UNKNOWN_PARTICIPANT,
+            INDEX_OUT_OF_SYNC
+        }
+
+        private final Kind kind;
+        private final String username;
+        private final String detail;
+
+        Mismatch(@NonNull Kind kind, @NonNull String username, @NonNull String detail) {
+            this.kind = kind;
+            this.username = username;
+            this.detail = detail;
+        }
+
+        @NonNull
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the participant whose documents hold the inconsistency
+         */
+        @NonNull
+        public String getUsername() {
+            return username;
+        }
+
+        @NonNull
+        public String getDetail() {
+            return detail;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return kind + " " + username + ": " + detail;
+        }
+    }
+
+    /**
+     * In-memory copy of the follow graph that the mismatches are computed from
+     */
+    public static class Graph {
+        private final Map<String, long[]> counts = new TreeMap<>();
+        private final Map<String, Set<String>> indexEdges = new HashMap<>();
+        private final Map<String, Integer> completeShards = new HashMap<>();
+        private final Map<String, Set<String>> legacyEdges = new HashMap<>();
+
+        private static String key(@NonNull String owner, @NonNull ParticipantRepository.ListType type) {
+            return owner + "/" + type;
+        }
+
+        private static Set<String> edges(@NonNull Map<String, Set<String>> map, @NonNull String owner, @NonNull ParticipantRepository.ListType type) {
+            Set<String> edges = map.get(key(owner, type));
+            return edges != null ? edges : Collections.emptySet();
+        }
+
+        public void addParticipant(@NonNull String username, long followerCount, long followingCount) {
+            counts.put(username, new long[]{followerCount, followingCount});
+        }
+
+        /**
+         * Records one shard of a participant's edge index
+         *
+         * @param owner    the participant the shard belongs to
+         * @param type     whether the shard holds followers or following
+         * @param members  the usernames in the shard
+         * @param complete whether the shard has been backfilled from the legacy subcollection
+         */
+        public void addIndexShard(@NonNull String owner, @NonNull ParticipantRepository.ListType type, @NonNull Set<String> members, boolean complete) {
+            indexEdges.computeIfAbsent(key(owner, type), k -> new TreeSet<>()).addAll(members);
+            if (complete) {
+                completeShards.merge(key(owner, type), 1, Integer::sum);
+            }
+        }
+
+        public void addLegacyEdge(@NonNull String owner, @NonNull ParticipantRepository.ListType type, @NonNull String member) {
+            legacyEdges.computeIfAbsent(key(owner, type), k -> new TreeSet<>()).add(member);
+        }
+
+        /**
+         * Returns the edges the app treats as the truth: the index once it is complete, the legacy subcollection before
+         */
+        @NonNull
+        Set<String> effectiveEdges(@NonNull String owner, @NonNull ParticipantRepository.ListType type) {
+            return isIndexed(owner, type) ? edges(indexEdges, owner, type) : edges(legacyEdges, owner, type);
+        }
+
+        private boolean isIndexed(@NonNull String owner, @NonNull ParticipantRepository.ListType type) {
+            Integer complete = completeShards.get(key(owner, type));
+            return complete != null && complete == FollowEdgeIndex.SHARD_COUNT;
+        }
+
+        /**
+         * Compares counts, both directions of every edge, and the index with the legacy subcollections
+         *
+         * @return the mismatches, grouped by participant in username order
+         */
+        @NonNull
+        public List<Mismatch> findMismatches() {
+            Set<String> owners = new TreeSet<>(counts.keySet());
+            for (String key : concat(indexEdges.keySet(), legacyEdges.keySet())) {
+                owners.add(key.substring(0, key.lastIndexOf('/')));
+            }
+
+            List<Mismatch> mismatches = new ArrayList<>();
+            for (String owner : owners) {
+                long[] stored = counts.get(owner);
+                if (stored == null) {
+                    mismatches.add(new Mismatch(Mismatch.Kind.UNKNOWN_PARTICIPANT, owner, "has edges but no participant document"));
+                }
+                for (ParticipantRepository.ListType type : ParticipantRepository.ListType.values()) {
+                    boolean followers = type == ParticipantRepository.ListType.FOLLOWERS;
+                    ParticipantRepository.ListType reverse = followers ? ParticipantRepository.ListType.FOLLOWING : ParticipantRepository.ListType.FOLLOWERS;
+                    Set<String> effective = effectiveEdges(owner, type);
+
+                    if (stored != null) {
+                        long count = stored[followers ? 0 : 1];
+                        if (count != effective.size()) {
+                            mismatches.add(new Mismatch(followers ? Mismatch.Kind.FOLLOWER_COUNT : Mismatch.Kind.FOLLOWING_COUNT, owner,
+                                    "stored " + count + ", edges " + effective.size()));
+                        }
+                    }
+                    for (String member : effective) {
+                        if (!counts.containsKey(member)) {
+                            mismatches.add(new Mismatch(Mismatch.Kind.UNKNOWN_PARTICIPANT, owner, type + " contains missing participant " + member));
+                        } else if (!effectiveEdges(member, reverse).contains(owner)) {
+                            mismatches.add(new Mismatch(Mismatch.Kind.ONE_WAY_EDGE, owner, type + " contains " + member
+                                    + " but " + member + "'s " + reverse + " does not contain " + owner));
+                        }
+                    }
+
+                    // Follow changes write both, so an index member is always in the legacy subcollection; once the
+                    // index is complete the reverse holds as well
+                    Set<String> index = edges(indexEdges, owner, type);
+                    Set<String> legacy = edges(legacyEdges, owner, type);
+                    for (String member : index) {
+                        if (!legacy.contains(member)) {
+                            mismatches.add(new Mismatch(Mismatch.Kind.INDEX_OUT_OF_SYNC, owner, type + " index has " + member + " but the subcollection does not"));
+                        }
+                    }
+                    if (isIndexed(owner, type)) {
+                        for (String member : legacy) {
+                            if (!index.contains(member)) {
+                                mismatches.add(new Mismatch(Mismatch.Kind.INDEX_OUT_OF_SYNC, owner, type + " subcollection has " + member + " but the index does not"));
+                            }
+                        }
+                    }
+                }
+            }
+            return mismatches;
+        }
+
+        private static List<String> concat(@NonNull Set<String> first, @NonNull Set<String> second) {
+            List<String> all = new ArrayList<>(first);
+            all.addAll(second);
+            return all;
+        }
+    }
+
+    private final FirebaseService firebaseService;
+
+    public FollowGraphChecker(FirebaseService firebaseService) {
+        this.firebaseService = firebaseService;
+    }
+
+    /**
+     * Reads every participant, edge index shard and legacy edge document, and reports the inconsistencies
+     *
+     * @param onSuccessListener The listener to be called with the mismatches; empty if the graph is consistent
+     * @param onFailureListener The listener to be called when any of the reads fails
+     */
+    public void check(@NonNull OnSuccessListener<List<Mismatch>> onSuccessListener, OnFailureListener onFailureListener) {
+        FirebaseFirestore db = firebaseService.getDb();
+        Task<QuerySnapshot> participants = db.collection("participants").get();
+        Task<QuerySnapshot> shards = db.collectionGroup(FollowEdgeIndex.EDGE_INDEX_COLLECTION).get();
+        Task<QuerySnapshot> legacyFollowers = db.collectionGroup("followers").get();
+        Task<QuerySnapshot> legacyFollowing = db.collectionGroup("following").get();
+
+        Tasks.whenAllSuccess(Arrays.asList(participants, shards, legacyFollowers, legacyFollowing))
+                .addOnSuccessListener(results -> {
+                    Graph graph = new Graph();
+                    for (DocumentSnapshot doc : participants.getResult()) {
+                        Long followerCount = doc.getLong("followerCount");
+                        Long followingCount = doc.getLong("followingCount");
+                        graph.addParticipant(doc.getId(), followerCount != null ? followerCount : 0, followingCount != null ? followingCount : 0);
+                    }
+                    for (DocumentSnapshot doc : shards.getResult()) {
+                        ParticipantRepository.ListType type = "followers".equals(doc.getString("type"))
+                                ? ParticipantRepository.ListType.FOLLOWERS : ParticipantRepository.ListType.FOLLOWING;
+                        Set<String> usernames = new TreeSet<>();
+                        Object members = doc.get("members");
+                        if (members instanceof Map) {
+                            for (Object member : ((Map<?, ?>) members).keySet()) {
+                                usernames.add(String.valueOf(member));
+                            }
+                        }
+                        graph.addIndexShard(ownerOf(doc), type, usernames, Boolean.TRUE.equals(doc.getBoolean("complete")));
+                    }
+                    for (DocumentSnapshot doc : legacyFollowers.getResult()) {
+                        graph.addLegacyEdge(ownerOf(doc), ParticipantRepository.ListType.FOLLOWERS, memberOf(doc));
+                    }
+                    for (DocumentSnapshot doc : legacyFollowing.getResult()) {
+                        graph.addLegacyEdge(ownerOf(doc), ParticipantRepository.ListType.FOLLOWING, memberOf(doc));
+                    }
+
+                    List<Mismatch> mismatches = graph.findMismatches();
+                    for (Mismatch mismatch : mismatches) {
+                        Log.w(TAG, mismatch.toString());
+                    }
+                    Log.i(TAG, "Checked " + participants.getResult().size() + " participants, found " + mismatches.size() + " mismatches");
+                    onSuccessListener.onSuccess(mismatches);
+                })
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to read the follow graph", e));
+    }
+
+    /**
+     * Returns the participant a document in one of its subcollections belongs to
+     */
+    private static String ownerOf(@NonNull DocumentSnapshot doc) {
+        DocumentReference owner = doc.getReference().getParent().getParent();
+        return owner != null ? owner.getId() : "";
+    }
+
+    private static String memberOf(@NonNull DocumentSnapshot doc) {
+        String member = doc.getString("username");
+        return member != null ? member : doc.getId();
+    }
+}
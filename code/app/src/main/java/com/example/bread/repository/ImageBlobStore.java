@@ -0,0 +1,52 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+/**
+ * ImageBlobStore - Repository
+ * <p>
+ * Role / Purpose
+ * Stores immutable image payloads keyed by the hash of their content. Because the key is derived from the bytes,
+ * a blob never changes once written, and writing the same image twice stores it only once.
+ * <p>
+ * Design Patterns
+ * Strategy Pattern: {@link FirestoreImageBlobStore} is used by the app, {@link FileImageBlobStore} stands in for tests.
+ * Observer Pattern: Results are reported through success and failure listeners.
+ * <p>
+ * Outstanding Issues
+ * - Blobs are never deleted; images that are no longer referenced stay in the store.
+ */
+
+public interface ImageBlobStore {
+
+    /**
+     * Checks whether a blob with the given hash has already been stored
+     *
+     * @param hash              The content hash of the blob
+     * @param onSuccessListener The listener to be called with true if the blob exists
+     * @param onFailureListener The listener to be called when the check fails
+     */
+    void contains(@NonNull String hash, @NonNull OnSuccessListener<Boolean> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+
+    /**
+     * Stores the given bytes under the given hash
+     *
+     * @param hash              The content hash of the bytes
+     * @param bytes             The bytes to store
+     * @param onSuccessListener The listener to be called when the blob is stored
+     * @param onFailureListener The listener to be called when the blob cannot be stored
+     */
+    void put(@NonNull String hash, @NonNull byte[] bytes, @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+
+    /**
+     * Reads the blob stored under the given hash
+     *
+     * @param hash              The content hash of the blob
+     * @param onSuccessListener The listener to be called with the bytes, or null if no such blob exists
+     * @param onFailureListener The listener to be called when the blob cannot be read
+     */
+    void get(@NonNull String hash, @NonNull OnSuccessListener<byte[]> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+}
@@ -0,0 +1,145 @@
+package com.example.bread.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.utils.ImageHandler;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ImageRepository - Repository
+ * <p>
+ * Role / Purpose
+ * Uploads and fetches the full-size images attached to mood events and profiles.
+ * Images are addressed by the SHA-256 hash of their bytes, so documents only carry the hash (plus a small thumbnail)
+ * and the same image is uploaded only once no matter how many documents reference it.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Hides the {@link ImageBlobStore} behind upload and fetch operations.
+ * Observer Pattern: Uses success and failure listeners to report completion asynchronously.
+ * <p>
+ * Outstanding Issues
+ * - Callers write the referencing document only after the upload succeeds, so while offline a save waits until the
+ *   image reaches the server.
+ */
+
+public class ImageRepository {
+    private static final String TAG = "ImageRepository";
+
+    private final ImageBlobStore blobStore;
+    // Hashes of images known to be stored, so they are not checked or uploaded again
+    private final Set<String> uploadedHashes = Collections.synchronizedSet(new HashSet<>());
+
+    public ImageRepository() {
+        blobStore = new FirestoreImageBlobStore();
+    }
+
+    public ImageRepository(ImageBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Computes the content hash under which the given bytes are stored
+     *
+     * @param bytes The image bytes
+     * @return the lowercase hex SHA-256 of the bytes
+     */
+    @NonNull
+    public static String contentHash(@NonNull byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] hash = digest.digest(bytes);
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Uploads the given image unless an identical one is already stored.
+     * The hash is only reported once the image is stored, so a document written in the success listener never
+     * references a missing image.
+     *
+     * @param bytes             The encoded image bytes
+     * @param onSuccessListener The listener to be called with the content hash once the image is stored
+     * @param onFailureListener The listener to be called when the upload fails
+     */
+    public void uploadImage(@NonNull byte[] bytes, @NonNull OnSuccessListener<String> onSuccessListener, OnFailureListener onFailureListener) {
+        String hash = contentHash(bytes);
+        OnFailureListener failureListener = onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to upload image: " + hash, e);
+
+        if (uploadedHashes.contains(hash)) {
+            onSuccessListener.onSuccess(hash);
+            return;
+        }
+        OnSuccessListener<Void> onStored = unused -> {
+            uploadedHashes.add(hash);
+            Log.d(TAG, "Stored image: " + hash);
+            onSuccessListener.onSuccess(hash);
+        };
+        blobStore.contains(hash, exists -> {
+            if (exists) {
+                onStored.onSuccess(null);
+            } else {
+                blobStore.put(hash, bytes, onStored, failureListener);
+            }
+        }, e -> {
+            // The existence check needs the server; writes are idempotent, so upload anyway
+            Log.w(TAG, "Could not check for image " + hash + ", uploading it", e);
+            blobStore.put(hash, bytes, onStored, failureListener);
+        });
+    }
+
+    /**
+     * Fetches the full-size image stored under the given hash
+     *
+     * @param hash              The content hash of the image
+     * @param onSuccessListener The listener to be called with the bytes, or null if no such image exists
+     * @param onFailureListener The listener to be called when the image cannot be fetched
+     */
+    public void fetchImage(@NonNull String hash, @NonNull OnSuccessListener<byte[]> onSuccessListener, OnFailureListener onFailureListener) {
+        blobStore.get(hash, onSuccessListener, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to fetch image: " + hash, e));
+    }
+
+    /**
+     * Uploads the given image and, once it is stored, points the mood event at it, replacing any inline Base64 image.
+     * Passing null detaches the image right away. The mood event is left unchanged if the upload fails.
+     *
+     * @param moodEvent         The mood event to attach the image to, before it is written
+     * @param jpeg              The compressed image bytes, or null to remove the image
+     * @param onSuccessListener The listener to be called with the mood event once it can be written
+     * @param onFailureListener The listener to be called when the upload fails
+     */
+    public void attachImage(@NonNull MoodEvent moodEvent, @Nullable byte[] jpeg, @NonNull OnSuccessListener<MoodEvent> onSuccessListener, OnFailureListener onFailureListener) {
+        if (jpeg == null) {
+            moodEvent.setAttachedImage(null);
+            moodEvent.setAttachedImageHash(null);
+            moodEvent.setAttachedImageThumbnail(null);
+            onSuccessListener.onSuccess(moodEvent);
+            return;
+        }
+        uploadImage(jpeg, hash -> {
+            moodEvent.setAttachedImage(null);
+            moodEvent.setAttachedImageHash(hash);
+            moodEvent.setAttachedImageThumbnail(ImageHandler.createThumbnailBase64(jpeg));
+            onSuccessListener.onSuccess(moodEvent);
+        }, onFailureListener);
+    }
+}
@@ -0,0 +1,523 @@
+package com.example.bread.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.MoodEvent;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * MoodAnalyticsRepository - Repository
+ * <p>
+ * Role / Purpose
+ * Keeps the {@link MoodRollups} of each participant up to date and serves the analytics screen from them.
+ * {@link MoodEventRepository} reports every mood event it adds, updates or deletes, and the rollups of the event's
+ * participant are adjusted by that one event, written to a file in the app's files directory and, if enabled, mirrored
+ * to {@code participants/{username}/stats/moods}. The analytics screen receives a {@link MoodRollups.Summary} and the
+ * chart values of an {@link AnalyticsRange}, never the raw events. Chart values are computed on the worker thread when
+ * a chart asks for them and cached per range until the rollups change. The full history is only read to build rollups
+ * that do not exist yet, or that no longer match Firestore when the analytics screen opens: the number of events of
+ * the participant differs from the rollups, or another device mirrored its rollups to the stats document since.
+ * <p>
+ * Design Patterns
+ * Singleton Pattern: One instance shares the rollups and the worker thread between every repository and screen.
+ * Observer Pattern: Receives mood event changes from {@link MoodEventRepository} and reports summaries through listeners.
+ * Caching Pattern: Rollups and chart values stay in memory once computed; rollups are persisted after every change.
+ * <p>
+ * Outstanding Issues
+ * - Mood events edited on another device are only noticed through the stats document, so not while mirroring is disabled.
+ * - Offline, the analytics screen shows the local rollups without checking them.
+ * - Without {@link #initialize(Context, boolean)} the rollups are kept in memory only and rebuilt in every process.
+ */
+
+public class MoodAnalyticsRepository {
+    private static final String TAG = "MoodAnalyticsRepository";
+    private static final String DIRECTORY = "analytics";
+    public static final int TREND_DAYS = 30;
+    private static final int RANGE_CACHE_SIZE = 24;
+
+    private static MoodAnalyticsRepository instance;
+
+    // Rollups are only touched on this thread, so changes and loads are applied in the order they were reported
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, MoodRollups> rollupsByUsername = new HashMap<>();
+    // Events deleted while the history of a participant was being read, so the read cannot bring them back
+    private final Map<String, Set<String>> deletedWhileBuilding = new HashMap<>();
+    // Chart values computed per participant and range of days, dropped whenever the participant's rollups change
+    private final Map<String, Map<String, Object>> rangeCache = new HashMap<>();
+    // The last mirror write of each participant, so the next one only starts after it and expects its revision
+    private final Map<String, Task<Boolean>> mirrorWrites = new HashMap<>();
+    // Changed by clear(), so history reads and checks started before signing out are dropped
+    private int generation;
+    private volatile File directory;
+    private volatile boolean mirrorStats;
+    private FirebaseService firebaseService;
+
+    MoodAnalyticsRepository() {
+    }
+
+    /**
+     * @return the process-wide analytics repository
+     */
+    public static synchronized MoodAnalyticsRepository getInstance() {
+        if (instance == null) {
+            instance = new MoodAnalyticsRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * Enables persisting rollups in the application's files directory
+     *
+     * @param context     any context of the application
+     * @param mirrorStats whether to also write the rollups to the participant's stats document after every change
+     */
+    public static void initialize(@NonNull Context context, boolean mirrorStats) {
+        MoodAnalyticsRepository repository = getInstance();
+        repository.directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+        repository.mirrorStats = mirrorStats;
+    }
+
+    /**
+     * Records a mood event that was added or updated
+     *
+     * @param moodEvent the event as written
+     */
+    public void onMoodEventWritten(@NonNull MoodEvent moodEvent) {
+        String username = usernameOf(moodEvent);
+        if (username == null) {
+            return;
+        }
+        long writtenAt = System.currentTimeMillis();
+        worker.execute(() -> {
+            MoodRollups rollups = rollupsFor(username);
+            if (rollups.add(moodEvent, TimeZone.getDefault(), writtenAt)) {
+                rangeCache.remove(username);
+                save(username, rollups);
+            }
+        });
+    }
+
+    /**
+     * Records a mood event that was deleted
+     *
+     * @param moodEvent the deleted event
+     */
+    public void onMoodEventDeleted(@NonNull MoodEvent moodEvent) {
+        String username = usernameOf(moodEvent);
+        if (username == null || moodEvent.getId() == null) {
+            return;
+        }
+        worker.execute(() -> {
+            MoodRollups rollups = rollupsFor(username);
+            if (!rollups.isComplete()) {
+                deletedWhileBuilding.computeIfAbsent(username, key -> new HashSet<>()).add(moodEvent.getId());
+            }
+            if (rollups.remove(moodEvent.getId())) {
+                rangeCache.remove(username);
+                save(username, rollups);
+            }
+        });
+    }
+
+    /**
+     * Forgets the rollups of every participant, in memory and on disk; called when the user signs out
+     */
+    public void clear() {
+        worker.execute(() -> {
+            generation++;
+            rollupsByUsername.clear();
+            deletedWhileBuilding.clear();
+            rangeCache.clear();
+            mirrorWrites.clear();
+            File root = directory;
+            File[] files = root != null ? root.listFiles() : null;
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        Log.w(TAG, "Failed to delete mood rollups: " + file);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Summarizes the rollups of a participant for the analytics screen. If no complete rollups exist for the participant
+     * on this device, or they no longer match Firestore, they are first built from their full history.
+     *
+     * @param username          the participant
+     * @param onSuccessListener called on the main thread with the summary
+     * @param onFailureListener called on the main thread when the history needed to build the rollups cannot be read
+     */
+    public void fetchSummary(@NonNull String username, @NonNull OnSuccessListener<MoodRollups.Summary> onSuccessListener, OnFailureListener onFailureListener) {
+        withCompleteRollups(username, true, rollups -> {
+            MoodRollups.Summary summary = rollups.summarize(today(), TREND_DAYS);
+            mainHandler.post(() -> onSuccessListener.onSuccess(summary));
+        }, onFailureListener);
+    }
+
+    /**
+     * Sums the events of a participant in a range, for the distribution of emotional states
+     *
+     * @param username          the participant
+     * @param range             the range, resolved against today
+     * @param onSuccessListener called on the main thread with the sums
+     * @param onFailureListener called on the main thread when the history needed to build the rollups cannot be read
+     */
+    public void fetchTotal(@NonNull String username, @NonNull AnalyticsRange range, @NonNull OnSuccessListener<MoodRollups.Bucket> onSuccessListener, OnFailureListener onFailureListener) {
+        fetchForRange(username, range, "total", MoodRollups::total, onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Splits the events of a participant in a range into days or months, for the distribution over time
+     *
+     * @param username          the participant
+     * @param range             the range, resolved against today
+     * @param onSuccessListener called on the main thread with the series
+     * @param onFailureListener called on the main thread when the history needed to build the rollups cannot be read
+     */
+    public void fetchSeries(@NonNull String username, @NonNull AnalyticsRange range, @NonNull OnSuccessListener<MoodRollups.Series> onSuccessListener, OnFailureListener onFailureListener) {
+        fetchForRange(username, range, "series", MoodRollups::series, onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Computes the average scores of a participant in a range and their moving average, for the mood trend
+     *
+     * @param username          the participant
+     * @param range             the range, resolved against today
+     * @param onSuccessListener called on the main thread with the trend
+     * @param onFailureListener called on the main thread when the history needed to build the rollups cannot be read
+     */
+    public void fetchTrend(@NonNull String username, @NonNull AnalyticsRange range, @NonNull OnSuccessListener<MoodRollups.Trend> onSuccessListener, OnFailureListener onFailureListener) {
+        fetchForRange(username, range, "trend", (rollups, firstDay, lastDay) ->
+                cached(username, "series", firstDay, lastDay, () -> rollups.series(firstDay, lastDay)).trend(),
+                onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Computes a value of a range of days from the rollups of a participant
+     */
+    private interface RangeComputation<T> {
+        T compute(MoodRollups rollups, int firstDay, int lastDay);
+    }
+
+    private <T> void fetchForRange(String username, AnalyticsRange range, String name, RangeComputation<T> computation,
+                                   OnSuccessListener<T> onSuccessListener, OnFailureListener onFailureListener) {
+        withCompleteRollups(username, false, rollups -> {
+            int today = today();
+            int firstDay = range.firstDay(today, rollups.getFirstDay());
+            int lastDay = range.lastDay(today);
+            T value = cached(username, name, firstDay, lastDay, () -> computation.compute(rollups, firstDay, lastDay));
+            mainHandler.post(() -> onSuccessListener.onSuccess(value));
+        }, onFailureListener);
+    }
+
+    /**
+     * Returns a value computed from the rollups of a participant for a range of days, computing it only if it is not
+     * cached since the rollups last changed; runs on the worker thread
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String username, String name, int firstDay, int lastDay, Supplier<T> computation) {
+        Map<String, Object> cache = rangeCache.get(username);
+        if (cache == null) {
+            cache = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > RANGE_CACHE_SIZE;
+                }
+            };
+            rangeCache.put(username, cache);
+        }
+        String key = name + ":" + firstDay + ":" + lastDay;
+        T value = (T) cache.get(key);
+        if (value == null) {
+            value = computation.get();
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Runs an action on the worker thread with the complete rollups of a participant, first building them from the
+     * full history if they do not exist on this device yet
+     *
+     * @param verify whether to check existing rollups against Firestore first, see {@link #verifyThen}
+     */
+    private void withCompleteRollups(String username, boolean verify, Consumer<MoodRollups> action, OnFailureListener onFailureListener) {
+        OnFailureListener failureListener = onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to build mood rollups for: " + username, e);
+        worker.execute(() -> {
+            MoodRollups rollups = rollupsFor(username);
+            if (!rollups.isComplete()) {
+                buildThen(username, action, failureListener);
+            } else if (verify) {
+                verifyThen(username, rollups, action, failureListener);
+            } else {
+                action.accept(rollups);
+            }
+        });
+    }
+
+    /**
+     * Reads the full history of a participant into their rollups and runs an action with them; runs on the worker thread
+     */
+    private void buildThen(String username, Consumer<MoodRollups> action, OnFailureListener failureListener) {
+        int started = generation;
+        MoodEventRepository moodEventRepository = new MoodEventRepository(firebaseService());
+        moodEventRepository.fetchEventsWithParticipantRef(participantRef(username),
+                events -> worker.execute(() -> {
+                    if (started != generation) {
+                        return; // Signed out meanwhile
+                    }
+                    build(username, rollupsFor(username), events);
+                    action.accept(rollupsFor(username));
+                }), failureListener);
+    }
+
+    /**
+     * Checks complete rollups against Firestore before running an action with them, once the participant's pending
+     * mirror writes are done. If the server counts a different number of events, or another device wrote a revision
+     * of the stats document since these rollups were mirrored, changes were made elsewhere or never reached this
+     * device, so the rollups are dropped and rebuilt from the full history. If Firestore cannot be reached the rollups
+     * are used as they are. Runs on the worker thread.
+     */
+    private void verifyThen(String username, MoodRollups rollups, Consumer<MoodRollups> action, OnFailureListener failureListener) {
+        int started = generation;
+        FirebaseFirestore db = firebaseService().getDb();
+        Task<Boolean> pendingMirror = mirrorWrites.get(username);
+        (pendingMirror != null ? pendingMirror : Tasks.forResult(true)).continueWithTask(worker, mirrored -> Tasks.whenAllComplete(
+                db.collection("moodEvents").whereEqualTo("participantRef", participantRef(username)).count().get(AggregateSource.SERVER),
+                statsRef(username).get()
+        )).addOnCompleteListener(worker, task -> {
+            if (started != generation) {
+                return; // Signed out meanwhile
+            }
+            if (rollupsByUsername.get(username) != rollups) {
+                withCompleteRollups(username, false, action, failureListener); // Dropped meanwhile, so being rebuilt
+                return;
+            }
+            Task<?> count = task.getResult().get(0);
+            Task<?> stats = task.getResult().get(1);
+            if (!count.isSuccessful() || !stats.isSuccessful()) {
+                Log.w(TAG, "Cannot check mood rollups of " + username + ", using them as they are",
+                        count.isSuccessful() ? stats.getException() : count.getException());
+                action.accept(rollups);
+                return;
+            }
+            long eventCount = ((AggregateQuerySnapshot) count.getResult()).getCount();
+            String revision = ((DocumentSnapshot) stats.getResult()).getString("revision");
+            boolean mirroredElsewhere = mirrorStats && revision != null && !revision.equals(rollups.getRevision());
+            if (eventCount == rollups.size() && !mirroredElsewhere) {
+                action.accept(rollups);
+                return;
+            }
+            Log.d(TAG, "Mood rollups of " + username + " are out of date, " + rollups.size() + " events against "
+                    + eventCount + (mirroredElsewhere ? " and stats mirrored elsewhere" : ""));
+            discard(username);
+            buildThen(username, action, failureListener);
+        });
+    }
+
+    private static int today() {
+        return MoodRollups.dayOf(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+    /**
+     * Adds the full history to rollups that so far only hold events recorded since they were created. Events already
+     * present were recorded later than the history was read, and events deleted meanwhile are left out.
+     */
+    private void build(String username, MoodRollups rollups, List<MoodEvent> history) {
+        if (rollups.isComplete()) {
+            return; // Another summary request built them first
+        }
+        Set<String> deleted = deletedWhileBuilding.remove(username);
+        TimeZone zone = TimeZone.getDefault();
+        long now = System.currentTimeMillis();
+        for (MoodEvent event : history) {
+            if (!rollups.contains(event.getId()) && (deleted == null || !deleted.contains(event.getId()))) {
+                rollups.add(event, zone, now);
+            }
+        }
+        rollups.setComplete(true);
+        rangeCache.remove(username);
+        Log.d(TAG, "Built mood rollups for " + username + " from " + history.size() + " events");
+        save(username, rollups, true);
+    }
+
+    /**
+     * Returns the rollups of a participant, loading them from disk the first time; runs on the worker thread
+     */
+    private MoodRollups rollupsFor(String username) {
+        MoodRollups rollups = rollupsByUsername.get(username);
+        if (rollups != null) {
+            return rollups;
+        }
+        File file = fileFor(username);
+        if (file != null && file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                rollups = MoodRollups.readFrom(in);
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding unreadable mood rollups: " + file, e);
+            }
+        }
+        if (rollups == null) {
+            rollups = new MoodRollups();
+        }
+        rollupsByUsername.put(username, rollups);
+        return rollups;
+    }
+
+    private void save(String username, MoodRollups rollups) {
+        save(username, rollups, false);
+    }
+
+    /**
+     * Writes the rollups to disk and mirrors them to Firestore under a new revision if enabled; runs on the worker thread
+     *
+     * @param rebuilt whether the rollups were just built from the full history, so they replace whatever the stats
+     *                document holds
+     */
+    private void save(String username, MoodRollups rollups, boolean rebuilt) {
+        boolean mirror = mirrorStats && rollups.isComplete();
+        String expectedRevision = rebuilt ? null : rollups.getRevision();
+        if (mirror) {
+            rollups.setRevision(UUID.randomUUID().toString());
+        }
+        File file = fileFor(username);
+        if (file != null) {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                Log.w(TAG, "Cannot create analytics directory: " + parent);
+            }
+            // Write next to the file and rename, so a crash mid-write keeps the previous rollups
+            File temporary = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                rollups.writeTo(out);
+                if (!temporary.renameTo(file)) {
+                    Log.w(TAG, "Failed to replace mood rollups: " + file);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write mood rollups: " + file, e);
+            }
+        }
+        if (mirror) {
+            mirror(username, rollups, expectedRevision, rebuilt);
+        }
+    }
+
+    /**
+     * Writes the rollups to the stats document after the participant's previous mirror write. Unless the rollups were
+     * rebuilt, the document is only replaced while it still holds the revision they were last mirrored as; otherwise
+     * it was written from another device since, and the local rollups are dropped so the next summary rebuilds them
+     * instead of overwriting newer stats. Runs on the worker thread.
+     */
+    private void mirror(String username, MoodRollups rollups, @Nullable String expectedRevision, boolean rebuilt) {
+        Map<String, Object> document = rollups.toStatsDocument();
+        document.put("revision", rollups.getRevision());
+        document.put("updatedAt", FieldValue.serverTimestamp());
+        DocumentReference statsRef = statsRef(username);
+        FirebaseFirestore db = firebaseService().getDb();
+        Task<Boolean> previous = mirrorWrites.get(username);
+        Task<Boolean> write = (previous != null ? previous : Tasks.forResult(true)).continueWithTask(worker, ignored ->
+                db.runTransaction((Transaction.Function<Boolean>) transaction -> {
+                    String stored = transaction.get(statsRef).getString("revision");
+                    if (!rebuilt && stored != null && !stored.equals(expectedRevision)) {
+                        return false;
+                    }
+                    transaction.set(statsRef, document);
+                    return true;
+                }));
+        mirrorWrites.put(username, write);
+        write.addOnCompleteListener(worker, task -> {
+            if (mirrorWrites.get(username) == write) {
+                mirrorWrites.remove(username);
+            }
+            if (!task.isSuccessful()) {
+                // The stats keep an older revision, so the next summary notices and rebuilds
+                Log.w(TAG, "Failed to mirror mood stats for: " + username, task.getException());
+            } else if (Boolean.FALSE.equals(task.getResult()) && rollupsByUsername.get(username) == rollups) {
+                Log.d(TAG, "Mood stats of " + username + " were written elsewhere, dropping local rollups");
+                discard(username);
+            }
+        });
+    }
+
+    /**
+     * Drops the rollups of a participant, in memory and on disk, so they are rebuilt from the full history; runs on the
+     * worker thread
+     */
+    private void discard(String username) {
+        rollupsByUsername.remove(username);
+        rangeCache.remove(username);
+        deletedWhileBuilding.remove(username);
+        File file = fileFor(username);
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete mood rollups: " + file);
+        }
+    }
+
+    private DocumentReference participantRef(String username) {
+        return new ParticipantRepository(firebaseService()).getParticipantRef(username);
+    }
+
+    private DocumentReference statsRef(String username) {
+        return firebaseService().getDb().collection("participants").document(username).collection("stats").document("moods");
+    }
+
+    @Nullable
+    private File fileFor(String username) {
+        File root = directory;
+        return root != null ? new File(root, username + ".bin") : null;
+    }
+
+    private synchronized FirebaseService firebaseService() {
+        if (firebaseService == null) {
+            firebaseService = new FirebaseService();
+        }
+        return firebaseService;
+    }
+
+    @Nullable
+    private static String usernameOf(MoodEvent moodEvent) {
+        return moodEvent.getParticipantRef() != null ? moodEvent.getParticipantRef().getId() : null;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.model.MoodEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MoodEventFeedModel - Repository
+ * <p>
+ * Role / Purpose
+ * Holds the events of a live feed in a list sorted newest first and keyed by mood event id.
+ * Snapshot listener deltas (added, modified and removed documents) are applied incrementally, and each update
+ * returns the minimal list of {@link FeedChange}s that turns the previously visible list into the new one,
+ * so adapters can apply them instead of clearing and re-adding every row.
+ * Optionally caps the number of visible events per participant, matching the one-shot home feed.
+ * <p>
+ * Design Patterns
+ * Model: Plain in-memory state with no Android or Firestore dependencies, so it can be unit tested on the JVM.
+ * <p>
+ * Outstanding Issues
+ * - Not thread safe; updates are expected on the thread that delivers snapshot callbacks (the main thread).
+ */
+
+public class MoodEventFeedModel {
+
+    /**
+     * Orders events newest first. Events still waiting for their server timestamp are the newest of all.
+     * Ties are broken by id so the order is total.
+     */
+    static final Comparator<MoodEvent> NEWEST_FIRST = (a, b) -> {
+        if (a.getTimestamp() == null || b.getTimestamp() == null) {
+            if (a.getTimestamp() != b.getTimestamp()) {
+                return a.getTimestamp() == null ? -1 : 1;
+            }
+        } else {
+            int byTime = b.getTimestamp().compareTo(a.getTimestamp());
+            if (byTime != 0) {
+                return byTime;
+            }
+        }
+        String idA = a.getId() != null ? a.getId() : "";
+        String idB = b.getId() != null ? b.getId() : "";
+        return idA.compareTo(idB);
+    };
+
+    /**
+     * A single edit to the visible list. Changes are meant to be applied in order, and each position refers to
+     * the list as it is after all previous changes in the same batch.
+     */
+    public static class FeedChange {
+        public enum Type {
+            INSERTED,
+            CHANGED,
+            REMOVED
+        }
+
+        private final Type type;
+        private final int position;
+        private final MoodEvent moodEvent;
+
+        FeedChange(@NonNull Type type, int position, @NonNull MoodEvent moodEvent) {
+            this.type = type;
+            this.position = position;
+            this.moodEvent = moodEvent;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Returns the inserted or updated event, or the removed event for {@link Type#REMOVED}
+         *
+         * @return the mood event affected by this change
+         */
+        public MoodEvent getMoodEvent() {
+            return moodEvent;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return type + "@" + position + "(" + moodEvent.getId() + ")";
+        }
+    }
+
+    private final int maxPerUser;
+    private final Map<String, MoodEvent> eventsById = new HashMap<>();
+    private final List<MoodEvent> sortedEvents = new ArrayList<>();
+    private List<MoodEvent> visibleEvents = new ArrayList<>();
+
+    /**
+     * Creates a model without a per-participant cap
+     */
+    public MoodEventFeedModel() {
+        this(0);
+    }
+
+    /**
+     * Creates a model that shows at most {@code maxPerUser} of the newest events of each participant
+     *
+     * @param maxPerUser the per-participant cap, or 0 for no cap
+     */
+    public MoodEventFeedModel(int maxPerUser) {
+        this.maxPerUser = maxPerUser;
+    }
+
+    /**
+     * Applies one batch of snapshot deltas
+     *
+     * @param upserted   the events that were added or modified; each must have its id set
+     * @param removedIds the ids of the events that were removed
+     * @return the changes that turn the previously visible list into the new one
+     */
+    @NonNull
+    public List<FeedChange> apply(@NonNull Collection<MoodEvent> upserted, @NonNull Collection<String> removedIds) {
+        for (String id : removedIds) {
+            MoodEvent existing = eventsById.remove(id);
+            if (existing != null) {
+                removeSorted(existing);
+            }
+        }
+        for (MoodEvent event : upserted) {
+            MoodEvent existing = eventsById.put(event.getId(), event);
+            if (existing != null) {
+                removeSorted(existing);
+            }
+            int index = Collections.binarySearch(sortedEvents, event, NEWEST_FIRST);
+            sortedEvents.add(index < 0 ? -index - 1 : index, event);
+        }
+
+        List<MoodEvent> previous = visibleEvents;
+        visibleEvents = computeVisible();
+        return diff(previous, visibleEvents);
+    }
+
+    /**
+     * Removes every event from the model
+     *
+     * @return the changes that empty the previously visible list
+     */
+    @NonNull
+    public List<FeedChange> clear() {
+        eventsById.clear();
+        sortedEvents.clear();
+        List<MoodEvent> previous = visibleEvents;
+        visibleEvents = new ArrayList<>();
+        return diff(previous, visibleEvents);
+    }
+
+    /**
+     * Returns the visible events, newest first
+     *
+     * @return an unmodifiable view of the visible events
+     */
+    @NonNull
+    public List<MoodEvent> getVisibleEvents() {
+        return Collections.unmodifiableList(visibleEvents);
+    }
+
+    private void removeSorted(@NonNull MoodEvent event) {
+        int index = Collections.binarySearch(sortedEvents, event, NEWEST_FIRST);
+        if (index >= 0) {
+            sortedEvents.remove(index);
+        }
+    }
+
+    private List<MoodEvent> computeVisible() {
+        if (maxPerUser <= 0) {
+            return new ArrayList<>(sortedEvents);
+        }
+        Map<String, Integer> shownPerUser = new HashMap<>();
+        List<MoodEvent> visible = new ArrayList<>();
+        for (MoodEvent event : sortedEvents) {
+            String user = event.getParticipantRef() != null ? event.getParticipantRef().getPath() : "";
+            int shown = shownPerUser.getOrDefault(user, 0);
+            if (shown < maxPerUser) {
+                shownPerUser.put(user, shown + 1);
+                visible.add(event);
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Computes sequential edits between two lists sorted by {@link #NEWEST_FIRST} with a single merge walk.
+     * An event whose object was replaced is reported as changed; one whose sort key moved is removed and re-inserted.
+     */
+    static List<FeedChange> diff(@NonNull List<MoodEvent> previous, @NonNull List<MoodEvent> current) {
+        List<FeedChange> changes = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < previous.size() || j < current.size()) {
+            MoodEvent before = i < previous.size() ? previous.get(i) : null;
+            MoodEvent after = j < current.size() ? current.get(j) : null;
+            if (before != null && after != null && before.getId() != null && before.getId().equals(after.getId())
+                    && NEWEST_FIRST.compare(before, after) == 0) {
+                if (before != after) {
+                    changes.add(new FeedChange(FeedChange.Type.CHANGED, position, after));
+                }
+                i++;
+                j++;
+                position++;
+            } else if (after == null || (before != null && NEWEST_FIRST.compare(before, after) <= 0)) {
+                changes.add(new FeedChange(FeedChange.Type.REMOVED, position, before));
+                i++;
+            } else {
+                changes.add(new FeedChange(FeedChange.Type.INSERTED, position, after));
+                j++;
+                position++;
+            }
+        }
+        return changes;
+    }
+}
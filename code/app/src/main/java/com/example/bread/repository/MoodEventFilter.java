@@ -0,0 +1,132 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * MoodEventFilter - Repository
+ * <p>
+ * Role / Purpose
+ * The filter choices of the Home, History and Map filter dialogs: events from the past week, one emotional state, and
+ * keywords that must start words of the title or reason (see {@link MoodEventKeywordIndex}). All set criteria must match. Evaluated per event with
+ * {@link #matches(MoodEvent)}, or over many loaded events at once with {@link MoodEventFilterIndex}.
+ * <p>
+ * Design Patterns
+ * Value Object: Immutable, compared by value.
+ * Specification Pattern: Combines the criteria into one predicate evaluated in a single pass.
+ * <p>
+ * Outstanding Issues
+ * - "Past week" is measured from the time of the query, so the same filter can match fewer events later on.
+ */
+
+public class MoodEventFilter {
+    public static final MoodEventFilter NONE = new MoodEventFilter(false, null, null);
+
+    private final boolean recentWeek;
+    private final MoodEvent.EmotionalState emotionalState;
+    private final String keyword;
+    private final List<String> keywordWords;
+
+    /**
+     * @param recentWeek     only match events from the past 7 days
+     * @param emotionalState only match events with this state, or null for any
+     * @param keyword        only match events with every word of it at the start of a word of their title or reason,
+     *                       ignoring case and accents; null or blank for any
+     */
+    public MoodEventFilter(boolean recentWeek, @Nullable MoodEvent.EmotionalState emotionalState, @Nullable String keyword) {
+        this.recentWeek = recentWeek;
+        this.emotionalState = emotionalState;
+        this.keyword = keyword != null ? keyword.trim().toLowerCase() : "";
+        this.keywordWords = MoodEventKeywordIndex.tokenize(this.keyword);
+    }
+
+    public boolean isRecentWeek() {
+        return recentWeek;
+    }
+
+    @Nullable
+    public MoodEvent.EmotionalState getEmotionalState() {
+        return emotionalState;
+    }
+
+    /**
+     * @return the keyword in lower case, or an empty string if there is none
+     */
+    @NonNull
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return the normalized words of the keyword, empty if it has none
+     */
+    @NonNull
+    public List<String> getKeywordWords() {
+        return keywordWords;
+    }
+
+    /**
+     * @return whether any criterion is set
+     */
+    public boolean isActive() {
+        return recentWeek || emotionalState != null || !keywordWords.isEmpty();
+    }
+
+    /**
+     * Returns the start of the "past week" window; events must be strictly after it
+     */
+    @NonNull
+    static Date recentWeekStart(@NonNull Date now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(now);
+        calendar.add(Calendar.DAY_OF_YEAR, -7);
+        return calendar.getTime();
+    }
+
+    /**
+     * Returns whether the event passes every set criterion, with the past week ending now
+     */
+    public boolean matches(@NonNull MoodEvent event) {
+        return matches(event, recentWeek ? recentWeekStart(new Date()) : null);
+    }
+
+    /**
+     * Returns the filter as a predicate with the past week ending now, for checking many events in one pass
+     */
+    @NonNull
+    public Predicate<MoodEvent> toPredicate() {
+        Date since = recentWeek ? recentWeekStart(new Date()) : null;
+        return event -> matches(event, since);
+    }
+
+    boolean matches(@NonNull MoodEvent event, @Nullable Date since) {
+        if (recentWeek && (event.getTimestamp() == null || !event.getTimestamp().after(since))) {
+            return false;
+        }
+        if (emotionalState != null && event.getEmotionalState() != emotionalState) {
+            return false;
+        }
+        return MoodEventKeywordIndex.matches(keywordWords, event.getTitle(), event.getReason());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MoodEventFilter that = (MoodEventFilter) o;
+        return recentWeek == that.recentWeek && emotionalState == that.emotionalState && keyword.equals(that.keyword);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recentWeek, emotionalState, keyword);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.model.MoodEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MoodEventFilterIndex - Repository
+ * <p>
+ * Role / Purpose
+ * Indexes the loaded mood events of a screen so a {@link MoodEventFilter} can be evaluated without copying the event
+ * list once per criterion. Each event gets a slot number, and the index keeps:
+ * - one bitset of slots per emotional state,
+ * - the slots ordered newest first, so the past week is a prefix of the order,
+ * - a {@link MoodEventKeywordIndex} over the words of the titles and reasons.
+ * A query walks the newest-first order once, stops at the first event older than a week, and checks the state and
+ * keyword bits of each slot. Events are added, replaced and removed one at a time as they are loaded or change.
+ * <p>
+ * Design Patterns
+ * Model: Plain in-memory state with no Android or Firestore dependencies, so it can be unit tested on the JVM.
+ * <p>
+ * Outstanding Issues
+ * - Events are keyed by id; every indexed event must have its id set.
+ * - An event that is edited in place must be added again for the index to see the change.
+ * - Not thread safe; it must be used from the thread that owns it (the main thread).
+ */
+
+public class MoodEventFilterIndex {
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final List<MoodEvent> events = new ArrayList<>();
+    // The state each slot was indexed with, in case the event is edited in place later
+    private final List<MoodEvent.EmotionalState> states = new ArrayList<>();
+    private final BitSet freeSlots = new BitSet();
+    private final Map<MoodEvent.EmotionalState, BitSet> slotsByState = new EnumMap<>(MoodEvent.EmotionalState.class);
+    private final MoodEventKeywordIndex keywordIndex = new MoodEventKeywordIndex();
+    private int[] order = new int[16];
+    private int size = 0;
+
+    /**
+     * Adds an event, replacing the indexed event with the same id
+     *
+     * @param event the event to add; its id must be set
+     */
+    public void add(@NonNull MoodEvent event) {
+        if (event.getId() == null) {
+            throw new IllegalArgumentException("Cannot index a mood event without an id");
+        }
+        Integer existing = slotsById.get(event.getId());
+        if (existing != null) {
+            removeSlot(existing);
+        }
+
+        int slot = freeSlots.nextSetBit(0);
+        if (slot < 0) {
+            slot = events.size();
+            events.add(event);
+            states.add(event.getEmotionalState());
+        } else {
+            freeSlots.clear(slot);
+            events.set(slot, event);
+            states.set(slot, event.getEmotionalState());
+        }
+        slotsById.put(event.getId(), slot);
+        if (event.getEmotionalState() != null) {
+            bitsFor(slotsByState, event.getEmotionalState()).set(slot);
+        }
+        keywordIndex.add(slot, event.getTitle(), event.getReason());
+        insertIntoOrder(slot);
+    }
+
+    /**
+     * Adds every event, replacing indexed events with the same ids
+     */
+    public void addAll(@NonNull Collection<MoodEvent> events) {
+        for (MoodEvent event : events) {
+            add(event);
+        }
+    }
+
+    /**
+     * Removes the event, if it is the one currently indexed under its id. An older copy of a replaced event is ignored,
+     * so removals and additions of the same event can be applied in any order.
+     *
+     * @param event the event to remove
+     * @return whether the event was removed
+     */
+    public boolean remove(@NonNull MoodEvent event) {
+        Integer slot = event.getId() != null ? slotsById.get(event.getId()) : null;
+        if (slot == null || events.get(slot) != event) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Applies the changes of a live feed update
+     *
+     * @param changes the changes reported by {@link MoodEventFeedModel}
+     */
+    public void applyChanges(@NonNull List<MoodEventFeedModel.FeedChange> changes) {
+        for (MoodEventFeedModel.FeedChange change : changes) {
+            if (change.getType() == MoodEventFeedModel.FeedChange.Type.REMOVED) {
+                remove(change.getMoodEvent());
+            } else {
+                add(change.getMoodEvent());
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        slotsById.clear();
+        events.clear();
+        states.clear();
+        freeSlots.clear();
+        slotsByState.clear();
+        keywordIndex.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the indexed events that match the filter, newest first, with the past week ending now
+     */
+    @NonNull
+    public ArrayList<MoodEvent> query(@NonNull MoodEventFilter filter) {
+        ArrayList<MoodEvent> result = new ArrayList<>();
+        Date since = filter.isRecentWeek() ? MoodEventFilter.recentWeekStart(new Date()) : null;
+
+        BitSet stateSlots = null;
+        if (filter.getEmotionalState() != null) {
+            stateSlots = slotsByState.get(filter.getEmotionalState());
+            if (stateSlots == null) {
+                return result;
+            }
+        }
+        BitSet keywordSlots = null;
+        if (!filter.getKeywordWords().isEmpty()) {
+            keywordSlots = keywordIndex.match(filter.getKeywordWords());
+            if (keywordSlots.isEmpty()) {
+                return result;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            MoodEvent event = events.get(slot);
+            if (since != null) {
+                if (event.getTimestamp() == null) {
+                    continue; // Pending events sort first, and have no time to compare yet
+                }
+                if (!event.getTimestamp().after(since)) {
+                    break; // Everything after this one is older
+                }
+            }
+            if (stateSlots != null && !stateSlots.get(slot)) {
+                continue;
+            }
+            if (keywordSlots != null && !keywordSlots.get(slot)) {
+                continue;
+            }
+            result.add(event);
+        }
+        return result;
+    }
+
+    private void removeSlot(int slot) {
+        MoodEvent event = events.get(slot);
+        slotsById.remove(event.getId());
+        if (states.get(slot) != null) {
+            clearBit(slotsByState, states.get(slot), slot);
+        }
+        keywordIndex.remove(slot);
+        removeFromOrder(slot);
+        events.set(slot, null);
+        states.set(slot, null);
+        freeSlots.set(slot);
+    }
+
+    private void insertIntoOrder(int slot) {
+        int position = search(events.get(slot));
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = slot;
+        size++;
+    }
+
+    private void removeFromOrder(int slot) {
+        int position = search(events.get(slot));
+        if (position < 0 || order[position] != slot) {
+            // The event was edited in place and is no longer where its sort key says
+            position = -1;
+            for (int i = 0; i < size; i++) {
+                if (order[i] == slot) {
+                    position = i;
+                    break;
+                }
+            }
+        }
+        System.arraycopy(order, position + 1, order, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * Binary search over the newest-first order, in the style of {@link java.util.Collections#binarySearch}
+     */
+    private int search(MoodEvent event) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = MoodEventFeedModel.NEWEST_FIRST.compare(events.get(order[mid]), event);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static <K> BitSet bitsFor(Map<K, BitSet> index, K key) {
+        BitSet bits = index.get(key);
+        if (bits == null) {
+            bits = new BitSet();
+            index.put(key, bits);
+        }
+        return bits;
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> index, K key, int slot) {
+        BitSet bits = index.get(key);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
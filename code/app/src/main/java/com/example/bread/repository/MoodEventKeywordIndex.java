@@ -0,0 +1,172 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * MoodEventKeywordIndex - Repository
+ * <p>
+ * Role / Purpose
+ * Inverted index from the words of mood event titles and reasons to the slots of the events that contain them, used
+ * by {@link MoodEventFilterIndex} for keyword search. Text is split into words of letters and digits, decomposed and
+ * stripped of accents, and lower-cased, so "Café" and "cafe" are the same word. Each word of a search must be the
+ * start of some word of the event: "stress" finds "Stressful", "exam stre" finds "Exam stress". Words are kept sorted,
+ * so the words starting with a search word are one range of the index.
+ * <p>
+ * Design Patterns
+ * Model: Plain in-memory state with no Android or Firestore dependencies, so it can be unit tested on the JVM.
+ * <p>
+ * Outstanding Issues
+ * - Words are split on anything that is not a letter or digit, so scripts written without spaces are indexed as
+ *   long words and only match from their start.
+ */
+
+public class MoodEventKeywordIndex {
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final TreeMap<String, BitSet> slotsByWord = new TreeMap<>();
+    private final Map<Integer, Set<String>> wordsBySlot = new HashMap<>();
+
+    /**
+     * Splits text into normalized words, without duplicates, in order of first appearance
+     *
+     * @param text the text to split, or null
+     * @return the words, empty if the text has none
+     */
+    @NonNull
+    public static List<String> tokenize(@Nullable String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> seen = new LinkedHashSet<>();
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty()) {
+                seen.add(word);
+            }
+        }
+        words.addAll(seen);
+        return words;
+    }
+
+    /**
+     * Returns whether every search word starts some word of the texts; true when there are no search words
+     *
+     * @param searchWords words from {@link #tokenize(String)}
+     * @param texts       the texts to search, null entries allowed
+     */
+    public static boolean matches(@NonNull List<String> searchWords, @Nullable String... texts) {
+        if (searchWords.isEmpty()) {
+            return true;
+        }
+        List<String> words = new ArrayList<>();
+        for (String text : texts) {
+            words.addAll(tokenize(text));
+        }
+        for (String searchWord : searchWords) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(searchWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the words of the texts under a slot, replacing what the slot held before
+     *
+     * @param slot  the slot of the event
+     * @param texts the texts of the event, null entries allowed
+     */
+    public void add(int slot, @Nullable String... texts) {
+        remove(slot);
+        Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            words.addAll(tokenize(text));
+        }
+        if (words.isEmpty()) {
+            return;
+        }
+        for (String word : words) {
+            BitSet slots = slotsByWord.get(word);
+            if (slots == null) {
+                slots = new BitSet();
+                slotsByWord.put(word, slots);
+            }
+            slots.set(slot);
+        }
+        wordsBySlot.put(slot, words);
+    }
+
+    /**
+     * Removes a slot from the index
+     */
+    public void remove(int slot) {
+        Set<String> words = wordsBySlot.remove(slot);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            BitSet slots = slotsByWord.get(word);
+            if (slots != null) {
+                slots.clear(slot);
+                if (slots.isEmpty()) {
+                    slotsByWord.remove(word);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        slotsByWord.clear();
+        wordsBySlot.clear();
+    }
+
+    /**
+     * Returns the slots whose texts contain every search word as the start of a word
+     *
+     * @param searchWords words from {@link #tokenize(String)}; must not be empty
+     * @return a new bitset of matching slots
+     */
+    @NonNull
+    public BitSet match(@NonNull List<String> searchWords) {
+        BitSet result = null;
+        for (String searchWord : searchWords) {
+            BitSet wordSlots = new BitSet();
+            // Every indexed word that starts with the search word sorts between it and the search word plus U+FFFF
+            for (BitSet slots : slotsByWord.subMap(searchWord, true, searchWord + Character.MAX_VALUE, false).values()) {
+                wordSlots.or(slots);
+            }
+            if (result == null) {
+                result = wordSlots;
+            } else {
+                result.and(wordSlots);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? result : new BitSet();
+    }
+}
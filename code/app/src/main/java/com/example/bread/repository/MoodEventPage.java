@@ -0,0 +1,71 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.List;
+
+/**
+ * MoodEventPage - Repository
+ * <p>
+ * Role / Purpose
+ * Holds one page of mood events returned by a paged query, together with the cursor needed to request the next page.
+ * Callers pass {@link #getCursor()} back into the repository to continue where this page ended.
+ * <p>
+ * Design Patterns
+ * Value Object: Immutable result of a single paged read.
+ * <p>
+ * Outstanding Issues
+ * - The cursor is a Firestore snapshot and cannot be persisted across process death.
+ */
+
+public class MoodEventPage {
+    private final List<MoodEvent> events;
+    private final DocumentSnapshot cursor;
+    private final boolean hasMore;
+
+    /**
+     * Constructs a page of mood events.
+     *
+     * @param events  the events in this page, in query order
+     * @param cursor  the last document of this page, or null if the page is empty
+     * @param hasMore whether another page may follow this one
+     */
+    public MoodEventPage(@NonNull List<MoodEvent> events, @Nullable DocumentSnapshot cursor, boolean hasMore) {
+        this.events = events;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Returns the events in this page.
+     *
+     * @return the events, in query order
+     */
+    @NonNull
+    public List<MoodEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the cursor to pass when requesting the next page.
+     *
+     * @return the last document of this page, or null if the page is empty
+     */
+    @Nullable
+    public DocumentSnapshot getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Returns whether another page may follow this one.
+     *
+     * @return true if the page was full and more events may exist
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -4,31 +4,31 @@ import android.location.Location;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.Comment;
 import com.example.bread.model.MoodEvent;
-import com.firebase.geofire.GeoFireUtils;
-import com.firebase.geofire.GeoLocation;
-import com.firebase.geofire.GeoQueryBounds;
-import com.google.android.gms.tasks.OnCompleteListener;
+import com.example.bread.utils.LatencyRecorder;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.Source;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -48,23 +48,42 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Caching Strategy: Implements a simple memory-based cache for mood events to minimize redundant queries.
  * <p>
  * Outstanding Issues
- * - Partial real-time support: methods rely on direct fetches rather than listeners for data changes.
+ * - Partial real-time support: only the home feed uses listeners; other methods rely on direct fetches.
  */
 public class MoodEventRepository {
     private final FirebaseService firebaseService;
     private static final String TAG = "MoodEventRepository";
+    public static final int DEFAULT_PAGE_SIZE = 20;
     private static final int MAX_EVENTS_PER_USER = 3;
+    static final int MAX_IN_QUERY_SIZE = 30; // Firestore limit on the number of values in a whereIn filter
+    private static final int MAX_CONCURRENT_CHUNKS = 4;
+    private final LatencyRecorder feedChunkLatency = new LatencyRecorder("followingFeedChunk");
+    private static final int TIMELINE_PAGE_SIZE = 50;
     private final ParticipantRepository participantRepository = new ParticipantRepository();
+    private final TimelineRepository timelineRepository;
+    private final MoodLocationRepository moodLocationRepository;
     private final Map<String, List<MoodEvent>> followingMoodsCache = new HashMap<>();
     private long lastCacheUpdateTime = 0;
     private static final long CACHE_EXPIRY_MS = 120 * 1000; // 2 minutes just in case there is no delay in fetching during demo or smn
 
     public MoodEventRepository() {
         firebaseService = new FirebaseService();
+        timelineRepository = new TimelineRepository(firebaseService);
+        moodLocationRepository = new MoodLocationRepository(firebaseService);
     }
 
     public MoodEventRepository(FirebaseService firebaseService) {
+        this(firebaseService, new TimelineRepository(firebaseService));
+    }
+
+    /**
+     * @param firebaseService    the Firebase service to use
+     * @param timelineRepository the timeline to fan out to and read the home feed from, which decides whether fan-out is enabled
+     */
+    public MoodEventRepository(FirebaseService firebaseService, TimelineRepository timelineRepository) {
         this.firebaseService = firebaseService;
+        this.timelineRepository = timelineRepository;
+        this.moodLocationRepository = new MoodLocationRepository(firebaseService);
     }
 
     private CollectionReference getMoodEventCollRef() {
@@ -131,8 +150,93 @@ public class MoodEventRepository {
                 });
     }
 
+    /**
+     * Fetches a single mood event by id, from the process-wide {@link MoodEventStore} if it holds the event
+     *
+     * @param id                The id of the mood event
+     * @param onSuccessListener The listener to be called with the mood event, or null if it does not exist
+     * @param onFailureListener The listener to be called when the mood event cannot be fetched
+     */
+    public void fetchMoodEvent(@NonNull String id, @NonNull OnSuccessListener<MoodEvent> onSuccessListener, OnFailureListener onFailureListener) {
+        MoodEventStore.getInstance().fetch(id, (eventId, onLoaded, onLoadFailed) -> getMoodEventCollRef().document(eventId).get()
+                        .addOnSuccessListener(doc -> {
+                            MoodEvent moodEvent = doc.exists() ? doc.toObject(MoodEvent.class) : null;
+                            if (moodEvent != null) {
+                                moodEvent.setId(doc.getId());
+                            }
+                            onLoaded.onSuccess(moodEvent);
+                        })
+                        .addOnFailureListener(onLoadFailed),
+                onSuccessListener,
+                onFailureListener != null ? onFailureListener : e -> Log.e(TAG, "Failed to fetch mood event: " + id, e));
+    }
+
+    /**
+     * Fetches one page of the mood events with the given participant reference, newest first
+     * <p>
+     * Pass the {@link MoodEventPage#getCursor()} of the previous page to continue after it, so screens only deserialize
+     * the part of a participant's history that is actually shown.
+     *
+     * @param participantRef    The reference to the participant whose mood events are to be fetched
+     * @param pageSize          The maximum number of mood events in the page
+     * @param cursor            The cursor of the previous page, or null for the first page
+     * @param onSuccessListener The listener to be called with the page of mood events
+     * @param onFailureListener The listener to be called when the page cannot be fetched
+     */
+    public void fetchEventsPageWithParticipantRef(@NonNull DocumentReference participantRef, int pageSize, @Nullable DocumentSnapshot cursor, @NonNull OnSuccessListener<MoodEventPage> onSuccessListener, OnFailureListener onFailureListener) {
+        boolean offline = !FirebaseService.isNetworkConnected();
+        Source source = offline ? Source.CACHE : Source.DEFAULT;
+
+        buildParticipantPageQuery(participantRef, pageSize, cursor).get(source)
+                .addOnSuccessListener(queryDocumentSnapshots -> onSuccessListener.onSuccess(toMoodEventPage(queryDocumentSnapshots, pageSize)))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch mood event page with participantRef: " + participantRef, e);
+
+                    // If we're online and the server query failed, try cache
+                    if (!offline) {
+                        Log.d(TAG, "Server page fetch failed, falling back to cache");
+                        buildParticipantPageQuery(participantRef, pageSize, cursor).get(Source.CACHE)
+                                .addOnSuccessListener(cacheResult -> onSuccessListener.onSuccess(toMoodEventPage(cacheResult, pageSize)))
+                                .addOnFailureListener(cacheError -> {
+                                    if (onFailureListener != null) {
+                                        onFailureListener.onFailure(cacheError);
+                                    }
+                                });
+                    } else if (onFailureListener != null) {
+                        onFailureListener.onFailure(e);
+                    }
+                });
+    }
+
+    /**
+     * Builds the query for one page of a participant's mood events, newest first
+     */
+    private Query buildParticipantPageQuery(@NonNull DocumentReference participantRef, int pageSize, @Nullable DocumentSnapshot cursor) {
+        Query query = getMoodEventCollRef()
+                .whereEqualTo("participantRef", participantRef)
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        return query.limit(pageSize);
+    }
+
+    /**
+     * Converts a query snapshot into a page of mood events
+     */
+    private static MoodEventPage toMoodEventPage(@NonNull QuerySnapshot querySnapshot, int pageSize) {
+        List<DocumentSnapshot> docs = querySnapshot.getDocuments();
+        DocumentSnapshot last = docs.isEmpty() ? null : docs.get(docs.size() - 1);
+        return new MoodEventPage(toMoodEvents(querySnapshot), last, docs.size() == pageSize);
+    }
+
     /**
      * fetches all mood events that are created by the participants that the given participant is following
+     * <p>
+     * Followed participants are grouped into chunks of at most {@link #MAX_IN_QUERY_SIZE} references so each chunk
+     * is a single {@code whereIn} query. At most {@link #MAX_CONCURRENT_CHUNKS} chunk queries are in flight at a time,
+     * and the combined results are trimmed to the {@link #MAX_EVENTS_PER_USER} most recent events per user. A chunk
+     * that returns its full limit is followed up with one query per participant it returned too few events for.
      *
      * @param username          The username of the participant whose following's mood events are to be fetched
      * @param onSuccessListener The listener to be called when the mood events are successfully fetched
@@ -150,209 +254,562 @@ public class MoodEventRepository {
 
         // Explicitly check network connectivity
         boolean offline = !FirebaseService.isNetworkConnected();
+        Source source = offline ? Source.CACHE : Source.DEFAULT;
+        Log.d(TAG, offline ? "Device is OFFLINE - forcing CACHE source only" : "Device is ONLINE - using DEFAULT source");
 
-        if (offline) {
-            Log.d(TAG, "Device is OFFLINE - forcing CACHE source only");
+        participantRepository.fetchFollowing(username, following -> {
+            if (following.isEmpty()) {
+                onSuccessListener.onSuccess(new ArrayList<>());
+                return;
+            }
 
-            participantRepository.fetchFollowing(username, following -> {
-                if (following.isEmpty()) {
-                    onSuccessListener.onSuccess(new ArrayList<>());
-                    return;
-                }
+            List<DocumentReference> participantRefs = new ArrayList<>();
+            for (String followingUsername : following) {
+                participantRefs.add(participantRepository.getParticipantRef(followingUsername));
+            }
+            List<List<DocumentReference>> chunks = partition(participantRefs, MAX_IN_QUERY_SIZE);
+            Log.d(TAG, "Fetching following feed for " + following.size() + " users in " + chunks.size() + " chunk(s)");
+
+            fetchFollowingChunks(chunks, source, allMoodEvents -> {
+                List<MoodEvent> trimmed = trimToMostRecentPerUser(allMoodEvents, MAX_EVENTS_PER_USER);
+                followingMoodsCache.put(username, new ArrayList<>(trimmed));
+                lastCacheUpdateTime = System.currentTimeMillis();
+                Log.d(TAG, "Following feed chunk latency: " + feedChunkLatency);
+                onSuccessListener.onSuccess(trimmed);
+            });
+        }, onFailureListener);
+    }
 
-                List<MoodEvent> allMoodEvents = new ArrayList<>();
-                AtomicInteger queriesRemaining = new AtomicInteger(following.size());
-
-                for (String followingUsername : following) {
-                    getMoodEventCollRef()
-                            .whereEqualTo("participantRef", participantRepository.getParticipantRef(followingUsername))
-                            .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC) // Add visibility filter
-                            .orderBy("timestamp", Query.Direction.DESCENDING)
-                            .limit(MAX_EVENTS_PER_USER)
-                            .get(Source.CACHE)
-                            .addOnSuccessListener(queryDocumentSnapshots -> {
-                                List<MoodEvent> moodEvents = new ArrayList<>();
-                                for (DocumentSnapshot doc : queryDocumentSnapshots) {
-                                    MoodEvent event = doc.toObject(MoodEvent.class);
-                                    if (event != null) {
-                                        event.setId(doc.getId());
-                                        moodEvents.add(event);
-                                    }
-                                }
+    /**
+     * Fetches the home feed of the given participant.
+     * <p>
+     * When the fan-out-on-write timeline is enabled and the participant's timeline is complete, the feed is one ordered
+     * query over the materialized timeline. Until then (e.g. an account that followed people before fan-out existed) the
+     * feed comes from {@link #fetchForEventsFromFollowing}, and the existing follows are copied into the timeline once.
+     *
+     * @param username          The username of the participant whose home feed is to be fetched
+     * @param onSuccessListener The listener to be called when the mood events are successfully fetched
+     * @param onFailureListener The listener to be called when the mood events cannot be fetched
+     */
+    public void fetchHomeFeed(@NonNull String username, @NonNull OnSuccessListener<List<MoodEvent>> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        if (!timelineRepository.isFanOutEnabled()) {
+            fetchForEventsFromFollowing(username, onSuccessListener, onFailureListener);
+            return;
+        }
+        withTimelineState(username, complete -> {
+            if (!complete) {
+                fetchForEventsFromFollowing(username, onSuccessListener, onFailureListener);
+                return;
+            }
+            timelineRepository.fetchTimelinePage(username, TIMELINE_PAGE_SIZE, null,
+                    page -> onSuccessListener.onSuccess(trimToMostRecentPerUser(page.getEvents(), MAX_EVENTS_PER_USER)), e -> {
+                        Log.e(TAG, "Failed to fetch timeline, falling back to following queries", e);
+                        fetchForEventsFromFollowing(username, onSuccessListener, onFailureListener);
+                    });
+        });
+    }
 
-                                Log.d(TAG, "Successfully fetched " + moodEvents.size() + " public events for " + followingUsername + " from CACHE");
+    /**
+     * Reports whether the participant's timeline is complete. An incomplete timeline, or one whose state cannot be read,
+     * is reported as false, and the follows that existed before it are copied into it in the background.
+     */
+    private void withTimelineState(@NonNull String username, @NonNull OnSuccessListener<Boolean> onStateListener) {
+        timelineRepository.fetchTimelineComplete(username, complete -> {
+            if (!complete) {
+                Log.d(TAG, "Timeline of " + username + " is not complete yet, reading followed participants directly");
+                timelineRepository.backfillExistingFollows(username, unused -> Log.d(TAG, "Timeline of " + username + " is complete"),
+                        e -> Log.e(TAG, "Failed to backfill timeline of " + username, e));
+            }
+            onStateListener.onSuccess(complete);
+        }, e -> {
+            Log.e(TAG, "Failed to read timeline state, falling back to following queries", e);
+            onStateListener.onSuccess(false);
+        });
+    }
 
-                                synchronized (allMoodEvents) {
-                                    allMoodEvents.addAll(moodEvents);
-                                }
+    /**
+     * Listener for the live home feed
+     */
+    public interface HomeFeedListener {
+        /**
+         * Called with the minimal changes since the previous call and the full visible feed after them.
+         * The first call always happens, even if the feed is empty.
+         *
+         * @param changes the sequential edits to apply to the previously delivered feed
+         * @param events  the visible feed after the changes, newest first
+         */
+        void onFeedChanged(@NonNull List<MoodEventFeedModel.FeedChange> changes, @NonNull List<MoodEvent> events);
+
+        /**
+         * Called when a snapshot listener fails
+         *
+         * @param e the listener error
+         */
+        void onFeedError(@NonNull Exception e);
+    }
 
-                                if (queriesRemaining.decrementAndGet() == 0) {
-                                    followingMoodsCache.put(username, new ArrayList<>(allMoodEvents));
-                                    lastCacheUpdateTime = System.currentTimeMillis();
-                                    onSuccessListener.onSuccess(allMoodEvents);
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "Failed to fetch public events for " + followingUsername + " from CACHE: " + e.getMessage());
+    /**
+     * Listens for the home feed of the given participant in real time.
+     * <p>
+     * With the fan-out timeline enabled and complete this is a single snapshot listener on the participant's timeline;
+     * otherwise there is one listener per {@link #MAX_IN_QUERY_SIZE} followed participants. While the timeline listener
+     * has only delivered empty snapshots, e.g. offline with nothing cached, the following listeners fill the feed until
+     * the timeline has events. Only the
+     * {@link DocumentChange} deltas of each snapshot are applied to a sorted {@link MoodEventFeedModel}.
+     * The caller must remove the returned registration when it stops showing the feed.
+     *
+     * @param username The username of the participant whose home feed is listened to
+     * @param listener The listener to be called with each change set
+     * @return the registration that removes every underlying snapshot listener
+     */
+    public ListenerRegistration listenForHomeFeed(@NonNull String username, @NonNull HomeFeedListener listener) {
+        MoodEventFeedModel model = new MoodEventFeedModel(MAX_EVENTS_PER_USER);
+        FeedSubscription subscription = new FeedSubscription();
+        DocumentChangesListener changesListener = documentChanges ->
+                deliverFeedChanges(new ArrayList<>(), documentChanges, model, subscription, listener);
+
+        if (!timelineRepository.isFanOutEnabled()) {
+            listenForFollowingChunks(username, subscription, changesListener, listener);
+            return subscription;
+        }
+        withTimelineState(username, complete -> {
+            if (complete) {
+                listenForTimeline(username, model, subscription, changesListener, listener);
+            } else {
+                listenForFollowingChunks(username, subscription, changesListener, listener);
+            }
+        });
+        return subscription;
+    }
 
-                                if (queriesRemaining.decrementAndGet() == 0) {
-                                    onSuccessListener.onSuccess(allMoodEvents);
-                                }
-                            });
+    /**
+     * Attaches a snapshot listener to the participant's timeline. An empty snapshot before anything was delivered,
+     * from the cache or the server, attaches the following listeners instead; the first timeline snapshot with events
+     * removes them and replaces their events with the timeline's.
+     */
+    private void listenForTimeline(@NonNull String username, @NonNull MoodEventFeedModel model, @NonNull FeedSubscription subscription, @NonNull DocumentChangesListener changesListener, @NonNull HomeFeedListener listener) {
+        FeedSubscription fallback = new FeedSubscription();
+        boolean[] usingFallback = {false};
+        subscription.add(timelineRepository.buildTimelineQuery(username, TIMELINE_PAGE_SIZE).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                onFeedListenerError(error, listener);
+                return;
+            }
+            if (snapshot == null) {
+                return;
+            }
+            if (snapshot.isEmpty() && (usingFallback[0] || !subscription.hasDelivered())) {
+                if (!usingFallback[0]) {
+                    Log.d(TAG, "Timeline has no events yet, falling back to following listeners");
+                    usingFallback[0] = true;
+                    subscription.add(fallback);
+                    listenForFollowingChunks(username, fallback, changesListener, listener);
                 }
-            }, onFailureListener);
-        } else {
-            Log.d(TAG, "Device is ONLINE - using DEFAULT source");
+                return;
+            }
+            List<MoodEventFeedModel.FeedChange> changes = new ArrayList<>();
+            if (usingFallback[0]) {
+                // Only empty timeline snapshots were skipped, so this snapshot's changes add every timeline event
+                Log.d(TAG, "Timeline has events, removing following listeners");
+                usingFallback[0] = false;
+                fallback.remove();
+                changes.addAll(model.clear());
+            }
+            deliverFeedChanges(changes, snapshot.getDocumentChanges(), model, subscription, listener);
+        }));
+    }
 
-            participantRepository.fetchFollowing(username, following -> {
-                if (following.isEmpty()) {
-                    onSuccessListener.onSuccess(new ArrayList<>());
-                    return;
-                }
+    /**
+     * Receives the document changes of one snapshot of a live feed query
+     */
+    private interface DocumentChangesListener {
+        void onChanges(@NonNull List<DocumentChange> documentChanges);
+    }
 
-                List<MoodEvent> allMoodEvents = new ArrayList<>();
-                AtomicInteger queriesRemaining = new AtomicInteger(following.size());
-
-                for (String followingUsername : following) {
-                    getMoodEventCollRef()
-                            .whereEqualTo("participantRef", participantRepository.getParticipantRef(followingUsername))
-                            .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC) // Add visibility filter
-                            .orderBy("timestamp", Query.Direction.DESCENDING)
-                            .limit(MAX_EVENTS_PER_USER)
-                            .get(Source.DEFAULT)
-                            .addOnSuccessListener(queryDocumentSnapshots -> {
-                                List<MoodEvent> moodEvents = new ArrayList<>();
-                                for (DocumentSnapshot doc : queryDocumentSnapshots) {
-                                    MoodEvent event = doc.toObject(MoodEvent.class);
-                                    if (event != null) {
-                                        event.setId(doc.getId());
-                                        moodEvents.add(event);
-                                    }
-                                }
+    private static void onFeedListenerError(@NonNull Exception error, @NonNull HomeFeedListener listener) {
+        Log.e(TAG, "Home feed listener failed", error);
+        listener.onFeedError(error);
+    }
 
-                                synchronized (allMoodEvents) {
-                                    allMoodEvents.addAll(moodEvents);
+    /**
+     * Attaches one snapshot listener per chunk of followed participants. Whenever a chunk's snapshot holds its full
+     * limit, every participant of the chunk with fewer than {@link #MAX_EVENTS_PER_USER} events in it gets a listener of
+     * their own, as in {@link #fetchFollowingChunk}. From then on the chunk's removals of that participant's events are
+     * left to their own listener, since the chunk also removes events that only fell out of its limit.
+     */
+    private void listenForFollowingChunks(@NonNull String username, @NonNull FeedSubscription subscription, @NonNull DocumentChangesListener changesListener, @NonNull HomeFeedListener listener) {
+        participantRepository.fetchFollowing(username, following -> {
+            if (following.isEmpty()) {
+                subscription.markDelivered();
+                listener.onFeedChanged(new ArrayList<>(), new ArrayList<>());
+                return;
+            }
+            List<DocumentReference> participantRefs = new ArrayList<>();
+            for (String followingUsername : following) {
+                participantRefs.add(participantRepository.getParticipantRef(followingUsername));
+            }
+            // Paths of the participants with their own listener; only touched on the main thread
+            Set<String> listenedParticipants = new HashSet<>();
+            for (List<DocumentReference> chunk : partition(participantRefs, MAX_IN_QUERY_SIZE)) {
+                subscription.add(buildFollowingChunkQuery(chunk).addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        onFeedListenerError(error, listener);
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+                    List<DocumentChange> documentChanges = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        DocumentReference participantRef = change.getDocument().getDocumentReference("participantRef");
+                        if (change.getType() != DocumentChange.Type.REMOVED || participantRef == null
+                                || !listenedParticipants.contains(participantRef.getPath())) {
+                            documentChanges.add(change);
+                        }
+                    }
+                    changesListener.onChanges(documentChanges);
+                    for (DocumentReference participantRef : underfilledParticipants(chunk, toMoodEvents(snapshot), MAX_EVENTS_PER_USER)) {
+                        if (listenedParticipants.add(participantRef.getPath())) {
+                            subscription.add(buildParticipantFeedQuery(participantRef).addSnapshotListener((participantSnapshot, participantError) -> {
+                                if (participantError != null) {
+                                    onFeedListenerError(participantError, listener);
+                                } else if (participantSnapshot != null) {
+                                    changesListener.onChanges(participantSnapshot.getDocumentChanges());
                                 }
+                            }));
+                        }
+                    }
+                }));
+            }
+        }, listener::onFeedError);
+    }
 
-                                if (queriesRemaining.decrementAndGet() == 0) {
-                                    followingMoodsCache.put(username, new ArrayList<>(allMoodEvents));
-                                    lastCacheUpdateTime = System.currentTimeMillis();
-                                    onSuccessListener.onSuccess(allMoodEvents);
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.d(TAG, "Server fetch failed for " + followingUsername + ", falling back to cache");
-
-                                getMoodEventCollRef()
-                                        .whereEqualTo("participantRef", participantRepository.getParticipantRef(followingUsername))
-                                        .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC) // Add visibility filter
-                                        .orderBy("timestamp", Query.Direction.DESCENDING)
-                                        .limit(MAX_EVENTS_PER_USER)
-                                        .get(Source.CACHE)
-                                        .addOnSuccessListener(cacheResult -> {
-                                            List<MoodEvent> moodEvents = new ArrayList<>();
-                                            for (DocumentSnapshot doc : cacheResult) {
-                                                MoodEvent event = doc.toObject(MoodEvent.class);
-                                                if (event != null) {
-                                                    event.setId(doc.getId());
-                                                    moodEvents.add(event);
-                                                }
-                                            }
-
-                                            synchronized (allMoodEvents) {
-                                                allMoodEvents.addAll(moodEvents);
-                                            }
-
-                                            if (queriesRemaining.decrementAndGet() == 0) {
-                                                followingMoodsCache.put(username, new ArrayList<>(allMoodEvents));
-                                                lastCacheUpdateTime = System.currentTimeMillis();
-                                                onSuccessListener.onSuccess(allMoodEvents);
-                                            }
-                                        })
-                                        .addOnFailureListener(cacheError -> {
-                                            Log.e(TAG, "Cache fallback also failed for " + followingUsername, cacheError);
-
-                                            if (queriesRemaining.decrementAndGet() == 0) {
-                                                onSuccessListener.onSuccess(allMoodEvents);
-                                            }
-                                        });
-                            });
+    /**
+     * Applies the document changes of one snapshot to the model and notifies the listener if anything visible changed
+     *
+     * @param changes         changes already made to the model, delivered before the snapshot's
+     * @param documentChanges the document changes of the snapshot
+     */
+    private static void deliverFeedChanges(@NonNull List<MoodEventFeedModel.FeedChange> changes, @NonNull List<DocumentChange> documentChanges, @NonNull MoodEventFeedModel model, @NonNull FeedSubscription subscription, @NonNull HomeFeedListener listener) {
+        List<MoodEvent> upserted = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        for (DocumentChange change : documentChanges) {
+            DocumentSnapshot doc = change.getDocument();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removedIds.add(doc.getId());
+            } else {
+                MoodEvent event = doc.toObject(MoodEvent.class);
+                if (event != null) {
+                    event.setId(doc.getId());
+                    upserted.add(event);
                 }
-            }, onFailureListener);
+            }
+        }
+        changes.addAll(model.apply(upserted, removedIds));
+        if (!changes.isEmpty() || !subscription.hasDelivered()) {
+            subscription.markDelivered();
+            listener.onFeedChanged(changes, model.getVisibleEvents());
         }
     }
 
+    /**
+     * A registration that owns every snapshot listener of one live feed, including listeners attached after
+     * asynchronous lookups. Listeners attached after {@link #remove()} are removed immediately.
+     */
+    private static class FeedSubscription implements ListenerRegistration {
+        private final List<ListenerRegistration> registrations = new ArrayList<>();
+        private boolean removed = false;
+        private boolean delivered = false;
+
+        synchronized void add(@NonNull ListenerRegistration registration) {
+            if (removed) {
+                registration.remove();
+            } else {
+                registrations.add(registration);
+            }
+        }
+
+        synchronized boolean hasDelivered() {
+            return delivered;
+        }
+
+        synchronized void markDelivered() {
+            delivered = true;
+        }
+
+        @Override
+        public synchronized void remove() {
+            removed = true;
+            for (ListenerRegistration registration : registrations) {
+                registration.remove();
+            }
+            registrations.clear();
+        }
+    }
 
     /**
-     * Fetches all mood events in the radius of the given location that the participant is following
-     *
-     * <p>
-     * Referenced <a href="https://firebase.google.com/docs/firestore/solutions/geoqueries#query_geohashes">Firebase Geo-hashes</a>
-     * </p>
+     * Returns the latency recorder for the chunked following feed queries, one sample per chunk
      *
-     * @param username          username of the participant
-     * @param location          current location of the user
-     * @param radius            radius of the area to search for mood events, in kilometers
-     * @param onSuccessListener listener to be called when the mood events are successfully fetched
-     * @param onFailureListener listener to be called when the mood events cannot be fetched
+     * @return the latency recorder for following feed chunks
      */
-    public void fetchForInRadiusEventsFromFollowing(@NonNull String username, @NonNull Location location, double radius, @NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener, OnFailureListener onFailureListener) {
-        GeoLocation center = new GeoLocation(location.getLatitude(), location.getLongitude());
-        // Query all the bounds for the given location and radius
-        List<GeoQueryBounds> bounds = GeoFireUtils.getGeoHashQueryBounds(center, radius * 1000);
-        final List<Task<QuerySnapshot>> tasks = new ArrayList<>();
-        for (GeoQueryBounds b : bounds) {
-            Query q = getMoodEventCollRef().whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC).orderBy("geoInfo.geohash").startAt(b.startHash).endAt(b.endHash);
-            tasks.add(q.get());
-        }
+    public LatencyRecorder getFeedChunkLatency() {
+        return feedChunkLatency;
+    }
 
-        // Collect all the query results together
-        Tasks.whenAllComplete(tasks).addOnCompleteListener(new OnCompleteListener<List<Task<?>>>() {
-            @Override
-            public void onComplete(@NonNull Task<List<Task<?>>> t) {
-                if (!t.isSuccessful()) {
-                    onFailureListener.onFailure(t.getException() != null ? t.getException() : new Exception("Failed to fetch mood events in radius"));
+    /**
+     * Runs the chunk queries with at most {@link #MAX_CONCURRENT_CHUNKS} in flight and reports the combined events
+     * once every chunk has completed. Chunks that fail on both the requested source and the cache contribute no events.
+     *
+     * @param chunks             The participant reference chunks, each small enough for a single whereIn query
+     * @param source             The source to query first
+     * @param onCompleteListener The listener to be called with all fetched events
+     */
+    private void fetchFollowingChunks(@NonNull List<List<DocumentReference>> chunks, @NonNull Source source, @NonNull OnSuccessListener<List<MoodEvent>> onCompleteListener) {
+        List<MoodEvent> allMoodEvents = new ArrayList<>();
+        AtomicInteger nextChunk = new AtomicInteger(0);
+        AtomicInteger chunksRemaining = new AtomicInteger(chunks.size());
+
+        Runnable[] launchNext = new Runnable[1];
+        launchNext[0] = () -> {
+            int index = nextChunk.getAndIncrement();
+            if (index >= chunks.size()) {
+                return;
+            }
+            List<DocumentReference> chunk = chunks.get(index);
+            long startTime = System.currentTimeMillis();
+            fetchFollowingChunk(chunk, source, moodEvents -> {
+                feedChunkLatency.record(System.currentTimeMillis() - startTime);
+                synchronized (allMoodEvents) {
+                    allMoodEvents.addAll(moodEvents);
                 }
-                List<MoodEvent> matchingDocs = new ArrayList<>();
-                for (Task<QuerySnapshot> task : tasks) {
-                    QuerySnapshot snap = task.getResult();
-                    for (DocumentSnapshot doc : snap.getDocuments()) {
-                        double lat = doc.getDouble("geoInfo.latitude");
-                        double lng = doc.getDouble("geoInfo.longitude");
-
-                        GeoLocation docLocation = new GeoLocation(lat, lng);
-                        double distanceInM = GeoFireUtils.getDistanceBetween(docLocation, center);
-
-                        if (distanceInM <= radius * 1000 && !Objects.requireNonNull(doc.get("participantRef")).equals(participantRepository.getParticipantRef(username))) {
-                            Log.d(TAG, "Went inside loop");
-                            matchingDocs.add(doc.toObject(MoodEvent.class));
-                        }
-                    }
+                if (chunksRemaining.decrementAndGet() == 0) {
+                    onCompleteListener.onSuccess(allMoodEvents);
+                } else {
+                    launchNext[0].run();
                 }
+            });
+        };
 
-                participantRepository.fetchFollowing(username, following -> {
-                    Set<String> followingSet = new HashSet<>(following);
-                    List<MoodEvent> filteredByFollowing = new ArrayList<>();
-                    for (MoodEvent event : matchingDocs) {
-                        if (followingSet.contains(event.getParticipantRef().getId())) {
-                            filteredByFollowing.add(event);
-                        }
-                    }
+        int initial = Math.min(MAX_CONCURRENT_CHUNKS, chunks.size());
+        for (int i = 0; i < initial; i++) {
+            launchNext[0].run();
+        }
+    }
 
-                    Map<String, MoodEvent> mostRecentByUser = new HashMap<>();
-                    for (MoodEvent event : filteredByFollowing) {
-                        String user = event.getParticipantRef().getId();
-                        if (!mostRecentByUser.containsKey(user) || event.getTimestamp().after(mostRecentByUser.get(user).getTimestamp())) {
-                            mostRecentByUser.put(user, event);
-                        }
+    /**
+     * Fetches the public events of one chunk of participants, falling back to the cache if the server query fails.
+     * If the chunk returns its full limit, the participants it returned too few events for are read on their own, see
+     * {@link #underfilledParticipants}.
+     *
+     * @param chunk              The participant references in this chunk
+     * @param source             The source to query first
+     * @param onCompleteListener The listener to be called with the chunk's events, empty if every attempt failed
+     */
+    private void fetchFollowingChunk(@NonNull List<DocumentReference> chunk, @NonNull Source source, @NonNull OnSuccessListener<List<MoodEvent>> onCompleteListener) {
+        OnSuccessListener<List<MoodEvent>> chunkListener = moodEvents -> fetchUnderfilledParticipants(chunk, moodEvents, source, onCompleteListener);
+        buildFollowingChunkQuery(chunk).get(source)
+                .addOnSuccessListener(queryDocumentSnapshots -> chunkListener.onSuccess(toMoodEvents(queryDocumentSnapshots)))
+                .addOnFailureListener(e -> {
+                    if (source == Source.CACHE) {
+                        Log.e(TAG, "Failed to fetch public events for " + chunk.size() + " users from CACHE: " + e.getMessage());
+                        onCompleteListener.onSuccess(new ArrayList<>());
+                        return;
                     }
-//                    onSuccessListener.onSuccess(new ArrayList<>(mostRecentByUser.values()));
-                    onSuccessListener.onSuccess(mostRecentByUser);
-                }, onFailureListener);
+                    Log.d(TAG, "Server fetch failed for chunk of " + chunk.size() + " users, falling back to cache");
+                    buildFollowingChunkQuery(chunk).get(Source.CACHE)
+                            .addOnSuccessListener(cacheResult -> chunkListener.onSuccess(toMoodEvents(cacheResult)))
+                            .addOnFailureListener(cacheError -> {
+                                Log.e(TAG, "Cache fallback also failed for chunk of " + chunk.size() + " users", cacheError);
+                                onCompleteListener.onSuccess(new ArrayList<>());
+                            });
+                });
+    }
+
+    /**
+     * Adds the events of the participants a full chunk returned too few events for, each read with its own query from
+     * the same source. Participants whose query fails keep the events the chunk returned for them.
+     *
+     * @param chunk              The participant references in the chunk
+     * @param chunkEvents        The events the chunk query returned
+     * @param source             The source the chunk was read from
+     * @param onCompleteListener The listener to be called with the chunk's events and the follow-up events
+     */
+    private void fetchUnderfilledParticipants(@NonNull List<DocumentReference> chunk, @NonNull List<MoodEvent> chunkEvents, @NonNull Source source, @NonNull OnSuccessListener<List<MoodEvent>> onCompleteListener) {
+        List<DocumentReference> underfilled = underfilledParticipants(chunk, chunkEvents, MAX_EVENTS_PER_USER);
+        if (underfilled.isEmpty()) {
+            onCompleteListener.onSuccess(chunkEvents);
+            return;
+        }
+        Log.d(TAG, "Chunk of " + chunk.size() + " users returned its full limit, reading " + underfilled.size() + " of them separately");
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (DocumentReference participantRef : underfilled) {
+            queries.add(buildParticipantFeedQuery(participantRef).get(source));
+        }
+        Tasks.whenAllComplete(queries).addOnCompleteListener(done -> {
+            List<MoodEvent> moodEvents = new ArrayList<>(chunkEvents);
+            for (Task<QuerySnapshot> query : queries) {
+                if (query.isSuccessful()) {
+                    addMissingEvents(moodEvents, toMoodEvents(query.getResult()));
+                } else {
+                    Log.e(TAG, "Failed to fetch public events of a followed participant", query.getException());
+                }
             }
+            onCompleteListener.onSuccess(moodEvents);
         });
     }
 
+    /**
+     * Returns the participants of a chunk that the chunk's events may under-represent. When a chunk query returns its
+     * full limit, a few very active participants can have used it all up, so every participant with fewer than
+     * {@code perUser} of the events needs a query of their own. A chunk below its limit returned everything.
+     *
+     * @param chunk       The participant references in the chunk
+     * @param chunkEvents The events the chunk query returned
+     * @param perUser     The number of events wanted per participant
+     * @return the participants to query on their own, in chunk order
+     */
+    static List<DocumentReference> underfilledParticipants(@NonNull List<DocumentReference> chunk, @NonNull List<MoodEvent> chunkEvents, int perUser) {
+        List<DocumentReference> underfilled = new ArrayList<>();
+        if (chunkEvents.size() < (long) chunk.size() * perUser) {
+            return underfilled;
+        }
+        Map<String, Integer> eventsPerUser = new HashMap<>();
+        for (MoodEvent event : chunkEvents) {
+            if (event.getParticipantRef() != null) {
+                eventsPerUser.merge(event.getParticipantRef().getPath(), 1, Integer::sum);
+            }
+        }
+        for (DocumentReference participantRef : chunk) {
+            if (eventsPerUser.getOrDefault(participantRef.getPath(), 0) < perUser) {
+                underfilled.add(participantRef);
+            }
+        }
+        return underfilled;
+    }
+
+    /**
+     * Adds the events whose ids are not in the list yet
+     *
+     * @param moodEvents The events to add to
+     * @param more       The events to add
+     */
+    static void addMissingEvents(@NonNull List<MoodEvent> moodEvents, @NonNull List<MoodEvent> more) {
+        Set<String> ids = new HashSet<>();
+        for (MoodEvent event : moodEvents) {
+            ids.add(event.getId());
+        }
+        for (MoodEvent event : more) {
+            if (ids.add(event.getId())) {
+                moodEvents.add(event);
+            }
+        }
+    }
+
+    /**
+     * Builds the query for the most recent public events of one participant, for chunks whose limit the participant
+     * was crowded out of
+     *
+     * @param participantRef The participant reference
+     * @return the query for the participant
+     */
+    private Query buildParticipantFeedQuery(@NonNull DocumentReference participantRef) {
+        return getMoodEventCollRef()
+                .whereEqualTo("participantRef", participantRef)
+                .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(MAX_EVENTS_PER_USER);
+    }
+
+    /**
+     * Builds the query for the most recent public events of a chunk of participants.
+     * The limit allows every participant in the chunk {@link #MAX_EVENTS_PER_USER} events; when very active users use
+     * it up, the participants they crowded out are read with {@link #buildParticipantFeedQuery}.
+     *
+     * @param chunk The participant references in this chunk, at most {@link #MAX_IN_QUERY_SIZE}
+     * @return the query for the chunk
+     */
+    private Query buildFollowingChunkQuery(@NonNull List<DocumentReference> chunk) {
+        return getMoodEventCollRef()
+                .whereIn("participantRef", chunk)
+                .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit((long) chunk.size() * MAX_EVENTS_PER_USER);
+    }
+
+    /**
+     * Converts a query snapshot into mood events with their document ids set
+     *
+     * @param querySnapshot The query snapshot to convert
+     * @return the mood events in the snapshot
+     */
+    private static List<MoodEvent> toMoodEvents(@NonNull QuerySnapshot querySnapshot) {
+        List<MoodEvent> moodEvents = new ArrayList<>();
+        for (DocumentSnapshot doc : querySnapshot) {
+            MoodEvent event = doc.toObject(MoodEvent.class);
+            if (event != null) {
+                event.setId(doc.getId());
+                moodEvents.add(event);
+            }
+        }
+        return moodEvents;
+    }
+
+    /**
+     * Splits a list into consecutive chunks of at most the given size
+     *
+     * @param items     The list to split
+     * @param chunkSize The maximum size of each chunk
+     * @return the chunks, in order
+     */
+    static <T> List<List<T>> partition(@NonNull List<T> items, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += chunkSize) {
+            chunks.add(new ArrayList<>(items.subList(i, Math.min(items.size(), i + chunkSize))));
+        }
+        return chunks;
+    }
+
+    /**
+     * Keeps only the most recent events of each participant
+     *
+     * @param events  The events to trim, in any order
+     * @param perUser The maximum number of events to keep per participant
+     * @return the trimmed events, newest first
+     */
+    static List<MoodEvent> trimToMostRecentPerUser(@NonNull List<MoodEvent> events, int perUser) {
+        List<MoodEvent> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.reverseOrder());
+        Map<String, Integer> keptPerUser = new HashMap<>();
+        List<MoodEvent> trimmed = new ArrayList<>();
+        for (MoodEvent event : sorted) {
+            String user = event.getParticipantRef() != null ? event.getParticipantRef().getPath() : "";
+            int kept = keptPerUser.getOrDefault(user, 0);
+            if (kept < perUser) {
+                keptPerUser.put(user, kept + 1);
+                trimmed.add(event);
+            }
+        }
+        return trimmed;
+    }
+
+
+    /**
+     * Fetches the latest located PUBLIC mood event of each participant the given participant is following, keeping
+     * those within the radius of the given location. Reads at most one event per followed participant from
+     * {@link MoodLocationRepository}, instead of every public event in the area.
+     *
+     * @param username          username of the participant
+     * @param location          current location of the user
+     * @param radius            radius of the area to search for mood events, in kilometers
+     * @param onSuccessListener listener to be called with the mood events, keyed by username
+     * @param onFailureListener listener to be called when the mood events cannot be fetched
+     */
+    public void fetchForInRadiusEventsFromFollowing(@NonNull String username, @NonNull Location location, double radius, @NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener, OnFailureListener onFailureListener) {
+        participantRepository.fetchFollowing(username, following ->
+                        moodLocationRepository.fetchLatestInRadius(following, location, radius, onSuccessListener, onFailureListener),
+                onFailureListener);
+    }
+
     /**
      * Adds a mood event to the database
      *
@@ -362,7 +819,13 @@ public class MoodEventRepository {
      */
     public void addMoodEvent(@NonNull MoodEvent moodEvent, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
         getMoodEventCollRef().document(moodEvent.getId()).set(moodEvent)
-                .addOnSuccessListener(onSuccessListener)
+                .addOnSuccessListener(aVoid -> {
+                    timelineRepository.fanOutMoodEvent(moodEvent);
+                    moodLocationRepository.onMoodEventWritten(moodEvent);
+                    MoodAnalyticsRepository.getInstance().onMoodEventWritten(moodEvent);
+                    MoodEventStore.getInstance().put(moodEvent);
+                    onSuccessListener.onSuccess(aVoid);
+                })
                 .addOnFailureListener(onFailureListener != null ? onFailureListener : e -> Log.e(TAG, "Failed to add mood event: " + moodEvent, e));
     }
 
@@ -375,7 +838,13 @@ public class MoodEventRepository {
      */
     public void deleteMoodEvent(@NonNull MoodEvent moodEvent, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
         getMoodEventCollRef().document(moodEvent.getId()).delete()
-                .addOnSuccessListener(onSuccessListener)
+                .addOnSuccessListener(aVoid -> {
+                    timelineRepository.removeFromTimelines(moodEvent);
+                    moodLocationRepository.onMoodEventDeleted(moodEvent);
+                    MoodAnalyticsRepository.getInstance().onMoodEventDeleted(moodEvent);
+                    MoodEventStore.getInstance().remove(moodEvent.getId());
+                    onSuccessListener.onSuccess(aVoid);
+                })
                 .addOnFailureListener(onFailureListener != null ? onFailureListener : e -> Log.e(TAG, "Failed to delete mood event: " + moodEvent, e));
     }
 
@@ -393,7 +862,13 @@ public class MoodEventRepository {
             return;
         }
         getMoodEventCollRef().document(moodEvent.getId()).set(moodEvent)
-                .addOnSuccessListener(onSuccessListener)
+                .addOnSuccessListener(aVoid -> {
+                    timelineRepository.fanOutMoodEvent(moodEvent);
+                    moodLocationRepository.onMoodEventWritten(moodEvent);
+                    MoodAnalyticsRepository.getInstance().onMoodEventWritten(moodEvent);
+                    MoodEventStore.getInstance().put(moodEvent);
+                    onSuccessListener.onSuccess(aVoid);
+                })
                 .addOnFailureListener(onFailureListener != null ? onFailureListener : e -> Log.e(TAG, "Failed to update mood event: " + moodEvent.getId(), e));
     }
 
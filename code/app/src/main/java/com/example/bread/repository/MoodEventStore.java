@@ -0,0 +1,128 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.utils.CoalescingCache;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.Collection;
+
+/**
+ * MoodEventStore - Repository
+ * <p>
+ * Role / Purpose
+ * Process-wide store of the mood events screens have loaded, keyed by event id. Screens that open another screen for an
+ * event put the event here and pass only its id as a fragment argument, instead of serializing the whole event into the
+ * argument bundle; the opened screen reads the same instance back by id. If the event is no longer held, for example
+ * after the process was recreated, it is loaded again through a {@link Loader} and concurrent loads of the same id are
+ * coalesced. {@link MoodEventRepository} keeps the store in step with its own writes.
+ * <p>
+ * Design Patterns
+ * Singleton Pattern: One store is shared by every screen and repository of the process.
+ * Caching Pattern: A {@link CoalescingCache} without expiry; the least recently used event is evicted once the store
+ * is full.
+ * <p>
+ * Outstanding Issues
+ * - Stored events are shared instances; a screen that edits one changes it for every screen that reads it.
+ * - Events changed on another device stay stale until they are written here or evicted.
+ */
+
+public class MoodEventStore {
+
+    /**
+     * Loads a mood event that is not in the store
+     */
+    public interface Loader extends CoalescingCache.Loader<String, MoodEvent> {
+    }
+
+    private static final int DEFAULT_MAX_SIZE = 500;
+
+    private static MoodEventStore instance;
+
+    private final CoalescingCache<String, MoodEvent> events;
+
+    public MoodEventStore(int maxSize) {
+        this.events = new CoalescingCache<>(maxSize, CoalescingCache.NO_EXPIRY, System::currentTimeMillis);
+    }
+
+    /**
+     * @return the process-wide mood event store
+     */
+    public static synchronized MoodEventStore getInstance() {
+        if (instance == null) {
+            instance = new MoodEventStore(DEFAULT_MAX_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Stores a mood event, replacing any event with the same id
+     *
+     * @param moodEvent the event; ignored if it has no id
+     */
+    public void put(@NonNull MoodEvent moodEvent) {
+        if (moodEvent.getId() != null) {
+            events.put(moodEvent.getId(), moodEvent);
+        }
+    }
+
+    /**
+     * Stores every event of a collection, replacing any event with the same id
+     *
+     * @param moodEvents the events
+     */
+    public void putAll(@NonNull Collection<MoodEvent> moodEvents) {
+        for (MoodEvent moodEvent : moodEvents) {
+            put(moodEvent);
+        }
+    }
+
+    /**
+     * Returns a stored mood event without loading it
+     *
+     * @param id the id of the event
+     * @return the stored event, or null
+     */
+    @Nullable
+    public MoodEvent get(@NonNull String id) {
+        return events.getIfPresent(id);
+    }
+
+    /**
+     * Delivers a mood event from the store, or loads it. A stored event is delivered synchronously; otherwise the
+     * request joins the load already in flight for the same id, or starts one with the given loader. An event written
+     * while it is loading is delivered instead of the loaded one.
+     *
+     * @param id                the id of the event
+     * @param loader            loads the event if it is not stored
+     * @param onSuccessListener called with the event, or null if it does not exist
+     * @param onFailureListener called if the load fails
+     */
+    public void fetch(@NonNull String id, @NonNull Loader loader, @NonNull OnSuccessListener<MoodEvent> onSuccessListener,
+                      @NonNull OnFailureListener onFailureListener) {
+        events.get(id, loader, onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Drops a mood event, including any load in flight
+     *
+     * @param id the id of the event
+     */
+    public void remove(@NonNull String id) {
+        events.invalidate(id);
+    }
+
+    /**
+     * Drops every mood event, for example when the user signs out
+     */
+    public void clear() {
+        events.clear();
+    }
+
+    public int size() {
+        return events.size();
+    }
+}
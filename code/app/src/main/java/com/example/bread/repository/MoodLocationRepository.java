@@ -0,0 +1,311 @@
+package com.example.bread.repository;
+
+import android.location.Location;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.MoodEvent;
+import com.firebase.geofire.GeoFireUtils;
+import com.firebase.geofire.GeoLocation;
+import com.firebase.geofire.GeoQueryBounds;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MoodLocationRepository - Repository
+ * <p>
+ * Role / Purpose
+ * Keeps the latest located PUBLIC mood event of every participant in `moodLocations/{username}`, one document per
+ * participant, and answers the map's "followed users near me" query from it. The query combines a `whereIn` on the
+ * followed participants with the geohash ranges of the search area, so it reads at most one document per followed
+ * participant no matter how many other people post in the same area.
+ * The entries hold what the map shows (mood, reason, location, time) and leave out the attached image.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Encapsulates the location collection and its geo queries.
+ * Materialized View: Maintained on every mood event write so the map never scans `moodEvents`.
+ * Observer Pattern: Uses success and failure listeners to report results asynchronously.
+ * <p>
+ * Outstanding Issues
+ * - Participants whose last located event predates this collection get their entry the first time a radius query in
+ *   this process includes them, which costs one read per {@link MoodEventRepository#MAX_IN_QUERY_SIZE} followed
+ *   participants plus one recent-events scan per participant without an entry.
+ * - Needs a composite index on `participantRef` and `geoInfo.geohash` in production.
+ * - The entry is maintained by the client after the mood event write; a crash in between leaves it stale until the next edit.
+ */
+
+public class MoodLocationRepository {
+    private static final String TAG = "MoodLocationRepository";
+    static final String MOOD_LOCATION_COLLECTION = "moodLocations";
+    // Recent public events scanned when the latest located one has to be found again
+    private static final int REFRESH_SCAN_LIMIT = 20;
+
+    // Participants known to have an up to date entry, or none to make, so their entry is not looked for again
+    private static final Set<String> checkedParticipants = ConcurrentHashMap.newKeySet();
+
+    private final FirebaseService firebaseService;
+
+    public MoodLocationRepository() {
+        firebaseService = new FirebaseService();
+    }
+
+    public MoodLocationRepository(FirebaseService firebaseService) {
+        this.firebaseService = firebaseService;
+    }
+
+    private CollectionReference getMoodLocationCollRef() {
+        return firebaseService.getDb().collection(MOOD_LOCATION_COLLECTION);
+    }
+
+    /**
+     * Returns whether an event can be the map entry of its author: it is PUBLIC and has a location
+     */
+    static boolean isLocatedPublicEvent(@NonNull MoodEvent moodEvent) {
+        return moodEvent.getVisibility() == MoodEvent.Visibility.PUBLIC
+                && moodEvent.getParticipantRef() != null
+                && moodEvent.getGeoInfo() != null
+                && moodEvent.getGeoInfo().get("geohash") != null;
+    }
+
+    /**
+     * Builds the stored entry for an event; a null timestamp is an event just added, stamped by the server
+     */
+    static Map<String, Object> toEntry(@NonNull MoodEvent moodEvent) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", moodEvent.getId());
+        entry.put("title", moodEvent.getTitle());
+        entry.put("reason", moodEvent.getReason());
+        entry.put("timestamp", moodEvent.getTimestamp() != null ? moodEvent.getTimestamp() : FieldValue.serverTimestamp());
+        entry.put("geoInfo", moodEvent.getGeoInfo());
+        entry.put("participantRef", moodEvent.getParticipantRef());
+        entry.put("emotionalState", moodEvent.getEmotionalState() != null ? moodEvent.getEmotionalState().name() : null);
+        entry.put("socialSituation", moodEvent.getSocialSituation() != null ? moodEvent.getSocialSituation().name() : null);
+        entry.put("visibility", moodEvent.getVisibility().name());
+        entry.put("attachedImageThumbnail", moodEvent.getAttachedImageThumbnail());
+        return entry;
+    }
+
+    /**
+     * Updates the author's entry after a mood event was added or updated. A newer located PUBLIC event replaces the
+     * entry; an edit of the event that is currently the entry re-derives it, since the edit may have removed the
+     * location, made the event private or moved its timestamp.
+     *
+     * @param moodEvent The mood event that was written
+     */
+    public void onMoodEventWritten(@NonNull MoodEvent moodEvent) {
+        if (moodEvent.getParticipantRef() == null || moodEvent.getId() == null) {
+            return;
+        }
+        String username = moodEvent.getParticipantRef().getId();
+        DocumentReference entryRef = getMoodLocationCollRef().document(username);
+        boolean located = isLocatedPublicEvent(moodEvent);
+
+        firebaseService.getDb().runTransaction((Transaction.Function<Boolean>) transaction -> {
+            DocumentSnapshot current = transaction.get(entryRef);
+            if (current.exists() && moodEvent.getId().equals(current.getString("id"))) {
+                return true;
+            }
+            Date currentTimestamp = current.exists() ? current.getDate("timestamp") : null;
+            boolean newer = currentTimestamp == null || moodEvent.getTimestamp() == null
+                    || !moodEvent.getTimestamp().before(currentTimestamp);
+            if (located && newer) {
+                transaction.set(entryRef, toEntry(moodEvent));
+            }
+            return false;
+        })
+                .addOnSuccessListener(needsRefresh -> {
+                    if (Boolean.TRUE.equals(needsRefresh)) {
+                        refreshLatestLocation(username);
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to update map entry of " + username, e));
+    }
+
+    /**
+     * Updates the author's entry after a mood event was deleted
+     *
+     * @param moodEvent The mood event that was deleted
+     */
+    public void onMoodEventDeleted(@NonNull MoodEvent moodEvent) {
+        if (moodEvent.getParticipantRef() == null || moodEvent.getId() == null) {
+            return;
+        }
+        String username = moodEvent.getParticipantRef().getId();
+        getMoodLocationCollRef().document(username).get()
+                .addOnSuccessListener(current -> {
+                    if (current.exists() && moodEvent.getId().equals(current.getString("id"))) {
+                        refreshLatestLocation(username);
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to read map entry of " + username, e));
+    }
+
+    /**
+     * Finds the participant's latest located PUBLIC event in `moodEvents` and stores it as their entry, or removes the
+     * entry if they have none among their recent events
+     *
+     * @param username The username of the participant
+     */
+    public void refreshLatestLocation(@NonNull String username) {
+        refreshEntry(username).addOnFailureListener(e -> Log.e(TAG, "Failed to refresh map entry of " + username, e));
+    }
+
+    private Task<Void> refreshEntry(@NonNull String username) {
+        DocumentReference participantRef = firebaseService.getDb().collection("participants").document(username);
+        return firebaseService.getDb().collection("moodEvents")
+                .whereEqualTo("participantRef", participantRef)
+                .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(REFRESH_SCAN_LIMIT)
+                .get()
+                .continueWithTask(task -> {
+                    MoodEvent latest = null;
+                    for (DocumentSnapshot doc : task.getResult()) {
+                        MoodEvent event = doc.toObject(MoodEvent.class);
+                        if (event != null && isLocatedPublicEvent(event)) {
+                            event.setId(doc.getId());
+                            latest = event;
+                            break;
+                        }
+                    }
+                    DocumentReference entryRef = getMoodLocationCollRef().document(username);
+                    return latest != null ? entryRef.set(toEntry(latest)) : entryRef.delete();
+                });
+    }
+
+    /**
+     * Creates the entries of followed participants that have none yet, e.g. because their last located event predates
+     * this collection. Participants are only looked up once per process; a failed lookup is retried next time.
+     *
+     * @param following usernames of the followed participants
+     * @return a task that completes once every missing entry has been refreshed
+     */
+    private Task<Void> backfillMissingEntries(@NonNull List<String> following) {
+        List<String> unchecked = new ArrayList<>();
+        for (String username : following) {
+            if (!checkedParticipants.contains(username)) {
+                unchecked.add(username);
+            }
+        }
+        List<Task<Void>> tasks = new ArrayList<>();
+        for (List<String> chunk : MoodEventRepository.partition(unchecked, MoodEventRepository.MAX_IN_QUERY_SIZE)) {
+            tasks.add(getMoodLocationCollRef().whereIn(FieldPath.documentId(), chunk).get()
+                    .continueWithTask(task -> {
+                        Set<String> existing = new HashSet<>();
+                        for (DocumentSnapshot doc : task.getResult()) {
+                            existing.add(doc.getId());
+                        }
+                        List<Task<Void>> refreshes = new ArrayList<>();
+                        for (String username : chunk) {
+                            if (!existing.contains(username)) {
+                                refreshes.add(refreshEntry(username));
+                            }
+                        }
+                        return Tasks.whenAll(refreshes);
+                    })
+                    .addOnSuccessListener(unused -> checkedParticipants.addAll(chunk)));
+        }
+        return Tasks.whenAll(tasks);
+    }
+
+    /**
+     * Fetches the latest located PUBLIC mood event of each followed participant within the radius.
+     * Issues one query per geohash range per {@link MoodEventRepository#MAX_IN_QUERY_SIZE} followed participants,
+     * after creating the entries of followed participants that have none yet.
+     *
+     * <p>
+     * Referenced <a href="https://firebase.google.com/docs/firestore/solutions/geoqueries#query_geohashes">Firebase Geo-hashes</a>
+     * </p>
+     *
+     * @param following         usernames of the followed participants
+     * @param location          current location of the user
+     * @param radius            radius of the area to search, in kilometers
+     * @param onSuccessListener listener to be called with the events, keyed by username
+     * @param onFailureListener listener to be called when the events cannot be fetched
+     */
+    public void fetchLatestInRadius(@NonNull List<String> following, @NonNull Location location, double radius,
+                                    @NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener, @Nullable OnFailureListener onFailureListener) {
+        if (following.isEmpty()) {
+            onSuccessListener.onSuccess(new HashMap<>());
+            return;
+        }
+        backfillMissingEntries(following).addOnCompleteListener(backfill -> {
+            if (!backfill.isSuccessful()) {
+                // Missing entries only hide participants from the map, so query what exists
+                Log.w(TAG, "Failed to backfill map entries", backfill.getException());
+            }
+            queryLatestInRadius(following, location, radius, onSuccessListener, onFailureListener);
+        });
+    }
+
+    private void queryLatestInRadius(@NonNull List<String> following, @NonNull Location location, double radius,
+                                     @NonNull OnSuccessListener<Map<String, MoodEvent>> onSuccessListener, @Nullable OnFailureListener onFailureListener) {
+        GeoLocation center = new GeoLocation(location.getLatitude(), location.getLongitude());
+        double radiusInM = radius * 1000;
+        List<DocumentReference> participantRefs = new ArrayList<>();
+        for (String username : following) {
+            participantRefs.add(firebaseService.getDb().collection("participants").document(username));
+        }
+
+        List<Task<QuerySnapshot>> tasks = new ArrayList<>();
+        List<GeoQueryBounds> bounds = GeoFireUtils.getGeoHashQueryBounds(center, radiusInM);
+        for (List<DocumentReference> chunk : MoodEventRepository.partition(participantRefs, MoodEventRepository.MAX_IN_QUERY_SIZE)) {
+            for (GeoQueryBounds b : bounds) {
+                tasks.add(getMoodLocationCollRef()
+                        .whereIn("participantRef", chunk)
+                        .orderBy("geoInfo.geohash")
+                        .startAt(b.startHash)
+                        .endAt(b.endHash)
+                        .get());
+            }
+        }
+
+        Tasks.whenAllSuccess(tasks)
+                .addOnSuccessListener(results -> {
+                    Map<String, MoodEvent> latestByUser = new HashMap<>();
+                    for (Object result : results) {
+                        for (DocumentSnapshot doc : (QuerySnapshot) result) {
+                            MoodEvent event = doc.toObject(MoodEvent.class);
+                            if (event == null || event.getGeoInfo() == null) {
+                                continue;
+                            }
+                            // Geohash ranges cover a square around the circle; drop the corners
+                            Object lat = event.getGeoInfo().get("latitude");
+                            Object lng = event.getGeoInfo().get("longitude");
+                            if (!(lat instanceof Number) || !(lng instanceof Number)) {
+                                continue;
+                            }
+                            GeoLocation docLocation = new GeoLocation(((Number) lat).doubleValue(), ((Number) lng).doubleValue());
+                            if (GeoFireUtils.getDistanceBetween(docLocation, center) <= radiusInM) {
+                                latestByUser.put(doc.getId(), event);
+                            }
+                        }
+                    }
+                    onSuccessListener.onSuccess(latestByUser);
+                })
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to fetch mood events in radius", e));
+    }
+}
@@ -0,0 +1,723 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.utils.MoodTimeSeries;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * MoodRollups - Repository
+ * <p>
+ * Role / Purpose
+ * Running aggregates of one participant's mood events, so analytics never have to walk the raw events:
+ * - per day and per month: number of events, sum of mood scores and count of each emotional state,
+ * - the runs of consecutive days with at least one event, for the current and longest streak.
+ * Each event's contribution (its day, state and score) is remembered by id, so adding, editing and deleting an event
+ * adjust the aggregates in place. Days are numbered from 1970-01-01 in the device time zone at the time of recording.
+ * The aggregates can be written to and read from a compact binary stream, summarized into a {@link Summary} with the
+ * streaks, and split into a {@link Series} of days or months over any range for the analytics charts.
+ * <p>
+ * Design Patterns
+ * Model: Plain in-memory state with no Android or Firestore dependencies, so it can be unit tested on the JVM.
+ * <p>
+ * Outstanding Issues
+ * - Events are bucketed by the device time zone when they are recorded; a later time zone change does not move them.
+ * - Not thread safe; {@link MoodAnalyticsRepository} only touches it from its own worker thread.
+ */
+
+public class MoodRollups {
+    static final int FORMAT_VERSION = 2;
+    private static final MoodEvent.EmotionalState[] STATES = MoodEvent.EmotionalState.values();
+    private static final int NO_STATE = -1;
+
+    /**
+     * The aggregates of one day, one month or the whole history
+     */
+    public static final class Bucket {
+        private int count;
+        private long scoreSum;
+        private final int[] emotionCounts = new int[STATES.length];
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getScoreSum() {
+            return scoreSum;
+        }
+
+        public int getEmotionCount(@NonNull MoodEvent.EmotionalState state) {
+            return emotionCounts[state.ordinal()];
+        }
+
+        public float getAverageScore() {
+            return count == 0 ? 0f : (float) scoreSum / count;
+        }
+
+        private void add(int state, int score, int sign) {
+            count += sign;
+            scoreSum += (long) sign * score;
+            if (state != NO_STATE) {
+                emotionCounts[state] += sign;
+            }
+        }
+
+        private void addAll(Bucket other) {
+            count += other.count;
+            scoreSum += other.scoreSum;
+            for (int i = 0; i < emotionCounts.length; i++) {
+                emotionCounts[i] += other.emotionCounts[i];
+            }
+        }
+    }
+
+    private static final class Contribution {
+        final int day;
+        final int state;
+        final int score;
+
+        Contribution(int day, int state, int score) {
+            this.day = day;
+            this.state = state;
+            this.score = score;
+        }
+    }
+
+    private final TreeMap<Integer, Bucket> days = new TreeMap<>();
+    private final TreeMap<Integer, Bucket> months = new TreeMap<>();
+    private final Bucket total = new Bucket();
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    // Runs of consecutive days with events, first day to last day, and how many runs have each length
+    private final TreeMap<Integer, Integer> runs = new TreeMap<>();
+    private final TreeMap<Integer, Integer> runLengths = new TreeMap<>();
+    private boolean complete = false;
+    // The revision last written to the participant's stats document from these rollups, null if never written
+    @Nullable
+    private String revision;
+
+    /**
+     * Returns the day number of an instant in the given time zone, see {@link MoodTimeSeries#dayOf(long, TimeZone)}
+     */
+    public static int dayOf(long millis, @NonNull TimeZone zone) {
+        return MoodTimeSeries.dayOf(millis, zone);
+    }
+
+    /**
+     * Returns the month number of a day, see {@link MoodTimeSeries#monthOfDay(int)}
+     */
+    public static int monthOfDay(int day) {
+        return MoodTimeSeries.monthOfDay(day);
+    }
+
+    /**
+     * Adds an event, replacing the contribution it made before if it was already added
+     *
+     * @param event       the event; ignored if it has no id
+     * @param zone        the time zone that decides its day
+     * @param nowMillis   the time used for an event whose server timestamp has not come back yet
+     * @return whether the aggregates changed
+     */
+    public boolean add(@NonNull MoodEvent event, @NonNull TimeZone zone, long nowMillis) {
+        if (event.getId() == null) {
+            return false;
+        }
+        long millis = event.getTimestamp() != null ? event.getTimestamp().getTime() : nowMillis;
+        int state = event.getEmotionalState() != null ? event.getEmotionalState().ordinal() : NO_STATE;
+        Contribution contribution = new Contribution(dayOf(millis, zone), state, event.getScore());
+        Contribution previous = contributions.get(event.getId());
+        if (previous != null && previous.day == contribution.day && previous.state == contribution.state
+                && previous.score == contribution.score) {
+            return false;
+        }
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        contributions.put(event.getId(), contribution);
+        apply(contribution, 1);
+        return true;
+    }
+
+    /**
+     * Removes the contribution of an event
+     *
+     * @param id the id of the event
+     * @return whether the event had been added
+     */
+    public boolean remove(@Nullable String id) {
+        Contribution previous = id != null ? contributions.remove(id) : null;
+        if (previous == null) {
+            return false;
+        }
+        apply(previous, -1);
+        return true;
+    }
+
+    public boolean contains(@Nullable String id) {
+        return id != null && contributions.containsKey(id);
+    }
+
+    /**
+     * @return the number of events added
+     */
+    public int size() {
+        return contributions.size();
+    }
+
+    /**
+     * @return whether the rollups were built from the full history, not only from events recorded since
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    /**
+     * @return the revision of the stats document these rollups were last mirrored as, or null if they never were
+     */
+    @Nullable
+    public String getRevision() {
+        return revision;
+    }
+
+    public void setRevision(@Nullable String revision) {
+        this.revision = revision;
+    }
+
+    @NonNull
+    public Bucket getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the aggregates of the day, or null if it has no events
+     */
+    @Nullable
+    public Bucket getDay(int day) {
+        return days.get(day);
+    }
+
+    /**
+     * @param month a month number from {@link #monthOfDay(int)}
+     * @return the aggregates of the month, or null if it has no events
+     */
+    @Nullable
+    public Bucket getMonth(int month) {
+        return months.get(month);
+    }
+
+    /**
+     * @return the largest number of consecutive days with events
+     */
+    public int getLongestStreak() {
+        return runLengths.isEmpty() ? 0 : runLengths.lastKey();
+    }
+
+    /**
+     * Returns the number of consecutive days with events up to today, or up to yesterday while today has none yet
+     *
+     * @param today the day number of today
+     */
+    public int getCurrentStreak(int today) {
+        for (int end : new int[]{today, today - 1}) {
+            Map.Entry<Integer, Integer> run = runs.floorEntry(end);
+            if (run != null && run.getValue() >= end) {
+                return end - run.getKey() + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Summarizes the aggregates for the analytics screen
+     *
+     * @param today     the day number of today
+     * @param trendDays the number of days of daily averages to include, ending with today
+     */
+    @NonNull
+    public Summary summarize(int today, int trendDays) {
+        int todayMonth = monthOfDay(today);
+        int firstMonthOfYear = todayMonth - Math.floorMod(todayMonth, 12);
+        int[][] monthEmotionCounts = new int[12][];
+        for (Map.Entry<Integer, Bucket> month : months.subMap(firstMonthOfYear, true, firstMonthOfYear + 11, true).entrySet()) {
+            monthEmotionCounts[month.getKey() - firstMonthOfYear] = month.getValue().emotionCounts.clone();
+        }
+        float[] dailyAverages = new float[trendDays];
+        int firstDay = today - trendDays + 1;
+        for (Map.Entry<Integer, Bucket> day : days.subMap(firstDay, true, today, true).entrySet()) {
+            dailyAverages[day.getKey() - firstDay] = day.getValue().getAverageScore();
+        }
+        return new Summary(getCurrentStreak(today), getLongestStreak(), total.emotionCounts.clone(),
+                Math.floorDiv(todayMonth, 12), monthEmotionCounts, dailyAverages);
+    }
+
+    /**
+     * Sums the events of the days, reading whole months from the month aggregates and only the days of partly covered
+     * months from the day aggregates
+     *
+     * @param firstDay the first day
+     * @param lastDay  the last day, inclusive
+     * @return a new bucket with the sums
+     */
+    @NonNull
+    public Bucket total(int firstDay, int lastDay) {
+        Bucket sum = new Bucket();
+        if (days.isEmpty() || lastDay < firstDay) {
+            return sum;
+        }
+        if (firstDay <= days.firstKey() && lastDay >= days.lastKey()) {
+            sum.addAll(total);
+            return sum;
+        }
+        for (int month = monthOfDay(firstDay); month <= monthOfDay(lastDay); month++) {
+            addMonthPart(sum, month, firstDay, lastDay);
+        }
+        return sum;
+    }
+
+    /**
+     * Splits the days into buckets of one day, for ranges of up to {@link AnalyticsRange#MAX_DAILY_BUCKETS} days, or of
+     * one month; the first and last month only count the days within the range
+     *
+     * @param firstDay the first day
+     * @param lastDay  the last day, inclusive
+     */
+    @NonNull
+    public Series series(int firstDay, int lastDay) {
+        AnalyticsRange.Resolution resolution = AnalyticsRange.resolutionOf(firstDay, lastDay);
+        if (resolution == AnalyticsRange.Resolution.DAY) {
+            Bucket[] buckets = new Bucket[lastDay - firstDay + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket();
+            }
+            for (Map.Entry<Integer, Bucket> day : days.subMap(firstDay, true, lastDay, true).entrySet()) {
+                buckets[day.getKey() - firstDay].addAll(day.getValue());
+            }
+            return new Series(resolution, firstDay, buckets);
+        }
+        int firstMonth = monthOfDay(firstDay);
+        Bucket[] buckets = new Bucket[monthOfDay(lastDay) - firstMonth + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+            addMonthPart(buckets[i], firstMonth + i, firstDay, lastDay);
+        }
+        return new Series(resolution, firstMonth, buckets);
+    }
+
+    /**
+     * @return the day of the earliest event, or null if there are none
+     */
+    @Nullable
+    public Integer getFirstDay() {
+        return days.isEmpty() ? null : days.firstKey();
+    }
+
+    private void addMonthPart(Bucket sum, int month, int firstDay, int lastDay) {
+        int monthStart = MoodTimeSeries.firstDayOfMonth(month);
+        int monthEnd = MoodTimeSeries.firstDayOfMonth(month + 1) - 1;
+        if (firstDay <= monthStart && lastDay >= monthEnd) {
+            Bucket whole = months.get(month);
+            if (whole != null) {
+                sum.addAll(whole);
+            }
+            return;
+        }
+        for (Bucket day : days.subMap(Math.max(firstDay, monthStart), true, Math.min(lastDay, monthEnd), true).values()) {
+            sum.addAll(day);
+        }
+    }
+
+    /**
+     * Returns the aggregates as a map for a Firestore document: totals, streaks and every month
+     */
+    @NonNull
+    public Map<String, Object> toStatsDocument() {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("count", total.count);
+        document.put("scoreSum", total.scoreSum);
+        document.put("emotionCounts", emotionCountMap(total));
+        document.put("longestStreak", getLongestStreak());
+        if (!runs.isEmpty()) {
+            Map.Entry<Integer, Integer> lastRun = runs.lastEntry();
+            document.put("lastRunStartDay", lastRun.getKey());
+            document.put("lastRunEndDay", lastRun.getValue());
+        }
+        Map<String, Object> monthDocuments = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Bucket> month : months.entrySet()) {
+            Map<String, Object> monthDocument = new LinkedHashMap<>();
+            monthDocument.put("count", month.getValue().count);
+            monthDocument.put("scoreSum", month.getValue().scoreSum);
+            monthDocument.put("emotionCounts", emotionCountMap(month.getValue()));
+            monthDocuments.put(String.format(Locale.US, "%04d-%02d", Math.floorDiv(month.getKey(), 12),
+                    Math.floorMod(month.getKey(), 12) + 1), monthDocument);
+        }
+        document.put("months", monthDocuments);
+        return document;
+    }
+
+    /**
+     * Writes the day aggregates and event contributions; months, totals and streaks are derived from them on reading
+     */
+    public void writeTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeBoolean(complete);
+        out.writeUTF(revision != null ? revision : "");
+        // State names, so a reordered or extended enum still reads back correctly
+        out.writeInt(STATES.length);
+        for (MoodEvent.EmotionalState state : STATES) {
+            out.writeUTF(state.name());
+        }
+        out.writeInt(days.size());
+        for (Map.Entry<Integer, Bucket> day : days.entrySet()) {
+            out.writeInt(day.getKey());
+            out.writeInt(day.getValue().count);
+            out.writeLong(day.getValue().scoreSum);
+            for (int count : day.getValue().emotionCounts) {
+                out.writeInt(count);
+            }
+        }
+        out.writeInt(contributions.size());
+        for (Map.Entry<String, Contribution> contribution : contributions.entrySet()) {
+            out.writeUTF(contribution.getKey());
+            out.writeInt(contribution.getValue().day);
+            out.writeInt(contribution.getValue().state);
+            out.writeInt(contribution.getValue().score);
+        }
+    }
+
+    /**
+     * Reads rollups written by {@link #writeTo(DataOutputStream)}
+     *
+     * @throws IOException if the stream is truncated or was written in another format version
+     */
+    @NonNull
+    public static MoodRollups readFrom(@NonNull DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported rollup format version: " + version);
+        }
+        MoodRollups rollups = new MoodRollups();
+        rollups.complete = in.readBoolean();
+        String revision = in.readUTF();
+        rollups.revision = revision.isEmpty() ? null : revision;
+        int[] stateMapping = new int[in.readInt()];
+        for (int i = 0; i < stateMapping.length; i++) {
+            stateMapping[i] = stateIndex(in.readUTF());
+        }
+        int dayCount = in.readInt();
+        for (int i = 0; i < dayCount; i++) {
+            int day = in.readInt();
+            Bucket bucket = new Bucket();
+            bucket.count = in.readInt();
+            bucket.scoreSum = in.readLong();
+            for (int state : stateMapping) {
+                int count = in.readInt();
+                if (state != NO_STATE) {
+                    bucket.emotionCounts[state] = count;
+                }
+            }
+            rollups.days.put(day, bucket);
+            bucketFor(rollups.months, monthOfDay(day)).addAll(bucket);
+            rollups.total.addAll(bucket);
+            rollups.addDayToRuns(day);
+        }
+        int contributionCount = in.readInt();
+        for (int i = 0; i < contributionCount; i++) {
+            String id = in.readUTF();
+            int day = in.readInt();
+            int state = in.readInt();
+            int score = in.readInt();
+            rollups.contributions.put(id, new Contribution(day, state == NO_STATE ? NO_STATE : stateMapping[state], score));
+        }
+        return rollups;
+    }
+
+    private static int stateIndex(String name) {
+        for (MoodEvent.EmotionalState state : STATES) {
+            if (state.name().equals(name)) {
+                return state.ordinal();
+            }
+        }
+        return NO_STATE;
+    }
+
+    private static Map<String, Object> emotionCountMap(Bucket bucket) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (MoodEvent.EmotionalState state : STATES) {
+            if (bucket.emotionCounts[state.ordinal()] > 0) {
+                counts.put(state.name(), bucket.emotionCounts[state.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        Bucket day = bucketFor(days, contribution.day);
+        boolean newDay = day.count == 0;
+        day.add(contribution.state, contribution.score, sign);
+        bucketFor(months, monthOfDay(contribution.day)).add(contribution.state, contribution.score, sign);
+        total.add(contribution.state, contribution.score, sign);
+        if (day.count == 0) {
+            days.remove(contribution.day);
+            if (months.get(monthOfDay(contribution.day)).count == 0) {
+                months.remove(monthOfDay(contribution.day));
+            }
+            removeDayFromRuns(contribution.day);
+        } else if (newDay) {
+            addDayToRuns(contribution.day);
+        }
+    }
+
+    private static Bucket bucketFor(TreeMap<Integer, Bucket> buckets, int key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Marks a day as having events, joining the runs that end the day before and start the day after it
+     */
+    private void addDayToRuns(int day) {
+        int start = day;
+        int end = day;
+        Map.Entry<Integer, Integer> before = runs.floorEntry(day - 1);
+        if (before != null && before.getValue() == day - 1) {
+            start = before.getKey();
+            removeRun(before.getKey(), before.getValue());
+        }
+        Integer afterEnd = runs.get(day + 1);
+        if (afterEnd != null) {
+            end = afterEnd;
+            removeRun(day + 1, afterEnd);
+        }
+        addRun(start, end);
+    }
+
+    /**
+     * Marks a day as having no events, splitting the run it was part of
+     */
+    private void removeDayFromRuns(int day) {
+        Map.Entry<Integer, Integer> run = runs.floorEntry(day);
+        if (run == null || run.getValue() < day) {
+            return;
+        }
+        int start = run.getKey();
+        int end = run.getValue();
+        removeRun(start, end);
+        if (start < day) {
+            addRun(start, day - 1);
+        }
+        if (day < end) {
+            addRun(day + 1, end);
+        }
+    }
+
+    private void addRun(int start, int end) {
+        runs.put(start, end);
+        runLengths.merge(end - start + 1, 1, Integer::sum);
+    }
+
+    private void removeRun(int start, int end) {
+        runs.remove(start);
+        int length = end - start + 1;
+        if (runLengths.merge(length, -1, Integer::sum) == 0) {
+            runLengths.remove(length);
+        }
+    }
+
+    /**
+     * The aggregates of consecutive days or months of a range, oldest first
+     */
+    public static final class Series {
+        private final AnalyticsRange.Resolution resolution;
+        private final int firstBucket;
+        private final Bucket[] buckets;
+
+        Series(AnalyticsRange.Resolution resolution, int firstBucket, Bucket[] buckets) {
+            this.resolution = resolution;
+            this.firstBucket = firstBucket;
+            this.buckets = buckets;
+        }
+
+        @NonNull
+        public AnalyticsRange.Resolution getResolution() {
+            return resolution;
+        }
+
+        /**
+         * @return the day or month number of the first bucket
+         */
+        public int getFirstBucket() {
+            return firstBucket;
+        }
+
+        public int size() {
+            return buckets.length;
+        }
+
+        @NonNull
+        public Bucket getBucket(int index) {
+            return buckets[index];
+        }
+
+        /**
+         * Returns the average score of each bucket and its moving average over a week of days or a quarter of months
+         */
+        @NonNull
+        public Trend trend() {
+            float[] averages = new float[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                averages[i] = buckets[i].getAverageScore();
+            }
+            int window = resolution == AnalyticsRange.Resolution.DAY ? Trend.DAY_WINDOW : Trend.MONTH_WINDOW;
+            return new Trend(resolution, firstBucket, averages, MoodTimeSeries.movingAverage(averages, window), window);
+        }
+    }
+
+    /**
+     * The average scores of a {@link Series} and their moving average
+     */
+    public static final class Trend {
+        static final int DAY_WINDOW = 7;
+        static final int MONTH_WINDOW = 3;
+
+        private final AnalyticsRange.Resolution resolution;
+        private final int firstBucket;
+        private final float[] averages;
+        private final float[] movingAverages;
+        private final int window;
+
+        Trend(AnalyticsRange.Resolution resolution, int firstBucket, float[] averages, float[] movingAverages, int window) {
+            this.resolution = resolution;
+            this.firstBucket = firstBucket;
+            this.averages = averages;
+            this.movingAverages = movingAverages;
+            this.window = window;
+        }
+
+        @NonNull
+        public AnalyticsRange.Resolution getResolution() {
+            return resolution;
+        }
+
+        /**
+         * @return the day or month number of the first average
+         */
+        public int getFirstBucket() {
+            return firstBucket;
+        }
+
+        /**
+         * @return the average score of each bucket; 0 for buckets without events
+         */
+        @NonNull
+        public float[] getAverages() {
+            return averages.clone();
+        }
+
+        @NonNull
+        public float[] getMovingAverages() {
+            return movingAverages.clone();
+        }
+
+        /**
+         * @return the number of buckets in the moving average
+         */
+        public int getWindow() {
+            return window;
+        }
+    }
+
+    /**
+     * What the analytics screen draws, computed from the rollups in one pass over at most a year of months and the
+     * trend days
+     */
+    public static final class Summary implements Serializable {
+        private final int currentStreak;
+        private final int longestStreak;
+        private final int[] emotionCounts;
+        private final int year;
+        private final int[][] monthEmotionCounts;
+        private final float[] dailyAverages;
+
+        Summary(int currentStreak, int longestStreak, int[] emotionCounts, int year, int[][] monthEmotionCounts, float[] dailyAverages) {
+            this.currentStreak = currentStreak;
+            this.longestStreak = longestStreak;
+            this.emotionCounts = emotionCounts;
+            this.year = year;
+            this.monthEmotionCounts = monthEmotionCounts;
+            this.dailyAverages = dailyAverages;
+        }
+
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+
+        public int getLongestStreak() {
+            return longestStreak;
+        }
+
+        /**
+         * @return the number of events with the state over the whole history
+         */
+        public int getEmotionCount(@NonNull MoodEvent.EmotionalState state) {
+            return state.ordinal() < emotionCounts.length ? emotionCounts[state.ordinal()] : 0;
+        }
+
+        /**
+         * @return the number of events with an emotional state over the whole history
+         */
+        public int getTotalCount() {
+            return Arrays.stream(emotionCounts).sum();
+        }
+
+        /**
+         * @return the year of today, which the monthly counts cover
+         */
+        public int getYear() {
+            return year;
+        }
+
+        /**
+         * @param month the month of {@link #getYear()}, 1 for January
+         * @return whether the month has events
+         */
+        public boolean hasMonth(int month) {
+            return monthEmotionCounts[month - 1] != null;
+        }
+
+        /**
+         * @param month the month of {@link #getYear()}, 1 for January
+         */
+        public int getMonthEmotionCount(int month, @NonNull MoodEvent.EmotionalState state) {
+            int[] counts = monthEmotionCounts[month - 1];
+            return counts != null && state.ordinal() < counts.length ? counts[state.ordinal()] : 0;
+        }
+
+        /**
+         * @return the average mood score of each trend day, oldest first and ending with today; 0 for days without events
+         */
+        @NonNull
+        public float[] getDailyAverages() {
+            return dailyAverages.clone();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.Participant;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ParticipantBatch - Repository
+ * <p>
+ * Role / Purpose
+ * Holds the result of a bulk participant read, keyed by username. Every requested username ends up in exactly one of
+ * three places: the found participants, the usernames that have no participant document, or the usernames whose read
+ * failed and may be retried.
+ * <p>
+ * Design Patterns
+ * Value Object: Immutable result of one chunk, or of a whole bulk read once every chunk has completed.
+ * <p>
+ * Outstanding Issues
+ * - None
+ */
+
+public class ParticipantBatch {
+    private final Map<String, Participant> participants;
+    private final Set<String> missing;
+    private final Set<String> failed;
+
+    /**
+     * Constructs a batch result.
+     *
+     * @param participants the participants found, keyed by username
+     * @param missing      the usernames that have no participant document
+     * @param failed       the usernames that could not be read
+     */
+    public ParticipantBatch(@NonNull Map<String, Participant> participants, @NonNull Set<String> missing, @NonNull Set<String> failed) {
+        this.participants = Collections.unmodifiableMap(participants);
+        this.missing = Collections.unmodifiableSet(missing);
+        this.failed = Collections.unmodifiableSet(failed);
+    }
+
+    /**
+     * Returns the participants that were found.
+     *
+     * @return the participants, keyed by username
+     */
+    @NonNull
+    public Map<String, Participant> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * Returns the participant with the given username, if it was found.
+     *
+     * @param username the username to look up
+     * @return the participant, or null if it is missing, failed, or was not part of this batch
+     */
+    @Nullable
+    public Participant get(@NonNull String username) {
+        return participants.get(username);
+    }
+
+    /**
+     * Returns the usernames that have no participant document.
+     *
+     * @return the missing usernames
+     */
+    @NonNull
+    public Set<String> getMissing() {
+        return missing;
+    }
+
+    /**
+     * Returns the usernames whose read failed.
+     *
+     * @return the failed usernames
+     */
+    @NonNull
+    public Set<String> getFailed() {
+        return failed;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ParticipantBatch{found=" + participants.size() + ", missing=" + missing + ", failed=" + failed.size() + "}";
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.Participant;
+import com.example.bread.utils.CoalescingCache;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.function.LongSupplier;
+
+/**
+ * ParticipantCache - Repository
+ * <p>
+ * Role / Purpose
+ * Process-wide cache of base participant documents, keyed by document path, shared by every {@link ParticipantRepository}.
+ * Entries expire after a fixed time to live and the least recently used entry is evicted once the cache is full.
+ * Concurrent requests for a participant that is already being loaded are coalesced: they wait for the one load in
+ * flight instead of starting their own, so a feed of twenty rows by the same user issues a single read.
+ * <p>
+ * Design Patterns
+ * Caching Pattern: A {@link CoalescingCache} with expiry, keyed by document path.
+ * <p>
+ * Outstanding Issues
+ * - Cached participants are shared instances; callers must not modify them.
+ * - Participants that do not exist are not cached, so repeated lookups of a missing user each read the database.
+ */
+
+public class ParticipantCache {
+
+    /**
+     * Loads a participant on a cache miss
+     */
+    public interface Loader {
+        void load(@NonNull OnSuccessListener<Participant> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+    }
+
+    private final CoalescingCache<String, Participant> cache;
+
+    public ParticipantCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    public ParticipantCache(int maxSize, long ttlMillis, @NonNull LongSupplier clock) {
+        this.cache = new CoalescingCache<>(maxSize, ttlMillis, clock);
+    }
+
+    /**
+     * Returns the cached participant if it is present and not expired, without loading it
+     *
+     * @param key the document path of the participant
+     * @return the cached participant, or null
+     */
+    @Nullable
+    public Participant getIfPresent(@NonNull String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Delivers the participant from the cache, or loads it. A hit is delivered synchronously; a miss joins the load
+     * already in flight for the same key, or starts one with the given loader.
+     *
+     * @param key               the document path of the participant
+     * @param loader            loads the participant on a miss
+     * @param onSuccessListener called with the participant, or null if it does not exist
+     * @param onFailureListener called if the load fails
+     */
+    public void get(@NonNull String key, @NonNull Loader loader, @NonNull OnSuccessListener<Participant> onSuccessListener,
+                    @NonNull OnFailureListener onFailureListener) {
+        cache.get(key, (path, onSuccess, onFailure) -> loader.load(onSuccess, onFailure), onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Stores a participant that was read or written elsewhere
+     *
+     * @param key         the document path of the participant
+     * @param participant the participant
+     */
+    public void put(@NonNull String key, @NonNull Participant participant) {
+        cache.put(key, participant);
+    }
+
+    /**
+     * Drops a participant, including any load in flight, so the next request reads it again
+     *
+     * @param key the document path of the participant
+     */
+    public void invalidate(@NonNull String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Drops every participant
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getCoalescedCount() {
+        return cache.getCoalescedCount();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ParticipantCache{size=" + cache.size() + "/" + cache.getMaxSize() + ", hits=" + cache.getHitCount()
+                + ", misses=" + cache.getMissCount() + ", coalesced=" + cache.getCoalescedCount()
+                + ", pending=" + cache.getPendingCount() + "}";
+    }
+}
@@ -3,22 +3,28 @@ package com.example.bread.repository;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.example.bread.firebase.FirebaseService;
 import com.example.bread.model.FollowRequest;
 import com.example.bread.model.Participant;
+import com.example.bread.utils.LatencyRecorder;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FieldPath;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ParticipantRepository - Repository
@@ -32,14 +38,33 @@ import java.util.Objects;
  * Repository Pattern: Encapsulates Firestore queries and updates for participant data.
  * Singleton Pattern (indirect via FirebaseService): Shares one instance of the database service across repository usage.
  * Observer Pattern: Uses Firestore listeners and callbacks for asynchronous updates.
+ * Caching Pattern: Base participant lookups go through a process-wide {@link ParticipantCache}; user search pages and
+ * recently seen participants are kept in a process-wide {@link UserSearchIndex}.
  * <p>
  * Outstanding Issues
  * - Username-based lookups rely on document structure; changes to Firestore schema will require adjustments.
+ * - Base participants are cached for a few minutes; edits made on other devices show up once the entry expires.
+ * - Participants saved before the lower-cased search fields existed are only found case-sensitively until their owner
+ *   next opens the app, which adds the fields to their own document.
+ * - Follow edges live in {@link FollowEdgeIndex}; the old followers / following subcollections are only kept in sync for older clients.
  */
 
 public class ParticipantRepository {
     private final FirebaseService firebaseService;
+    private final TimelineRepository timelineRepository;
+    private final FollowEdgeIndex edgeIndex;
+    // One search box per repository instance; a new query supersedes the one in flight
+    private final SearchRequestScheduler<List<Participant>> userSearchScheduler = new SearchRequestScheduler<>("userSearch");
     private static final String TAG = "ParticipantRepository";
+    private static final int PARTICIPANT_CACHE_SIZE = 200;
+    private static final long PARTICIPANT_CACHE_TTL_MILLIS = 5 * 60 * 1000; // 5 minutes
+
+    // Shared by every repository instance, so cached participants survive fragment and adapter recreation
+    private static final ParticipantCache participantCache = new ParticipantCache(PARTICIPANT_CACHE_SIZE, PARTICIPANT_CACHE_TTL_MILLIS);
+    private static final int SEARCH_SEEN_SIZE = 500;
+    private static final int SEARCH_PAGE_COUNT = 64;
+    // Recently seen participants and cached search pages, shared like the participant cache
+    private static final UserSearchIndex searchIndex = new UserSearchIndex(SEARCH_SEEN_SIZE, SEARCH_PAGE_COUNT, PARTICIPANT_CACHE_TTL_MILLIS);
 
     // List types enum
     public enum ListType {
@@ -49,10 +74,14 @@ public class ParticipantRepository {
 
     public ParticipantRepository() {
         firebaseService = new FirebaseService();
+        timelineRepository = new TimelineRepository(firebaseService);
+        edgeIndex = new FollowEdgeIndex(firebaseService);
     }
 
     public ParticipantRepository(FirebaseService firebaseService) {
         this.firebaseService = firebaseService;
+        this.timelineRepository = new TimelineRepository(firebaseService);
+        this.edgeIndex = new FollowEdgeIndex(firebaseService);
     }
 
     private CollectionReference getParticipantCollRef() {
@@ -67,18 +96,8 @@ public class ParticipantRepository {
      * @param onFailureListener The listener to be called when the participant cannot be fetched
      */
     public void fetchBaseParticipant(@NonNull String username, @NonNull OnSuccessListener<Participant> onSuccessListener, OnFailureListener onFailureListener) {
-        getParticipantCollRef().document(username).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Participant participant = documentSnapshot.toObject(Participant.class);
-                        onSuccessListener.onSuccess(participant);
-                    } else {
-                        Log.e(TAG, "Participant with username: " + username + " does not exist");
-                        onSuccessListener.onSuccess(null);
-                    }
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to fetch participant with username: " + username, e));
+        fetchParticipantByRef(getParticipantRef(username), onSuccessListener, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to fetch participant with username: " + username, e));
     }
 
     /**
@@ -104,24 +123,140 @@ public class ParticipantRepository {
     }
 
     /**
-     * Fetches the base participant object from firebase with the given reference
+     * Fetches the base participant object from firebase with the given reference.
+     * Served from the shared participant cache when possible; concurrent requests for the same participant share one read.
      *
      * @param participantRef    The reference to the participant to fetch
      * @param onSuccessListener The listener to be called when the participant is successfully fetched
      * @param onFailureListener The listener to be called when the participant cannot be fetched
      */
     public void fetchParticipantByRef(@NonNull DocumentReference participantRef, @NonNull OnSuccessListener<Participant> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
-        participantRef.get()
+        participantCache.get(participantRef.getPath(), (onLoaded, onLoadFailed) -> participantRef.get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
                         Participant participant = documentSnapshot.toObject(Participant.class);
-                        onSuccessListener.onSuccess(participant);
+                        if (participant != null) {
+                            searchIndex.remember(participant);
+                        }
+                        onLoaded.onSuccess(participant);
                     } else {
                         Log.e(TAG, "Participant with reference: " + participantRef + " does not exist");
-                        onSuccessListener.onSuccess(null);
+                        onLoaded.onSuccess(null);
                     }
                 })
-                .addOnFailureListener(onFailureListener);
+                .addOnFailureListener(onLoadFailed), onSuccessListener, onFailureListener);
+    }
+
+    /**
+     * Fetches the base participants with the given usernames in bulk.
+     * <p>
+     * Cached participants are delivered first; the rest are read in chunks of at most
+     * {@link MoodEventRepository#MAX_IN_QUERY_SIZE} usernames, each a single {@code whereIn} query on the document id,
+     * all in flight at once. Every chunk is delivered to {@code onChunkListener} as soon as it lands, so a list can be
+     * filled in progressively instead of waiting for the slowest document.
+     *
+     * @param usernames         The usernames of the participants to fetch; duplicates are read once
+     * @param onChunkListener   The listener to be called with each partial result as it lands, may be null
+     * @param onSuccessListener The listener to be called with the combined result once every chunk has completed
+     * @param onFailureListener The listener to be called when no chunk could be read at all
+     */
+    public void fetchParticipants(@NonNull Collection<String> usernames, @Nullable OnSuccessListener<ParticipantBatch> onChunkListener,
+                                  @NonNull OnSuccessListener<ParticipantBatch> onSuccessListener, OnFailureListener onFailureListener) {
+        Map<String, Participant> found = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        Set<String> failed = new LinkedHashSet<>();
+        List<String> toRead = new ArrayList<>();
+        for (String username : new LinkedHashSet<>(usernames)) {
+            if (username == null || username.isEmpty()) {
+                continue;
+            }
+            Participant cached = participantCache.getIfPresent(getParticipantRef(username).getPath());
+            if (cached != null) {
+                found.put(username, cached);
+            } else {
+                toRead.add(username);
+            }
+        }
+        if (!found.isEmpty() && onChunkListener != null) {
+            onChunkListener.onSuccess(new ParticipantBatch(new LinkedHashMap<>(found), new LinkedHashSet<>(), new LinkedHashSet<>()));
+        }
+        if (toRead.isEmpty()) {
+            onSuccessListener.onSuccess(new ParticipantBatch(found, missing, failed));
+            return;
+        }
+
+        List<List<String>> chunks = MoodEventRepository.partition(toRead, MoodEventRepository.MAX_IN_QUERY_SIZE);
+        AtomicInteger chunksRemaining = new AtomicInteger(chunks.size());
+        boolean hadCached = !found.isEmpty();
+        Exception[] lastError = new Exception[1];
+        OnFailureListener failureListener = onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to fetch " + toRead.size() + " participants", e);
+        Runnable onChunkDone = () -> {
+            if (chunksRemaining.decrementAndGet() > 0) {
+                return;
+            }
+            // Only report a failure when nothing at all could be read; otherwise the failed usernames are in the result
+            if (failed.size() == toRead.size() && !hadCached) {
+                failureListener.onFailure(lastError[0]);
+                return;
+            }
+            onSuccessListener.onSuccess(new ParticipantBatch(found, missing, failed));
+        };
+
+        for (List<String> chunk : chunks) {
+            getParticipantCollRef().whereIn(FieldPath.documentId(), chunk).get()
+                    .addOnSuccessListener(querySnapshot -> {
+                        Map<String, Participant> chunkFound = new LinkedHashMap<>();
+                        for (DocumentSnapshot doc : querySnapshot) {
+                            Participant participant = doc.toObject(Participant.class);
+                            if (participant != null) {
+                                participantCache.put(doc.getReference().getPath(), participant);
+                                chunkFound.put(doc.getId(), participant);
+                            }
+                        }
+                        Set<String> chunkMissing = new LinkedHashSet<>(chunk);
+                        chunkMissing.removeAll(chunkFound.keySet());
+                        synchronized (found) {
+                            found.putAll(chunkFound);
+                            missing.addAll(chunkMissing);
+                        }
+                        if (onChunkListener != null) {
+                            onChunkListener.onSuccess(new ParticipantBatch(chunkFound, chunkMissing, new LinkedHashSet<>()));
+                        }
+                        onChunkDone.run();
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Failed to fetch a chunk of " + chunk.size() + " participants", e);
+                        synchronized (found) {
+                            failed.addAll(chunk);
+                            lastError[0] = e;
+                        }
+                        if (onChunkListener != null) {
+                            onChunkListener.onSuccess(new ParticipantBatch(new LinkedHashMap<>(), new LinkedHashSet<>(), new LinkedHashSet<>(chunk)));
+                        }
+                        onChunkDone.run();
+                    });
+        }
+    }
+
+    /**
+     * Returns the participant with the given reference if it is in the shared cache, without reading the database
+     *
+     * @param participantRef The reference to the participant
+     * @return The cached participant, or null if it has to be fetched
+     */
+    @Nullable
+    public Participant getCachedParticipant(@NonNull DocumentReference participantRef) {
+        return participantCache.getIfPresent(participantRef.getPath());
+    }
+
+    /**
+     * Drops the cached copy of a participant after its profile has been edited, so the next fetch reads it again
+     *
+     * @param username The username of the participant
+     */
+    public void invalidateParticipant(@NonNull String username) {
+        participantCache.invalidate(getParticipantRef(username).getPath());
     }
 
     /**
@@ -153,63 +288,27 @@ public class ParticipantRepository {
     }
 
     /**
-     * Fetches the followers of the given participant
+     * Fetches the followers of the given participant from the follow edge index
      *
      * @param username          The username of the participant to fetch followers for
      * @param onSuccessListener The listener to be called when the followers are successfully fetched
      * @param onFailureListener The listener to be called when the followers cannot be fetched
      */
     public void fetchFollowers(@NonNull String username, @NonNull OnSuccessListener<List<String>> onSuccessListener, OnFailureListener onFailureListener) {
-        getParticipantCollRef().document(username).collection("followers").get()
-                .addOnSuccessListener(followersSnapshot -> {
-                    List<String> followers = new ArrayList<>();
-                    for (DocumentSnapshot doc : followersSnapshot) {
-                        followers.add(doc.getString("username"));
-                    }
-                    // Update follower count in participant document
-                    updateFollowerCount(username, followers.size());
-                    onSuccessListener.onSuccess(followers);
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to fetch followers for participant: " + username, e));
+        edgeIndex.fetchEdges(username, ListType.FOLLOWERS, onSuccessListener, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to fetch followers for participant: " + username, e));
     }
 
     /**
-     * Fetches the following of the given participant
+     * Fetches the following of the given participant from the follow edge index
      *
      * @param username          The username of the participant to fetch following for
      * @param onSuccessListener The listener to be called when the following are successfully fetched
      * @param onFailureListener The listener to be called when the following cannot be fetched
      */
     public void fetchFollowing(@NonNull String username, @NonNull OnSuccessListener<List<String>> onSuccessListener, OnFailureListener onFailureListener) {
-        getParticipantCollRef().document(username).collection("following").get()
-                .addOnSuccessListener(followingSnapshot -> {
-                    List<String> following = new ArrayList<>();
-                    for (DocumentSnapshot doc : followingSnapshot) {
-                        following.add(doc.getString("username"));
-                    }
-                    // Update following count in participant document
-                    updateFollowingCount(username, following.size());
-                    onSuccessListener.onSuccess(following);
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to fetch following for participant: " + username, e));
-    }
-
-    /**
-     * Update follower count in the participant document
-     */
-    private void updateFollowerCount(String username, int count) {
-        getParticipantCollRef().document(username).update("followerCount", count)
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to update follower count for " + username, e));
-    }
-
-    /**
-     * Update following count in the participant document
-     */
-    private void updateFollowingCount(String username, int count) {
-        getParticipantCollRef().document(username).update("followingCount", count)
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to update following count for " + username, e));
+        edgeIndex.fetchEdges(username, ListType.FOLLOWING, onSuccessListener, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to fetch following for participant: " + username, e));
     }
 
     /**
@@ -220,54 +319,13 @@ public class ParticipantRepository {
      * @param onFailureListener The listener to be called when the participant cannot be added
      */
     public void addParticipant(@NonNull Participant participant, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
+        invalidateParticipant(participant.getUsername());
         getParticipantCollRef().document(participant.getUsername()).set(participant)
                 .addOnSuccessListener(onSuccessListener)
                 .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
                         Log.e(TAG, "Failed to add participant: " + participant, e));
     }
 
-    /**
-     * Adds a follower to the given participant
-     *
-     * @param username          The username of the participant to add the follower to
-     * @param followerUsername  The username of the follower to add
-     * @param onSuccessListener The listener to be called when the follower is successfully added
-     * @param onFailureListener The listener to be called when the follower cannot be added
-     */
-    public void addFollower(@NonNull String username, String followerUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
-        Map<String, String> follower = new HashMap<>();
-        follower.put("username", followerUsername);
-        getParticipantCollRef().document(username).collection("followers").document(followerUsername).set(follower)
-                .addOnSuccessListener(aVoid -> {
-                    // Increment the follower count by 1
-                    getParticipantCollRef().document(username).update("followerCount", FieldValue.increment(1));
-                    onSuccessListener.onSuccess(aVoid);
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to add follower: " + followerUsername + " to participant: " + username, e));
-    }
-
-    /**
-     * Adds a following to the given participant
-     *
-     * @param username          The username of the participant to add the following to
-     * @param followingUsername The username of the following to add
-     * @param onSuccessListener The listener to be called when the following is successfully added
-     * @param onFailureListener The listener to be called when the following cannot be added
-     */
-    public void addFollowing(@NonNull String username, String followingUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
-        Map<String, String> following = new HashMap<>();
-        following.put("username", followingUsername);
-        getParticipantCollRef().document(username).collection("following").document(followingUsername).set(following)
-                .addOnSuccessListener(aVoid -> {
-                    // Increment the following count by 1
-                    getParticipantCollRef().document(username).update("followingCount", FieldValue.increment(1));
-                    onSuccessListener.onSuccess(aVoid);
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to add following: " + followingUsername + " to participant: " + username, e));
-    }
-
     /**
      * Sends a follow request to a participant
      *
@@ -319,18 +377,17 @@ public class ParticipantRepository {
      * @param onFailureListener The listener to be called when the request cannot be accepted
      */
     public void acceptFollowRequest(@NonNull String username, @NonNull String requestorUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
-        // Update request status to accepted
-        getParticipantCollRef().document(username).collection("followRequests").document(requestorUsername)
-                .update("status", "accepted")
-                .addOnSuccessListener(aVoid -> {
-                    // Add follower relationship
-                    addFollower(username, requestorUsername, unused -> {
-                        // Add following relationship
-                        addFollowing(requestorUsername, username, onSuccessListener, onFailureListener);
-                    }, onFailureListener);
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to accept follow request from: " + requestorUsername + " for: " + username, e));
+        // Marks the request accepted and adds the follow edge to both participants in one transaction
+        edgeIndex.acceptRequest(requestorUsername, username, accepted -> {
+            invalidateParticipant(username);
+            invalidateParticipant(requestorUsername);
+            // Copy the newly followed user's recent moods into the requestor's timeline
+            timelineRepository.backfillTimeline(requestorUsername, username,
+                    backfilled -> Log.d(TAG, "Backfilled timeline of " + requestorUsername),
+                    e -> Log.e(TAG, "Failed to backfill timeline of " + requestorUsername, e));
+            onSuccessListener.onSuccess(accepted);
+        }, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to accept follow request from: " + requestorUsername + " for: " + username, e));
     }
 
     /**
@@ -359,34 +416,158 @@ public class ParticipantRepository {
     /**
      * Search for participants by username prefix
      * <p>
-     * This method uses a Firestore range query with a special Unicode character that sorts
-     * after all other characters to find all usernames that start with the given prefix.
-     * We use '\uf8ff' which is a high code point in the Unicode range that sorts after
-     * all common Unicode characters, allowing us to create a range query for string prefixes.
+     * Kept for callers without a signed-in participant; see {@link #searchUsers(String, String, OnSuccessListener, OnFailureListener)}.
      *
      * @param usernamePrefix    The prefix to search for
      * @param onSuccessListener The listener to be called when participants are successfully found
      * @param onFailureListener The listener to be called when the search fails
      */
     public void searchUsersByUsername(String usernamePrefix, @NonNull OnSuccessListener<List<Participant>> onSuccessListener, OnFailureListener onFailureListener) {
-        String endPrefix = usernamePrefix + "\uf8ff"; // Unicode character that sorts after all other characters
+        searchUsers(usernamePrefix, null, onSuccessListener, onFailureListener);
+    }
 
-        getParticipantCollRef()
-                .whereGreaterThanOrEqualTo("username", usernamePrefix)
-                .whereLessThan("username", endPrefix)
-                .limit(20) // Limit results to avoid too many results
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        onSuccessListener.onSuccess(new ArrayList<>());
+    /**
+     * Searches participants whose username or name starts with the query, ignoring case, ranked for the viewer.
+     * <p>
+     * The query is first answered from the shared {@link UserSearchIndex}: a cached page of the same query, or a complete
+     * page of a shorter prefix (one where no query hit the limit), is filtered locally without a network query, so typing
+     * more letters after a narrow prefix stays on the device. Otherwise Firestore is queried with range queries over the
+     * lower-cased {@code usernameLower} and {@code displayNameLower} fields, using '\uf8ff' as the upper bound since it
+     * sorts after all common characters, plus the case-sensitive {@code username} field for documents that have not been
+     * given the lower-cased fields yet. Results are merged with close matches among recently seen participants, so a
+     * small typo still finds people seen before, and ranked by closeness to the query and follow proximity to the viewer.
+     *
+     * @param query             The text typed by the viewer
+     * @param viewerUsername    The username of the searching participant, left out of the results; may be null
+     * @param onSuccessListener The listener to be called with at most {@link UserSearchIndex#RESULT_LIMIT} participants, best first
+     * @param onFailureListener The listener to be called when the search fails
+     */
+    public void searchUsers(String query, @Nullable String viewerUsername, @NonNull OnSuccessListener<List<Participant>> onSuccessListener, OnFailureListener onFailureListener) {
+        String normalized = UserSearchIndex.normalize(query);
+        if (normalized.isEmpty()) {
+            onSuccessListener.onSuccess(new ArrayList<>());
+            return;
+        }
+        if (viewerUsername != null) {
+            loadSearchConnections(viewerUsername);
+        }
+        List<Participant> local = searchIndex.searchLocally(normalized, viewerUsername);
+        if (local != null) {
+            onSuccessListener.onSuccess(local);
+            return;
+        }
+
+        String rawPrefix = query.trim();
+        String[][] rangeQueries = {
+                {"usernameLower", normalized},
+                {"displayNameLower", normalized},
+                {"username", rawPrefix}
+        };
+        Map<String, Participant> found = new LinkedHashMap<>();
+        AtomicInteger queriesRemaining = new AtomicInteger(rangeQueries.length);
+        boolean[] complete = {true};
+        boolean[] failed = {false};
+        OnFailureListener failureListener = onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to search users with prefix: " + query, e);
+        for (String[] rangeQuery : rangeQueries) {
+            getParticipantCollRef()
+                    .whereGreaterThanOrEqualTo(rangeQuery[0], rangeQuery[1])
+                    .whereLessThan(rangeQuery[0], rangeQuery[1] + "\uf8ff")
+                    .limit(UserSearchIndex.RESULT_LIMIT)
+                    .get()
+                    .addOnSuccessListener(queryDocumentSnapshots -> {
+                        if (queryDocumentSnapshots.size() >= UserSearchIndex.RESULT_LIMIT) {
+                            complete[0] = false;
+                        }
+                        for (DocumentSnapshot snapshot : queryDocumentSnapshots.getDocuments()) {
+                            Participant participant = snapshot.toObject(Participant.class);
+                            if (participant != null && participant.getUsername() != null) {
+                                found.put(participant.getUsername(), participant);
+                            }
+                        }
+                        if (queriesRemaining.decrementAndGet() == 0 && !failed[0]) {
+                            List<Participant> results = new ArrayList<>(found.values());
+                            searchIndex.cachePage(normalized, results, complete[0]);
+                            onSuccessListener.onSuccess(searchIndex.rank(normalized, results, viewerUsername));
+                        }
+                    })
+                    .addOnFailureListener(e -> {
+                        queriesRemaining.decrementAndGet();
+                        if (!failed[0]) {
+                            failed[0] = true;
+                            failureListener.onFailure(e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Runs {@link #searchUsers(String, String, OnSuccessListener, OnFailureListener)} as the latest query of this
+     * repository's search box. The listeners of a search still in flight are dropped, and its results are discarded if
+     * they arrive later, so fast typing never shows results for an older prefix.
+     *
+     * @param query             The text typed by the viewer
+     * @param viewerUsername    The username of the searching participant, left out of the results; may be null
+     * @param onSuccessListener The listener to be called with the results, unless another search is scheduled first
+     * @param onFailureListener The listener to be called when the search fails, unless another search is scheduled first
+     */
+    public void scheduleUserSearch(String query, @Nullable String viewerUsername, @NonNull OnSuccessListener<List<Participant>> onSuccessListener, OnFailureListener onFailureListener) {
+        userSearchScheduler.submit((onResult, onError) -> searchUsers(query, viewerUsername, onResult, onError), participants -> {
+            Log.d(TAG, "User search latency: " + userSearchScheduler.getLatency());
+            onSuccessListener.onSuccess(participants);
+        }, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to search users with prefix: " + query, e));
+    }
+
+    /**
+     * Drops the scheduled user search in flight, if any, so its listeners are not called
+     */
+    public void cancelUserSearch() {
+        userSearchScheduler.cancel();
+    }
+
+    /**
+     * Returns the latency recorder for scheduled user searches, one sample per response including discarded ones
+     *
+     * @return the latency recorder for user searches
+     */
+    public LatencyRecorder getUserSearchLatency() {
+        return userSearchScheduler.getLatency();
+    }
+
+    /**
+     * Loads who the viewer follows and who follows them into the search index, unless they are already known.
+     * Searches running meanwhile are ranked without follow proximity.
+     */
+    private void loadSearchConnections(@NonNull String viewerUsername) {
+        if (searchIndex.hasConnections(viewerUsername)) {
+            return;
+        }
+        fetchFollowing(viewerUsername, following -> fetchFollowers(viewerUsername, followers ->
+                searchIndex.setConnections(viewerUsername, following, followers), null), null);
+    }
+
+    /**
+     * Writes the lower-cased search fields to the signed-in participant's own document if it was saved before they
+     * existed, so it can be found by the case-insensitive queries from now on. Other participants' documents are
+     * never written; they get the fields when their owner next signs in.
+     *
+     * @param username The username of the signed-in participant
+     */
+    public void backfillOwnSearchFields(@NonNull String username) {
+        getParticipantCollRef().document(username).get()
+                .addOnSuccessListener(snapshot -> {
+                    if (!snapshot.exists() || snapshot.getString("usernameLower") != null) {
                         return;
                     }
-
-                    List<Participant> participants = queryDocumentSnapshots.toObjects(Participant.class);
-                    onSuccessListener.onSuccess(participants);
+                    Participant participant = snapshot.toObject(Participant.class);
+                    if (participant == null) {
+                        return;
+                    }
+                    snapshot.getReference().update("usernameLower", participant.getUsernameLower(), "displayNameLower", participant.getDisplayNameLower())
+                            .addOnFailureListener(e -> Log.w(TAG, "Failed to add search fields to participant: " + username, e));
                 })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to search users with prefix: " + usernamePrefix, e));
+                .addOnFailureListener(e -> Log.w(TAG, "Failed to read participant for search fields: " + username, e));
     }
 
     /**
@@ -435,10 +616,8 @@ public class ParticipantRepository {
      * @param onFailureListener The listener if the check fails
      */
     public void isFollowing(@NonNull String username, @NonNull String targetUsername, @NonNull OnSuccessListener<Boolean> onSuccessListener, OnFailureListener onFailureListener) {
-        getParticipantCollRef().document(username).collection("following").document(targetUsername).get()
-                .addOnSuccessListener(documentSnapshot -> onSuccessListener.onSuccess(documentSnapshot.exists()))
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to check if " + username + " is following " + targetUsername, e));
+        edgeIndex.contains(username, ListType.FOLLOWING, targetUsername, onSuccessListener, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to check if " + username + " is following " + targetUsername, e));
     }
 
     /**
@@ -450,30 +629,18 @@ public class ParticipantRepository {
      * @param onFailureListener The listener to be called when the follower cannot be removed
      */
     public void removeFollower(@NonNull String username, @NonNull String followerUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
-        // Remove follower from user's followers collection
-        getParticipantCollRef().document(username).collection("followers").document(followerUsername).delete()
-                .addOnSuccessListener(unused -> {
-                    // Decrement follower count
-                    getParticipantCollRef().document(username).update("followerCount", FieldValue.increment(-1));
-
-                    // Remove user from follower's following collection
-                    getParticipantCollRef().document(followerUsername).collection("following").document(username).delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // Decrement following count
-                                getParticipantCollRef().document(followerUsername).update("followingCount", FieldValue.increment(-1));
-
-                                // Delete any previous follow request documents to allow new requests
-                                deleteFollowRequest(username, followerUsername, onSuccessListener, e -> {
-                                    // Still consider success even if request delete fails
-                                    Log.w(TAG, "Failed to delete follow request after removing follower", e);
-                                    onSuccessListener.onSuccess(null);
-                                });
-                            })
-                            .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                                    Log.e(TAG, "Failed to remove " + username + " from " + followerUsername + "'s following", e));
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to remove " + followerUsername + " from " + username + "'s followers", e));
+        // Removes the edge and the follow request that created it in one transaction, so a new request can be sent
+        edgeIndex.removeEdge(followerUsername, username, unused -> {
+            invalidateParticipant(username);
+            invalidateParticipant(followerUsername);
+
+            // Drop this user's moods from the removed follower's timeline
+            timelineRepository.removeAuthorFromTimeline(followerUsername, username,
+                    removed -> Log.d(TAG, "Cleaned up timeline of " + followerUsername),
+                    e -> Log.e(TAG, "Failed to clean up timeline of " + followerUsername, e));
+            onSuccessListener.onSuccess(unused);
+        }, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to remove " + followerUsername + " from " + username + "'s followers", e));
     }
 
     /**
@@ -485,30 +652,18 @@ public class ParticipantRepository {
      * @param onFailureListener The listener to be called when unfollowing fails
      */
     public void unfollowUser(@NonNull String username, @NonNull String targetUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
-        // Remove target from user's following collection
-        getParticipantCollRef().document(username).collection("following").document(targetUsername).delete()
-                .addOnSuccessListener(unused -> {
-                    // Decrement following count
-                    getParticipantCollRef().document(username).update("followingCount", FieldValue.increment(-1));
-
-                    // Remove user from target's followers collection
-                    getParticipantCollRef().document(targetUsername).collection("followers").document(username).delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // Decrement follower count
-                                getParticipantCollRef().document(targetUsername).update("followerCount", FieldValue.increment(-1));
-
-                                // Delete any previous follow request documents to allow new requests
-                                deleteFollowRequest(targetUsername, username, onSuccessListener, e -> {
-                                    // Still consider success even if request delete fails
-                                    Log.w(TAG, "Failed to delete follow request after unfollowing", e);
-                                    onSuccessListener.onSuccess(null);
-                                });
-                            })
-                            .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                                    Log.e(TAG, "Failed to remove " + username + " from " + targetUsername + "'s followers", e));
-                })
-                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
-                        Log.e(TAG, "Failed to remove " + targetUsername + " from " + username + "'s following", e));
+        // Removes the edge and the follow request that created it in one transaction, so a new request can be sent
+        edgeIndex.removeEdge(username, targetUsername, unused -> {
+            invalidateParticipant(username);
+            invalidateParticipant(targetUsername);
+
+            // Drop the unfollowed user's moods from this user's timeline
+            timelineRepository.removeAuthorFromTimeline(username, targetUsername,
+                    removed -> Log.d(TAG, "Cleaned up timeline of " + username),
+                    e -> Log.e(TAG, "Failed to clean up timeline of " + username, e));
+            onSuccessListener.onSuccess(unused);
+        }, onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to remove " + targetUsername + " from " + username + "'s following", e));
     }
 
 }
\ No newline at end of file
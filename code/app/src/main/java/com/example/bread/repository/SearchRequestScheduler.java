@@ -0,0 +1,181 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.utils.LatencyRecorder;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.function.LongSupplier;
+
+/**
+ * SearchRequestScheduler - Repository
+ * <p>
+ * Role / Purpose
+ * Runs search-as-you-type requests so the latest query always wins. Every submitted request is tagged with a new
+ * generation number and replaces the one before it: the listeners of the superseded request are dropped at once, so
+ * they are never called and the screen holding them is not kept alive by a slow query, and any response that arrives
+ * for an older generation is discarded instead of overwriting newer results. The time from submission to response of
+ * every request, stale or not, is recorded in a {@link LatencyRecorder}.
+ * <p>
+ * Design Patterns
+ * Command Pattern: A request is a callback-style operation the scheduler starts and tracks.
+ * Instrumentation Hook: Exposes its latency recorder and discard count read-only for logging and debugging.
+ * <p>
+ * Outstanding Issues
+ * - A superseded request still runs to completion; Firestore queries cannot be aborted once sent, only ignored.
+ */
+
+public class SearchRequestScheduler<T> {
+
+    /**
+     * One search operation that reports its result or failure through the given listeners exactly once
+     */
+    public interface Request<T> {
+        void start(@NonNull OnSuccessListener<T> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+    }
+
+    private static final class Pending<T> {
+        final long generation;
+        final long startedAt;
+        OnSuccessListener<T> onSuccessListener;
+        OnFailureListener onFailureListener;
+
+        Pending(long generation, long startedAt, OnSuccessListener<T> onSuccessListener, OnFailureListener onFailureListener) {
+            this.generation = generation;
+            this.startedAt = startedAt;
+            this.onSuccessListener = onSuccessListener;
+            this.onFailureListener = onFailureListener;
+        }
+    }
+
+    private final LatencyRecorder latency;
+    private final LongSupplier clock;
+    private long generation = 0;
+    private long discardedCount = 0;
+    private Pending<T> pending;
+
+    /**
+     * @param name the name of the search, used for the latency recorder
+     */
+    public SearchRequestScheduler(@NonNull String name) {
+        this(name, System::currentTimeMillis);
+    }
+
+    public SearchRequestScheduler(@NonNull String name, @NonNull LongSupplier clock) {
+        this.latency = new LatencyRecorder(name);
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a request, superseding the one in flight
+     *
+     * @param request           the request to start
+     * @param onSuccessListener called with the result, unless a newer request is submitted first
+     * @param onFailureListener called with the failure, unless a newer request is submitted first
+     * @return the generation number of the request
+     */
+    public long submit(@NonNull Request<T> request, @NonNull OnSuccessListener<T> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+        Pending<T> submitted;
+        synchronized (this) {
+            supersede();
+            submitted = new Pending<>(++generation, clock.getAsLong(), onSuccessListener, onFailureListener);
+            pending = submitted;
+        }
+        request.start(result -> {
+            OnSuccessListener<T> listener = complete(submitted);
+            if (listener != null) {
+                listener.onSuccess(result);
+            }
+        }, e -> {
+            OnFailureListener listener = completeWithFailure(submitted);
+            if (listener != null) {
+                listener.onFailure(e);
+            }
+        });
+        return submitted.generation;
+    }
+
+    /**
+     * Drops the request in flight, if any, so neither of its listeners will be called
+     */
+    public synchronized void cancel() {
+        supersede();
+        generation++;
+    }
+
+    /**
+     * @return the generation number of the latest submitted request, 0 before the first
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return whether the latest request has not responded yet
+     */
+    public synchronized boolean isInFlight() {
+        return pending != null;
+    }
+
+    /**
+     * @return the number of responses that arrived after a newer request was submitted and were ignored
+     */
+    public synchronized long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * Returns the latency recorder of the search, one sample per response
+     *
+     * @return the latency recorder of the search
+     */
+    @NonNull
+    public LatencyRecorder getLatency() {
+        return latency;
+    }
+
+    private void supersede() {
+        if (pending != null) {
+            pending.onSuccessListener = null;
+            pending.onFailureListener = null;
+            pending = null;
+        }
+    }
+
+    @Nullable
+    private synchronized OnSuccessListener<T> complete(Pending<T> request) {
+        if (!finish(request)) {
+            return null;
+        }
+        OnSuccessListener<T> listener = request.onSuccessListener;
+        request.onSuccessListener = null;
+        request.onFailureListener = null;
+        return listener;
+    }
+
+    @Nullable
+    private synchronized OnFailureListener completeWithFailure(Pending<T> request) {
+        if (!finish(request)) {
+            return null;
+        }
+        OnFailureListener listener = request.onFailureListener;
+        request.onSuccessListener = null;
+        request.onFailureListener = null;
+        return listener;
+    }
+
+    /**
+     * Records the latency of a response and returns whether it is the latest request's, which is then no longer in flight
+     */
+    private boolean finish(Pending<T> request) {
+        latency.record(clock.getAsLong() - request.startedAt);
+        if (request.generation != generation || pending != request) {
+            discardedCount++;
+            return false;
+        }
+        pending = null;
+        return true;
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.bread.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.firebase.FirebaseService;
+import com.example.bread.model.MoodEvent;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TimelineRepository - Repository
+ * <p>
+ * Role / Purpose
+ * Maintains a materialized home timeline for every participant in the `participants/{username}/timeline` subcollection.
+ * When a participant writes a PUBLIC mood event, a copy is fanned out to the timeline of each of their followers, so
+ * reading the home feed becomes a single ordered, paged query instead of one query per followed user.
+ * Keeps timelines consistent when follow edges are created (backfill) or removed (cleanup). Follows that existed before
+ * fan-out are copied in once per participant; a `participants/{username}/stats/timeline` document marks the timeline as
+ * complete, and until it exists the home feed is read from the followed participants directly.
+ * <p>
+ * Design Patterns
+ * Repository Pattern: Encapsulates the timeline subcollection and its batched writes.
+ * Fan-out-on-write: Moves the cost of building the home feed from every read to each (much rarer) write.
+ * Observer Pattern: Uses success and failure listeners to report completion asynchronously.
+ * <p>
+ * Outstanding Issues
+ * - Fan-out is performed by the client after the mood event write; a crash in between leaves timelines stale until the next edit.
+ * - Timeline copies include the image thumbnail, so each follower stores its own (small) copy of it.
+ */
+
+public class TimelineRepository {
+    private static final String TAG = "TimelineRepository";
+    private static final int MAX_BATCH_SIZE = 500; // Firestore limit on writes per batch
+    static final int BACKFILL_LIMIT = 20;
+
+    // Participants whose existing follows this process is copying into their timeline
+    private static final Set<String> backfillsInProgress = ConcurrentHashMap.newKeySet();
+
+    private final FirebaseService firebaseService;
+    private final FollowEdgeIndex edgeIndex;
+    private final boolean fanOutEnabled;
+
+    public TimelineRepository() {
+        this(new FirebaseService(), true);
+    }
+
+    public TimelineRepository(FirebaseService firebaseService) {
+        this(firebaseService, true);
+    }
+
+    /**
+     * @param firebaseService the Firebase service to use
+     * @param fanOutEnabled   true to fan out writes and read the home feed from the timeline
+     */
+    public TimelineRepository(FirebaseService firebaseService, boolean fanOutEnabled) {
+        this.firebaseService = firebaseService;
+        this.edgeIndex = new FollowEdgeIndex(firebaseService);
+        this.fanOutEnabled = fanOutEnabled;
+    }
+
+    /**
+     * Returns whether the fan-out-on-write timeline mode is enabled
+     *
+     * @return true if mood event writes are fanned out and the home feed reads from the timeline
+     */
+    public boolean isFanOutEnabled() {
+        return fanOutEnabled;
+    }
+
+    private CollectionReference getParticipantCollRef() {
+        return firebaseService.getDb().collection("participants");
+    }
+
+    private CollectionReference getTimelineCollRef(@NonNull String username) {
+        return getParticipantCollRef().document(username).collection("timeline");
+    }
+
+    private DocumentReference getTimelineStateRef(@NonNull String username) {
+        return getParticipantCollRef().document(username).collection("stats").document("timeline");
+    }
+
+    /**
+     * Fetches whether the given participant's timeline holds the recent events of every participant they follow, i.e.
+     * whether the follows that existed before fan-out have been copied in
+     *
+     * @param username          The username of the participant whose timeline is checked
+     * @param onSuccessListener The listener to be called with true if the timeline is complete
+     * @param onFailureListener The listener to be called when the state cannot be read
+     */
+    public void fetchTimelineComplete(@NonNull String username, @NonNull OnSuccessListener<Boolean> onSuccessListener, OnFailureListener onFailureListener) {
+        getTimelineStateRef(username).get()
+                .addOnSuccessListener(doc -> onSuccessListener.onSuccess(doc.exists() && Boolean.TRUE.equals(doc.getBoolean("complete"))))
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to fetch timeline state for: " + username, e));
+    }
+
+    /**
+     * Copies the recent PUBLIC mood events of every participant the given participant follows into their timeline, then
+     * marks the timeline complete. Runs at most once at a time per participant in this process; a call while one is
+     * running completes immediately without marking anything.
+     *
+     * @param username          The username of the participant whose timeline is backfilled
+     * @param onSuccessListener The listener to be called when the timeline is marked complete
+     * @param onFailureListener The listener to be called when any backfill or the marker write fails
+     */
+    public void backfillExistingFollows(@NonNull String username, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
+        OnFailureListener failureListener = onFailureListener != null ? onFailureListener : e ->
+                Log.e(TAG, "Failed to backfill existing follows of: " + username, e);
+        if (!fanOutEnabled || !backfillsInProgress.add(username)) {
+            onSuccessListener.onSuccess(null);
+            return;
+        }
+        OnFailureListener release = e -> {
+            backfillsInProgress.remove(username);
+            failureListener.onFailure(e);
+        };
+        edgeIndex.fetchEdges(username, ParticipantRepository.ListType.FOLLOWING, following -> {
+            AtomicInteger remaining = new AtomicInteger(following.size());
+            AtomicBoolean failed = new AtomicBoolean(false);
+            Runnable markComplete = () -> {
+                Map<String, Object> state = new HashMap<>();
+                state.put("complete", true);
+                state.put("followingCount", following.size());
+                state.put("completedAt", FieldValue.serverTimestamp());
+                getTimelineStateRef(username).set(state)
+                        .addOnSuccessListener(unused -> {
+                            backfillsInProgress.remove(username);
+                            Log.d(TAG, "Backfilled timeline of " + username + " from " + following.size() + " follows");
+                            onSuccessListener.onSuccess(null);
+                        })
+                        .addOnFailureListener(release);
+            };
+            if (following.isEmpty()) {
+                markComplete.run();
+                return;
+            }
+            for (String followed : following) {
+                backfillTimeline(username, followed, unused -> {
+                    if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                        markComplete.run();
+                    }
+                }, e -> {
+                    // The first failure is reported; the timeline stays incomplete and is backfilled again next time
+                    if (failed.compareAndSet(false, true)) {
+                        release.onFailure(e);
+                    }
+                });
+            }
+        }, release);
+    }
+
+    /**
+     * Builds the query for the newest entries of the given participant's home timeline
+     *
+     * @param username The username of the participant whose timeline is queried
+     * @param limit    The maximum number of entries
+     * @return the timeline query, newest first
+     */
+    Query buildTimelineQuery(@NonNull String username, int limit) {
+        return getTimelineCollRef(username).orderBy("timestamp", Query.Direction.DESCENDING).limit(limit);
+    }
+
+    /**
+     * Fetches one page of the given participant's home timeline, newest first
+     *
+     * @param username          The username of the participant whose timeline is to be fetched
+     * @param pageSize          The maximum number of events in the page
+     * @param cursor            The cursor of the previous page, or null for the first page
+     * @param onSuccessListener The listener to be called with the page
+     * @param onFailureListener The listener to be called when the page cannot be fetched
+     */
+    public void fetchTimelinePage(@NonNull String username, int pageSize, @Nullable DocumentSnapshot cursor, @NonNull OnSuccessListener<MoodEventPage> onSuccessListener, OnFailureListener onFailureListener) {
+        Query query = getTimelineCollRef(username).orderBy("timestamp", Query.Direction.DESCENDING);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        query.limit(pageSize).get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<MoodEvent> events = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot) {
+                        MoodEvent event = doc.toObject(MoodEvent.class);
+                        if (event != null) {
+                            event.setId(doc.getId());
+                            events.add(event);
+                        }
+                    }
+                    List<DocumentSnapshot> docs = querySnapshot.getDocuments();
+                    DocumentSnapshot last = docs.isEmpty() ? null : docs.get(docs.size() - 1);
+                    onSuccessListener.onSuccess(new MoodEventPage(events, last, docs.size() == pageSize));
+                })
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to fetch timeline for: " + username, e));
+    }
+
+    /**
+     * Writes the given mood event into the timeline of every follower of its author.
+     * PUBLIC events are copied; events of any other visibility are removed, so that an event switched to PRIVATE
+     * disappears from timelines.
+     *
+     * @param moodEvent The mood event that was added or updated
+     */
+    public void fanOutMoodEvent(@NonNull MoodEvent moodEvent) {
+        if (!fanOutEnabled || moodEvent.getParticipantRef() == null || moodEvent.getId() == null) {
+            return;
+        }
+        boolean isPublic = moodEvent.getVisibility() == MoodEvent.Visibility.PUBLIC;
+        fetchFollowerUsernames(moodEvent.getParticipantRef().getId(), followers -> {
+            List<TimelineWrite> writes = new ArrayList<>();
+            for (String follower : followers) {
+                DocumentReference entry = getTimelineCollRef(follower).document(moodEvent.getId());
+                writes.add(new TimelineWrite(entry, isPublic ? moodEvent : null));
+            }
+            commitInBatches(writes, unused -> Log.d(TAG, "Fanned out " + moodEvent.getId() + " to " + followers.size() + " timelines"),
+                    e -> Log.e(TAG, "Failed to fan out mood event: " + moodEvent.getId(), e));
+        });
+    }
+
+    /**
+     * Removes the given mood event from the timeline of every follower of its author
+     *
+     * @param moodEvent The mood event that was deleted
+     */
+    public void removeFromTimelines(@NonNull MoodEvent moodEvent) {
+        if (!fanOutEnabled || moodEvent.getParticipantRef() == null || moodEvent.getId() == null) {
+            return;
+        }
+        fetchFollowerUsernames(moodEvent.getParticipantRef().getId(), followers -> {
+            List<TimelineWrite> writes = new ArrayList<>();
+            for (String follower : followers) {
+                writes.add(new TimelineWrite(getTimelineCollRef(follower).document(moodEvent.getId()), null));
+            }
+            commitInBatches(writes, unused -> Log.d(TAG, "Removed " + moodEvent.getId() + " from " + followers.size() + " timelines"),
+                    e -> Log.e(TAG, "Failed to remove mood event from timelines: " + moodEvent.getId(), e));
+        });
+    }
+
+    /**
+     * Copies the most recent PUBLIC mood events of a newly followed participant into the follower's timeline
+     *
+     * @param followerUsername  The username of the participant who started following
+     * @param followedUsername  The username of the participant being followed
+     * @param onSuccessListener The listener to be called when the backfill is written
+     * @param onFailureListener The listener to be called when the backfill fails
+     */
+    public void backfillTimeline(@NonNull String followerUsername, @NonNull String followedUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
+        if (!fanOutEnabled) {
+            onSuccessListener.onSuccess(null);
+            return;
+        }
+        firebaseService.getDb().collection("moodEvents")
+                .whereEqualTo("participantRef", getParticipantCollRef().document(followedUsername))
+                .whereEqualTo("visibility", MoodEvent.Visibility.PUBLIC)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(BACKFILL_LIMIT)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<TimelineWrite> writes = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot) {
+                        MoodEvent event = doc.toObject(MoodEvent.class);
+                        if (event != null) {
+                            event.setId(doc.getId());
+                            writes.add(new TimelineWrite(getTimelineCollRef(followerUsername).document(doc.getId()), event));
+                        }
+                    }
+                    commitInBatches(writes, onSuccessListener, onFailureListener);
+                })
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to backfill timeline of " + followerUsername + " with " + followedUsername, e));
+    }
+
+    /**
+     * Removes every event authored by the given participant from the follower's timeline
+     *
+     * @param followerUsername  The username of the participant whose timeline is cleaned up
+     * @param authorUsername    The username of the participant who is no longer followed
+     * @param onSuccessListener The listener to be called when the cleanup is written
+     * @param onFailureListener The listener to be called when the cleanup fails
+     */
+    public void removeAuthorFromTimeline(@NonNull String followerUsername, @NonNull String authorUsername, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
+        if (!fanOutEnabled) {
+            onSuccessListener.onSuccess(null);
+            return;
+        }
+        getTimelineCollRef(followerUsername)
+                .whereEqualTo("participantRef", getParticipantCollRef().document(authorUsername))
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<TimelineWrite> writes = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot) {
+                        writes.add(new TimelineWrite(doc.getReference(), null));
+                    }
+                    commitInBatches(writes, onSuccessListener, onFailureListener);
+                })
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to remove " + authorUsername + " from timeline of " + followerUsername, e));
+    }
+
+    /**
+     * Fetches the usernames of the followers of the given participant
+     */
+    private void fetchFollowerUsernames(@NonNull String username, @NonNull OnSuccessListener<List<String>> onSuccessListener) {
+        edgeIndex.fetchEdges(username, ParticipantRepository.ListType.FOLLOWERS, onSuccessListener,
+                e -> Log.e(TAG, "Failed to fetch followers of: " + username, e));
+    }
+
+    /**
+     * Commits the given writes in as few batches as Firestore allows
+     */
+    private void commitInBatches(@NonNull List<TimelineWrite> writes, @NonNull OnSuccessListener<Void> onSuccessListener, OnFailureListener onFailureListener) {
+        if (writes.isEmpty()) {
+            onSuccessListener.onSuccess(null);
+            return;
+        }
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_SIZE) {
+            WriteBatch batch = firebaseService.getDb().batch();
+            for (TimelineWrite write : writes.subList(start, Math.min(writes.size(), start + MAX_BATCH_SIZE))) {
+                if (write.moodEvent != null) {
+                    batch.set(write.entry, write.moodEvent);
+                } else {
+                    batch.delete(write.entry);
+                }
+            }
+            commits.add(batch.commit());
+        }
+        Tasks.whenAll(commits)
+                .addOnSuccessListener(onSuccessListener)
+                .addOnFailureListener(onFailureListener != null ? onFailureListener : e ->
+                        Log.e(TAG, "Failed to commit timeline writes", e));
+    }
+
+    /**
+     * A single timeline entry to set, or to delete when {@code moodEvent} is null
+     */
+    private static class TimelineWrite {
+        final DocumentReference entry;
+        final MoodEvent moodEvent;
+
+        TimelineWrite(DocumentReference entry, @Nullable MoodEvent moodEvent) {
+            this.entry = entry;
+            this.moodEvent = moodEvent;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.bread.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.Participant;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * UserSearchIndex - Repository
+ * <p>
+ * Role / Purpose
+ * Local side of user search, shared by every {@link ParticipantRepository}:
+ * - caches the result page of each searched prefix; a page that came back below the query limit holds every match of
+ *   its prefix, so a longer query that extends it is answered from the page without a network query,
+ * - keeps recently seen participants in a trie over their lower-cased username and name words, which makes typos
+ *   such as "jonh" still find "john" once that user has been seen,
+ * - ranks results by edit distance to the query, then exact username match, then follow proximity to the viewer
+ *   (people they follow, then their followers, then everyone else), then username length and order.
+ * <p>
+ * Design Patterns
+ * Caching Pattern: Bounded LRU maps with expiry for result pages, recently seen participants and follow connections.
+ * Composite Pattern: The trie is made of nodes that hold their children and the usernames whose key ends there.
+ * <p>
+ * Outstanding Issues
+ * - Typo tolerance only covers participants seen recently on this device; Firestore itself only answers exact prefixes.
+ * - Cached pages can miss users who signed up or renamed themselves after the page was fetched, until it expires.
+ */
+
+public class UserSearchIndex {
+    public static final int RESULT_LIMIT = 20;
+
+    private final int maxSeen;
+    private final int maxPages;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final TrieNode root = new TrieNode();
+    private final LinkedHashMap<String, Participant> seen = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, List<String>> keysByUsername = new HashMap<>();
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Connections> connectionsByViewer = new HashMap<>();
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>(4);
+        final Set<String> usernames = new HashSet<>(2);
+    }
+
+    private static final class Page {
+        final List<Participant> participants;
+        final boolean complete;
+        final long fetchedAt;
+
+        Page(List<Participant> participants, boolean complete, long fetchedAt) {
+            this.participants = participants;
+            this.complete = complete;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static final class Connections {
+        final Set<String> following;
+        final Set<String> followers;
+        final long fetchedAt;
+
+        Connections(Set<String> following, Set<String> followers, long fetchedAt) {
+            this.following = following;
+            this.followers = followers;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    public UserSearchIndex(int maxSeen, int maxPages, long ttlMillis) {
+        this(maxSeen, maxPages, ttlMillis, System::currentTimeMillis);
+    }
+
+    public UserSearchIndex(int maxSeen, int maxPages, long ttlMillis, @NonNull LongSupplier clock) {
+        this.maxSeen = maxSeen;
+        this.maxPages = maxPages;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Normalizes a query the way the search fields are stored: trimmed and lower-cased
+     */
+    @NonNull
+    public static String normalize(@Nullable String query) {
+        return query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds or refreshes a participant in the trie of recently seen participants
+     */
+    public synchronized void remember(@Nullable Participant participant) {
+        if (participant == null || participant.getUsername() == null) {
+            return;
+        }
+        String username = participant.getUsername();
+        removeFromTrie(username);
+        seen.put(username, participant);
+        List<String> keys = keysOf(participant);
+        keysByUsername.put(username, keys);
+        for (String key : keys) {
+            TrieNode node = root;
+            for (int i = 0; i < key.length(); i++) {
+                TrieNode child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new TrieNode();
+                    node.children.put(key.charAt(i), child);
+                }
+                node = child;
+            }
+            node.usernames.add(username);
+        }
+        while (seen.size() > maxSeen) {
+            Iterator<String> eldest = seen.keySet().iterator();
+            String evicted = eldest.next();
+            eldest.remove();
+            removeFromTrie(evicted);
+        }
+    }
+
+    /**
+     * Stores the result page of a prefix fetched from the database
+     *
+     * @param query        the query the page was fetched for
+     * @param participants the participants found
+     * @param complete     whether the page holds every participant matching the prefix, i.e. no query hit its limit
+     */
+    public synchronized void cachePage(@NonNull String query, @NonNull List<Participant> participants, boolean complete) {
+        String prefix = normalize(query);
+        pages.put(prefix, new Page(new ArrayList<>(participants), complete, clock.getAsLong()));
+        for (Participant participant : participants) {
+            remember(participant);
+        }
+        while (pages.size() > maxPages) {
+            Iterator<String> eldest = pages.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Stores who the viewer follows and who follows them, for ranking
+     */
+    public synchronized void setConnections(@NonNull String viewer, @NonNull Collection<String> following, @NonNull Collection<String> followers) {
+        connectionsByViewer.put(viewer, new Connections(new HashSet<>(following), new HashSet<>(followers), clock.getAsLong()));
+    }
+
+    /**
+     * @return whether follow connections of the viewer are known and not expired
+     */
+    public synchronized boolean hasConnections(@NonNull String viewer) {
+        Connections connections = connectionsByViewer.get(viewer);
+        return connections != null && clock.getAsLong() - connections.fetchedAt < ttlMillis;
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.usernames.clear();
+        seen.clear();
+        keysByUsername.clear();
+        pages.clear();
+        connectionsByViewer.clear();
+    }
+
+    /**
+     * Answers a query without the database if a cached page covers it: the page of the query itself, or a complete
+     * page of a shorter prefix of it
+     *
+     * @param query  the query as typed
+     * @param viewer the username of the searching participant, used for ranking and left out of the results; may be null
+     * @return the ranked results, or null if the database has to be queried
+     */
+    @Nullable
+    public synchronized List<Participant> searchLocally(@NonNull String query, @Nullable String viewer) {
+        String normalized = normalize(query);
+        long now = clock.getAsLong();
+        for (int length = normalized.length(); length > 0; length--) {
+            Page page = pages.get(normalized.substring(0, length));
+            if (page == null || now - page.fetchedAt >= ttlMillis || (length < normalized.length() && !page.complete)) {
+                continue;
+            }
+            List<Participant> matches = new ArrayList<>();
+            for (Participant participant : page.participants) {
+                if (matchesPrefix(participant, normalized)) {
+                    matches.add(participant);
+                }
+            }
+            return rank(normalized, matches, viewer);
+        }
+        return null;
+    }
+
+    /**
+     * Ranks database results together with close matches from the recently seen participants
+     *
+     * @param query   the query as typed
+     * @param results the participants returned by the database
+     * @param viewer  the username of the searching participant, may be null
+     * @return at most {@link #RESULT_LIMIT} participants, best first
+     */
+    @NonNull
+    public synchronized List<Participant> rank(@NonNull String query, @NonNull Collection<Participant> results, @Nullable String viewer) {
+        String normalized = normalize(query);
+        Map<String, Participant> candidates = new LinkedHashMap<>();
+        Map<String, Integer> distances = new HashMap<>();
+        for (Participant participant : results) {
+            if (participant != null && participant.getUsername() != null) {
+                candidates.put(participant.getUsername(), participant);
+                distances.put(participant.getUsername(), prefixDistance(normalized, keysOf(participant)));
+            }
+        }
+        fuzzySearch(normalized, maxTypos(normalized.length()), distances);
+        for (String username : distances.keySet()) {
+            if (!candidates.containsKey(username) && seen.containsKey(username)) {
+                candidates.put(username, seen.get(username));
+            }
+        }
+        if (viewer != null) {
+            candidates.remove(viewer);
+        }
+
+        Connections connections = viewer != null ? connectionsByViewer.get(viewer) : null;
+        List<Participant> ranked = new ArrayList<>(candidates.values());
+        Collections.sort(ranked, (a, b) -> {
+            int byDistance = Integer.compare(distances.get(a.getUsername()), distances.get(b.getUsername()));
+            if (byDistance != 0) {
+                return byDistance;
+            }
+            int byExact = Boolean.compare(!normalized.equals(a.getUsernameLower()), !normalized.equals(b.getUsernameLower()));
+            if (byExact != 0) {
+                return byExact;
+            }
+            int byProximity = Integer.compare(proximity(connections, a.getUsername()), proximity(connections, b.getUsername()));
+            if (byProximity != 0) {
+                return byProximity;
+            }
+            int byLength = Integer.compare(a.getUsername().length(), b.getUsername().length());
+            return byLength != 0 ? byLength : a.getUsername().compareTo(b.getUsername());
+        });
+        return ranked.size() > RESULT_LIMIT ? new ArrayList<>(ranked.subList(0, RESULT_LIMIT)) : ranked;
+    }
+
+    /**
+     * Typos allowed for a query length: none for short queries, where almost everything would be within reach
+     */
+    static int maxTypos(int queryLength) {
+        return queryLength <= 3 ? 0 : queryLength <= 6 ? 1 : 2;
+    }
+
+    private static int proximity(@Nullable Connections connections, String username) {
+        if (connections == null) {
+            return 2;
+        }
+        return connections.following.contains(username) ? 0 : connections.followers.contains(username) ? 1 : 2;
+    }
+
+    /**
+     * The lower-cased strings a participant can be found by: username, full name and each name word
+     */
+    @NonNull
+    static List<String> keysOf(@NonNull Participant participant) {
+        List<String> keys = new ArrayList<>();
+        if (participant.getUsernameLower() != null) {
+            keys.add(participant.getUsernameLower());
+        }
+        String name = participant.getDisplayNameLower();
+        if (name != null) {
+            keys.add(name);
+            for (String word : name.split("\\s+")) {
+                if (!word.isEmpty() && !keys.contains(word)) {
+                    keys.add(word);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static boolean matchesPrefix(@NonNull Participant participant, @NonNull String prefix) {
+        for (String key : keysOf(participant)) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Smallest edit distance between the query and a prefix of any of the keys
+     */
+    static int prefixDistance(@NonNull String query, @NonNull List<String> keys) {
+        int best = Integer.MAX_VALUE;
+        for (String key : keys) {
+            int[] row = initialRow(query.length());
+            best = Math.min(best, row[query.length()]);
+            for (int i = 0; i < key.length() && best > 0; i++) {
+                row = nextRow(row, query, key.charAt(i));
+                best = Math.min(best, row[query.length()]);
+            }
+        }
+        return best;
+    }
+
+    private static int[] initialRow(int length) {
+        int[] row = new int[length + 1];
+        for (int j = 0; j <= length; j++) {
+            row[j] = j;
+        }
+        return row;
+    }
+
+    /**
+     * One row of the Levenshtein table: distances between the query prefixes and the key read so far plus {@code c}
+     */
+    private static int[] nextRow(int[] previous, String query, char c) {
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        for (int j = 1; j < row.length; j++) {
+            int substitution = previous[j - 1] + (query.charAt(j - 1) == c ? 0 : 1);
+            row[j] = Math.min(substitution, Math.min(previous[j] + 1, row[j - 1] + 1));
+        }
+        return row;
+    }
+
+    /**
+     * Walks the trie with a Levenshtein row per node, collecting every username with a key that starts within
+     * {@code maxTypos} edits of the query; subtrees whose row is entirely above the limit are skipped
+     */
+    private void fuzzySearch(String query, int maxTypos, Map<String, Integer> distances) {
+        int[] row = initialRow(query.length());
+        fuzzySearch(root, query, row, row[query.length()], maxTypos, distances);
+    }
+
+    private void fuzzySearch(TrieNode node, String query, int[] row, int bestSoFar, int maxTypos, Map<String, Integer> distances) {
+        int best = Math.min(bestSoFar, row[query.length()]);
+        // No row below this node can go under the minimum of this one
+        int minInRow = Integer.MAX_VALUE;
+        for (int value : row) {
+            minInRow = Math.min(minInRow, value);
+        }
+        if (best <= maxTypos && minInRow >= best) {
+            // Every key below this node starts within the limit, and none can get closer
+            collect(node, best, distances);
+            return;
+        }
+        if (minInRow > maxTypos) {
+            return;
+        }
+        if (best <= maxTypos) {
+            for (String username : node.usernames) {
+                distances.merge(username, best, Math::min);
+            }
+        }
+        for (Map.Entry<Character, TrieNode> child : node.children.entrySet()) {
+            fuzzySearch(child.getValue(), query, nextRow(row, query, child.getKey()), best, maxTypos, distances);
+        }
+    }
+
+    private static void collect(TrieNode node, int distance, Map<String, Integer> distances) {
+        for (String username : node.usernames) {
+            distances.merge(username, distance, Math::min);
+        }
+        for (TrieNode child : node.children.values()) {
+            collect(child, distance, distances);
+        }
+    }
+
+    private void removeFromTrie(String username) {
+        List<String> keys = keysByUsername.remove(username);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            removeKey(root, key, 0, username);
+        }
+    }
+
+    /**
+     * @return whether the node is now empty and can be dropped by its parent
+     */
+    private static boolean removeKey(TrieNode node, String key, int depth, String username) {
+        if (depth == key.length()) {
+            node.usernames.remove(username);
+        } else {
+            TrieNode child = node.children.get(key.charAt(depth));
+            if (child != null && removeKey(child, key, depth + 1, username)) {
+                node.children.remove(key.charAt(depth));
+            }
+        }
+        return node.usernames.isEmpty() && node.children.isEmpty();
+    }
+}
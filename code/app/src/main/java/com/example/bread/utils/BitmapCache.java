@@ -0,0 +1,311 @@
+package com.example.bread.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BitmapCache - Utils
+ * <p>
+ * Role / Purpose
+ * Process-wide cache of decoded bitmaps keyed by image content hash, so the same image (typically a profile picture
+ * repeated on every row of a feed) is decoded once instead of on every bind.
+ * The first tier is an in-memory {@link LruCache} bounded by bitmap byte count; the second tier keeps the downsampled
+ * bitmaps re-encoded as JPEG in the app cache directory, so they survive the memory tier evicting them and process
+ * restarts without being fetched again.
+ * Hit, miss and eviction counters are exposed for diagnostics.
+ * <p>
+ * Design Patterns
+ * Singleton Pattern: A single cache is shared by every adapter and fragment.
+ * <p>
+ * Outstanding Issues
+ * - Disk entries are decoded again on a disk hit and lose any transparency; the tier is trimmed to {@link #MAX_DISK_BYTES}.
+ * - The disk tier is only available after {@link #initialize(Context)} has been called.
+ */
+
+public class BitmapCache {
+    private static final String TAG = "BitmapCache";
+    private static final String DISK_DIRECTORY = "bitmaps";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int DISK_JPEG_QUALITY = 90;
+    static final long MAX_DISK_BYTES = 32L * 1024 * 1024; // 32 MB
+
+    private static BitmapCache instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final Object diskLock = new Object();
+    private final ExecutorService diskWriter = Executors.newSingleThreadExecutor();
+    private File diskDirectory;
+    private long diskBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache whose memory tier holds at most the given number of bytes
+     *
+     * @param maxMemoryBytes the byte budget of the memory tier
+     */
+    BitmapCache(int maxMemoryBytes) {
+        memoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the shared cache. Its memory tier uses an eighth of the maximum heap.
+     *
+     * @return the process-wide bitmap cache
+     */
+    public static synchronized BitmapCache getInstance() {
+        if (instance == null) {
+            instance = new BitmapCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+        }
+        return instance;
+    }
+
+    /**
+     * Enables the disk tier of the shared cache in the application's cache directory
+     *
+     * @param context any context of the application
+     */
+    public static void initialize(@NonNull Context context) {
+        getInstance().setDiskDirectory(new File(context.getApplicationContext().getCacheDir(), DISK_DIRECTORY));
+    }
+
+    void setDiskDirectory(@NonNull File directory) {
+        synchronized (diskLock) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                Log.w(TAG, "Cannot create disk cache directory: " + directory);
+                return;
+            }
+            diskDirectory = directory;
+            diskBytes = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    // Temp files are left behind by writes interrupted by the process dying
+                    if (file.getName().endsWith(TEMP_SUFFIX)) {
+                        file.delete();
+                    } else {
+                        diskBytes += file.length();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a bitmap, first in memory and then on disk. Bitmaps found on disk are promoted to memory.
+     *
+     * @param key the content hash of the image
+     * @return the cached bitmap, or null on a miss
+     */
+    @Nullable
+    public Bitmap get(@NonNull String key) {
+        Bitmap bitmap = getFromMemory(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        return getFromDisk(key);
+    }
+
+    /**
+     * Looks up a bitmap in the memory tier only; cheap enough for the main thread
+     *
+     * @param key the content hash of the image
+     * @return the cached bitmap, or null if it is not in memory
+     */
+    @Nullable
+    public Bitmap getFromMemory(@NonNull String key) {
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            memoryHits.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Looks up a bitmap in the disk tier and promotes it to memory. Counts a miss if it is not found.
+     *
+     * @param key the content hash of the image
+     * @return the cached bitmap, or null on a miss
+     */
+    @Nullable
+    public Bitmap getFromDisk(@NonNull String key) {
+        Bitmap bitmap = readFromDisk(key);
+        if (bitmap != null) {
+            diskHits.incrementAndGet();
+            memoryCache.put(key, bitmap);
+        } else {
+            misses.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Stores a decoded bitmap in memory, and writes it to disk in the background
+     *
+     * @param key    the content hash of the image
+     * @param bitmap the decoded bitmap
+     */
+    public void put(@NonNull String key, @NonNull Bitmap bitmap) {
+        memoryCache.put(key, bitmap);
+        diskWriter.execute(() -> writeToDisk(key, bitmap));
+    }
+
+    /**
+     * Removes every bitmap from memory and disk
+     */
+    public void clear() {
+        memoryCache.evictAll();
+        synchronized (diskLock) {
+            if (diskDirectory == null) {
+                return;
+            }
+            File[] files = diskDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            diskBytes = 0;
+        }
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return memoryCache.evictionCount();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BitmapCache{memoryHits=" + getMemoryHitCount() + ", diskHits=" + getDiskHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+                + ", memoryBytes=" + memoryCache.size() + "/" + memoryCache.maxSize() + "}";
+    }
+
+    private static String fileName(@NonNull String key) {
+        return key.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    @Nullable
+    private Bitmap readFromDisk(@NonNull String key) {
+        File directory;
+        synchronized (diskLock) {
+            directory = diskDirectory;
+        }
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, fileName(key));
+        if (!file.exists()) {
+            return null;
+        }
+        // Reads refresh the modification time, so trimming removes the least recently used files
+        file.setLastModified(System.currentTimeMillis());
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            Log.w(TAG, "Discarding unreadable disk cache entry: " + key);
+            synchronized (diskLock) {
+                long length = file.length();
+                if (file.delete()) {
+                    diskBytes -= length;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Encodes the bitmap into a temp file without holding the disk lock, then renames it into place under the lock
+     */
+    private void writeToDisk(@NonNull String key, @NonNull Bitmap bitmap) {
+        File directory;
+        synchronized (diskLock) {
+            directory = diskDirectory;
+        }
+        if (directory == null) {
+            return;
+        }
+        File file = new File(directory, fileName(key));
+        if (file.exists()) {
+            return;
+        }
+        File temp = new File(directory, fileName(key) + TEMP_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, DISK_JPEG_QUALITY, out)) {
+                throw new IOException("Bitmap could not be encoded");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write disk cache entry: " + key, e);
+            temp.delete();
+            return;
+        }
+        synchronized (diskLock) {
+            // The cache may have been cleared or moved while the entry was written
+            if (directory != diskDirectory || !temp.exists() || file.exists() || !temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            diskBytes += file.length();
+            if (diskBytes > MAX_DISK_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the disk tier is back to three quarters of its budget
+     */
+    private void trimDisk() {
+        File[] files = diskDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (diskBytes <= MAX_DISK_BYTES * 3 / 4) {
+                break;
+            }
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                continue; // Still being written and not counted yet
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+}
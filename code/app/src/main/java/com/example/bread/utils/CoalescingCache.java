@@ -0,0 +1,227 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * CoalescingCache - Utils
+ * <p>
+ * Role / Purpose
+ * Bounded map of loaded values that coalesces concurrent loads of the same key, behind the participant cache and the
+ * mood event store of the repositories. The least recently used entry is evicted once the cache is full, and entries
+ * can expire after a time to live. A request for a key that is not cached joins the load already in flight for it, or
+ * starts one, so any number of concurrent requests issue a single read. A value put while its load is in flight was
+ * read or written later than the load started and is kept instead of the load's result; a key invalidated during its
+ * load still has the result delivered to its waiters, but not cached.
+ * <p>
+ * Design Patterns
+ * Caching Pattern: Bounded LRU map with optional expiry.
+ * Observer Pattern: Waiters of a coalesced load are notified through success and failure listeners.
+ * <p>
+ * Outstanding Issues
+ * - Loads that find nothing (a null value) are delivered but not cached, so repeated lookups of a missing key each load.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+
+public class CoalescingCache<K, V> {
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    /**
+     * Loads the value of a key on a cache miss
+     */
+    public interface Loader<K, V> {
+        void load(@NonNull K key, @NonNull OnSuccessListener<V> onSuccessListener, @NonNull OnFailureListener onFailureListener);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class PendingLoad<V> {
+        final List<OnSuccessListener<V>> successListeners = new ArrayList<>();
+        final List<OnFailureListener> failureListeners = new ArrayList<>();
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, PendingLoad<V>> pending = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long coalesced;
+
+    /**
+     * @param maxSize   the number of entries kept before the least recently used one is evicted
+     * @param ttlMillis how long an entry stays valid, or {@link #NO_EXPIRY}
+     * @param clock     the current time in milliseconds
+     */
+    public CoalescingCache(int maxSize, long ttlMillis, @NonNull LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // Access order, so iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > CoalescingCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value if it is present and not expired, without loading it
+     *
+     * @param key the key
+     * @return the cached value, or null
+     */
+    @Nullable
+    public synchronized V getIfPresent(@NonNull K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlMillis != NO_EXPIRY && clock.getAsLong() - entry.loadedAt >= ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Delivers the value from the cache, or loads it. A hit is delivered synchronously; a miss joins the load already
+     * in flight for the same key, or starts one with the given loader.
+     *
+     * @param key               the key
+     * @param loader            loads the value on a miss
+     * @param onSuccessListener called with the value, or null if there is none
+     * @param onFailureListener called if the load fails
+     */
+    public void get(@NonNull K key, @NonNull Loader<K, V> loader, @NonNull OnSuccessListener<V> onSuccessListener,
+                    @NonNull OnFailureListener onFailureListener) {
+        V cached;
+        PendingLoad<V> started;
+        synchronized (this) {
+            cached = getIfPresent(key);
+            if (cached != null) {
+                hits++;
+                started = null;
+            } else {
+                PendingLoad<V> inFlight = pending.get(key);
+                if (inFlight != null) {
+                    coalesced++;
+                    inFlight.successListeners.add(onSuccessListener);
+                    inFlight.failureListeners.add(onFailureListener);
+                    return;
+                }
+                misses++;
+                started = new PendingLoad<>();
+                started.successListeners.add(onSuccessListener);
+                started.failureListeners.add(onFailureListener);
+                pending.put(key, started);
+            }
+        }
+        if (started == null) {
+            onSuccessListener.onSuccess(cached);
+            return;
+        }
+
+        loader.load(key, value -> {
+            List<OnSuccessListener<V>> listeners;
+            V result = value;
+            synchronized (this) {
+                // An invalidation during the load drops it from pending; its result is then delivered but not cached
+                if (pending.get(key) == started) {
+                    pending.remove(key);
+                    V written = getIfPresent(key);
+                    if (written != null) {
+                        result = written; // Put while loading, so newer than what was loaded
+                    } else if (value != null) {
+                        entries.put(key, new Entry<>(value, clock.getAsLong()));
+                    }
+                }
+                listeners = new ArrayList<>(started.successListeners);
+            }
+            for (OnSuccessListener<V> listener : listeners) {
+                listener.onSuccess(result);
+            }
+        }, e -> {
+            List<OnFailureListener> listeners;
+            synchronized (this) {
+                if (pending.get(key) == started) {
+                    pending.remove(key);
+                }
+                listeners = new ArrayList<>(started.failureListeners);
+            }
+            for (OnFailureListener listener : listeners) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Stores a value that was read or written elsewhere, replacing any cached value of the key
+     */
+    public synchronized void put(@NonNull K key, @NonNull V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong()));
+    }
+
+    /**
+     * Drops a key, including any load in flight, so the next request loads it again
+     */
+    public synchronized void invalidate(@NonNull K key) {
+        entries.remove(key);
+        pending.remove(key);
+    }
+
+    /**
+     * Drops every key, including loads in flight
+     */
+    public synchronized void clear() {
+        entries.clear();
+        pending.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+}
@@ -1,14 +1,30 @@
 package com.example.bread.utils;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Base64;
+import android.util.Base64OutputStream;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ImageHandler - Utils
@@ -18,6 +34,9 @@ import java.io.InputStream;
  * Role / Purpose
  * Provides utility methods for compressing and converting images to and from Base64 strings, specifically for storing and retrieving user-uploaded images in Firebase Firestore.
  * Ensures images meet Firestore's size constraints by resizing and reducing quality during encoding.
+ * Produces the JPEG bytes uploaded to the image store and the tiny Base64 thumbnails kept inside documents.
+ * Picked images are decoded straight to the size the byte budget can hold and turned upright from their EXIF
+ * orientation, so a camera photo is never held in memory at full resolution.
  * <p>
  * Design Patterns
  * Utility Pattern: Offers static helper methods without requiring instantiation.
@@ -26,12 +45,22 @@ import java.io.InputStream;
  * Outstanding Issues
  * - Compression algorithm may result in visible quality loss for large or high-resolution images.
  * - Relies on a fixed MAX_IMAGE_SIZE; may need adjustment if Firestore constraints change.
+ * - The decode size is chosen from an estimated bits-per-pixel, so very detailed photos may still need a scaling pass.
+ * - JPEG sources are decoded as RGB_565, which can band smooth gradients slightly before re-encoding.
  */
 
 public class ImageHandler {
+    private static final String TAG = "ImageHandler";
+    private static final ExecutorService compressExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static volatile ImageIngestionStats.Listener ingestionListener;
 
     public static final int MAX_IMAGE_SIZE = 64 * 1024; // 64 KB
-    public static final float SCALE_FACTOR = 0.7f;
+    // Typical JPEG density of photos at medium quality, used to pick a decode size that fits MAX_IMAGE_SIZE
+    public static final int ESTIMATED_BITS_PER_PIXEL = 2;
+    public static final int MAX_ENCODE_PIXELS = MAX_IMAGE_SIZE * 8 / ESTIMATED_BITS_PER_PIXEL;
+    public static final int THUMBNAIL_SIZE = 48; // px, longest side
+    public static final int THUMBNAIL_QUALITY = 50;
 
     /**
      * Compress an image file to a base64 encoded string with size less than {@link #MAX_IMAGE_SIZE}.
@@ -52,12 +81,172 @@ public class ImageHandler {
      * @throws IOException if the file cannot be read
      */
     public static String compressImageToBase64(Context context, Uri uri) throws IOException {
-        InputStream inputStream = context.getContentResolver().openInputStream(uri);
-        Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
-        if (inputStream != null) {
-            inputStream.close();
+        JpegEncoder.Result result = ingest(context, uri);
+        return result != null ? toBase64(result) : null;
+    }
+
+    /**
+     * Compress an image file to JPEG bytes with size less than {@link #MAX_IMAGE_SIZE}.
+     *
+     * @param context the context
+     * @param uri     the URI of the image file
+     * @return the compressed JPEG bytes, or null if the image cannot be decoded
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] compressImageToJpeg(Context context, Uri uri) throws IOException {
+        JpegEncoder.Result result = ingest(context, uri);
+        return result != null ? result.getBytes() : null;
+    }
+
+    /**
+     * Register a listener that receives the {@link ImageIngestionStats} of every image read from a URI,
+     * for example to report peak heap use during image attach.
+     *
+     * @param listener the listener, or null to stop reporting
+     */
+    public static void setIngestionListener(ImageIngestionStats.Listener listener) {
+        ingestionListener = listener;
+    }
+
+    /**
+     * Decode an image file straight to the size the byte budget can hold, upright, and encode it to the budget.
+     * The full-resolution pixels are never allocated: bounds are read first, the image is decoded with an
+     * inSampleSize (as RGB_565 for JPEG sources, which have no alpha), and the remaining scaling and EXIF rotation are
+     * applied together in a single pass over the small bitmap.
+     */
+    private static JpegEncoder.Result ingest(Context context, Uri uri) throws IOException {
+        ImageIngestionStats stats = new ImageIngestionStats();
+        ContentResolver resolver = context.getContentResolver();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream boundsStream = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(boundsStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        stats.setSource(options.outWidth, options.outHeight);
+        boolean opaque = "image/jpeg".equals(options.outMimeType);
+        int sampleSize = 1;
+        while ((long) (options.outWidth / (sampleSize * 2)) * (options.outHeight / (sampleSize * 2)) >= MAX_ENCODE_PIXELS) {
+            sampleSize *= 2;
+        }
+        int orientation = readExifOrientation(resolver, uri);
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            decoded = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (decoded == null) {
+            return null;
+        }
+        stats.setDecoded(sampleSize, decoded.getConfig(), decoded.getWidth(), decoded.getHeight());
+        stats.sampleHeap();
+
+        Bitmap bitmap = orientAndFit(decoded, orientation, stats);
+        stats.sampleHeap();
+        JpegEncoder.Result result = encode(bitmap);
+        stats.setOutput(result.getWidth(), result.getHeight(), result.getSize());
+        stats.finish();
+        bitmap.recycle();
+
+        ImageIngestionStats.Listener listener = ingestionListener;
+        if (listener != null) {
+            listener.onImageIngested(stats);
+        }
+        return result;
+    }
+
+    /**
+     * Read the EXIF orientation of an image, defaulting to normal when it has none or it cannot be read
+     */
+    private static int readExifOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream exifStream = resolver.openInputStream(uri)) {
+            if (exifStream == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(exifStream).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read EXIF orientation of " + uri, e);
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Scale a decoded bitmap down to {@link #MAX_ENCODE_PIXELS} and rotate or flip it upright, in one pass.
+     * The decoded bitmap is recycled if a new one is created.
+     */
+    private static Bitmap orientAndFit(Bitmap decoded, int orientation, ImageIngestionStats stats) {
+        Matrix matrix = new Matrix();
+        long pixels = (long) decoded.getWidth() * decoded.getHeight();
+        if (pixels > MAX_ENCODE_PIXELS) {
+            float scale = (float) Math.sqrt((double) MAX_ENCODE_PIXELS / pixels);
+            matrix.postScale(scale, scale);
+        }
+        int rotation = 0;
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                rotation = 180;
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postScale(-1, 1);
+                rotation = 270;
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                rotation = 90;
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postScale(-1, 1);
+                rotation = 90;
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                rotation = 270;
+                break;
+            default:
+                break;
+        }
+        matrix.postRotate(rotation);
+        stats.setRotationDegrees(rotation);
+        if (matrix.isIdentity()) {
+            return decoded;
+        }
+        Bitmap transformed = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+        if (transformed != decoded) {
+            stats.sampleHeap();
+            decoded.recycle();
         }
-        return compressBitmapToBase64(originalBitmap);
+        return transformed;
+    }
+
+    /**
+     * Compress an image file to JPEG bytes on a background thread, delivering the result on the main thread.
+     *
+     * @param context           the context
+     * @param uri               the URI of the image file
+     * @param onSuccessListener called with the compressed JPEG bytes, or null if the image cannot be decoded
+     * @param onFailureListener called if the file cannot be read
+     */
+    public static void compressImageToJpegAsync(Context context, Uri uri, OnSuccessListener<byte[]> onSuccessListener,
+                                                OnFailureListener onFailureListener) {
+        Context appContext = context.getApplicationContext();
+        compressExecutor.execute(() -> {
+            try {
+                byte[] jpeg = compressImageToJpeg(appContext, uri);
+                mainHandler.post(() -> onSuccessListener.onSuccess(jpeg));
+            } catch (IOException | RuntimeException e) {
+                mainHandler.post(() -> onFailureListener.onFailure(e));
+            }
+        });
     }
 
     /**
@@ -67,40 +256,69 @@ public class ImageHandler {
      * @return Base64 encoded string of the compressed image
      */
     public static String compressBitmapToBase64(Bitmap bitmap) {
+        return bitmap != null ? toBase64(encode(bitmap)) : null;
+    }
+
+    /**
+     * Compress a bitmap to JPEG bytes with size less than {@link #MAX_IMAGE_SIZE}.
+     *
+     * @param bitmap the bitmap to compress
+     * @return the compressed JPEG bytes, or null if the bitmap is null
+     */
+    public static byte[] compressBitmapToJpeg(Bitmap bitmap) {
         if (bitmap == null) {
             return null;
         }
+        return encode(bitmap).getBytes();
+    }
 
-        int quality = 100;
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outputStream);
-
-        // Keep reducing quality until we're under the size limit
-        while (outputStream.toByteArray().length > MAX_IMAGE_SIZE) {
-            outputStream.reset();
+    private static JpegEncoder.Result encode(Bitmap bitmap) {
+        return JpegEncoder.encodeToBudget(new BitmapImage(bitmap), MAX_IMAGE_SIZE);
+    }
 
-            quality -= 10;
-            if (quality <= 10) {
-                quality = 70;
-                // Scale down the bitmap
-                bitmap = scaleBitmap(bitmap);
-            }
-            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outputStream);
+    /**
+     * Create a tiny base64 encoded JPEG thumbnail, small enough to be stored inside a document and shown
+     * while the full image is fetched.
+     *
+     * @param jpeg the encoded full-size image
+     * @return Base64 encoded thumbnail whose longest side is at most {@link #THUMBNAIL_SIZE}, or null if decoding fails
+     */
+    public static String createThumbnailBase64(byte[] jpeg) {
+        if (jpeg == null || jpeg.length == 0) {
+            return null;
         }
-        byte[] compressedData = outputStream.toByteArray();
-        return Base64.encodeToString(compressedData, Base64.DEFAULT);
+        Bitmap sampled = decodeSampledBitmap(jpeg, THUMBNAIL_SIZE);
+        if (sampled == null) {
+            return null;
+        }
+
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(sampled.getWidth(), sampled.getHeight()));
+        int width = Math.max(1, Math.round(sampled.getWidth() * scale));
+        int height = Math.max(1, Math.round(sampled.getHeight() * scale));
+        Bitmap thumbnail = Bitmap.createScaledBitmap(sampled, width, height, true);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, outputStream);
+        return Base64.encodeToString(outputStream.toByteArray(), Base64.NO_WRAP);
     }
 
     /**
-     * Scale a bitmap by a factor of {@link #SCALE_FACTOR}.
-     *
-     * @param bitmap the bitmap to scale
-     * @return the scaled bitmap
+     * Stream an encoding into a Base64 encoder, so the JPEG bytes are never copied out of their buffer
      */
-    private static Bitmap scaleBitmap(Bitmap bitmap) {
-        int width = Math.round(bitmap.getWidth() * SCALE_FACTOR);
-        int height = Math.round(bitmap.getHeight() * SCALE_FACTOR);
-        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    private static String toBase64(JpegEncoder.Result result) {
+        // Base64 grows the data by a third, plus a line break every 76 characters
+        int size = result.getSize();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size * 4 / 3 + size / 57 + 4);
+        try (Base64OutputStream base64Stream = new Base64OutputStream(outputStream, Base64.DEFAULT)) {
+            result.writeTo(base64Stream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        try {
+            return outputStream.toString("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("US-ASCII is not available", e);
+        }
     }
 
     /**
@@ -121,4 +339,100 @@ public class ImageHandler {
         byte[] decodedString = Base64.decode(base64, Base64.DEFAULT);
         return BitmapFactory.decodeByteArray(decodedString, 0, decodedString.length);
     }
+
+    /**
+     * Convert a base64 encoded string to a bitmap downsampled for display at the given size.
+     *
+     * @param base64  the base64 encoded string
+     * @param reqSize the size in pixels of the longest side the bitmap will be displayed at
+     * @return the bitmap, or null if conversion fails
+     */
+    public static Bitmap base64ToBitmap(String base64, int reqSize) {
+        if (base64 == null || base64.isEmpty()) {
+            return null;
+        }
+        if (base64.startsWith("data:image")) {
+            base64 = base64.substring(base64.indexOf(",") + 1);
+        }
+        return decodeSampledBitmap(Base64.decode(base64, Base64.DEFAULT), reqSize);
+    }
+
+    /**
+     * Decode encoded image bytes, downsampled at decode time so the bitmap is no larger than needed for display.
+     * The pixels of the full-resolution image are never allocated.
+     *
+     * @param bytes   the encoded image
+     * @param reqSize the size in pixels of the longest side the bitmap will be displayed at
+     * @return the bitmap, or null if decoding fails
+     */
+    public static Bitmap decodeSampledBitmap(byte[] bytes, int reqSize) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqSize);
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * Calculate the largest power-of-two sample size that keeps the longest side of the decoded image
+     * at least {@code reqSize} pixels.
+     *
+     * @param width   the width of the encoded image
+     * @param height  the height of the encoded image
+     * @param reqSize the required size of the longest side, or 0 or less to decode at full size
+     * @return the sample size to pass as {@link BitmapFactory.Options#inSampleSize}
+     */
+    public static int calculateInSampleSize(int width, int height, int reqSize) {
+        int longestSide = Math.max(width, height);
+        int sampleSize = 1;
+        if (reqSize <= 0) {
+            return sampleSize;
+        }
+        while (longestSide / (sampleSize * 2) >= reqSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Adapts a bitmap to the {@link JpegEncoder} search
+     */
+    private static class BitmapImage implements JpegEncoder.Image {
+        private final Bitmap bitmap;
+
+        BitmapImage(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        public void encode(int quality, @NonNull OutputStream out) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        }
+
+        @Override
+        public int getWidth() {
+            return bitmap.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return bitmap.getHeight();
+        }
+
+        @NonNull
+        @Override
+        public JpegEncoder.Image scale(float factor) {
+            int width = Math.max(1, Math.round(bitmap.getWidth() * factor));
+            int height = Math.max(1, Math.round(bitmap.getHeight() * factor));
+            return new BitmapImage(Bitmap.createScaledBitmap(bitmap, width, height, true));
+        }
+    }
 }
@@ -0,0 +1,167 @@
+package com.example.bread.utils;
+
+import android.graphics.Bitmap;
+import android.os.Debug;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ImageIngestionStats - Utils
+ * <p>
+ * Role / Purpose
+ * Records what happened while one picked image was turned into upload-ready JPEG bytes: the source and decoded sizes,
+ * the sample size and pixel format used, the EXIF rotation applied, and the peak Java and native heap growth above
+ * the level at the start of ingestion. Bitmap pixels live on the native heap from Android 8 on, so both are sampled.
+ * <p>
+ * Design Patterns
+ * Observer Pattern: A {@link Listener} registered with {@link ImageHandler#setIngestionListener(Listener)} receives the
+ * stats of every ingestion, which lets instrumentation tests and debug builds report memory use during image attach.
+ * <p>
+ * Outstanding Issues
+ * - Heap usage is sampled at the points where ingestion holds the most memory, not continuously, so short spikes
+ *   inside the platform decoder are not seen.
+ */
+
+public class ImageIngestionStats {
+
+    /**
+     * Receives the stats of each completed ingestion, on the thread that ran it
+     */
+    public interface Listener {
+        void onImageIngested(@NonNull ImageIngestionStats stats);
+    }
+
+    private final long baselineJavaHeap;
+    private final long baselineNativeHeap;
+    private final long startNanos;
+
+    private int sourceWidth;
+    private int sourceHeight;
+    private int sampleSize = 1;
+    private Bitmap.Config config;
+    private int decodedWidth;
+    private int decodedHeight;
+    private int rotationDegrees;
+    private int outputWidth;
+    private int outputHeight;
+    private int encodedBytes;
+    private long peakJavaHeapBytes;
+    private long peakNativeHeapBytes;
+    private long durationMillis;
+
+    ImageIngestionStats() {
+        baselineJavaHeap = javaHeapUsed();
+        baselineNativeHeap = Debug.getNativeHeapAllocatedSize();
+        startNanos = System.nanoTime();
+    }
+
+    private static long javaHeapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Samples the heaps and keeps the largest growth seen so far
+     */
+    void sampleHeap() {
+        peakJavaHeapBytes = Math.max(peakJavaHeapBytes, javaHeapUsed() - baselineJavaHeap);
+        peakNativeHeapBytes = Math.max(peakNativeHeapBytes, Debug.getNativeHeapAllocatedSize() - baselineNativeHeap);
+    }
+
+    void setSource(int width, int height) {
+        sourceWidth = width;
+        sourceHeight = height;
+    }
+
+    void setDecoded(int sampleSize, @Nullable Bitmap.Config config, int width, int height) {
+        this.sampleSize = sampleSize;
+        this.config = config;
+        decodedWidth = width;
+        decodedHeight = height;
+    }
+
+    void setRotationDegrees(int rotationDegrees) {
+        this.rotationDegrees = rotationDegrees;
+    }
+
+    void setOutput(int width, int height, int encodedBytes) {
+        outputWidth = width;
+        outputHeight = height;
+        this.encodedBytes = encodedBytes;
+    }
+
+    void finish() {
+        sampleHeap();
+        durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    @Nullable
+    public Bitmap.Config getConfig() {
+        return config;
+    }
+
+    public int getDecodedWidth() {
+        return decodedWidth;
+    }
+
+    public int getDecodedHeight() {
+        return decodedHeight;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    public int getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    /**
+     * @return the largest Java heap growth above the start of ingestion, in bytes
+     */
+    public long getPeakJavaHeapBytes() {
+        return peakJavaHeapBytes;
+    }
+
+    /**
+     * @return the largest native heap growth above the start of ingestion, in bytes
+     */
+    public long getPeakNativeHeapBytes() {
+        return peakNativeHeapBytes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ImageIngestionStats{source=" + sourceWidth + "x" + sourceHeight + ", sampleSize=" + sampleSize
+                + ", decoded=" + decodedWidth + "x" + decodedHeight + " " + config + ", rotation=" + rotationDegrees
+                + ", output=" + outputWidth + "x" + outputHeight + ", encodedBytes=" + encodedBytes
+                + ", peakJavaHeap=" + peakJavaHeapBytes + ", peakNativeHeap=" + peakNativeHeapBytes
+                + ", durationMillis=" + durationMillis + "}";
+    }
+}
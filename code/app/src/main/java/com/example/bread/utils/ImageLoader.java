@@ -0,0 +1,358 @@
+package com.example.bread.utils;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.R;
+import com.example.bread.model.MoodEvent;
+import com.example.bread.model.Participant;
+import com.example.bread.repository.ImageRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ImageLoader - Utils
+ * <p>
+ * Role / Purpose
+ * Displays mood event images and profile pictures in image views.
+ * The thumbnail stored in the document is shown immediately, and the full-size image is fetched from the image store
+ * only when the view is actually bound and asks for it. Documents written before the image store existed still carry
+ * an inline Base64 image, which is decoded as before.
+ * Every decoded bitmap goes through {@link BitmapCache}, so an image shown on many rows is decoded and fetched once.
+ * Decoding happens on a small background pool, downsampled to the size of the target view, and results are
+ * delivered on the main thread. Binding a view again cancels its previous request, so a recycled row never shows
+ * the image of the item it was bound to before.
+ * <p>
+ * Design Patterns
+ * Utility Pattern: Offers static helper methods without requiring instantiation.
+ * <p>
+ * Outstanding Issues
+ * - Document thumbnails are decoded on the main thread; they are at most {@link ImageHandler#THUMBNAIL_SIZE} pixels wide.
+ */
+
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+    private static final String INLINE_KEY_PREFIX = "inline-";
+    private static final String THUMBNAIL_KEY_PREFIX = "thumb-";
+    private static final int DECODE_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS, runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "ImageLoader-decode");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Cache keys of inline images, so the same Base64 string is hashed once rather than on every bind
+    private static final Map<String, String> inlineKeys = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static ImageRepository imageRepository;
+
+    private ImageLoader() {
+    }
+
+    private static synchronized ImageRepository getImageRepository() {
+        if (imageRepository == null) {
+            imageRepository = new ImageRepository();
+        }
+        return imageRepository;
+    }
+
+    /**
+     * Returns whether the given mood event has an image attached, in either the old inline or the hashed form
+     *
+     * @param moodEvent the mood event to check
+     * @return true if an image can be shown for the event
+     */
+    public static boolean hasImage(@Nullable MoodEvent moodEvent) {
+        return moodEvent != null && (isPresent(moodEvent.getAttachedImage()) || isPresent(moodEvent.getAttachedImageHash())
+                || isPresent(moodEvent.getAttachedImageThumbnail()));
+    }
+
+    /**
+     * Shows the image attached to a mood event, starting with its thumbnail and then the full-size image
+     *
+     * @param view      the view to show the image in
+     * @param moodEvent the mood event whose image is shown
+     * @return true if an image is (or will be) shown, false if the event has no image
+     */
+    @MainThread
+    public static boolean loadMoodImage(@NonNull ImageView view, @Nullable MoodEvent moodEvent) {
+        if (moodEvent == null) {
+            cancel(view);
+            return false;
+        }
+        return load(view, moodEvent.getAttachedImage(), moodEvent.getAttachedImageThumbnail(), moodEvent.getAttachedImageHash(), true, 0);
+    }
+
+    /**
+     * Shows a participant's profile picture
+     *
+     * @param view        the view to show the picture in
+     * @param participant the participant whose picture is shown
+     * @param fullSize    true to fetch the full-size picture, false to show only the thumbnail (for small avatars in lists)
+     * @return true if a picture is (or will be) shown, false if the participant has none
+     */
+    @MainThread
+    public static boolean loadProfilePicture(@NonNull ImageView view, @Nullable Participant participant, boolean fullSize) {
+        return loadProfilePicture(view, participant, fullSize, 0);
+    }
+
+    /**
+     * Shows a participant's profile picture, or the placeholder while it loads and when the participant has none
+     *
+     * @param view        the view to show the picture in
+     * @param participant the participant whose picture is shown
+     * @param fullSize    true to fetch the full-size picture, false to show only the thumbnail (for small avatars in lists)
+     * @param placeholder the drawable shown until the picture is decoded, or 0 to clear the view
+     * @return true if a picture is (or will be) shown, false if the participant has none
+     */
+    @MainThread
+    public static boolean loadProfilePicture(@NonNull ImageView view, @Nullable Participant participant, boolean fullSize,
+                                             @DrawableRes int placeholder) {
+        if (participant == null) {
+            cancel(view);
+            showPlaceholder(view, placeholder);
+            return false;
+        }
+        boolean shown = load(view, participant.getProfilePicture(), participant.getProfilePictureThumbnail(),
+                participant.getProfilePictureHash(), fullSize, placeholder);
+        if (!shown) {
+            showPlaceholder(view, placeholder);
+        }
+        return shown;
+    }
+
+    /**
+     * Cancels the pending request of a view, for example when its row is bound to an item without an image
+     *
+     * @param view the view whose request is cancelled
+     */
+    @MainThread
+    public static void cancel(@NonNull ImageView view) {
+        Object tag = view.getTag(R.id.image_loader_request);
+        if (tag instanceof ImageRequest) {
+            ((ImageRequest) tag).cancel();
+        }
+        view.setTag(R.id.image_loader_request, null);
+    }
+
+    private static boolean load(@NonNull ImageView view, @Nullable String inlineBase64, @Nullable String thumbnailBase64,
+                                @Nullable String hash, boolean fullSize, @DrawableRes int placeholder) {
+        cancel(view);
+        BitmapCache cache = BitmapCache.getInstance();
+        int targetSize = targetSize(view);
+
+        if (isPresent(inlineBase64)) {
+            String key = inlineKey(inlineBase64) + "@" + targetSize;
+            Bitmap cached = cache.getFromMemory(key);
+            if (cached != null) {
+                view.setImageBitmap(cached);
+            } else {
+                showPlaceholder(view, placeholder);
+                submit(view, new ImageRequest(key), request -> deliver(view, request,
+                        ImageHandler.base64ToBitmap(inlineBase64, targetSize)));
+            }
+            return true;
+        }
+
+        String fullKey = isPresent(hash) ? hash + "@" + targetSize : null;
+        if (fullSize && fullKey != null) {
+            Bitmap cached = cache.getFromMemory(fullKey);
+            if (cached != null) {
+                view.setImageBitmap(cached);
+                return true;
+            }
+        }
+
+        boolean shown = false;
+        if (isPresent(thumbnailBase64)) {
+            Bitmap thumbnail = decodeThumbnail(isPresent(hash) ? THUMBNAIL_KEY_PREFIX + hash : null, thumbnailBase64);
+            if (thumbnail != null) {
+                view.setImageBitmap(thumbnail);
+                shown = true;
+            }
+        }
+        if (fullSize && fullKey != null) {
+            if (!shown) {
+                showPlaceholder(view, placeholder);
+            }
+            submit(view, new ImageRequest(fullKey), request -> mainHandler.post(() -> {
+                if (request.isCancelled()) {
+                    return;
+                }
+                getImageRepository().fetchImage(hash, bytes -> {
+                    if (bytes == null || request.isCancelled()) {
+                        return;
+                    }
+                    try {
+                        request.setFuture(decodeExecutor.submit(() -> deliver(view, request,
+                                ImageHandler.decodeSampledBitmap(bytes, targetSize))));
+                    } catch (RejectedExecutionException e) {
+                        Log.e(TAG, "Decode rejected for image: " + hash, e);
+                    }
+                }, e -> Log.e(TAG, "Failed to load image: " + hash, e));
+            }));
+            shown = true;
+        }
+        return shown;
+    }
+
+    /**
+     * Starts a request for a view: the disk tier of the cache is checked in the background, and only on a miss is
+     * the image produced by {@code onMiss}, still on the background thread
+     */
+    private static void submit(@NonNull ImageView view, @NonNull ImageRequest request, @NonNull MissHandler onMiss) {
+        view.setTag(R.id.image_loader_request, request);
+        try {
+            request.setFuture(decodeExecutor.submit(() -> {
+                if (request.isCancelled()) {
+                    return;
+                }
+                Bitmap cached = BitmapCache.getInstance().getFromDisk(request.key);
+                if (cached != null) {
+                    post(view, request, cached);
+                } else if (!request.isCancelled()) {
+                    onMiss.onMiss(request);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Decode rejected for: " + request.key, e);
+        }
+    }
+
+    /**
+     * Caches a freshly decoded bitmap and hands it to the main thread. Runs on a decode thread.
+     */
+    private static void deliver(@NonNull ImageView view, @NonNull ImageRequest request, @Nullable Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        // Cache even if the request was cancelled meanwhile; the row will likely be bound to this image again
+        BitmapCache.getInstance().put(request.key, bitmap);
+        post(view, request, bitmap);
+    }
+
+    private static void post(@NonNull ImageView view, @NonNull ImageRequest request, @NonNull Bitmap bitmap) {
+        mainHandler.post(() -> {
+            if (!request.isCancelled() && view.getTag(R.id.image_loader_request) == request) {
+                view.setTag(R.id.image_loader_request, null);
+                view.setImageBitmap(bitmap);
+            }
+        });
+    }
+
+    @Nullable
+    private static Bitmap decodeThumbnail(@Nullable String key, @NonNull String base64) {
+        if (key == null) {
+            return ImageHandler.base64ToBitmap(base64);
+        }
+        BitmapCache cache = BitmapCache.getInstance();
+        Bitmap bitmap = cache.getFromMemory(key);
+        if (bitmap == null) {
+            bitmap = ImageHandler.base64ToBitmap(base64);
+            if (bitmap != null) {
+                cache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    @NonNull
+    private static String inlineKey(@NonNull String base64) {
+        String key = inlineKeys.get(base64);
+        if (key == null) {
+            key = INLINE_KEY_PREFIX + ImageRepository.contentHash(base64.getBytes(StandardCharsets.UTF_8));
+            inlineKeys.put(base64, key);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the display size to decode for, rounded up to a power of two so views of similar size share cache entries
+     */
+    private static int targetSize(@NonNull ImageView view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width <= 0 || height <= 0) {
+            ViewGroup.LayoutParams params = view.getLayoutParams();
+            if (params != null) {
+                width = params.width;
+                height = params.height;
+            }
+        }
+        int size = Math.max(width, height);
+        if (size <= 0) {
+            size = view.getResources().getDisplayMetrics().widthPixels;
+        }
+        int bucket = Integer.highestOneBit(size);
+        return bucket < size ? bucket << 1 : bucket;
+    }
+
+    private static void showPlaceholder(@NonNull ImageView view, @DrawableRes int placeholder) {
+        if (placeholder != 0) {
+            view.setImageResource(placeholder);
+        } else {
+            view.setImageDrawable(null);
+        }
+    }
+
+    private static boolean isPresent(@Nullable String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private interface MissHandler {
+        void onMiss(@NonNull ImageRequest request);
+    }
+
+    /**
+     * One pending load into one view. Cancelling stops any work not yet started and drops the result.
+     */
+    private static final class ImageRequest {
+        final String key;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+
+        ImageRequest(@NonNull String key) {
+            this.key = key;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void setFuture(@NonNull Future<?> future) {
+            this.future = future;
+            if (cancelled) {
+                future.cancel(false);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Future<?> pending = future;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JpegEncoder - Utils
+ * <p>
+ * Role / Purpose
+ * Finds a JPEG encoding of an image that fits a byte budget with as few full encodes as possible.
+ * The highest quality is tried first; if it does not fit, the quality is binary searched, reading each attempt's
+ * length with {@link ByteArrayOutputStream#size()} instead of copying it out. Only when even the lowest quality is
+ * too large is the image scaled, by a factor estimated from how far over budget that attempt was.
+ * <p>
+ * Design Patterns
+ * Strategy Pattern: The image is abstracted behind {@link Image}, so the search runs against Android bitmaps in the
+ * app and against a size model in unit tests.
+ * <p>
+ * Outstanding Issues
+ * - The binary search assumes encoded size grows with quality, which holds for JPEG in practice but is not guaranteed.
+ */
+
+public class JpegEncoder {
+    public static final int MIN_QUALITY = 10;
+    public static final int MAX_QUALITY = 95;
+    // Stop once the best fitting quality is known to within this many steps
+    static final int QUALITY_TOLERANCE = 3;
+    static final float MIN_SCALE = 0.1f;
+    static final float MAX_SCALE = 0.9f;
+
+    /**
+     * An image that can be encoded at a given quality and scaled down
+     */
+    public interface Image {
+        void encode(int quality, @NonNull OutputStream out);
+
+        int getWidth();
+
+        int getHeight();
+
+        @NonNull
+        Image scale(float factor);
+    }
+
+    /**
+     * The chosen encoding together with how much work it took to find it.
+     * The encoded bytes stay in the buffer they were written to, so they can be streamed out without a copy.
+     */
+    public static class Result {
+        private final ByteArrayOutputStream data;
+        private final int quality;
+        private final int width;
+        private final int height;
+        private final int encodeCount;
+
+        Result(@NonNull ByteArrayOutputStream data, int quality, int width, int height, int encodeCount) {
+            this.data = data;
+            this.quality = quality;
+            this.width = width;
+            this.height = height;
+            this.encodeCount = encodeCount;
+        }
+
+        /**
+         * Returns a copy of the encoded bytes; prefer {@link #writeTo(OutputStream)} when streaming them elsewhere
+         */
+        @NonNull
+        public byte[] getBytes() {
+            return data.toByteArray();
+        }
+
+        /**
+         * Writes the encoded bytes to the given stream without copying them
+         *
+         * @param out the stream to write to
+         * @throws IOException if the stream cannot be written
+         */
+        public void writeTo(@NonNull OutputStream out) throws IOException {
+            data.writeTo(out);
+        }
+
+        public int getSize() {
+            return data.size();
+        }
+
+        public int getQuality() {
+            return quality;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getEncodeCount() {
+            return encodeCount;
+        }
+    }
+
+    private JpegEncoder() {
+    }
+
+    /**
+     * Encodes the image at the highest quality (and largest scale) that fits the budget
+     *
+     * @param image    the image to encode
+     * @param maxBytes the byte budget
+     * @return the encoding, never larger than {@code maxBytes}
+     * @throws IllegalArgumentException if the budget is not positive, or is smaller than the image can be encoded in
+     *                                  even after scaling it down (e.g. smaller than the JPEG headers)
+     */
+    @NonNull
+    public static Result encodeToBudget(@NonNull Image image, int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + maxBytes);
+        }
+        ByteArrayOutputStream attempt = new ByteArrayOutputStream(maxBytes);
+        ByteArrayOutputStream best = new ByteArrayOutputStream(maxBytes);
+        int encodeCount = 0;
+
+        // Small images usually fit at the highest quality straight away; scaled-down retries rarely do, so skip it there
+        attempt.reset();
+        image.encode(MAX_QUALITY, attempt);
+        encodeCount++;
+        if (attempt.size() <= maxBytes) {
+            return new Result(attempt, MAX_QUALITY, image.getWidth(), image.getHeight(), encodeCount);
+        }
+
+        int previousSmallestSize = Integer.MAX_VALUE;
+        while (true) {
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY - 1;
+            int bestQuality = -1;
+            int smallestSize = Integer.MAX_VALUE;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                attempt.reset();
+                image.encode(mid, attempt);
+                encodeCount++;
+                if (attempt.size() <= maxBytes) {
+                    bestQuality = mid;
+                    ByteArrayOutputStream swap = best;
+                    best = attempt;
+                    attempt = swap;
+                    if (high - mid <= QUALITY_TOLERANCE) {
+                        break;
+                    }
+                    low = mid + 1;
+                } else {
+                    smallestSize = Math.min(smallestSize, attempt.size());
+                    high = mid - 1;
+                }
+            }
+            if (bestQuality >= 0) {
+                return new Result(best, bestQuality, image.getWidth(), image.getHeight(), encodeCount);
+            }
+
+            // Stop once scaling no longer helps: the image is a single row or column, or the encoding stopped shrinking
+            if (image.getWidth() <= 1 || image.getHeight() <= 1 || smallestSize >= previousSmallestSize) {
+                throw new IllegalArgumentException("Budget of " + maxBytes + " bytes is below the smallest encoding of "
+                        + Math.min(smallestSize, previousSmallestSize) + " bytes");
+            }
+            previousSmallestSize = smallestSize;
+
+            // Even the lowest quality is too large; encoded size scales roughly with pixel count
+            float factor = (float) Math.sqrt((double) maxBytes / smallestSize) * 0.95f;
+            image = image.scale(Math.max(MIN_SCALE, Math.min(MAX_SCALE, factor)));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * LatencyRecorder - Utils
+ * <p>
+ * Role / Purpose
+ * Collects latency samples (in milliseconds) for a single named operation, such as one chunk of the following feed query.
+ * Keeps running totals plus a fixed-size window of the most recent samples so percentiles can be reported cheaply.
+ * <p>
+ * Design Patterns
+ * Instrumentation Hook: Repositories own a recorder per operation and expose it read-only for logging and debugging.
+ * <p>
+ * Outstanding Issues
+ * - Percentiles are computed over the recent window only, not the full lifetime of the recorder.
+ */
+
+public class LatencyRecorder {
+
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+
+    private final String name;
+    private final long[] window;
+    private int windowCount = 0;
+    private int nextSlot = 0;
+    private long count = 0;
+    private long totalMs = 0;
+    private long maxMs = 0;
+
+    /**
+     * Creates a recorder that keeps the last {@link #DEFAULT_WINDOW_SIZE} samples.
+     *
+     * @param name the name of the operation being measured, used in {@link #toString()}
+     */
+    public LatencyRecorder(@NonNull String name) {
+        this(name, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a recorder that keeps the last {@code windowSize} samples.
+     *
+     * @param name       the name of the operation being measured
+     * @param windowSize the number of recent samples used for percentiles
+     */
+    public LatencyRecorder(@NonNull String name, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.name = name;
+        this.window = new long[windowSize];
+    }
+
+    /**
+     * Records a single latency sample.
+     *
+     * @param latencyMs the measured latency in milliseconds
+     */
+    public synchronized void record(long latencyMs) {
+        window[nextSlot] = latencyMs;
+        nextSlot = (nextSlot + 1) % window.length;
+        if (windowCount < window.length) {
+            windowCount++;
+        }
+        count++;
+        totalMs += latencyMs;
+        maxMs = Math.max(maxMs, latencyMs);
+    }
+
+    /**
+     * Returns the number of samples recorded since creation or the last {@link #reset()}.
+     *
+     * @return the sample count
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean latency over all samples.
+     *
+     * @return the mean latency in milliseconds, or 0 if nothing has been recorded
+     */
+    public synchronized double getMeanMs() {
+        return count == 0 ? 0 : (double) totalMs / count;
+    }
+
+    /**
+     * Returns the largest latency recorded.
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public synchronized long getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * Returns the given percentile over the recent sample window (nearest-rank method).
+     *
+     * @param percentile a value in the range (0, 100]
+     * @return the latency in milliseconds at that percentile, or 0 if nothing has been recorded
+     */
+    public synchronized long getPercentileMs(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]");
+        }
+        if (windowCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(window, windowCount);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * windowCount);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Clears all recorded samples.
+     */
+    public synchronized void reset() {
+        windowCount = 0;
+        nextSlot = 0;
+        count = 0;
+        totalMs = 0;
+        maxMs = 0;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s{count=%d, mean=%.1fms, p50=%dms, p95=%dms, max=%dms}",
+                name, count, getMeanMs(), getPercentileMs(50), getPercentileMs(95), maxMs);
+    }
+}
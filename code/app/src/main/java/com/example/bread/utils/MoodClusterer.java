@@ -0,0 +1,268 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MoodClusterer - Utils
+ * <p>
+ * Role / Purpose
+ * Groups located mood events into map clusters with a screen-space grid: the world is projected to Web Mercator
+ * pixels at the current zoom level and split into square cells, and all events in one cell become one cluster placed
+ * at their centroid. Only events inside the given viewport are clustered, so the number of markers on screen stays
+ * bounded by the number of cells however many events are loaded.
+ * Cells are computed at whole zoom levels, so clusters do not change while the user zooms within a level.
+ * <p>
+ * Design Patterns
+ * Utility Pattern: Stateless static clustering over plain value objects, independent of the map SDK.
+ * <p>
+ * Outstanding Issues
+ * - Grid clustering can split a tight group of events that happens to straddle a cell border into two clusters.
+ */
+
+public class MoodClusterer {
+    private static final double TILE_SIZE = 256;
+
+    private MoodClusterer() {
+    }
+
+    /**
+     * A located mood event together with the username shown on its marker
+     */
+    public static class Item {
+        private final String username;
+        private final MoodEvent event;
+        private final double latitude;
+        private final double longitude;
+
+        public Item(@NonNull String username, @NonNull MoodEvent event, double latitude, double longitude) {
+            this.username = username;
+            this.event = event;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        /**
+         * Creates an item from the event's geo info
+         *
+         * @return the item, or null if the event has no usable location
+         */
+        @Nullable
+        public static Item of(@NonNull String username, @NonNull MoodEvent event) {
+            Map<String, Object> geo = event.getGeoInfo();
+            if (geo == null || !(geo.get("latitude") instanceof Number) || !(geo.get("longitude") instanceof Number)) {
+                return null;
+            }
+            return new Item(username, event, ((Number) geo.get("latitude")).doubleValue(), ((Number) geo.get("longitude")).doubleValue());
+        }
+
+        @NonNull
+        public String getUsername() {
+            return username;
+        }
+
+        @NonNull
+        public MoodEvent getEvent() {
+            return event;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+    }
+
+    /**
+     * A latitude / longitude rectangle; {@code west > east} means it crosses the antimeridian
+     */
+    public static class Bounds {
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+
+        public Bounds(double south, double west, double north, double east) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+
+        public double getSouth() {
+            return south;
+        }
+
+        public double getWest() {
+            return west;
+        }
+
+        public double getNorth() {
+            return north;
+        }
+
+        public double getEast() {
+            return east;
+        }
+
+        boolean contains(double latitude, double longitude) {
+            if (latitude < south || latitude > north) {
+                return false;
+            }
+            return west <= east ? longitude >= west && longitude <= east : longitude >= west || longitude <= east;
+        }
+
+        /**
+         * Returns these bounds grown by the given fraction of their size on every side, so markers just off screen
+         * are already placed when the user starts to pan
+         */
+        @NonNull
+        public Bounds expandedBy(double fraction) {
+            double height = north - south;
+            double width = west <= east ? east - west : 360 - west + east;
+            if (width * (1 + 2 * fraction) >= 360) {
+                return new Bounds(Math.max(-90, south - height * fraction), -180, Math.min(90, north + height * fraction), 180);
+            }
+            return new Bounds(Math.max(-90, south - height * fraction), wrap(west - width * fraction),
+                    Math.min(90, north + height * fraction), wrap(east + width * fraction));
+        }
+
+        private static double wrap(double longitude) {
+            return ((longitude + 540) % 360) - 180;
+        }
+    }
+
+    /**
+     * One marker's worth of events
+     */
+    public static class Cluster {
+        private final String key;
+        private final List<Item> items;
+        private final double latitude;
+        private final double longitude;
+        private final MoodEvent.EmotionalState dominantState;
+
+        Cluster(@NonNull String key, @NonNull List<Item> items, double latitude, double longitude, @Nullable MoodEvent.EmotionalState dominantState) {
+            this.key = key;
+            this.items = Collections.unmodifiableList(items);
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.dominantState = dominantState;
+        }
+
+        /**
+         * Identifies the cluster across renders: the same key means the same position, members and icon
+         */
+        @NonNull
+        public String getKey() {
+            return key;
+        }
+
+        @NonNull
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public int size() {
+            return items.size();
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * @return the most common emotional state among the events, or null if none has one
+         */
+        @Nullable
+        public MoodEvent.EmotionalState getDominantState() {
+            return dominantState;
+        }
+    }
+
+    /**
+     * Clusters the items that fall inside the viewport
+     *
+     * @param items      the located events
+     * @param zoom       the camera zoom; cells are computed at its whole part
+     * @param cellSizePx the width and height of a grid cell, in map pixels
+     * @param viewport   only items inside these bounds are clustered; null for all items
+     * @return the clusters, each with at least one item
+     */
+    @NonNull
+    public static List<Cluster> cluster(@NonNull List<Item> items, float zoom, int cellSizePx, @Nullable Bounds viewport) {
+        int zoomLevel = (int) Math.floor(zoom);
+        double worldSize = TILE_SIZE * Math.pow(2, zoomLevel);
+
+        Map<Long, List<Item>> cells = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (viewport != null && !viewport.contains(item.latitude, item.longitude)) {
+                continue;
+            }
+            long cellX = (long) Math.floor(projectX(item.longitude, worldSize) / cellSizePx);
+            long cellY = (long) Math.floor(projectY(item.latitude, worldSize) / cellSizePx);
+            cells.computeIfAbsent((cellX << 32) ^ (cellY & 0xffffffffL), k -> new ArrayList<>()).add(item);
+        }
+
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for (Map.Entry<Long, List<Item>> cell : cells.entrySet()) {
+            List<Item> members = cell.getValue();
+            if (members.size() == 1) {
+                Item item = members.get(0);
+                clusters.add(new Cluster("event:" + item.event.getId() + ":" + item.event.getEmotionalState(), members,
+                        item.latitude, item.longitude, item.event.getEmotionalState()));
+                continue;
+            }
+            double latitude = 0;
+            double longitude = 0;
+            int memberHash = 0;
+            Map<MoodEvent.EmotionalState, Integer> stateCounts = new EnumMap<>(MoodEvent.EmotionalState.class);
+            for (Item item : members) {
+                latitude += item.latitude;
+                longitude += item.longitude;
+                memberHash += String.valueOf(item.event.getId()).hashCode();
+                if (item.event.getEmotionalState() != null) {
+                    stateCounts.merge(item.event.getEmotionalState(), 1, Integer::sum);
+                }
+            }
+            MoodEvent.EmotionalState dominant = null;
+            int dominantCount = 0;
+            // EnumMap iterates in declaration order, so ties go to the state declared first
+            for (Map.Entry<MoodEvent.EmotionalState, Integer> count : stateCounts.entrySet()) {
+                if (count.getValue() > dominantCount) {
+                    dominant = count.getKey();
+                    dominantCount = count.getValue();
+                }
+            }
+            String key = "cluster:" + zoomLevel + ":" + cell.getKey() + ":" + members.size() + ":" + memberHash + ":" + dominant;
+            clusters.add(new Cluster(key, members, latitude / members.size(), longitude / members.size(), dominant));
+        }
+        return clusters;
+    }
+
+    static double projectX(double longitude, double worldSize) {
+        return (longitude + 180) / 360 * worldSize;
+    }
+
+    static double projectY(double latitude, double worldSize) {
+        // Web Mercator is undefined at the poles; clamp to the latitude range the map actually shows
+        double clamped = Math.max(-85.05112878, Math.min(85.05112878, latitude));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+    }
+}
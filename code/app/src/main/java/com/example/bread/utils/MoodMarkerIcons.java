@@ -0,0 +1,137 @@
+package com.example.bread.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.bread.model.MoodEvent;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MoodMarkerIcons - Utils
+ * <p>
+ * Role / Purpose
+ * Renders the emoji marker icons of the map once and hands out the same {@link BitmapDescriptor} afterwards: one per
+ * emotional state for single events, and one per state and count bucket for clusters. Redrawing the emoji bitmap for
+ * every marker on every render was the most expensive part of placing markers.
+ * <p>
+ * Design Patterns
+ * Caching Pattern: Icons are memoized by emotional state and cluster count bucket.
+ * Flyweight Pattern: Every marker with the same mood shares one descriptor.
+ * <p>
+ * Outstanding Issues
+ * - Descriptors can only be created once the Maps SDK is initialized, so an instance must only be used after the map is ready.
+ * - Must be used from the main thread.
+ */
+
+public class MoodMarkerIcons {
+    private static final float EMOJI_TEXT_SIZE = 75;
+    private static final float BADGE_TEXT_SIZE = 30;
+    private static final int[] COUNT_BUCKETS = {1000, 500, 100, 50, 25, 10};
+
+    private final Map<MoodEvent.EmotionalState, BitmapDescriptor> stateIcons = new EnumMap<>(MoodEvent.EmotionalState.class);
+    private final Map<String, BitmapDescriptor> clusterIcons = new HashMap<>();
+    private BitmapDescriptor unknownStateIcon;
+
+    /**
+     * Returns the icon of a single event with the given emotional state
+     *
+     * @param state the emotional state, or null if the event has none
+     * @return the shared icon
+     */
+    @NonNull
+    public BitmapDescriptor forState(@Nullable MoodEvent.EmotionalState state) {
+        if (state == null) {
+            if (unknownStateIcon == null) {
+                unknownStateIcon = BitmapDescriptorFactory.fromBitmap(textAsBitmap(EmotionUtils.getEmoticon(null), null));
+            }
+            return unknownStateIcon;
+        }
+        BitmapDescriptor icon = stateIcons.get(state);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(textAsBitmap(EmotionUtils.getEmoticon(state), null));
+            stateIcons.put(state, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Returns the icon of a cluster: the emoji of its dominant state with a badge showing how many events it holds
+     *
+     * @param dominantState the most common state in the cluster
+     * @param count         the number of events in the cluster
+     * @return the shared icon for the state and the count bucket
+     */
+    @NonNull
+    public BitmapDescriptor forCluster(@Nullable MoodEvent.EmotionalState dominantState, int count) {
+        String label = countLabel(count);
+        String key = dominantState + "/" + label;
+        BitmapDescriptor icon = clusterIcons.get(key);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(textAsBitmap(EmotionUtils.getEmoticon(dominantState), label));
+            clusterIcons.put(key, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Returns the badge text for a cluster size; large sizes are bucketed so only a few icons are ever drawn
+     *
+     * @param count the number of events in the cluster
+     * @return the exact count below 10, otherwise the largest bucket it reaches, such as "50+"
+     */
+    @NonNull
+    public static String countLabel(int count) {
+        for (int bucket : COUNT_BUCKETS) {
+            if (count >= bucket) {
+                return bucket + "+";
+            }
+        }
+        return String.valueOf(count);
+    }
+
+    /**
+     * Draws the emoji, with an optional count badge in its top right corner
+     */
+    private static Bitmap textAsBitmap(@NonNull String text, @Nullable String badge) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextAlign(Paint.Align.LEFT);
+        paint.setTextSize(EMOJI_TEXT_SIZE);
+        float baseline = -paint.ascent(); // ascent() is negative
+        int textWidth = (int) (paint.measureText(text) + 0.5f); // round
+        int height = (int) (baseline + paint.descent() + 0.5f);
+
+        Paint badgePaint = null;
+        float badgeRadius = 0;
+        if (badge != null) {
+            badgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            badgePaint.setTextSize(BADGE_TEXT_SIZE);
+            badgePaint.setFakeBoldText(true);
+            badgeRadius = Math.max(BADGE_TEXT_SIZE * 0.8f, badgePaint.measureText(badge) / 2 + 8);
+        }
+        int width = textWidth + (int) Math.ceil(badgeRadius);
+
+        Bitmap image = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(image);
+        canvas.drawText(text, 0, baseline, paint);
+        if (badgePaint != null) {
+            float centerX = width - badgeRadius;
+            float centerY = badgeRadius;
+            badgePaint.setColor(Color.rgb(0xD3, 0x2F, 0x2F));
+            canvas.drawCircle(centerX, centerY, badgeRadius, badgePaint);
+            badgePaint.setColor(Color.WHITE);
+            badgePaint.setTextAlign(Paint.Align.CENTER);
+            canvas.drawText(badge, centerX, centerY - (badgePaint.ascent() + badgePaint.descent()) / 2, badgePaint);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * MoodSpatialIndex - Utils
+ * <p>
+ * Role / Purpose
+ * In-memory quadtree over latitude / longitude for locally known mood events (or anything else with a position).
+ * Coordinates are kept as primitive doubles, so queries do not go through the boxed `geoInfo` map of a MoodEvent.
+ * Supports radius, bounding box and k-nearest queries, and entries can be added, moved and removed one at a time as
+ * listeners deliver changes. Bounding boxes may cross the antimeridian; distances are great-circle distances.
+ * <p>
+ * Design Patterns
+ * Composite Pattern: The tree is made of nodes that either hold entries (leaves) or four children.
+ * <p>
+ * Outstanding Issues
+ * - Nodes are split as they fill up but never merged again, so an index that shrinks a lot keeps its empty nodes
+ *   until {@link #clear()} is called.
+ * - Not thread-safe; it must only be used from the thread that owns it.
+ *
+ * @param <T> the type of the values stored with each position
+ */
+
+public class MoodSpatialIndex<T> {
+    static final double EARTH_RADIUS_M = 6371008.8;
+    private static final int LEAF_CAPACITY = 32;
+    private static final int MAX_DEPTH = 24;
+
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+    private Node<T> root = newRoot();
+
+    private static final class Entry<T> {
+        final String id;
+        final double latitude;
+        final double longitude;
+        final T value;
+        Node<T> leaf;
+
+        Entry(String id, double latitude, double longitude, T value) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<T> {
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+        final int depth;
+        List<Entry<T>> entries = new ArrayList<>();
+        Node<T>[] children;
+
+        Node(double south, double west, double north, double east, int depth) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.depth = depth;
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        int childIndex(double latitude, double longitude) {
+            return (latitude >= (south + north) / 2 ? 2 : 0) + (longitude >= (west + east) / 2 ? 1 : 0);
+        }
+    }
+
+    private static <T> Node<T> newRoot() {
+        return new Node<>(-90, -180, 90, 180, 0);
+    }
+
+    /**
+     * Adds an entry, or moves and replaces the value of the entry with the same id
+     *
+     * @param id        identifies the entry for later updates and removal
+     * @param latitude  latitude in degrees, between -90 and 90
+     * @param longitude longitude in degrees, between -180 and 180
+     * @param value     the value returned by queries
+     */
+    public void put(@NonNull String id, double latitude, double longitude, @NonNull T value) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid position " + latitude + ", " + longitude + " for " + id);
+        }
+        remove(id);
+        Entry<T> entry = new Entry<>(id, latitude, longitude, value);
+        entries.put(id, entry);
+        insert(root, entry);
+    }
+
+    /**
+     * Removes the entry with the given id
+     *
+     * @return the value of the removed entry, or null if there was none
+     */
+    @Nullable
+    public T remove(@NonNull String id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        entry.leaf.entries.remove(entry);
+        entry.leaf = null;
+        return entry.value;
+    }
+
+    public boolean contains(@NonNull String id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        root = newRoot();
+    }
+
+    private void insert(Node<T> node, Entry<T> entry) {
+        while (!node.isLeaf()) {
+            node = node.children[node.childIndex(entry.latitude, entry.longitude)];
+        }
+        node.entries.add(entry);
+        entry.leaf = node;
+        if (node.entries.size() > LEAF_CAPACITY && node.depth < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void split(Node<T> node) {
+        double midLatitude = (node.south + node.north) / 2;
+        double midLongitude = (node.west + node.east) / 2;
+        int depth = node.depth + 1;
+        node.children = new Node[]{
+                new Node<>(node.south, node.west, midLatitude, midLongitude, depth),
+                new Node<>(node.south, midLongitude, midLatitude, node.east, depth),
+                new Node<>(midLatitude, node.west, node.north, midLongitude, depth),
+                new Node<>(midLatitude, midLongitude, node.north, node.east, depth)};
+        List<Entry<T>> moved = node.entries;
+        node.entries = null;
+        for (Entry<T> entry : moved) {
+            insert(node.children[node.childIndex(entry.latitude, entry.longitude)], entry);
+        }
+    }
+
+    /**
+     * Returns the values inside a latitude / longitude rectangle, edges included; {@code west > east} means the
+     * rectangle crosses the antimeridian
+     */
+    @NonNull
+    public List<T> queryBounds(double south, double west, double north, double east) {
+        List<T> result = new ArrayList<>();
+        for (Entry<T> entry : collectBounds(south, west, north, east)) {
+            result.add(entry.value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values within the given great-circle distance of a point, in no particular order
+     *
+     * @param latitude     latitude of the center in degrees
+     * @param longitude    longitude of the center in degrees
+     * @param radiusMeters the radius in meters
+     */
+    @NonNull
+    public List<T> queryRadius(double latitude, double longitude, double radiusMeters) {
+        List<T> result = new ArrayList<>();
+        if (radiusMeters < 0) {
+            return result;
+        }
+        // Bounding box of the spherical cap, then the exact distance check on the candidates
+        double[] box = radiusBounds(latitude, longitude, radiusMeters);
+        for (Entry<T> entry : collectBounds(box[0], box[1], box[2], box[3])) {
+            if (distanceMeters(latitude, longitude, entry.latitude, entry.longitude) <= radiusMeters) {
+                result.add(entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many entries {@link #queryRadius(double, double, double)} reads for the same arguments: the entries
+     * of every leaf the query reaches. A linear scan reads all {@link #size()} entries.
+     */
+    public int countRadiusVisits(double latitude, double longitude, double radiusMeters) {
+        if (radiusMeters < 0) {
+            return 0;
+        }
+        double[] box = radiusBounds(latitude, longitude, radiusMeters);
+        if (box[1] <= box[3]) {
+            return countVisits(root, box[0], box[1], box[2], box[3]);
+        }
+        return countVisits(root, box[0], box[1], box[2], 180) + countVisits(root, box[0], -180, box[2], box[3]);
+    }
+
+    /**
+     * Returns the bounding box of a spherical cap as south, west, north and east; {@code west > east} when it crosses
+     * the antimeridian
+     */
+    private static double[] radiusBounds(double latitude, double longitude, double radiusMeters) {
+        double angularRadius = radiusMeters / EARTH_RADIUS_M;
+        double latitudeDelta = Math.toDegrees(angularRadius);
+        double south = latitude - latitudeDelta;
+        double north = latitude + latitudeDelta;
+        double west = -180;
+        double east = 180;
+        double sinRatio = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if (south > -90 && north < 90 && angularRadius < Math.PI / 2 && sinRatio < 1) {
+            double longitudeDelta = Math.toDegrees(Math.asin(sinRatio));
+            west = wrap(longitude - longitudeDelta);
+            east = wrap(longitude + longitudeDelta);
+        }
+        return new double[]{Math.max(-90, south), west, Math.min(90, north), east};
+    }
+
+    /**
+     * Returns the values of the {@code k} entries closest to a point, nearest first
+     */
+    @NonNull
+    public List<T> nearest(double latitude, double longitude, int k) {
+        List<T> result = new ArrayList<>();
+        if (k <= 0 || entries.isEmpty()) {
+            return result;
+        }
+        // Best-first search: nodes are queued by a lower bound of the distance to anything inside them, so an entry
+        // that reaches the head of the queue is closer than everything still queued
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>();
+        queue.add(new Candidate<>(0, root, null));
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate<T> candidate = queue.poll();
+            if (candidate.entry != null) {
+                result.add(candidate.entry.value);
+            } else if (candidate.node.isLeaf()) {
+                for (Entry<T> entry : candidate.node.entries) {
+                    queue.add(new Candidate<>(distanceMeters(latitude, longitude, entry.latitude, entry.longitude), null, entry));
+                }
+            } else {
+                for (Node<T> child : candidate.node.children) {
+                    queue.add(new Candidate<>(minDistanceMeters(child, latitude, longitude), child, null));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Candidate<T> implements Comparable<Candidate<T>> {
+        final double distance;
+        final Node<T> node;
+        final Entry<T> entry;
+
+        Candidate(double distance, Node<T> node, Entry<T> entry) {
+            this.distance = distance;
+            this.node = node;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Candidate<T> other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+
+    private List<Entry<T>> collectBounds(double south, double west, double north, double east) {
+        List<Entry<T>> result = new ArrayList<>();
+        if (west <= east) {
+            collect(root, south, west, north, east, result);
+        } else {
+            collect(root, south, west, north, 180, result);
+            collect(root, south, -180, north, east, result);
+        }
+        return result;
+    }
+
+    private void collect(Node<T> node, double south, double west, double north, double east, List<Entry<T>> result) {
+        if (node.south > north || node.north < south || node.west > east || node.east < west) {
+            return;
+        }
+        if (node.isLeaf()) {
+            for (Entry<T> entry : node.entries) {
+                if (entry.latitude >= south && entry.latitude <= north && entry.longitude >= west && entry.longitude <= east) {
+                    result.add(entry);
+                }
+            }
+            return;
+        }
+        for (Node<T> child : node.children) {
+            collect(child, south, west, north, east, result);
+        }
+    }
+
+    private int countVisits(Node<T> node, double south, double west, double north, double east) {
+        if (node.south > north || node.north < south || node.west > east || node.east < west) {
+            return 0;
+        }
+        if (node.isLeaf()) {
+            return node.entries.size();
+        }
+        int visits = 0;
+        for (Node<T> child : node.children) {
+            visits += countVisits(child, south, west, north, east);
+        }
+        return visits;
+    }
+
+    /**
+     * A lower bound of the distance from a point to anything inside the node: the latitude gap, or the distance to
+     * the nearest meridian the node can contain, whichever is larger
+     */
+    private static double minDistanceMeters(Node<?> node, double latitude, double longitude) {
+        double latitudeGap = latitude < node.south ? node.south - latitude : latitude > node.north ? latitude - node.north : 0;
+        double longitudeGap = 0;
+        if (longitude < node.west || longitude > node.east) {
+            longitudeGap = Math.min(angleBetween(longitude, node.west), angleBetween(longitude, node.east));
+        }
+        double meridianDistance = Math.asin(Math.min(1, Math.cos(Math.toRadians(latitude))
+                * Math.sin(Math.toRadians(Math.min(90, longitudeGap)))));
+        return EARTH_RADIUS_M * Math.max(Math.toRadians(latitudeGap), meridianDistance);
+    }
+
+    private static double angleBetween(double longitudeA, double longitudeB) {
+        double difference = Math.abs(longitudeA - longitudeB) % 360;
+        return Math.min(difference, 360 - difference);
+    }
+
+    private static double wrap(double longitude) {
+        return ((longitude + 540) % 360) - 180;
+    }
+
+    /**
+     * Great-circle (haversine) distance between two points, in meters
+     */
+    public static double distanceMeters(double latitudeA, double longitudeA, double latitudeB, double longitudeB) {
+        double sinLatitude = Math.sin(Math.toRadians(latitudeB - latitudeA) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitudeB - longitudeA) / 2);
+        double a = sinLatitude * sinLatitude
+                + Math.cos(Math.toRadians(latitudeA)) * Math.cos(Math.toRadians(latitudeB)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.bread.utils;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.model.MoodEvent;
+
+import java.util.Collection;
+import java.util.TimeZone;
+
+/**
+ * MoodTimeSeries - Utils
+ * <p>
+ * Role / Purpose
+ * Daily time series of mood events for trends and streaks. Events are bucketed by local calendar day: an instant's day
+ * is its epoch milliseconds shifted by the time zone's offset at that instant, so days follow the local calendar across
+ * daylight saving changes instead of assuming every day is 86,400,000 ms. Days are numbered from 1970-01-01 and can be
+ * converted to months with the proleptic Gregorian calendar. A series holds only primitive arrays: the number of events
+ * and sum of scores of each day, and the distribution of scores. Bucketing is one pass over the events, and
+ * {@link #summarize(int)} computes daily averages, running sums, a moving average of any window and the streaks in one
+ * pass over the days. The static helpers apply the same computations to arrays from elsewhere.
+ * <p>
+ * Design Patterns
+ * Utility Pattern: Plain JVM code without Android or Firestore dependencies, so it can be unit tested and benchmarked.
+ * <p>
+ * Outstanding Issues
+ * - java.time is not used, since it needs API level 26 (or library desugaring) and the app supports API level 24;
+ *   the time zone offsets come from {@link TimeZone} instead.
+ */
+
+public final class MoodTimeSeries {
+    public static final int MIN_SCORE = -2;
+    public static final int MAX_SCORE = 2;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final int firstDay;
+    private final int[] counts;
+    private final long[] scoreSums;
+    private final int[] scoreDistribution = new int[MAX_SCORE - MIN_SCORE + 1];
+
+    private MoodTimeSeries(int firstDay, int lastDay) {
+        if (lastDay < firstDay) {
+            throw new IllegalArgumentException("Last day " + lastDay + " is before first day " + firstDay);
+        }
+        this.firstDay = firstDay;
+        this.counts = new int[lastDay - firstDay + 1];
+        this.scoreSums = new long[counts.length];
+    }
+
+    /**
+     * Returns the day number of an instant in the given time zone
+     *
+     * @param millis the instant in epoch milliseconds
+     * @param zone   the time zone that decides the calendar day
+     * @return the number of days from 1970-01-01 to the local day of the instant
+     */
+    public static int dayOf(long millis, @NonNull TimeZone zone) {
+        return (int) Math.floorDiv(millis + zone.getOffset(millis), DAY_MS);
+    }
+
+    /**
+     * Returns the month number of a day: year * 12 + month of year - 1
+     *
+     * @param day a day number from {@link #dayOf(long, TimeZone)}
+     */
+    public static int monthOfDay(int day) {
+        // Civil-from-days conversion over 400-year eras of the proleptic Gregorian calendar
+        long shifted = day + 719468L;
+        long era = Math.floorDiv(shifted, 146097);
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153; // 0 is March
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    /**
+     * Returns the first day of a month, the inverse of {@link #monthOfDay(int)} for the first day of every month
+     *
+     * @param month a month number: year * 12 + month of year - 1
+     */
+    public static int firstDayOfMonth(int month) {
+        // Days-from-civil conversion, counting years from March so the leap day ends the year
+        long year = Math.floorDiv(month, 12);
+        long monthOfYear = Math.floorMod(month, 12) + 1;
+        if (monthOfYear <= 2) {
+            year--;
+        }
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (monthOfYear > 2 ? monthOfYear - 3 : monthOfYear + 9) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (int) (era * 146097 + dayOfEra - 719468);
+    }
+
+    /**
+     * Buckets events by local day in one pass. Events outside the days of the series are skipped.
+     *
+     * @param times    the instants of the events in epoch milliseconds
+     * @param scores   the mood scores of the events, see {@link MoodEvent#getScore()}
+     * @param size     the number of events in the arrays
+     * @param zone     the time zone that decides the calendar day
+     * @param firstDay the first day of the series
+     * @param lastDay  the last day of the series, inclusive
+     * @return the series
+     */
+    @NonNull
+    public static MoodTimeSeries ofEvents(@NonNull long[] times, @NonNull int[] scores, int size, @NonNull TimeZone zone,
+                                          int firstDay, int lastDay) {
+        MoodTimeSeries series = new MoodTimeSeries(firstDay, lastDay);
+        for (int i = 0; i < size; i++) {
+            series.add(dayOf(times[i], zone), scores[i]);
+        }
+        return series;
+    }
+
+    /**
+     * Buckets mood events by local day in one pass. Events without a timestamp or outside the days of the series are
+     * skipped.
+     *
+     * @param events   the events
+     * @param zone     the time zone that decides the calendar day
+     * @param firstDay the first day of the series
+     * @param lastDay  the last day of the series, inclusive
+     * @return the series
+     */
+    @NonNull
+    public static MoodTimeSeries ofMoodEvents(@NonNull Collection<MoodEvent> events, @NonNull TimeZone zone, int firstDay, int lastDay) {
+        MoodTimeSeries series = new MoodTimeSeries(firstDay, lastDay);
+        for (MoodEvent event : events) {
+            if (event.getTimestamp() != null) {
+                series.add(dayOf(event.getTimestamp().getTime(), zone), event.getScore());
+            }
+        }
+        return series;
+    }
+
+    private void add(int day, int score) {
+        int index = day - firstDay;
+        if (index < 0 || index >= counts.length) {
+            return;
+        }
+        counts[index]++;
+        scoreSums[index] += score;
+        int bucket = Math.max(MIN_SCORE, Math.min(MAX_SCORE, score)) - MIN_SCORE;
+        scoreDistribution[bucket]++;
+    }
+
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    public int getDayCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param day a day of the series
+     * @return the number of events on the day
+     */
+    public int getCount(int day) {
+        return counts[day - firstDay];
+    }
+
+    /**
+     * @param day a day of the series
+     * @return the sum of the scores of the events on the day
+     */
+    public long getScoreSum(int day) {
+        return scoreSums[day - firstDay];
+    }
+
+    /**
+     * @param score a mood score from {@link #MIN_SCORE} to {@link #MAX_SCORE}
+     * @return the number of events in the series with the score
+     */
+    public int getScoreCount(int score) {
+        return score < MIN_SCORE || score > MAX_SCORE ? 0 : scoreDistribution[score - MIN_SCORE];
+    }
+
+    /**
+     * Computes every trend of the series in one pass over its days
+     *
+     * @param window the number of days of the moving average, at least 1
+     * @return the trends
+     */
+    @NonNull
+    public Trend summarize(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least one day: " + window);
+        }
+        int days = counts.length;
+        float[] dailyAverages = new float[days];
+        float[] movingAverages = new float[days];
+        long[] runningCounts = new long[days];
+        double[] runningScores = new double[days];
+        double windowSum = 0;
+        long countSum = 0;
+        double scoreSum = 0;
+        int run = 0;
+        int longest = 0;
+        for (int i = 0; i < days; i++) {
+            float average = counts[i] > 0 ? (float) scoreSums[i] / counts[i] : 0f;
+            dailyAverages[i] = average;
+            windowSum += average;
+            if (i >= window) {
+                windowSum -= dailyAverages[i - window];
+            }
+            movingAverages[i] = (float) (windowSum / Math.min(i + 1, window));
+            countSum += counts[i];
+            scoreSum += scoreSums[i];
+            runningCounts[i] = countSum;
+            runningScores[i] = scoreSum;
+            run = counts[i] > 0 ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return new Trend(dailyAverages, movingAverages, runningCounts, runningScores, longest, currentStreak(counts));
+    }
+
+    /**
+     * Returns the running sums of an array: element i is the sum of elements 0 to i
+     */
+    @NonNull
+    public static double[] runningSums(@NonNull float[] values) {
+        double[] sums = new double[values.length];
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+            sums[i] = sum;
+        }
+        return sums;
+    }
+
+    /**
+     * Returns the moving average of an array with a sliding sum: element i is the average of the last {@code window}
+     * elements up to i, or of all elements up to i while there are fewer
+     *
+     * @param values the values, oldest first
+     * @param window the number of values averaged, at least 1
+     */
+    @NonNull
+    public static float[] movingAverage(@NonNull float[] values, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least one value: " + window);
+        }
+        float[] averages = new float[values.length];
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+            if (i >= window) {
+                sum -= values[i - window];
+            }
+            averages[i] = (float) (sum / Math.min(i + 1, window));
+        }
+        return averages;
+    }
+
+    /**
+     * Returns the most consecutive days with at least one event
+     *
+     * @param counts the number of events of each day, oldest first
+     */
+    public static int longestStreak(@NonNull int[] counts) {
+        int run = 0;
+        int longest = 0;
+        for (int count : counts) {
+            run = count > 0 ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    /**
+     * Returns the consecutive days with at least one event up to the last day, or up to the day before while the last
+     * day has none yet
+     *
+     * @param counts the number of events of each day, oldest first and ending with today
+     */
+    public static int currentStreak(@NonNull int[] counts) {
+        int end = counts.length - 1;
+        if (end >= 0 && counts[end] == 0) {
+            end--;
+        }
+        int streak = 0;
+        while (end >= 0 && counts[end] > 0) {
+            streak++;
+            end--;
+        }
+        return streak;
+    }
+
+    /**
+     * The trends of a series, one element per day, oldest first
+     */
+    public static final class Trend {
+        private final float[] dailyAverages;
+        private final float[] movingAverages;
+        private final long[] runningCounts;
+        private final double[] runningScores;
+        private final int longestStreak;
+        private final int currentStreak;
+
+        Trend(float[] dailyAverages, float[] movingAverages, long[] runningCounts, double[] runningScores, int longestStreak, int currentStreak) {
+            this.dailyAverages = dailyAverages;
+            this.movingAverages = movingAverages;
+            this.runningCounts = runningCounts;
+            this.runningScores = runningScores;
+            this.longestStreak = longestStreak;
+            this.currentStreak = currentStreak;
+        }
+
+        /**
+         * @return the average score of each day; 0 for days without events
+         */
+        @NonNull
+        public float[] getDailyAverages() {
+            return dailyAverages;
+        }
+
+        /**
+         * @return the moving average of the daily averages
+         */
+        @NonNull
+        public float[] getMovingAverages() {
+            return movingAverages;
+        }
+
+        /**
+         * @return the number of events up to and including each day
+         */
+        @NonNull
+        public long[] getRunningCounts() {
+            return runningCounts;
+        }
+
+        /**
+         * @return the sum of scores up to and including each day
+         */
+        @NonNull
+        public double[] getRunningScores() {
+            return runningScores;
+        }
+
+        public int getLongestStreak() {
+            return longestStreak;
+        }
+
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.example.bread.fragment.HistoryFragment;
 import com.example.bread.fragment.HomeFragment;
 import com.example.bread.fragment.MapFragment;
 import com.example.bread.fragment.ProfileFragment;
+import com.example.bread.repository.ParticipantRepository;
 import com.example.bread.utils.NotificationUtils;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -114,6 +115,12 @@ public class HomePage extends AppCompatActivity {
             return true;  // Important to return true to indicate the item was selected
         });
 
+        // Accounts saved before case-insensitive search get its fields on their owner's next launch
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser != null && currentUser.getDisplayName() != null) {
+            new ParticipantRepository().backfillOwnSearchFields(currentUser.getDisplayName());
+        }
+
         // Check if the activity was launched from a notification
         if (getIntent() != null) {
             handleNotificationIntent(getIntent());
@@ -12,6 +12,8 @@ import androidx.core.view.WindowInsetsCompat;
 
 import com.example.bread.R;
 import com.example.bread.firebase.FirebaseService;
+import com.example.bread.repository.MoodAnalyticsRepository;
+import com.example.bread.utils.BitmapCache;
 
 /**
  * MainActivity - Entry Point / Controller
@@ -47,6 +49,10 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize FirebaseService with context for network connectivity checks
         FirebaseService.initializeContext(getApplicationContext());
+        // Enable the on-disk tier of the decoded image cache
+        BitmapCache.initialize(getApplicationContext());
+        // Persist mood analytics rollups on disk and mirror them to the participant's stats document
+        MoodAnalyticsRepository.initialize(getApplicationContext(), true);
 
         SharedPreferences preferences = getSharedPreferences("sharedPrefs", MODE_PRIVATE);
         if (preferences.getString("username", "").isEmpty()) {
@@ -0,0 +1,86 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.utils.CoalescingCache;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CoalescingCacheTest {
+
+    private long now;
+    private int loads;
+    // Loads that have been started but not completed yet
+    private final List<OnSuccessListener<String>> pendingSuccess = new ArrayList<>();
+    private final List<OnFailureListener> pendingFailure = new ArrayList<>();
+
+    private final CoalescingCache.Loader<Integer, String> deferredLoader = (key, onSuccess, onFailure) -> {
+        loads++;
+        pendingSuccess.add(onSuccess);
+        pendingFailure.add(onFailure);
+    };
+
+    @Before
+    public void setUp() {
+        now = 0;
+        loads = 0;
+        pendingSuccess.clear();
+        pendingFailure.clear();
+    }
+
+    @Test
+    public void testGet_ConcurrentMissesShareOneLoadAndCacheIt() {
+        CoalescingCache<Integer, String> cache = new CoalescingCache<>(4, CoalescingCache.NO_EXPIRY, () -> now);
+        List<String> delivered = new ArrayList<>();
+        cache.get(1, deferredLoader, delivered::add, e -> fail());
+        cache.get(1, deferredLoader, delivered::add, e -> fail());
+        assertEquals(1, loads);
+
+        pendingSuccess.get(0).onSuccess("one");
+        cache.get(1, deferredLoader, delivered::add, e -> fail());
+
+        assertEquals(1, loads);
+        assertEquals(3, delivered.size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getCoalescedCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testGet_PutDuringLoadWinsAndInvalidateDuringLoadIsNotCached() {
+        CoalescingCache<Integer, String> cache = new CoalescingCache<>(4, CoalescingCache.NO_EXPIRY, () -> now);
+        List<String> delivered = new ArrayList<>();
+        cache.get(1, deferredLoader, delivered::add, e -> fail());
+        cache.put(1, "written");
+        pendingSuccess.get(0).onSuccess("loaded");
+        assertEquals("written", delivered.get(0));
+        assertEquals("written", cache.getIfPresent(1));
+
+        cache.get(2, deferredLoader, delivered::add, e -> fail());
+        cache.invalidate(2);
+        pendingSuccess.get(1).onSuccess("stale");
+        assertEquals("stale", delivered.get(1));
+        assertNull(cache.getIfPresent(2));
+    }
+
+    @Test
+    public void testEntries_ExpireAndAreEvictedLeastRecentlyUsedFirst() {
+        CoalescingCache<Integer, String> cache = new CoalescingCache<>(2, 1000, () -> now);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        assertEquals("one", cache.getIfPresent(1));
+        cache.put(3, "three");
+        assertNull(cache.getIfPresent(2));
+        assertEquals(2, cache.size());
+
+        now = 1000;
+        assertNull(cache.getIfPresent(1));
+        assertNull(cache.getIfPresent(3));
+    }
+}
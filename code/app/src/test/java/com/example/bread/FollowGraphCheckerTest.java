@@ -0,0 +1,112 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.repository.FollowGraphChecker;
+import com.example.bread.repository.ParticipantRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class FollowGraphCheckerTest {
+
+    private FollowGraphChecker.Graph graph;
+
+    @Before
+    public void setUp() {
+        graph = new FollowGraphChecker.Graph();
+    }
+
+    // alice follows bob, recorded the way FollowEdgeIndex writes it
+    private void addConsistentEdge() {
+        graph.addParticipant("alice", 0, 1);
+        graph.addParticipant("bob", 1, 0);
+        graph.addLegacyEdge("bob", ParticipantRepository.ListType.FOLLOWERS, "alice");
+        graph.addLegacyEdge("alice", ParticipantRepository.ListType.FOLLOWING, "bob");
+        graph.addIndexShard("bob", ParticipantRepository.ListType.FOLLOWERS, Collections.singleton("alice"), false);
+        graph.addIndexShard("alice", ParticipantRepository.ListType.FOLLOWING, Collections.singleton("bob"), false);
+    }
+
+    private static boolean hasKind(List<FollowGraphChecker.Mismatch> mismatches, FollowGraphChecker.Mismatch.Kind kind) {
+        for (FollowGraphChecker.Mismatch mismatch : mismatches) {
+            if (mismatch.getKind() == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testFindMismatches_ConsistentGraph() {
+        addConsistentEdge();
+
+        assertTrue(graph.findMismatches().isEmpty());
+    }
+
+    @Test
+    public void testFindMismatches_DriftedCount() {
+        addConsistentEdge();
+        graph.addParticipant("bob", 2, 0);
+
+        List<FollowGraphChecker.Mismatch> mismatches = graph.findMismatches();
+
+        assertEquals(1, mismatches.size());
+        assertEquals(FollowGraphChecker.Mismatch.Kind.FOLLOWER_COUNT, mismatches.get(0).getKind());
+        assertEquals("bob", mismatches.get(0).getUsername());
+    }
+
+    @Test
+    public void testFindMismatches_HalfAppliedEdge() {
+        graph.addParticipant("alice", 0, 0);
+        graph.addParticipant("bob", 1, 0);
+        graph.addLegacyEdge("bob", ParticipantRepository.ListType.FOLLOWERS, "alice");
+
+        List<FollowGraphChecker.Mismatch> mismatches = graph.findMismatches();
+
+        assertEquals(1, mismatches.size());
+        assertEquals(FollowGraphChecker.Mismatch.Kind.ONE_WAY_EDGE, mismatches.get(0).getKind());
+    }
+
+    @Test
+    public void testFindMismatches_EdgeToMissingParticipant() {
+        graph.addParticipant("bob", 1, 0);
+        graph.addLegacyEdge("bob", ParticipantRepository.ListType.FOLLOWERS, "ghost");
+
+        assertTrue(hasKind(graph.findMismatches(), FollowGraphChecker.Mismatch.Kind.UNKNOWN_PARTICIPANT));
+    }
+
+    @Test
+    public void testFindMismatches_CompleteIndexIsTheTruth() {
+        graph.addParticipant("alice", 0, 1);
+        graph.addParticipant("bob", 1, 0);
+        graph.addParticipant("carol", 0, 0);
+        graph.addLegacyEdge("alice", ParticipantRepository.ListType.FOLLOWING, "bob");
+        graph.addLegacyEdge("bob", ParticipantRepository.ListType.FOLLOWERS, "alice");
+        graph.addLegacyEdge("bob", ParticipantRepository.ListType.FOLLOWERS, "carol");
+        // bob's follower index is backfilled, but carol was left out of it
+        graph.addIndexShard("bob", ParticipantRepository.ListType.FOLLOWERS, new HashSet<>(Collections.singletonList("alice")), true);
+        for (int shard = 1; shard < 4; shard++) {
+            graph.addIndexShard("bob", ParticipantRepository.ListType.FOLLOWERS, Collections.emptySet(), true);
+        }
+
+        List<FollowGraphChecker.Mismatch> mismatches = graph.findMismatches();
+
+        // Counts match the index, so only the missing index entry is reported
+        assertEquals(1, mismatches.size());
+        assertEquals(FollowGraphChecker.Mismatch.Kind.INDEX_OUT_OF_SYNC, mismatches.get(0).getKind());
+        assertTrue(mismatches.get(0).getDetail().contains("carol"));
+    }
+
+    @Test
+    public void testFindMismatches_IndexEntryWithoutSubcollection() {
+        addConsistentEdge();
+        graph.addIndexShard("bob", ParticipantRepository.ListType.FOLLOWERS, new HashSet<>(Arrays.asList("alice", "carol")), false);
+
+        assertTrue(hasKind(graph.findMismatches(), FollowGraphChecker.Mismatch.Kind.INDEX_OUT_OF_SYNC));
+    }
+}
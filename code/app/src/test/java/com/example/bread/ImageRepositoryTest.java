@@ -0,0 +1,128 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.FileImageBlobStore;
+import com.example.bread.repository.ImageBlobStore;
+import com.example.bread.repository.ImageRepository;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ImageRepositoryTest {
+
+    private FileImageBlobStore store;
+    private ImageRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = Files.createTempDirectory("images").toFile();
+        directory.deleteOnExit();
+        store = new FileImageBlobStore(directory);
+        repository = new ImageRepository(store);
+    }
+
+    @Test
+    public void testContentHash_IsSha256Hex() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                ImageRepository.contentHash("abc".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testUploadImage_ThenFetchReturnsSameBytes() {
+        byte[] image = {1, 2, 3, 4, 5};
+        String[] stored = new String[1];
+
+        repository.uploadImage(image, h -> stored[0] = h, e -> fail(e.getMessage()));
+
+        String hash = stored[0];
+        assertEquals(ImageRepository.contentHash(image), hash);
+        byte[][] fetched = new byte[1][];
+        repository.fetchImage(hash, bytes -> fetched[0] = bytes, e -> fail(e.getMessage()));
+        assertArrayEquals(image, fetched[0]);
+    }
+
+    @Test
+    public void testUploadImage_SameBytesStoredOnce() {
+        byte[] image = {9, 8, 7};
+
+        repository.uploadImage(image, h -> {
+        }, e -> fail(e.getMessage()));
+        repository.uploadImage(image.clone(), h -> {
+        }, e -> fail(e.getMessage()));
+        // A second repository (e.g. another process) finds the blob already stored
+        new ImageRepository(store).uploadImage(image, h -> {
+        }, e -> fail(e.getMessage()));
+
+        assertEquals(1, store.getPutCount());
+    }
+
+    @Test
+    public void testUploadImage_FailureIsReportedAndRetried() {
+        FailingBlobStore failing = new FailingBlobStore();
+        ImageRepository failingRepository = new ImageRepository(failing);
+        byte[] image = {4, 4, 4};
+        Exception[] failure = new Exception[1];
+
+        failingRepository.uploadImage(image, h -> fail("Reported stored before the upload succeeded"), e -> failure[0] = e);
+        assertNotNull(failure[0]);
+
+        // A failed upload is not remembered as stored, so the next attempt uploads again
+        failingRepository.uploadImage(image, h -> fail("Reported stored before the upload succeeded"), e -> {
+        });
+        assertEquals(2, failing.putAttempts);
+    }
+
+    @Test
+    public void testAttachImage_FailureLeavesEventUnchanged() {
+        ImageRepository failingRepository = new ImageRepository(new FailingBlobStore());
+        MoodEvent event = new MoodEvent("title", "reason", MoodEvent.EmotionalState.HAPPY, null);
+        event.setAttachedImageHash("previous");
+        boolean[] failed = new boolean[1];
+
+        failingRepository.attachImage(event, new byte[]{1}, saved -> fail("Event should not be written"), e -> failed[0] = true);
+
+        assertTrue(failed[0]);
+        assertEquals("previous", event.getAttachedImageHash());
+    }
+
+    @Test
+    public void testFetchImage_MissingHashReturnsNull() {
+        byte[][] fetched = {{0}};
+        repository.fetchImage(ImageRepository.contentHash(new byte[]{42}), bytes -> fetched[0] = bytes, e -> fail(e.getMessage()));
+        assertNull(fetched[0]);
+    }
+
+    /**
+     * A store whose writes always fail, like one that cannot reach the server
+     */
+    private static class FailingBlobStore implements ImageBlobStore {
+        int putAttempts = 0;
+
+        @Override
+        public void contains(@NonNull String hash, @NonNull OnSuccessListener<Boolean> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+            onSuccessListener.onSuccess(false);
+        }
+
+        @Override
+        public void put(@NonNull String hash, @NonNull byte[] bytes, @NonNull OnSuccessListener<Void> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+            putAttempts++;
+            onFailureListener.onFailure(new IOException("Offline"));
+        }
+
+        @Override
+        public void get(@NonNull String hash, @NonNull OnSuccessListener<byte[]> onSuccessListener, @NonNull OnFailureListener onFailureListener) {
+            onFailureListener.onFailure(new IOException("Offline"));
+        }
+    }
+}
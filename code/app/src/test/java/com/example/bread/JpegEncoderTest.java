@@ -0,0 +1,157 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import androidx.annotation.NonNull;
+
+import com.example.bread.utils.JpegEncoder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class JpegEncoderTest {
+
+    private static final int BUDGET = 64 * 1024;
+
+    /**
+     * Models a JPEG whose size grows linearly with quality and pixel count, and counts encodes
+     */
+    private static class ModelImage implements JpegEncoder.Image {
+        final int width;
+        final int height;
+        final double bitsPerPixelAtMaxQuality;
+        final int headerBytes;
+        final int[] encodes;
+
+        ModelImage(int width, int height, double bitsPerPixelAtMaxQuality, int[] encodes) {
+            this(width, height, bitsPerPixelAtMaxQuality, 0, encodes);
+        }
+
+        ModelImage(int width, int height, double bitsPerPixelAtMaxQuality, int headerBytes, int[] encodes) {
+            this.width = width;
+            this.height = height;
+            this.bitsPerPixelAtMaxQuality = bitsPerPixelAtMaxQuality;
+            this.headerBytes = headerBytes;
+            this.encodes = encodes;
+        }
+
+        int sizeAt(int quality) {
+            double bitsPerPixel = bitsPerPixelAtMaxQuality * (0.1 + 0.9 * quality / 100.0);
+            return headerBytes + (int) ((long) width * height * bitsPerPixel / 8);
+        }
+
+        @Override
+        public void encode(int quality, @NonNull OutputStream out) {
+            encodes[0]++;
+            try {
+                out.write(new byte[sizeAt(quality)]);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @NonNull
+        @Override
+        public JpegEncoder.Image scale(float factor) {
+            return new ModelImage(Math.max(1, Math.round(width * factor)), Math.max(1, Math.round(height * factor)),
+                    bitsPerPixelAtMaxQuality, headerBytes, encodes);
+        }
+    }
+
+    /**
+     * The previous algorithm: step quality down by 10 from 100, copying the output each time, and scale by 0.7
+     * whenever quality bottoms out
+     */
+    private static int legacyEncodeCount(ModelImage image) {
+        int quality = 100;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.encode(quality, out);
+        JpegEncoder.Image current = image;
+        while (out.toByteArray().length > BUDGET) {
+            out.reset();
+            quality -= 10;
+            if (quality <= 10) {
+                quality = 70;
+                current = current.scale(0.7f);
+            }
+            current.encode(quality, out);
+        }
+        return image.encodes[0];
+    }
+
+    @Test
+    public void testSmallImage_FitsAtMaxQualityWithOneEncode() {
+        int[] encodes = new int[1];
+        JpegEncoder.Result result = JpegEncoder.encodeToBudget(new ModelImage(100, 100, 2, encodes), BUDGET);
+
+        assertEquals(JpegEncoder.MAX_QUALITY, result.getQuality());
+        assertEquals(1, result.getEncodeCount());
+    }
+
+    @Test
+    public void testMediumImage_FindsHighQualityThatFits() {
+        int[] encodes = new int[1];
+        ModelImage image = new ModelImage(640, 480, 3, encodes);
+        JpegEncoder.Result result = JpegEncoder.encodeToBudget(image, BUDGET);
+
+        assertTrue(result.getBytes().length <= BUDGET);
+        assertEquals(640, result.getWidth());
+        // The next quality step up would not fit, within the search tolerance
+        assertTrue(image.sizeAt(result.getQuality() + 4) > BUDGET);
+    }
+
+    @Test
+    public void testLargeImage_IsScaledToFit() {
+        int[] encodes = new int[1];
+        JpegEncoder.Result result = JpegEncoder.encodeToBudget(new ModelImage(4000, 3000, 4, encodes), BUDGET);
+
+        assertTrue(result.getBytes().length <= BUDGET);
+        assertTrue(result.getWidth() < 4000);
+        assertEquals(encodes[0], result.getEncodeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveBudget_Throws() {
+        JpegEncoder.encodeToBudget(new ModelImage(10, 10, 2, new int[1]), 0);
+    }
+
+    @Test
+    public void testBudgetBelowHeaders_ThrowsInsteadOfLooping() {
+        int[] encodes = new int[1];
+        try {
+            JpegEncoder.encodeToBudget(new ModelImage(640, 480, 3, 600, encodes), 500);
+            fail("A budget below the headers cannot be met");
+        } catch (IllegalArgumentException expected) {
+            // Each round scales by at least MAX_SCALE, so 640x480 reaches a single row in a bounded number of rounds
+            assertTrue(encodes[0] < 500);
+        }
+    }
+
+    @Test
+    public void testBenchmark_FewerEncodesThanLegacyLoop() {
+        int[][] sizes = {{640, 480}, {1280, 960}, {1920, 1080}, {4000, 3000}};
+        for (int[] size : sizes) {
+            int[] legacyEncodes = new int[1];
+            int legacy = legacyEncodeCount(new ModelImage(size[0], size[1], 4, legacyEncodes));
+
+            int[] encodes = new int[1];
+            JpegEncoder.Result result = JpegEncoder.encodeToBudget(new ModelImage(size[0], size[1], 4, encodes), BUDGET);
+
+            assertTrue(size[0] + "x" + size[1] + ": " + result.getEncodeCount() + " vs " + legacy,
+                    result.getEncodeCount() < legacy);
+        }
+    }
+}
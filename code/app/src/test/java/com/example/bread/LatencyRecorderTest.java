@@ -0,0 +1,73 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.utils.LatencyRecorder;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void testEmptyRecorder_ReturnsZeros() {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+
+        assertEquals(0, recorder.getCount());
+        assertEquals(0.0, recorder.getMeanMs(), 0.0001);
+        assertEquals(0, recorder.getMaxMs());
+        assertEquals(0, recorder.getPercentileMs(50));
+    }
+
+    @Test
+    public void testRecord_UpdatesCountMeanAndMax() {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        recorder.record(10);
+        recorder.record(20);
+        recorder.record(60);
+
+        assertEquals(3, recorder.getCount());
+        assertEquals(30.0, recorder.getMeanMs(), 0.0001);
+        assertEquals(60, recorder.getMaxMs());
+    }
+
+    @Test
+    public void testPercentiles_NearestRank() {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(i);
+        }
+
+        assertEquals(50, recorder.getPercentileMs(50));
+        assertEquals(95, recorder.getPercentileMs(95));
+        assertEquals(100, recorder.getPercentileMs(100));
+    }
+
+    @Test
+    public void testPercentiles_OnlyUseRecentWindow() {
+        LatencyRecorder recorder = new LatencyRecorder("test", 4);
+        recorder.record(1000);
+        for (int i = 0; i < 4; i++) {
+            recorder.record(5);
+        }
+
+        assertEquals(5, recorder.getPercentileMs(100));
+        assertEquals(1000, recorder.getMaxMs());
+        assertEquals(5, recorder.getCount());
+    }
+
+    @Test
+    public void testReset_ClearsSamples() {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        recorder.record(42);
+        recorder.reset();
+
+        assertEquals(0, recorder.getCount());
+        assertEquals(0, recorder.getMaxMs());
+        assertEquals(0, recorder.getPercentileMs(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile_Throws() {
+        new LatencyRecorder("test").getPercentileMs(0);
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.*;
+
+import com.example.bread.model.Comment;
+import com.example.bread.model.FollowRequest;
+import com.example.bread.model.ModelCodec;
+import com.example.bread.model.MoodEvent;
+import com.example.bread.model.Participant;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ModelCodecTest {
+
+    private static DocumentReference ref(String path) {
+        DocumentReference ref = mock(DocumentReference.class);
+        when(ref.getPath()).thenReturn(path);
+        return ref;
+    }
+
+    private static MoodEvent event(int i, DocumentReference participantRef) {
+        MoodEvent event = new MoodEvent("Title " + i, "Reason number " + i + " for this mood",
+                MoodEvent.EmotionalState.values()[i % 10], participantRef);
+        event.setTimestamp(new Date(1_740_000_000_000L + i * 60_000L));
+        event.setSocialSituation(MoodEvent.SocialSituation.values()[i % 8]);
+        event.setVisibility(i % 2 == 0 ? MoodEvent.Visibility.PUBLIC : MoodEvent.Visibility.PRIVATE);
+        Map<String, Object> geoInfo = new HashMap<>();
+        geoInfo.put("geohash", "c3nfk" + (i % 4));
+        geoInfo.put("latitude", 53.5 + i * 0.001);
+        geoInfo.put("longitude", -113.5 - i * 0.001);
+        event.setGeoInfo(geoInfo);
+        return event;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void testMoodEvent_RoundTripsWithoutImageContent() throws IOException {
+        MoodEvent event = event(3, ref("participants/alice"));
+        event.setAttachedImage("aW1hZ2U=");
+        event.setAttachedImageThumbnail("dGh1bWI=");
+        event.setAttachedImageHash("5f1c");
+
+        MoodEvent read = ModelCodec.decodeMoodEvents(ModelCodec.encodeMoodEvents(Arrays.asList(event)), ModelCodecTest::ref).get(0);
+        assertEquals(event.getId(), read.getId());
+        assertEquals(event.getTitle(), read.getTitle());
+        assertEquals(event.getReason(), read.getReason());
+        assertEquals(event.getTimestamp(), read.getTimestamp());
+        assertEquals(event.getEmotionalState(), read.getEmotionalState());
+        assertEquals(event.getSocialSituation(), read.getSocialSituation());
+        assertEquals(event.getVisibility(), read.getVisibility());
+        assertEquals(event.getGeoInfo(), read.getGeoInfo());
+        assertEquals("participants/alice", read.getParticipantRef().getPath());
+        assertEquals("5f1c", read.getAttachedImageHash());
+        assertNull(read.getAttachedImage());
+        assertNull(read.getAttachedImageThumbnail());
+    }
+
+    @Test
+    public void testEmptyObjects_RoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelCodec.Writer writer = new ModelCodec.Writer(new DataOutputStream(bytes));
+        writer.writeMoodEvent(new MoodEvent());
+        writer.writeComment(new Comment());
+        Participant participant = new Participant();
+        participant.setFollowers(null);
+        writer.writeParticipant(participant);
+
+        ModelCodec.Reader reader = new ModelCodec.Reader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), ModelCodecTest::ref);
+        MoodEvent event = reader.readMoodEvent();
+        assertNull(event.getId());
+        assertNull(event.getTimestamp());
+        assertNull(event.getEmotionalState());
+        assertNull(event.getParticipantRef());
+        assertNull(reader.readComment().getText());
+        Participant read = reader.readParticipant();
+        assertNull(read.getUsername());
+        assertNull(read.getFollowers());
+        assertTrue(read.getFollowing().isEmpty());
+        // The version and the three empty objects fit in a few bytes
+        assertTrue(bytes.size() < 10);
+    }
+
+    @Test
+    public void testCommentAndParticipant_RoundTrip() throws IOException {
+        Comment comment = new Comment(ref("participants/bob"), "Nice one");
+        comment.setTimestamp(new Date(1_740_000_123_456L));
+        Participant participant = new Participant("alice", "alice@example.com", "alice", "smith");
+        participant.setProfilePicture("cGljdHVyZQ==");
+        participant.setProfilePictureHash("9ab0");
+        participant.setFollowers(new ArrayList<>(Arrays.asList("bob", "carol")));
+        participant.setFollowingCount(7); // Counts are kept even when the list is not loaded
+        FollowRequest request = new FollowRequest("dave");
+        request.setTimestamp(new Timestamp(1_740_000_000L, 123_456_789));
+        participant.setFollowRequests(new ArrayList<>(Arrays.asList(request)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelCodec.Writer writer = new ModelCodec.Writer(new DataOutputStream(bytes));
+        writer.writeComment(comment);
+        writer.writeParticipant(participant);
+        ModelCodec.Reader reader = new ModelCodec.Reader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), ModelCodecTest::ref);
+
+        Comment readComment = reader.readComment();
+        assertEquals(comment.getId(), readComment.getId());
+        assertEquals("Nice one", readComment.getText());
+        assertEquals(comment.getTimestamp(), readComment.getTimestamp());
+        assertEquals("participants/bob", readComment.getParticipantRef().getPath());
+
+        Participant read = reader.readParticipant();
+        assertEquals("alice", read.getUsername());
+        assertEquals("Alice Smith", read.getDisplayName());
+        assertEquals("alice@example.com", read.getEmail());
+        assertEquals("9ab0", read.getProfilePictureHash());
+        assertNull(read.getProfilePicture());
+        assertEquals(Arrays.asList("bob", "carol"), read.getFollowers());
+        assertEquals(2, read.getFollowerCount());
+        assertEquals(7, read.getFollowingCount());
+        assertEquals("dave", read.getFollowRequests().get(0).getFromUsername());
+        assertEquals(FollowRequest.RequestStatus.PENDING, read.getFollowRequests().get(0).getStatusEnum());
+        assertEquals(request.getTimestamp(), read.getFollowRequests().get(0).getTimestamp());
+    }
+
+    @Test
+    public void testRepeatedStrings_AreWrittenOnceAndShared() throws IOException {
+        DocumentReference alice = ref("participants/alice");
+        MoodEvent first = event(1, alice);
+        MoodEvent second = event(2, alice);
+        second.setReason(first.getReason());
+        int oneEvent = ModelCodec.encodeMoodEvents(Arrays.asList(first)).length;
+        byte[] bytes = ModelCodec.encodeMoodEvents(Arrays.asList(first, second));
+
+        // The second event repeats the reason, participant path and geohash as indexes
+        assertTrue(bytes.length < oneEvent * 2 - first.getReason().length());
+        List<MoodEvent> read = ModelCodec.decodeMoodEvents(bytes, ModelCodecTest::ref);
+        assertSame(read.get(0).getReason(), read.get(1).getReason());
+    }
+
+    @Test
+    public void testIds_KeepTheirExactText() throws IOException {
+        MoodEvent uuid = event(1, null);
+        MoodEvent upperCase = event(2, null);
+        upperCase.setId(uuid.getId().toUpperCase());
+        MoodEvent custom = event(3, null);
+        custom.setId("legacy-id");
+
+        List<MoodEvent> read = ModelCodec.decodeMoodEvents(ModelCodec.encodeMoodEvents(Arrays.asList(uuid, upperCase, custom)), ModelCodecTest::ref);
+        assertEquals(uuid.getId(), read.get(0).getId());
+        assertEquals(upperCase.getId(), read.get(1).getId());
+        assertEquals("legacy-id", read.get(2).getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion_IsRejected() throws IOException {
+        byte[] bytes = ModelCodec.encodeMoodEvents(Arrays.asList(event(1, null)));
+        bytes[0] = (byte) (ModelCodec.FORMAT_VERSION + 1);
+        ModelCodec.decodeMoodEvents(bytes, ModelCodecTest::ref);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedInput_IsRejected() throws IOException {
+        byte[] bytes = ModelCodec.encodeMoodEvents(Arrays.asList(event(1, null)));
+        ModelCodec.decodeMoodEvents(Arrays.copyOf(bytes, bytes.length - 5), ModelCodecTest::ref);
+    }
+
+    /**
+     * A screen's worth of mood events. Participant references are left out, since a Firestore DocumentReference is
+     * not Serializable.
+     */
+    private static ArrayList<MoodEvent> screenOfEvents() {
+        ArrayList<MoodEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(event(i, null));
+        }
+        return events;
+    }
+
+    /**
+     * Compares the size of the codec's encoding with Java serialization
+     */
+    @Test
+    public void testEncode_SmallerThanSerializable() throws Exception {
+        ArrayList<MoodEvent> events = screenOfEvents();
+        byte[] serialized = serialize(events);
+        byte[] encoded = ModelCodec.encodeMoodEvents(events);
+        List<MoodEvent> decoded = ModelCodec.decodeMoodEvents(encoded, ModelCodecTest::ref);
+
+        assertEquals(events.size(), ((List<?>) deserialize(serialized)).size());
+        assertEquals(events.size(), decoded.size());
+        assertEquals(events.get(199).getGeoInfo(), decoded.get(199).getGeoInfo());
+        assertTrue(encoded.length * 2 < serialized.length);
+    }
+
+    /**
+     * Times encoding and decoding with the codec and with Java serialization and prints both with their sizes.
+     * Wall-clock times depend on the machine, so nothing is asserted on them and the test only runs with
+     * {@code -Pbenchmark}.
+     */
+    @Test
+    public void benchmarkEncodeAndDecode_AgainstSerializable() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        ArrayList<MoodEvent> events = screenOfEvents();
+        int rounds = 500;
+        long[] serializableNanos = new long[2];
+        long[] codecNanos = new long[2];
+        int serializedBytes = 0;
+        int encodedBytes = 0;
+        // The first rounds warm up the JIT and are not counted
+        for (int round = -rounds; round < rounds; round++) {
+            long start = System.nanoTime();
+            byte[] serialized = serialize(events);
+            long encoded = System.nanoTime();
+            assertEquals(events.size(), ((List<?>) deserialize(serialized)).size());
+            long decoded = System.nanoTime();
+            if (round >= 0) {
+                serializableNanos[0] += encoded - start;
+                serializableNanos[1] += decoded - encoded;
+                serializedBytes = serialized.length;
+            }
+
+            start = System.nanoTime();
+            byte[] bytes = ModelCodec.encodeMoodEvents(events);
+            encoded = System.nanoTime();
+            assertEquals(events.size(), ModelCodec.decodeMoodEvents(bytes, ModelCodecTest::ref).size());
+            decoded = System.nanoTime();
+            if (round >= 0) {
+                codecNanos[0] += encoded - start;
+                codecNanos[1] += decoded - encoded;
+                encodedBytes = bytes.length;
+            }
+        }
+        System.out.println("200 mood events, Serializable: " + serializedBytes + " bytes, encode "
+                + serializableNanos[0] / rounds / 1000 + " us, decode " + serializableNanos[1] / rounds / 1000
+                + " us; codec: " + encodedBytes + " bytes, encode " + codecNanos[0] / rounds / 1000 + " us, decode "
+                + codecNanos[1] / rounds / 1000 + " us");
+    }
+}
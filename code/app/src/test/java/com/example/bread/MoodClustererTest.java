@@ -0,0 +1,119 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.utils.MoodClusterer;
+import com.example.bread.utils.MoodMarkerIcons;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class MoodClustererTest {
+
+    private static MoodClusterer.Item item(String id, MoodEvent.EmotionalState state, double latitude, double longitude) {
+        MoodEvent event = new MoodEvent("title", "reason", state, null);
+        event.setId(id);
+        return new MoodClusterer.Item("user", event, latitude, longitude);
+    }
+
+    @Test
+    public void testCluster_NearbyEventsMergeAtLowZoom() {
+        List<MoodClusterer.Item> items = Arrays.asList(
+                item("a", MoodEvent.EmotionalState.HAPPY, 53.5461, -113.4938),
+                item("b", MoodEvent.EmotionalState.HAPPY, 53.5465, -113.4930),
+                item("c", MoodEvent.EmotionalState.SAD, 53.5470, -113.4945));
+
+        List<MoodClusterer.Cluster> clusters = MoodClusterer.cluster(items, 10, 64, null);
+
+        assertEquals(1, clusters.size());
+        assertEquals(3, clusters.get(0).size());
+        assertEquals(MoodEvent.EmotionalState.HAPPY, clusters.get(0).getDominantState());
+        assertEquals((53.5461 + 53.5465 + 53.5470) / 3, clusters.get(0).getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void testCluster_EventsSplitWhenZoomedIn() {
+        List<MoodClusterer.Item> items = Arrays.asList(
+                item("a", MoodEvent.EmotionalState.HAPPY, 53.5461, -113.4938),
+                item("b", MoodEvent.EmotionalState.SAD, 53.5561, -113.4738));
+
+        assertEquals(1, MoodClusterer.cluster(items, 8, 64, null).size());
+        List<MoodClusterer.Cluster> zoomedIn = MoodClusterer.cluster(items, 18, 64, null);
+        assertEquals(2, zoomedIn.size());
+        assertEquals("Single events keep their exact position", 53.5461, zoomedIn.get(0).getLatitude(), 0);
+    }
+
+    @Test
+    public void testCluster_OnlyViewportIsClustered() {
+        List<MoodClusterer.Item> items = Arrays.asList(
+                item("edmonton", MoodEvent.EmotionalState.HAPPY, 53.5461, -113.4938),
+                item("toronto", MoodEvent.EmotionalState.SAD, 43.6532, -79.3832));
+        MoodClusterer.Bounds alberta = new MoodClusterer.Bounds(49, -120, 60, -110);
+
+        List<MoodClusterer.Cluster> clusters = MoodClusterer.cluster(items, 5, 64, alberta);
+
+        assertEquals(1, clusters.size());
+        assertEquals("edmonton", clusters.get(0).getItems().get(0).getEvent().getId());
+    }
+
+    @Test
+    public void testCluster_ViewportAcrossAntimeridian() {
+        List<MoodClusterer.Item> items = Arrays.asList(
+                item("fiji", MoodEvent.EmotionalState.HAPPY, -17.7, 178.0),
+                item("samoa", MoodEvent.EmotionalState.HAPPY, -13.8, -172.1),
+                item("sydney", MoodEvent.EmotionalState.HAPPY, -33.9, 151.2));
+        MoodClusterer.Bounds pacific = new MoodClusterer.Bounds(-25, 170, -10, -165);
+
+        assertEquals(2, MoodClusterer.cluster(items, 10, 64, pacific).size());
+        assertEquals(3, MoodClusterer.cluster(items, 10, 64, pacific.expandedBy(1)).size());
+    }
+
+    @Test
+    public void testCluster_KeysAreStableAcrossRenders() {
+        List<MoodClusterer.Item> items = Arrays.asList(
+                item("a", MoodEvent.EmotionalState.HAPPY, 53.5461, -113.4938),
+                item("b", MoodEvent.EmotionalState.SAD, 53.5465, -113.4930));
+        List<MoodClusterer.Item> reversed = Arrays.asList(items.get(1), items.get(0));
+
+        // Zooming within one level does not change the clusters, so no marker has to be replaced
+        assertEquals(MoodClusterer.cluster(items, 10.2f, 64, null).get(0).getKey(),
+                MoodClusterer.cluster(reversed, 10.8f, 64, null).get(0).getKey());
+    }
+
+    @Test
+    public void testCluster_ThousandsOfEventsStayBoundedByCells() {
+        Random random = new Random(42);
+        List<MoodClusterer.Item> items = new ArrayList<>();
+        MoodEvent.EmotionalState[] states = MoodEvent.EmotionalState.values();
+        for (int i = 0; i < 5000; i++) {
+            items.add(item("e" + i, states[random.nextInt(states.length)],
+                    53.4 + random.nextDouble() * 0.3, -113.7 + random.nextDouble() * 0.4));
+        }
+
+        List<MoodClusterer.Cluster> clusters = MoodClusterer.cluster(items, 10, 64, null);
+
+        int total = 0;
+        HashSet<String> keys = new HashSet<>();
+        for (MoodClusterer.Cluster cluster : clusters) {
+            total += cluster.size();
+            keys.add(cluster.getKey());
+        }
+        assertEquals(5000, total);
+        assertEquals(clusters.size(), keys.size());
+        assertTrue("Expected a few dozen markers, got " + clusters.size(), clusters.size() < 100);
+    }
+
+    @Test
+    public void testCountLabel_BucketsLargeClusters() {
+        assertEquals("7", MoodMarkerIcons.countLabel(7));
+        assertEquals("10+", MoodMarkerIcons.countLabel(24));
+        assertEquals("100+", MoodMarkerIcons.countLabel(499));
+        assertEquals("1000+", MoodMarkerIcons.countLabel(12000));
+    }
+}
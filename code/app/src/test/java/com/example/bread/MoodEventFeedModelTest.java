@@ -0,0 +1,169 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventFeedModel;
+import com.example.bread.repository.MoodEventFeedModel.FeedChange;
+import com.google.firebase.firestore.DocumentReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class MoodEventFeedModelTest {
+
+    private DocumentReference aliceRef;
+    private DocumentReference bobRef;
+
+    @Before
+    public void setUp() {
+        aliceRef = mock(DocumentReference.class);
+        when(aliceRef.getPath()).thenReturn("participants/alice");
+        bobRef = mock(DocumentReference.class);
+        when(bobRef.getPath()).thenReturn("participants/bob");
+    }
+
+    private MoodEvent event(String id, long time, DocumentReference ref) {
+        MoodEvent event = new MoodEvent("title " + id, "reason", MoodEvent.EmotionalState.HAPPY, ref);
+        event.setId(id);
+        event.setTimestamp(new Date(time));
+        return event;
+    }
+
+    private List<String> ids(List<MoodEvent> events) {
+        List<String> ids = new ArrayList<>();
+        for (MoodEvent event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Applies changes the way an adapter would, so tests can check they reproduce the visible list
+     */
+    private void replay(List<MoodEvent> list, List<FeedChange> changes) {
+        for (FeedChange change : changes) {
+            switch (change.getType()) {
+                case INSERTED:
+                    list.add(change.getPosition(), change.getMoodEvent());
+                    break;
+                case CHANGED:
+                    list.set(change.getPosition(), change.getMoodEvent());
+                    break;
+                case REMOVED:
+                    list.remove(change.getPosition());
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testApply_SortsNewestFirst() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 300, aliceRef), event("c", 200, bobRef)), Collections.emptyList());
+
+        assertEquals(Arrays.asList("b", "c", "a"), ids(model.getVisibleEvents()));
+    }
+
+    @Test
+    public void testApply_InsertReportsOnlyNewRow() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 300, aliceRef)), Collections.emptyList());
+
+        List<FeedChange> changes = model.apply(Collections.singletonList(event("c", 200, bobRef)), Collections.emptyList());
+
+        assertEquals(1, changes.size());
+        assertEquals(FeedChange.Type.INSERTED, changes.get(0).getType());
+        assertEquals(1, changes.get(0).getPosition());
+    }
+
+    @Test
+    public void testApply_ModifiedInPlaceReportsChanged() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 300, aliceRef)), Collections.emptyList());
+
+        MoodEvent edited = event("a", 100, aliceRef);
+        edited.setTitle("edited");
+        List<FeedChange> changes = model.apply(Collections.singletonList(edited), Collections.emptyList());
+
+        assertEquals(1, changes.size());
+        assertEquals(FeedChange.Type.CHANGED, changes.get(0).getType());
+        assertEquals(1, changes.get(0).getPosition());
+        assertEquals("edited", model.getVisibleEvents().get(1).getTitle());
+    }
+
+    @Test
+    public void testApply_RemovedReportsRemoved() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 300, aliceRef)), Collections.emptyList());
+
+        List<FeedChange> changes = model.apply(Collections.emptyList(), Collections.singletonList("b"));
+
+        assertEquals(1, changes.size());
+        assertEquals(FeedChange.Type.REMOVED, changes.get(0).getType());
+        assertEquals(0, changes.get(0).getPosition());
+        assertEquals(Collections.singletonList("a"), ids(model.getVisibleEvents()));
+    }
+
+    @Test
+    public void testApply_PendingServerTimestampIsNewest() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        MoodEvent pending = event("p", 0, aliceRef);
+        pending.setTimestamp(null);
+        model.apply(Arrays.asList(event("a", 100, aliceRef), pending), Collections.emptyList());
+
+        assertEquals(Arrays.asList("p", "a"), ids(model.getVisibleEvents()));
+    }
+
+    @Test
+    public void testApply_CapsEventsPerUser() {
+        MoodEventFeedModel model = new MoodEventFeedModel(2);
+        model.apply(Arrays.asList(event("a1", 100, aliceRef), event("a2", 200, aliceRef), event("a3", 300, aliceRef),
+                event("b1", 150, bobRef)), Collections.emptyList());
+
+        assertEquals(Arrays.asList("a3", "a2", "b1"), ids(model.getVisibleEvents()));
+
+        // Removing a visible event reveals the next older one of the same user
+        List<FeedChange> changes = model.apply(Collections.emptyList(), Collections.singletonList("a3"));
+        assertEquals(Arrays.asList("a2", "b1", "a1"), ids(model.getVisibleEvents()));
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    public void testChanges_ReplayToVisibleList() {
+        MoodEventFeedModel model = new MoodEventFeedModel(3);
+        List<MoodEvent> adapterList = new ArrayList<>();
+        replay(adapterList, model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 200, bobRef),
+                event("c", 300, aliceRef), event("d", 400, bobRef)), Collections.emptyList()));
+        assertEquals(ids(model.getVisibleEvents()), ids(adapterList));
+
+        // Move "a" to the top, edit "b", delete "d" and add "e" in one snapshot
+        MoodEvent movedA = event("a", 500, aliceRef);
+        MoodEvent editedB = event("b", 200, bobRef);
+        replay(adapterList, model.apply(Arrays.asList(movedA, editedB, event("e", 250, bobRef)), Collections.singletonList("d")));
+
+        assertEquals(Arrays.asList("a", "c", "e", "b"), ids(model.getVisibleEvents()));
+        assertEquals(ids(model.getVisibleEvents()), ids(adapterList));
+        assertSame(editedB, adapterList.get(3));
+    }
+
+    @Test
+    public void testClear_RemovesEverything() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        List<MoodEvent> adapterList = new ArrayList<>();
+        replay(adapterList, model.apply(Arrays.asList(event("a", 100, aliceRef), event("b", 200, bobRef)), Collections.emptyList()));
+
+        replay(adapterList, model.clear());
+
+        assertTrue(model.getVisibleEvents().isEmpty());
+        assertTrue(adapterList.isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventFeedModel;
+import com.example.bread.repository.MoodEventFilter;
+import com.example.bread.repository.MoodEventFilterIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+public class MoodEventFilterIndexTest {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final Date NOW = new Date();
+    private static final String[] REASONS = {"Exam stress", "Coffee with friends", "STRESSFUL commute", "Sunny walk",
+            "Missed the bus", "", null, "ok"};
+
+    private static MoodEvent event(String id, MoodEvent.EmotionalState state, String reason, long ageMs) {
+        MoodEvent event = new MoodEvent("title", reason, state, null);
+        event.setId(id);
+        event.setTimestamp(new Date(NOW.getTime() - ageMs));
+        return event;
+    }
+
+    private static List<MoodEvent> randomEvents(int count, long seed) {
+        Random random = new Random(seed);
+        MoodEvent.EmotionalState[] states = MoodEvent.EmotionalState.values();
+        List<MoodEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(event("e" + i, states[random.nextInt(states.length)], REASONS[random.nextInt(REASONS.length)],
+                    randomAge(random)));
+        }
+        return events;
+    }
+
+    /**
+     * Ages are whole days plus half a day, so no event sits on the edge of the past week while the test runs
+     */
+    private static long randomAge(Random random) {
+        return random.nextInt(20) * DAY_MS + DAY_MS / 2;
+    }
+
+    /**
+     * The copy-per-criterion pipeline the fragments used before, with the result in feed order
+     */
+    private static List<MoodEvent> naive(List<MoodEvent> events, MoodEventFilter filter) {
+        List<MoodEvent> result = new ArrayList<>();
+        for (MoodEvent event : events) {
+            if (filter.matches(event)) {
+                result.add(event);
+            }
+        }
+        result.sort(Comparator.comparing(MoodEvent::getTimestamp).reversed().thenComparing(MoodEvent::getId));
+        return result;
+    }
+
+    @Test
+    public void testFilter_MatchesEveryCriterion() {
+        MoodEvent recent = event("a", MoodEvent.EmotionalState.SAD, "Exam STRESS", DAY_MS);
+
+        assertTrue(new MoodEventFilter(true, MoodEvent.EmotionalState.SAD, "  stress ").matches(recent));
+        assertFalse(new MoodEventFilter(false, MoodEvent.EmotionalState.HAPPY, null).matches(recent));
+        assertFalse(new MoodEventFilter(false, null, "coffee").matches(recent));
+        assertFalse(new MoodEventFilter(true, null, null).matches(event("b", null, null, 8 * DAY_MS)));
+        assertFalse(MoodEventFilter.NONE.isActive());
+        assertEquals(new MoodEventFilter(true, null, "Stress"), new MoodEventFilter(true, null, "stress "));
+    }
+
+    @Test
+    public void testQuery_MatchesNaivePipeline() {
+        List<MoodEvent> events = randomEvents(2000, 3);
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        index.addAll(events);
+
+        for (boolean recentWeek : new boolean[]{false, true}) {
+            for (MoodEvent.EmotionalState state : Arrays.asList(null, MoodEvent.EmotionalState.SAD, MoodEvent.EmotionalState.HAPPY)) {
+                for (String keyword : new String[]{null, "stress", "ok", "with friends", "o", "zzz"}) {
+                    MoodEventFilter filter = new MoodEventFilter(recentWeek, state, keyword);
+                    assertEquals(recentWeek + "/" + state + "/" + keyword, naive(events, filter), index.query(filter));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdates_MatchRebuild() {
+        List<MoodEvent> events = new ArrayList<>(randomEvents(500, 4));
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        index.addAll(events);
+        Random random = new Random(5);
+
+        for (int i = 0; i < 300; i++) {
+            int target = random.nextInt(events.size());
+            if (random.nextBoolean()) {
+                assertTrue(index.remove(events.remove(target)));
+            } else {
+                // Replace with an edited copy under the same id
+                MoodEvent edited = event(events.get(target).getId(), MoodEvent.EmotionalState.ANGRY, "edited stress",
+                        randomAge(random));
+                events.set(target, edited);
+                index.add(edited);
+            }
+            events.add(event("new" + i, MoodEvent.EmotionalState.SAD, "new coffee", randomAge(random)));
+            index.add(events.get(events.size() - 1));
+        }
+
+        assertEquals(events.size(), index.size());
+        for (MoodEventFilter filter : Arrays.asList(MoodEventFilter.NONE, new MoodEventFilter(true, null, "stress"),
+                new MoodEventFilter(false, MoodEvent.EmotionalState.ANGRY, null), new MoodEventFilter(true, MoodEvent.EmotionalState.SAD, "coffee"))) {
+            assertEquals(naive(events, filter), index.query(filter));
+        }
+    }
+
+    @Test
+    public void testRemove_IgnoresReplacedCopy() {
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        MoodEvent original = event("a", MoodEvent.EmotionalState.HAPPY, "first", DAY_MS);
+        MoodEvent edited = event("a", MoodEvent.EmotionalState.SAD, "second", 0);
+        index.add(original);
+        index.add(edited);
+
+        // A feed update can report the new copy before the removal of the old one
+        assertFalse(index.remove(original));
+        assertEquals(Collections.singletonList(edited), index.query(MoodEventFilter.NONE));
+        assertTrue(index.query(new MoodEventFilter(false, MoodEvent.EmotionalState.HAPPY, null)).isEmpty());
+    }
+
+    @Test
+    public void testApplyChanges_FollowsFeedModel() {
+        MoodEventFeedModel model = new MoodEventFeedModel();
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        MoodEvent older = event("a", MoodEvent.EmotionalState.HAPPY, "walk", 2 * DAY_MS);
+        MoodEvent newer = event("b", MoodEvent.EmotionalState.SAD, "stress", DAY_MS);
+        index.applyChanges(model.apply(Arrays.asList(older, newer), Collections.emptyList()));
+
+        // Moving "a" to the top is reported as an insert before the removal of the old copy
+        MoodEvent moved = event("a", MoodEvent.EmotionalState.HAPPY, "walk", 0);
+        index.applyChanges(model.apply(Collections.singletonList(moved), Collections.emptyList()));
+        assertEquals(model.getVisibleEvents(), index.query(MoodEventFilter.NONE));
+
+        index.applyChanges(model.apply(Collections.emptyList(), Collections.singletonList("b")));
+        assertEquals(model.getVisibleEvents(), index.query(MoodEventFilter.NONE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdd_RequiresId() {
+        MoodEvent event = new MoodEvent("title", "reason", MoodEvent.EmotionalState.HAPPY, null);
+        event.setId(null);
+        new MoodEventFilterIndex().add(event);
+    }
+}
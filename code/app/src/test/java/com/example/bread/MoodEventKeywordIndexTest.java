@@ -0,0 +1,165 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventFilter;
+import com.example.bread.repository.MoodEventFilterIndex;
+import com.example.bread.repository.MoodEventKeywordIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class MoodEventKeywordIndexTest {
+
+    private static BitSet slots(int... slots) {
+        BitSet bits = new BitSet();
+        for (int slot : slots) {
+            bits.set(slot);
+        }
+        return bits;
+    }
+
+    @Test
+    public void testTokenize_NormalizesCaseAccentsAndPunctuation() {
+        assertEquals(Arrays.asList("cafe", "with", "zoe"), MoodEventKeywordIndex.tokenize("Café with ZOË!!"));
+        assertEquals(Arrays.asList("exam", "stress", "2"), MoodEventKeywordIndex.tokenize("  exam-stress, exam #2 "));
+        // Compatibility forms such as the "fi" ligature fold to plain letters
+        assertEquals(Collections.singletonList("file"), MoodEventKeywordIndex.tokenize("\uFB01le"));
+        assertTrue(MoodEventKeywordIndex.tokenize(null).isEmpty());
+        assertTrue(MoodEventKeywordIndex.tokenize("?!").isEmpty());
+    }
+
+    @Test
+    public void testMatch_EveryWordIsAPrefix() {
+        MoodEventKeywordIndex index = new MoodEventKeywordIndex();
+        index.add(0, "Exam day", "So much stress");
+        index.add(1, "Coffee", "Stressful commute");
+        index.add(2, null, "Café with friends");
+
+        assertEquals(slots(0, 1), index.match(MoodEventKeywordIndex.tokenize("STRESS")));
+        assertEquals(slots(0), index.match(MoodEventKeywordIndex.tokenize("exam stre")));
+        assertEquals(slots(2), index.match(MoodEventKeywordIndex.tokenize("cafe")));
+        assertEquals(slots(1, 2), index.match(MoodEventKeywordIndex.tokenize("c")));
+        assertTrue(index.match(MoodEventKeywordIndex.tokenize("ress")).isEmpty());
+
+        assertTrue(MoodEventKeywordIndex.matches(MoodEventKeywordIndex.tokenize("exam stre"), "Exam day", "So much stress"));
+        assertFalse(MoodEventKeywordIndex.matches(MoodEventKeywordIndex.tokenize("ress"), "Exam day", "So much stress"));
+    }
+
+    @Test
+    public void testAddAndRemove_AreIncremental() {
+        MoodEventKeywordIndex index = new MoodEventKeywordIndex();
+        index.add(0, "Sunny walk", null);
+        index.add(1, "Rainy walk", null);
+        index.add(0, "Cloudy walk", null);
+
+        assertTrue(index.match(MoodEventKeywordIndex.tokenize("sunny")).isEmpty());
+        assertEquals(slots(0, 1), index.match(MoodEventKeywordIndex.tokenize("walk")));
+
+        index.remove(1);
+        assertEquals(slots(0), index.match(MoodEventKeywordIndex.tokenize("walk")));
+        index.clear();
+        assertTrue(index.match(MoodEventKeywordIndex.tokenize("walk")).isEmpty());
+    }
+
+    /**
+     * Five years of ten moods a day, each with a reason of six random words
+     */
+    private static List<MoodEvent> yearsOfHistory() {
+        String[] words = {"exam", "stress", "coffee", "friends", "walk", "sunny", "rain", "commute", "family", "dinner",
+                "gym", "work", "deadline", "movie", "music", "sleep", "tired", "party", "study", "project"};
+        Random random = new Random(11);
+        List<MoodEvent> events = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        int count = 5 * 365 * 10;
+        for (int i = 0; i < count; i++) {
+            StringBuilder reason = new StringBuilder();
+            for (int w = 0; w < 6; w++) {
+                reason.append(words[random.nextInt(words.length)]).append(random.nextInt(50)).append(' ');
+            }
+            MoodEvent event = new MoodEvent("Mood " + i, reason.toString(), MoodEvent.EmotionalState.HAPPY, null);
+            event.setTimestamp(new Date(now - i * 8_640_000L));
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static final List<MoodEventFilter> KEYWORD_FILTERS = Arrays.asList(new MoodEventFilter(false, null, "stress4"),
+            new MoodEventFilter(false, null, "exam1 coffee"), new MoodEventFilter(false, null, "deadline42 gym"),
+            new MoodEventFilter(false, null, "nothing"));
+
+    private static List<MoodEvent> linearFilter(List<MoodEvent> events, MoodEventFilter filter) {
+        List<MoodEvent> matched = new ArrayList<>();
+        for (MoodEvent event : events) {
+            if (filter.matches(event)) {
+                matched.add(event);
+            }
+        }
+        return matched;
+    }
+
+    @Test
+    public void testQuery_SearchOverYearsOfHistoryMatchesLinearFilter() {
+        List<MoodEvent> events = yearsOfHistory();
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        for (MoodEvent event : events) {
+            index.add(event);
+        }
+
+        int found = 0;
+        for (MoodEventFilter filter : KEYWORD_FILTERS) {
+            List<MoodEvent> expected = linearFilter(events, filter);
+            List<MoodEvent> matched = index.query(filter);
+            assertEquals(filter.getKeyword(), new HashSet<>(expected), new HashSet<>(matched));
+            found += matched.size();
+        }
+        assertTrue(found > 0);
+    }
+
+    /**
+     * Times keyword queries over the 18,250 events of five years against the linear filter and prints the time per
+     * query of both. Wall-clock times depend on the machine, so nothing is asserted on them and the test only runs with
+     * {@code -Pbenchmark}.
+     */
+    @Test
+    public void benchmarkQuery_SearchOverYearsOfHistory() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        List<MoodEvent> events = yearsOfHistory();
+        MoodEventFilterIndex index = new MoodEventFilterIndex();
+        for (MoodEvent event : events) {
+            index.add(event);
+        }
+        int rounds = 200;
+        for (MoodEventFilter filter : KEYWORD_FILTERS) {
+            int found = 0;
+            // The first rounds warm up the JIT and are not counted
+            for (int round = 0; round < rounds; round++) {
+                found += index.query(filter).size() - linearFilter(events, filter).size();
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                found += linearFilter(events, filter).size();
+            }
+            long linearMicros = (System.nanoTime() - start) / rounds / 1000;
+            start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                found -= index.query(filter).size();
+            }
+            long indexMicros = (System.nanoTime() - start) / rounds / 1000;
+
+            assertEquals(0, found);
+            System.out.println("Keyword \"" + filter.getKeyword() + "\" over " + events.size() + " events: linear filter "
+                    + linearMicros + " us, index " + indexMicros + " us per query");
+        }
+    }
+}
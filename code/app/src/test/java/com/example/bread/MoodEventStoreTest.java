@@ -0,0 +1,128 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.MoodEventStore;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MoodEventStoreTest {
+
+    private final MoodEventStore store = new MoodEventStore(3);
+
+    /**
+     * A loader whose loads are held back until the test completes them
+     */
+    private static class HeldLoader implements MoodEventStore.Loader {
+        int loads;
+        OnSuccessListener<MoodEvent> onSuccessListener;
+        OnFailureListener onFailureListener;
+
+        @Override
+        public void load(String id, OnSuccessListener<MoodEvent> onSuccessListener, OnFailureListener onFailureListener) {
+            loads++;
+            this.onSuccessListener = onSuccessListener;
+            this.onFailureListener = onFailureListener;
+        }
+    }
+
+    private static MoodEvent event(String id) {
+        MoodEvent event = new MoodEvent("title " + id, "reason", MoodEvent.EmotionalState.HAPPY, null);
+        event.setId(id);
+        return event;
+    }
+
+    @Test
+    public void testPutAndGet_ReturnsSameInstance() {
+        MoodEvent event = event("a");
+        store.put(event);
+        assertSame(event, store.get("a"));
+        assertNull(store.get("b"));
+    }
+
+    @Test
+    public void testFull_EvictsLeastRecentlyUsed() {
+        store.putAll(Arrays.asList(event("a"), event("b"), event("c")));
+        store.get("a");
+        store.put(event("d"));
+
+        assertEquals(3, store.size());
+        assertNull(store.get("b"));
+        assertNotNull(store.get("a"));
+    }
+
+    @Test
+    public void testFetch_HitIsDeliveredWithoutLoading() {
+        MoodEvent event = event("a");
+        store.put(event);
+        HeldLoader loader = new HeldLoader();
+        List<MoodEvent> delivered = new ArrayList<>();
+        store.fetch("a", loader, delivered::add, e -> fail());
+
+        assertEquals(0, loader.loads);
+        assertEquals(1, delivered.size());
+        assertSame(event, delivered.get(0));
+    }
+
+    @Test
+    public void testFetch_ConcurrentMissesShareOneLoad() {
+        HeldLoader loader = new HeldLoader();
+        List<MoodEvent> delivered = new ArrayList<>();
+        store.fetch("a", loader, delivered::add, e -> fail());
+        store.fetch("a", loader, delivered::add, e -> fail());
+        assertEquals(1, loader.loads);
+
+        MoodEvent loaded = event("a");
+        loader.onSuccessListener.onSuccess(loaded);
+        assertEquals(Arrays.asList(loaded, loaded), delivered);
+        assertSame(loaded, store.get("a"));
+    }
+
+    @Test
+    public void testFetch_WriteDuringLoadWins() {
+        HeldLoader loader = new HeldLoader();
+        List<MoodEvent> delivered = new ArrayList<>();
+        store.fetch("a", loader, delivered::add, e -> fail());
+        MoodEvent written = event("a");
+        store.put(written);
+
+        loader.onSuccessListener.onSuccess(event("a"));
+        assertSame(written, delivered.get(0));
+        assertSame(written, store.get("a"));
+    }
+
+    @Test
+    public void testFetch_RemovedDuringLoadIsNotStored() {
+        HeldLoader loader = new HeldLoader();
+        store.fetch("a", loader, event -> {
+        }, e -> fail());
+        store.remove("a");
+
+        loader.onSuccessListener.onSuccess(event("a"));
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void testFetch_MissingOrFailedLoadsAreNotStored() {
+        HeldLoader loader = new HeldLoader();
+        List<MoodEvent> delivered = new ArrayList<>();
+        store.fetch("a", loader, delivered::add, e -> fail());
+        loader.onSuccessListener.onSuccess(null);
+        assertEquals(1, delivered.size());
+        assertNull(delivered.get(0));
+        assertEquals(0, store.size());
+
+        List<Exception> failures = new ArrayList<>();
+        store.fetch("a", loader, event -> fail(), failures::add);
+        loader.onFailureListener.onFailure(new Exception("offline"));
+        assertEquals(1, failures.size());
+        assertEquals(2, loader.loads);
+    }
+}
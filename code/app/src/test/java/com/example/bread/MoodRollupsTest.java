@@ -0,0 +1,319 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.repository.AnalyticsRange;
+import com.example.bread.repository.MoodRollups;
+import com.example.bread.utils.MoodTimeSeries;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+public class MoodRollupsTest {
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/Edmonton");
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    // Noon on 2025-03-10 in ZONE, the day after daylight saving time started
+    private static final long NOON = localTime(2025, Calendar.MARCH, 10, 12);
+    private static final int TODAY = MoodRollups.dayOf(NOON, ZONE);
+
+    private static long localTime(int year, int month, int day, int hour) {
+        Calendar calendar = new GregorianCalendar(ZONE);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static MoodEvent event(String id, MoodEvent.EmotionalState state, long millis) {
+        MoodEvent event = new MoodEvent("title", "reason", state, null);
+        event.setId(id);
+        event.setTimestamp(new Date(millis));
+        return event;
+    }
+
+    /**
+     * Longest streak computed from scratch over every event
+     */
+    private static int longestStreak(Map<String, MoodEvent> events) {
+        TreeSet<Integer> days = new TreeSet<>();
+        for (MoodEvent event : events.values()) {
+            days.add(MoodRollups.dayOf(event.getTimestamp().getTime(), ZONE));
+        }
+        int longest = 0;
+        int current = 0;
+        Integer previous = null;
+        for (int day : days) {
+            current = previous != null && day == previous + 1 ? current + 1 : 1;
+            longest = Math.max(longest, current);
+            previous = day;
+        }
+        return longest;
+    }
+
+    @Test
+    public void testDayAndMonth_FollowLocalCalendar() {
+        assertEquals(0, MoodRollups.dayOf(0, TimeZone.getTimeZone("UTC")));
+        assertEquals(-1, MoodRollups.dayOf(0, ZONE)); // 1969-12-31 17:00 in Edmonton
+        assertEquals(1970 * 12, MoodRollups.monthOfDay(0));
+        assertEquals(1969 * 12 + 11, MoodRollups.monthOfDay(-1));
+        assertEquals(2025 * 12 + 2, MoodRollups.monthOfDay(TODAY));
+        assertEquals(2025 * 12 + 1, MoodRollups.monthOfDay(MoodRollups.dayOf(NOON - 10 * DAY_MS, ZONE))); // Feb 28, 2025
+        assertEquals(2000 * 12 + 1, MoodRollups.monthOfDay(11016)); // 2000-02-29
+
+        // Local midnight starts the new day
+        long midnight = NOON - 12 * 60 * 60 * 1000L;
+        assertEquals(TODAY, MoodRollups.dayOf(midnight, ZONE));
+        assertEquals(TODAY - 1, MoodRollups.dayOf(midnight - 1, ZONE));
+    }
+
+    @Test
+    public void testAddUpdateDelete_AdjustBuckets() {
+        MoodRollups rollups = new MoodRollups();
+        MoodEvent happy = event("a", MoodEvent.EmotionalState.HAPPY, NOON);
+        assertTrue(rollups.add(happy, ZONE, 0));
+        assertTrue(rollups.add(event("b", MoodEvent.EmotionalState.SAD, NOON), ZONE, 0));
+        assertFalse(rollups.add(happy, ZONE, 0)); // Same contribution again
+
+        MoodRollups.Bucket today = rollups.getDay(TODAY);
+        assertEquals(2, today.getCount());
+        assertEquals(0, today.getScoreSum());
+        assertEquals(1, today.getEmotionCount(MoodEvent.EmotionalState.HAPPY));
+
+        // Editing the state and moving it to yesterday
+        assertTrue(rollups.add(event("a", MoodEvent.EmotionalState.ANGRY, NOON - DAY_MS), ZONE, 0));
+        assertEquals(1, rollups.getDay(TODAY).getCount());
+        assertEquals(1, rollups.getDay(TODAY - 1).getEmotionCount(MoodEvent.EmotionalState.ANGRY));
+        assertEquals(0, rollups.getTotal().getEmotionCount(MoodEvent.EmotionalState.HAPPY));
+        assertEquals(-3, rollups.getTotal().getScoreSum());
+        assertEquals(2, rollups.getMonth(MoodRollups.monthOfDay(TODAY)).getCount());
+
+        assertTrue(rollups.remove("b"));
+        assertFalse(rollups.remove("b"));
+        assertNull(rollups.getDay(TODAY));
+        assertEquals(1, rollups.size());
+    }
+
+    @Test
+    public void testPendingTimestamp_UsesWriteTime() {
+        MoodRollups rollups = new MoodRollups();
+        MoodEvent pending = new MoodEvent("title", "reason", MoodEvent.EmotionalState.HAPPY, null);
+        rollups.add(pending, ZONE, NOON);
+        assertEquals(1, rollups.getDay(TODAY).getCount());
+    }
+
+    @Test
+    public void testStreaks_SplitAndMerge() {
+        MoodRollups rollups = new MoodRollups();
+        for (int i = 0; i < 5; i++) {
+            rollups.add(event("d" + i, MoodEvent.EmotionalState.HAPPY, NOON - i * DAY_MS), ZONE, 0);
+        }
+        rollups.add(event("old", MoodEvent.EmotionalState.SAD, NOON - 10 * DAY_MS), ZONE, 0);
+        assertEquals(5, rollups.getCurrentStreak(TODAY));
+        assertEquals(5, rollups.getLongestStreak());
+        // Still running tomorrow until a day is missed
+        assertEquals(5, rollups.getCurrentStreak(TODAY + 1));
+        assertEquals(0, rollups.getCurrentStreak(TODAY + 2));
+
+        rollups.remove("d2");
+        assertEquals(2, rollups.getCurrentStreak(TODAY));
+        assertEquals(2, rollups.getLongestStreak());
+
+        rollups.add(event("d2", MoodEvent.EmotionalState.NEUTRAL, NOON - 2 * DAY_MS), ZONE, 0);
+        assertEquals(5, rollups.getLongestStreak());
+    }
+
+    @Test
+    public void testRandomChanges_MatchRecomputation() {
+        MoodRollups rollups = new MoodRollups();
+        Map<String, MoodEvent> events = new HashMap<>();
+        MoodEvent.EmotionalState[] states = MoodEvent.EmotionalState.values();
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            String id = "e" + random.nextInt(400);
+            if (random.nextInt(4) == 0) {
+                assertEquals(events.remove(id) != null, rollups.remove(id));
+            } else {
+                MoodEvent event = event(id, states[random.nextInt(states.length)], NOON - random.nextInt(120) * DAY_MS);
+                events.put(id, event);
+                rollups.add(event, ZONE, 0);
+            }
+        }
+
+        long scoreSum = 0;
+        Map<Integer, Integer> perDay = new HashMap<>();
+        for (MoodEvent event : events.values()) {
+            scoreSum += event.getScore();
+            perDay.merge(MoodRollups.dayOf(event.getTimestamp().getTime(), ZONE), 1, Integer::sum);
+        }
+        assertEquals(events.size(), rollups.getTotal().getCount());
+        assertEquals(scoreSum, rollups.getTotal().getScoreSum());
+        for (Map.Entry<Integer, Integer> day : perDay.entrySet()) {
+            assertEquals(day.getValue().intValue(), rollups.getDay(day.getKey()).getCount());
+        }
+        assertEquals(longestStreak(events), rollups.getLongestStreak());
+    }
+
+    @Test
+    public void testSummary_CoversYearAndTrend() {
+        MoodRollups rollups = new MoodRollups();
+        rollups.add(event("today", MoodEvent.EmotionalState.HAPPY, NOON), ZONE, 0);
+        rollups.add(event("today2", MoodEvent.EmotionalState.SAD, NOON), ZONE, 0);
+        rollups.add(event("january", MoodEvent.EmotionalState.HAPPY, NOON - 60 * DAY_MS), ZONE, 0);
+        rollups.add(event("lastYear", MoodEvent.EmotionalState.ANGRY, NOON - 100 * DAY_MS), ZONE, 0);
+
+        MoodRollups.Summary summary = rollups.summarize(TODAY, 30);
+        assertEquals(2025, summary.getYear());
+        assertTrue(summary.hasMonth(1));
+        assertFalse(summary.hasMonth(2));
+        assertEquals(1, summary.getMonthEmotionCount(3, MoodEvent.EmotionalState.SAD));
+        assertEquals(0, summary.getMonthEmotionCount(12, MoodEvent.EmotionalState.ANGRY)); // Only this year's months
+        assertEquals(1, summary.getEmotionCount(MoodEvent.EmotionalState.ANGRY));
+        assertEquals(4, summary.getTotalCount());
+
+        float[] averages = summary.getDailyAverages();
+        assertEquals(30, averages.length);
+        assertEquals(0f, averages[29], 0.0001f); // (+2 - 2) / 2 today
+        assertEquals(1, summary.getCurrentStreak());
+    }
+
+    @Test
+    public void testRanges_ResolveAgainstToday() {
+        assertEquals(TODAY - 6, AnalyticsRange.WEEK.firstDay(TODAY, null));
+        assertEquals(TODAY - 29, AnalyticsRange.MONTH.firstDay(TODAY, null));
+        // Twelve calendar months ending with this one: April 2024 to March 2025
+        int yearStart = AnalyticsRange.YEAR.firstDay(TODAY, null);
+        assertEquals(2024 * 12 + Calendar.APRIL, MoodTimeSeries.monthOfDay(yearStart));
+        assertEquals(2024 * 12 + Calendar.MARCH, MoodTimeSeries.monthOfDay(yearStart - 1));
+        assertEquals(TODAY, AnalyticsRange.ALL_TIME.firstDay(TODAY, null));
+        assertEquals(TODAY - 400, AnalyticsRange.ALL_TIME.firstDay(TODAY, TODAY - 400));
+        assertEquals(TODAY - 3, AnalyticsRange.custom(TODAY - 9, TODAY - 3).lastDay(TODAY));
+
+        assertEquals(AnalyticsRange.custom(1, 2), AnalyticsRange.custom(1, 2));
+        assertNotEquals(AnalyticsRange.custom(1, 2).getKey(), AnalyticsRange.custom(1, 3).getKey());
+        assertEquals(AnalyticsRange.Resolution.DAY, AnalyticsRange.resolutionOf(TODAY - 61, TODAY));
+        assertEquals(AnalyticsRange.Resolution.MONTH, AnalyticsRange.resolutionOf(TODAY - 62, TODAY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCustomRange_RejectsReversedDays() {
+        AnalyticsRange.custom(TODAY, TODAY - 1);
+    }
+
+    @Test
+    public void testTotalAndSeries_MatchEventsInRange() {
+        MoodRollups rollups = new MoodRollups();
+        Map<String, MoodEvent> events = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            MoodEvent event = event("e" + i, MoodEvent.EmotionalState.values()[random.nextInt(10)],
+                    NOON - random.nextInt(3 * 365) * DAY_MS);
+            events.put(event.getId(), event);
+            rollups.add(event, ZONE, 0);
+        }
+        int[][] ranges = {{TODAY - 6, TODAY}, {TODAY - 45, TODAY - 20}, {TODAY - 500, TODAY - 100}, {TODAY - 5000, TODAY}};
+        for (int[] range : ranges) {
+            int happy = 0;
+            int count = 0;
+            for (MoodEvent event : events.values()) {
+                int day = MoodRollups.dayOf(event.getTimestamp().getTime(), ZONE);
+                if (day >= range[0] && day <= range[1]) {
+                    count++;
+                    happy += event.getEmotionalState() == MoodEvent.EmotionalState.HAPPY ? 1 : 0;
+                }
+            }
+            MoodRollups.Bucket total = rollups.total(range[0], range[1]);
+            assertEquals(count, total.getCount());
+            assertEquals(happy, total.getEmotionCount(MoodEvent.EmotionalState.HAPPY));
+
+            MoodRollups.Series series = rollups.series(range[0], range[1]);
+            int seriesCount = 0;
+            for (int i = 0; i < series.size(); i++) {
+                seriesCount += series.getBucket(i).getCount();
+            }
+            assertEquals(count, seriesCount);
+        }
+
+        MoodRollups.Series week = rollups.series(TODAY - 6, TODAY);
+        assertEquals(AnalyticsRange.Resolution.DAY, week.getResolution());
+        assertEquals(7, week.size());
+        assertEquals(TODAY - 6, week.getFirstBucket());
+        MoodRollups.Series months = rollups.series(TODAY - 500, TODAY - 100);
+        assertEquals(AnalyticsRange.Resolution.MONTH, months.getResolution());
+        assertEquals(MoodTimeSeries.monthOfDay(TODAY - 500), months.getFirstBucket());
+        assertEquals(MoodTimeSeries.monthOfDay(TODAY - 100) - months.getFirstBucket() + 1, months.size());
+    }
+
+    @Test
+    public void testTrend_AveragesBucketsWithMovingAverage() {
+        MoodRollups rollups = new MoodRollups();
+        rollups.add(event("today", MoodEvent.EmotionalState.HAPPY, NOON), ZONE, 0);
+        rollups.add(event("yesterday", MoodEvent.EmotionalState.SAD, NOON - DAY_MS), ZONE, 0);
+
+        MoodRollups.Trend week = rollups.series(TODAY - 6, TODAY).trend();
+        assertEquals(7, week.getWindow());
+        float[] averages = week.getAverages();
+        assertEquals(2f, averages[6], 0.0001f);
+        assertEquals(-2f, averages[5], 0.0001f);
+        assertEquals(0f, week.getMovingAverages()[6], 0.0001f);
+
+        MoodRollups.Trend year = rollups.series(AnalyticsRange.YEAR.firstDay(TODAY, null), TODAY).trend();
+        assertEquals(3, year.getWindow());
+        assertEquals(12, year.getAverages().length);
+        assertEquals(0f, year.getAverages()[11], 0.0001f);
+        assertEquals(0f, year.getMovingAverages()[11], 0.0001f);
+    }
+
+    @Test
+    public void testWriteAndRead_RoundTrips() throws IOException {
+        MoodRollups rollups = new MoodRollups();
+        for (int i = 0; i < 50; i++) {
+            rollups.add(event("e" + i, MoodEvent.EmotionalState.values()[i % 10], NOON - (i % 7) * DAY_MS), ZONE, 0);
+        }
+        rollups.setComplete(true);
+        rollups.setRevision("r1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rollups.writeTo(new DataOutputStream(bytes));
+
+        MoodRollups read = MoodRollups.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(read.isComplete());
+        assertEquals("r1", read.getRevision());
+        assertEquals(50, read.size());
+        assertEquals(rollups.getTotal().getScoreSum(), read.getTotal().getScoreSum());
+        assertEquals(rollups.getLongestStreak(), read.getLongestStreak());
+        assertEquals(rollups.toStatsDocument(), read.toStatsDocument());
+
+        // Contributions survive, so later edits still subtract the right amounts
+        read.remove("e0");
+        rollups.remove("e0");
+        assertEquals(rollups.toStatsDocument(), read.toStatsDocument());
+    }
+
+    @Test
+    public void testSummarize_IsIndependentOfHistoryLength() {
+        MoodRollups rollups = new MoodRollups();
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            times.add(NOON - (long) (i % 3650) * DAY_MS);
+        }
+        for (int i = 0; i < times.size(); i++) {
+            rollups.add(event("e" + i, MoodEvent.EmotionalState.HAPPY, times.get(i)), ZONE, 0);
+        }
+        MoodRollups.Summary summary = rollups.summarize(TODAY, 30);
+        assertEquals(3650, summary.getLongestStreak());
+    }
+}
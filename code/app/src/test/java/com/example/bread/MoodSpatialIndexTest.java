@@ -0,0 +1,217 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.bread.model.MoodEvent;
+import com.example.bread.utils.MoodSpatialIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class MoodSpatialIndexTest {
+
+    private static MoodEvent locatedEvent(String id, double latitude, double longitude) {
+        MoodEvent event = new MoodEvent("title", "reason", MoodEvent.EmotionalState.HAPPY, null);
+        event.setId(id);
+        Map<String, Object> geoInfo = new HashMap<>();
+        geoInfo.put("latitude", latitude);
+        geoInfo.put("longitude", longitude);
+        event.setGeoInfo(geoInfo);
+        return event;
+    }
+
+    private static List<MoodEvent> randomEvents(int count, long seed) {
+        Random random = new Random(seed);
+        List<MoodEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Mostly around Edmonton, with a spread of events across the world
+            double latitude = i % 10 == 0 ? random.nextDouble() * 170 - 85 : 53.3 + random.nextDouble() * 0.5;
+            double longitude = i % 10 == 0 ? random.nextDouble() * 360 - 180 : -113.8 + random.nextDouble() * 0.7;
+            events.add(locatedEvent("e" + i, latitude, longitude));
+        }
+        return events;
+    }
+
+    private static MoodSpatialIndex<MoodEvent> indexOf(List<MoodEvent> events) {
+        MoodSpatialIndex<MoodEvent> index = new MoodSpatialIndex<>();
+        for (MoodEvent event : events) {
+            index.put(event.getId(), latitudeOf(event), longitudeOf(event), event);
+        }
+        return index;
+    }
+
+    private static double latitudeOf(MoodEvent event) {
+        return (Double) event.getGeoInfo().get("latitude");
+    }
+
+    private static double longitudeOf(MoodEvent event) {
+        return (Double) event.getGeoInfo().get("longitude");
+    }
+
+    /**
+     * The scan the index replaces: every event, with coordinates read from the geoInfo map
+     */
+    private static List<MoodEvent> linearRadius(List<MoodEvent> events, double latitude, double longitude, double radiusMeters) {
+        List<MoodEvent> result = new ArrayList<>();
+        for (MoodEvent event : events) {
+            if (MoodSpatialIndex.distanceMeters(latitude, longitude, latitudeOf(event), longitudeOf(event)) <= radiusMeters) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private static HashSet<String> ids(List<MoodEvent> events) {
+        HashSet<String> ids = new HashSet<>();
+        for (MoodEvent event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testDistanceMeters_EdmontonToCalgary() {
+        double distance = MoodSpatialIndex.distanceMeters(53.5461, -113.4938, 51.0447, -114.0719);
+        assertEquals(280_000, distance, 5_000);
+    }
+
+    @Test
+    public void testQueryRadius_MatchesLinearScan() {
+        List<MoodEvent> events = randomEvents(5000, 1);
+        MoodSpatialIndex<MoodEvent> index = indexOf(events);
+
+        for (double radius : new double[]{100, 2_000, 25_000, 1_000_000, 30_000_000}) {
+            assertEquals("radius " + radius, ids(linearRadius(events, 53.55, -113.49, radius)),
+                    ids(index.queryRadius(53.55, -113.49, radius)));
+        }
+        // Near the antimeridian and the poles
+        assertEquals(ids(linearRadius(events, 10, 179.9, 2_000_000)), ids(index.queryRadius(10, 179.9, 2_000_000)));
+        assertEquals(ids(linearRadius(events, 88, 0, 1_500_000)), ids(index.queryRadius(88, 0, 1_500_000)));
+    }
+
+    @Test
+    public void testQueryBounds_AcrossAntimeridian() {
+        MoodSpatialIndex<String> index = new MoodSpatialIndex<>();
+        index.put("fiji", -17.7, 178.0, "fiji");
+        index.put("samoa", -13.8, -172.1, "samoa");
+        index.put("sydney", -33.9, 151.2, "sydney");
+
+        assertEquals(new HashSet<>(Arrays.asList("fiji", "samoa")), new HashSet<>(index.queryBounds(-25, 170, -10, -165)));
+        assertEquals(Collections.singletonList("sydney"), index.queryBounds(-40, 150, -30, 152));
+    }
+
+    @Test
+    public void testNearest_MatchesSortedScan() {
+        List<MoodEvent> events = randomEvents(3000, 2);
+        MoodSpatialIndex<MoodEvent> index = indexOf(events);
+
+        for (double[] point : new double[][]{{53.55, -113.49}, {-40, 170}, {0, -179.99}, {89, 45}}) {
+            List<MoodEvent> sorted = new ArrayList<>(events);
+            sorted.sort(Comparator.comparingDouble(e ->
+                    MoodSpatialIndex.distanceMeters(point[0], point[1], latitudeOf(e), longitudeOf(e))));
+
+            List<MoodEvent> nearest = index.nearest(point[0], point[1], 10);
+
+            assertEquals(10, nearest.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(MoodSpatialIndex.distanceMeters(point[0], point[1], latitudeOf(sorted.get(i)), longitudeOf(sorted.get(i))),
+                        MoodSpatialIndex.distanceMeters(point[0], point[1], latitudeOf(nearest.get(i)), longitudeOf(nearest.get(i))), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testPutAndRemove_AreIncremental() {
+        MoodSpatialIndex<String> index = new MoodSpatialIndex<>();
+        for (int i = 0; i < 100; i++) {
+            index.put("e" + i, 53.5 + i * 1e-4, -113.5, "e" + i);
+        }
+        // Moving an entry replaces it instead of adding a second one
+        index.put("e0", 51.0447, -114.0719, "e0 moved");
+
+        assertEquals(100, index.size());
+        assertEquals(Collections.singletonList("e0 moved"), index.queryRadius(51.0447, -114.0719, 1_000));
+        assertEquals("e0 moved", index.remove("e0"));
+        assertNull(index.remove("e0"));
+        assertTrue(index.queryRadius(51.0447, -114.0719, 1_000).isEmpty());
+        assertEquals(99, index.queryRadius(53.5, -113.5, 5_000).size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.nearest(53.5, -113.5, 3).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_RejectsInvalidPosition() {
+        new MoodSpatialIndex<String>().put("bad", 91, 0, "bad");
+    }
+
+    /**
+     * Compares the index with the linear scan at 10k and 100k events by the entries each reads per query, which does
+     * not depend on the machine: the scan reads every event, the index only the leaves around the circle
+     */
+    @Test
+    public void testQueryRadius_LargeIndexesMatchLinearScan() {
+        for (int size : new int[]{10_000, 100_000}) {
+            List<MoodEvent> events = randomEvents(size, size);
+            MoodSpatialIndex<MoodEvent> index = indexOf(events);
+
+            Random random = new Random(7);
+            long visits = 0;
+            for (int i = 0; i < 200; i++) {
+                double latitude = 53.3 + random.nextDouble() * 0.5;
+                double longitude = -113.8 + random.nextDouble() * 0.7;
+                assertEquals(size + " events", ids(linearRadius(events, latitude, longitude, 5_000)),
+                        ids(index.queryRadius(latitude, longitude, 5_000)));
+                visits += index.countRadiusVisits(latitude, longitude, 5_000);
+            }
+            // A 5 km circle covers a few percent of the Edmonton cluster, so the index reads under a tenth of the events
+            assertTrue(size + " events: " + visits / 200 + " entries read per query", visits / 200 < size / 10);
+        }
+    }
+
+    /**
+     * Times radius queries against the linear scan at 10k and 100k events and prints both. Wall-clock times depend on
+     * the machine, so nothing is asserted on them and the test only runs with {@code -Pbenchmark}.
+     */
+    @Test
+    public void benchmarkQueryRadius_AgainstLinearScan() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        for (int size : new int[]{10_000, 100_000}) {
+            List<MoodEvent> events = randomEvents(size, size);
+            MoodSpatialIndex<MoodEvent> index = indexOf(events);
+            int queries = 200;
+            double[][] points = new double[queries][];
+            Random random = new Random(7);
+            for (int i = 0; i < queries; i++) {
+                points[i] = new double[]{53.3 + random.nextDouble() * 0.5, -113.8 + random.nextDouble() * 0.7};
+            }
+
+            int found = 0;
+            long start = System.nanoTime();
+            for (double[] point : points) {
+                found += linearRadius(events, point[0], point[1], 5_000).size();
+            }
+            long linearMicros = (System.nanoTime() - start) / queries / 1000;
+            start = System.nanoTime();
+            for (double[] point : points) {
+                found -= index.queryRadius(point[0], point[1], 5_000).size();
+            }
+            long indexMicros = (System.nanoTime() - start) / queries / 1000;
+
+            assertEquals(0, found);
+            System.out.println("Radius query over " + size + " events: linear scan " + linearMicros + " us, index "
+                    + indexMicros + " us");
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.bread.utils.MoodTimeSeries;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class MoodTimeSeriesTest {
+
+    private static final TimeZone EDMONTON = TimeZone.getTimeZone("America/Edmonton");
+
+    private static long millisAt(TimeZone zone, int year, int month, int dayOfMonth, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static float[] bruteForceMovingAverage(float[] values, int window) {
+        float[] averages = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int start = Math.max(0, i - window + 1);
+            float sum = 0f;
+            for (int j = start; j <= i; j++) {
+                sum += values[j];
+            }
+            averages[i] = sum / (i - start + 1);
+        }
+        return averages;
+    }
+
+    @Test
+    public void testDayOf_FollowsLocalCalendarAcrossDaylightSaving() {
+        // Clocks went forward on 2025-03-09 and back on 2025-11-02 in Edmonton
+        long beforeSpring = millisAt(EDMONTON, 2025, Calendar.MARCH, 8, 23, 30);
+        long afterSpring = millisAt(EDMONTON, 2025, Calendar.MARCH, 9, 23, 30);
+        long lateFall = millisAt(EDMONTON, 2025, Calendar.NOVEMBER, 2, 23, 59);
+        long earlyNext = millisAt(EDMONTON, 2025, Calendar.NOVEMBER, 3, 0, 1);
+
+        assertEquals(1, MoodTimeSeries.dayOf(afterSpring, EDMONTON) - MoodTimeSeries.dayOf(beforeSpring, EDMONTON));
+        assertEquals(1, MoodTimeSeries.dayOf(earlyNext, EDMONTON) - MoodTimeSeries.dayOf(lateFall, EDMONTON));
+        // Late evening in Edmonton is already the next day in UTC
+        assertEquals(MoodTimeSeries.dayOf(beforeSpring, EDMONTON) + 1, MoodTimeSeries.dayOf(beforeSpring, TimeZone.getTimeZone("UTC")));
+    }
+
+    @Test
+    public void testMonthOfDay_MatchesCalendar() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        int[][] dates = {{1970, Calendar.JANUARY, 1}, {2000, Calendar.FEBRUARY, 29}, {2024, Calendar.DECEMBER, 31}, {1969, Calendar.DECEMBER, 31}};
+        for (int[] date : dates) {
+            int day = MoodTimeSeries.dayOf(millisAt(utc, date[0], date[1], date[2], 12, 0), utc);
+            assertEquals(date[0] * 12 + date[1], MoodTimeSeries.monthOfDay(day));
+        }
+    }
+
+    @Test
+    public void testFirstDayOfMonth_InvertsMonthOfDay() {
+        for (int month = 1900 * 12; month < 2200 * 12; month++) {
+            int first = MoodTimeSeries.firstDayOfMonth(month);
+            assertEquals(month, MoodTimeSeries.monthOfDay(first));
+            assertEquals(month - 1, MoodTimeSeries.monthOfDay(first - 1));
+        }
+        assertEquals(0, MoodTimeSeries.firstDayOfMonth(1970 * 12));
+    }
+
+    @Test
+    public void testOfEvents_BucketsCountsScoresAndDistribution() {
+        int today = MoodTimeSeries.dayOf(millisAt(EDMONTON, 2025, Calendar.MARCH, 10, 12, 0), EDMONTON);
+        long[] times = {
+                millisAt(EDMONTON, 2025, Calendar.MARCH, 10, 0, 5),
+                millisAt(EDMONTON, 2025, Calendar.MARCH, 10, 23, 55),
+                millisAt(EDMONTON, 2025, Calendar.MARCH, 8, 9, 0),
+                millisAt(EDMONTON, 2025, Calendar.JANUARY, 1, 9, 0) // Before the series
+        };
+        int[] scores = {2, -1, 1, -2};
+        MoodTimeSeries series = MoodTimeSeries.ofEvents(times, scores, times.length, EDMONTON, today - 6, today);
+
+        assertEquals(7, series.getDayCount());
+        assertEquals(2, series.getCount(today));
+        assertEquals(1, series.getScoreSum(today));
+        assertEquals(1, series.getCount(today - 2));
+        assertEquals(0, series.getCount(today - 1));
+        assertEquals(0, series.getScoreCount(-2));
+        assertEquals(1, series.getScoreCount(2));
+
+        MoodTimeSeries.Trend trend = series.summarize(3);
+        assertEquals(0.5f, trend.getDailyAverages()[6], 1e-6);
+        assertEquals(3, trend.getRunningCounts()[6]);
+        assertEquals(2.0, trend.getRunningScores()[6], 1e-9);
+        assertEquals((1f + 0f + 0.5f) / 3, trend.getMovingAverages()[6], 1e-6);
+        assertEquals(1, trend.getLongestStreak());
+        assertEquals(1, trend.getCurrentStreak());
+    }
+
+    @Test
+    public void testMovingAverage_MatchesBruteForce() {
+        Random random = new Random(42);
+        float[] values = new float[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat() * 4 - 2;
+        }
+        for (int window : new int[]{1, 7, 30, 1000}) {
+            assertArrayEquals(bruteForceMovingAverage(values, window), MoodTimeSeries.movingAverage(values, window), 1e-4f);
+        }
+        assertEquals(0, MoodTimeSeries.movingAverage(new float[0], 7).length);
+        double[] sums = MoodTimeSeries.runningSums(new float[]{1f, -2f, 0.5f});
+        assertArrayEquals(new double[]{1, -1, -0.5}, sums, 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMovingAverage_RejectsEmptyWindow() {
+        MoodTimeSeries.movingAverage(new float[]{1f}, 0);
+    }
+
+    @Test
+    public void testStreaks() {
+        assertEquals(3, MoodTimeSeries.longestStreak(new int[]{1, 1, 1, 0, 2, 1}));
+        // Today without events yet keeps yesterday's streak
+        assertEquals(2, MoodTimeSeries.currentStreak(new int[]{1, 0, 1, 3, 0}));
+        assertEquals(3, MoodTimeSeries.currentStreak(new int[]{0, 1, 2, 1}));
+        assertEquals(0, MoodTimeSeries.currentStreak(new int[]{1, 1, 0, 0}));
+        assertEquals(0, MoodTimeSeries.currentStreak(new int[0]));
+    }
+
+    private static final long FIVE_YEARS_MS = 5 * 365L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Fills the arrays with events spread over the five years up to the given instant, with random scores
+     */
+    private static void randomEvents(long[] times, int[] scores, long end, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < times.length; i++) {
+            times[i] = end - (long) (random.nextDouble() * FIVE_YEARS_MS);
+            scores[i] = random.nextInt(5) - 2;
+        }
+    }
+
+    /**
+     * Buckets and summarizes 100,000 events spread over five years
+     */
+    @Test
+    public void testOfEvents_HundredThousandEvents() {
+        int size = 100_000;
+        long end = millisAt(EDMONTON, 2025, Calendar.MARCH, 10, 12, 0);
+        long[] times = new long[size];
+        int[] scores = new int[size];
+        randomEvents(times, scores, end, 7);
+        int today = MoodTimeSeries.dayOf(end, EDMONTON);
+        int firstDay = MoodTimeSeries.dayOf(end - FIVE_YEARS_MS, EDMONTON);
+
+        MoodTimeSeries series = MoodTimeSeries.ofEvents(times, scores, size, EDMONTON, firstDay, today);
+        MoodTimeSeries.Trend trend = series.summarize(30);
+
+        int counted = 0;
+        for (int score = MoodTimeSeries.MIN_SCORE; score <= MoodTimeSeries.MAX_SCORE; score++) {
+            counted += series.getScoreCount(score);
+        }
+        assertEquals(size, counted);
+        assertEquals(size, trend.getRunningCounts()[series.getDayCount() - 1]);
+        assertEquals(series.getDayCount(), trend.getMovingAverages().length);
+    }
+
+    /**
+     * Times bucketing and summarizing at 10k and 100k events over five years and prints both, so the linear growth can
+     * be checked. Wall-clock times depend on the machine, so nothing is asserted on them and the test only runs with
+     * {@code -Pbenchmark}.
+     */
+    @Test
+    public void benchmarkOfEventsAndSummarize() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        long end = millisAt(EDMONTON, 2025, Calendar.MARCH, 10, 12, 0);
+        int today = MoodTimeSeries.dayOf(end, EDMONTON);
+        int firstDay = MoodTimeSeries.dayOf(end - FIVE_YEARS_MS, EDMONTON);
+        int rounds = 20;
+        for (int size : new int[]{10_000, 100_000}) {
+            long[] times = new long[size];
+            int[] scores = new int[size];
+            randomEvents(times, scores, end, size);
+
+            long bucketNanos = 0;
+            long summarizeNanos = 0;
+            long counted = 0;
+            // The first rounds warm up the JIT and are not counted
+            for (int round = -rounds; round < rounds; round++) {
+                long start = System.nanoTime();
+                MoodTimeSeries series = MoodTimeSeries.ofEvents(times, scores, size, EDMONTON, firstDay, today);
+                long bucketed = System.nanoTime();
+                MoodTimeSeries.Trend trend = series.summarize(7);
+                if (round >= 0) {
+                    bucketNanos += bucketed - start;
+                    summarizeNanos += System.nanoTime() - bucketed;
+                    counted += trend.getRunningCounts()[series.getDayCount() - 1];
+                }
+            }
+
+            assertEquals((long) size * rounds, counted);
+            System.out.println("Time series of " + size + " events: bucketing " + bucketNanos / rounds / 1000
+                    + " us, summarizing " + summarizeNanos / rounds / 1000 + " us");
+        }
+    }
+}
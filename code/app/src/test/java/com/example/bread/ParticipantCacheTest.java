@@ -0,0 +1,143 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.Participant;
+import com.example.bread.repository.ParticipantCache;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParticipantCacheTest {
+
+    private static final long TTL = 1000;
+
+    private long now;
+    private ParticipantCache cache;
+    private int loads;
+    // Loads that have been started but not completed yet
+    private final List<OnSuccessListener<Participant>> pendingSuccess = new ArrayList<>();
+    private final List<OnFailureListener> pendingFailure = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        now = 0;
+        loads = 0;
+        cache = new ParticipantCache(2, TTL, () -> now);
+    }
+
+    private final ParticipantCache.Loader deferredLoader = (onSuccess, onFailure) -> {
+        loads++;
+        pendingSuccess.add(onSuccess);
+        pendingFailure.add(onFailure);
+    };
+
+    private ParticipantCache.Loader immediateLoader(String username) {
+        return (onSuccess, onFailure) -> {
+            loads++;
+            Participant participant = new Participant();
+            participant.setUsername(username);
+            onSuccess.onSuccess(participant);
+        };
+    }
+
+    private Participant fetch(String key) {
+        Participant[] result = new Participant[1];
+        cache.get(key, immediateLoader(key), p -> result[0] = p, e -> fail(e.getMessage()));
+        return result[0];
+    }
+
+    @Test
+    public void testGet_SecondRequestIsServedFromCache() {
+        Participant first = fetch("participants/alice");
+        Participant second = fetch("participants/alice");
+
+        assertSame(first, second);
+        assertEquals(1, loads);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testGet_ConcurrentRequestsShareOneLoad() {
+        List<Participant> delivered = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            cache.get("participants/bob", deferredLoader, delivered::add, e -> fail(e.getMessage()));
+        }
+        assertEquals(1, loads);
+        assertEquals(19, cache.getCoalescedCount());
+
+        Participant bob = new Participant();
+        bob.setUsername("bob");
+        pendingSuccess.get(0).onSuccess(bob);
+
+        assertEquals(20, delivered.size());
+        assertSame(bob, cache.getIfPresent("participants/bob"));
+    }
+
+    @Test
+    public void testGet_FailureIsDeliveredToAllWaitersAndNotCached() {
+        int[] failures = new int[1];
+        cache.get("participants/carol", deferredLoader, p -> fail(), e -> failures[0]++);
+        cache.get("participants/carol", deferredLoader, p -> fail(), e -> failures[0]++);
+
+        pendingFailure.get(0).onFailure(new Exception("offline"));
+
+        assertEquals(2, failures[0]);
+        assertNull(cache.getIfPresent("participants/carol"));
+        fetch("participants/carol");
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void testGet_ExpiredEntryIsReloaded() {
+        fetch("participants/alice");
+        now += TTL;
+        fetch("participants/alice");
+
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed() {
+        fetch("participants/alice");
+        fetch("participants/bob");
+        fetch("participants/alice");
+        fetch("participants/carol");
+
+        assertNotNull(cache.getIfPresent("participants/alice"));
+        assertNull(cache.getIfPresent("participants/bob"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidate_DropsEntryAndLoadInFlight() {
+        fetch("participants/alice");
+        cache.invalidate("participants/alice");
+        assertNull(cache.getIfPresent("participants/alice"));
+
+        Participant[] delivered = new Participant[1];
+        cache.get("participants/dave", deferredLoader, p -> delivered[0] = p, e -> fail(e.getMessage()));
+        cache.invalidate("participants/dave");
+        Participant stale = new Participant();
+        pendingSuccess.get(0).onSuccess(stale);
+
+        // The waiter still gets its answer, but the stale result is not cached
+        assertSame(stale, delivered[0]);
+        assertNull(cache.getIfPresent("participants/dave"));
+    }
+
+    @Test
+    public void testGet_MissingParticipantIsNotCached() {
+        Participant[] delivered = {new Participant()};
+        cache.get("participants/ghost", deferredLoader, p -> delivered[0] = p, e -> fail(e.getMessage()));
+        pendingSuccess.get(0).onSuccess(null);
+
+        assertNull(delivered[0]);
+        assertEquals(0, cache.size());
+    }
+}
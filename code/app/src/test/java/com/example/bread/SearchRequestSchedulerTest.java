@@ -0,0 +1,133 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.repository.SearchRequestScheduler;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SearchRequestSchedulerTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final SearchRequestScheduler<String> scheduler = new SearchRequestScheduler<>("test", now::get);
+
+    /**
+     * A request whose response is held back until the test delivers it
+     */
+    private static class HeldRequest implements SearchRequestScheduler.Request<String> {
+        final String query;
+        OnSuccessListener<String> onSuccessListener;
+        OnFailureListener onFailureListener;
+
+        HeldRequest(String query) {
+            this.query = query;
+        }
+
+        @Override
+        public void start(OnSuccessListener<String> onSuccessListener, OnFailureListener onFailureListener) {
+            this.onSuccessListener = onSuccessListener;
+            this.onFailureListener = onFailureListener;
+        }
+
+        void respond() {
+            onSuccessListener.onSuccess("results for " + query);
+        }
+    }
+
+    @Test
+    public void testOutOfOrderResponses_OnlyLatestDelivered() {
+        List<String> delivered = new ArrayList<>();
+        HeldRequest first = new HeldRequest("jo");
+        HeldRequest second = new HeldRequest("joh");
+        scheduler.submit(first, delivered::add, e -> fail());
+        scheduler.submit(second, delivered::add, e -> fail());
+
+        second.respond();
+        first.respond();
+
+        assertEquals(Collections.singletonList("results for joh"), delivered);
+        assertEquals(1, scheduler.getDiscardedCount());
+        assertFalse(scheduler.isInFlight());
+    }
+
+    @Test
+    public void testSupersededFailure_IsIgnored() {
+        List<String> delivered = new ArrayList<>();
+        HeldRequest first = new HeldRequest("jo");
+        scheduler.submit(first, delivered::add, e -> fail("Superseded failure must not be reported"));
+        HeldRequest second = new HeldRequest("joh");
+        scheduler.submit(second, delivered::add, e -> fail());
+
+        first.onFailureListener.onFailure(new Exception("offline"));
+        assertTrue(scheduler.isInFlight());
+        second.respond();
+        assertEquals(Collections.singletonList("results for joh"), delivered);
+    }
+
+    @Test
+    public void testCancel_DropsRequestInFlight() {
+        HeldRequest request = new HeldRequest("jo");
+        long generation = scheduler.submit(request, result -> fail("Cancelled search must not deliver"), e -> fail());
+        scheduler.cancel();
+
+        request.respond();
+        assertTrue(scheduler.getGeneration() > generation);
+        assertFalse(scheduler.isInFlight());
+    }
+
+    @Test
+    public void testSynchronousResponse_IsDelivered() {
+        List<String> delivered = new ArrayList<>();
+        scheduler.submit((onSuccess, onFailure) -> onSuccess.onSuccess("cached"), delivered::add, e -> fail());
+        assertEquals(Collections.singletonList("cached"), delivered);
+        assertEquals(0, scheduler.getDiscardedCount());
+    }
+
+    @Test
+    public void testRapidTyping_LastQueryWinsWhateverTheOrder() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            List<String> delivered = new ArrayList<>();
+            List<HeldRequest> requests = new ArrayList<>();
+            String query = "";
+            for (int i = 0; i < 8; i++) {
+                query += (char) ('a' + random.nextInt(26));
+                HeldRequest request = new HeldRequest(query);
+                requests.add(request);
+                scheduler.submit(request, delivered::add, e -> fail());
+            }
+            Collections.shuffle(requests, random);
+            for (HeldRequest request : requests) {
+                request.respond();
+            }
+            assertEquals(Collections.singletonList("results for " + query), delivered);
+        }
+    }
+
+    @Test
+    public void testLatency_RecordsEveryResponse() {
+        HeldRequest slow = new HeldRequest("jo");
+        HeldRequest fast = new HeldRequest("joh");
+        scheduler.submit(slow, result -> {
+        }, e -> fail());
+        now.addAndGet(100);
+        scheduler.submit(fast, result -> {
+        }, e -> fail());
+        now.addAndGet(20);
+        fast.respond();
+        now.addAndGet(180);
+        slow.respond();
+
+        assertEquals(2, scheduler.getLatency().getCount());
+        assertEquals(20, scheduler.getLatency().getPercentileMs(50));
+        assertEquals(300, scheduler.getLatency().getPercentileMs(100));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bread;
+
+import static org.junit.Assert.*;
+
+import com.example.bread.model.Participant;
+import com.example.bread.repository.UserSearchIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UserSearchIndexTest {
+    private static final long TTL_MS = 60_000;
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final UserSearchIndex index = new UserSearchIndex(100, 10, TTL_MS, now::get);
+
+    private static Participant participant(String username, String firstName, String lastName) {
+        Participant participant = new Participant();
+        participant.setUsername(username);
+        participant.setFirstName(firstName);
+        participant.setLastName(lastName);
+        return participant;
+    }
+
+    private static List<String> usernames(List<Participant> participants) {
+        List<String> usernames = new ArrayList<>();
+        for (Participant participant : participants) {
+            usernames.add(participant.getUsername());
+        }
+        return usernames;
+    }
+
+    @Test
+    public void testSearchFields_AreLowerCased() {
+        Participant participant = participant("JohnDoe", "John", "Doe");
+        assertEquals("johndoe", participant.getUsernameLower());
+        assertEquals("john doe", participant.getDisplayNameLower());
+        assertNull(new Participant().getDisplayNameLower());
+    }
+
+    @Test
+    public void testSearchLocally_ExtendsCompletePage() {
+        assertNull(index.searchLocally("jo", null));
+        index.cachePage("Jo", Arrays.asList(participant("johnny", "John", "Smith"), participant("jojo", "Joanne", "Lee"),
+                participant("maria", "Jolene", "Park")), true);
+
+        assertEquals(Arrays.asList("jojo", "maria", "johnny"), usernames(index.searchLocally("jo", null)));
+        // "joan" is one substitution from "john"
+        assertEquals(Arrays.asList("johnny", "jojo"), usernames(index.searchLocally("JOHN", null)));
+        assertEquals(Collections.singletonList("maria"), usernames(index.searchLocally("jole", null)));
+    }
+
+    @Test
+    public void testSearchLocally_NeedsNetworkForIncompleteOrExpiredPage() {
+        index.cachePage("jo", Collections.singletonList(participant("johnny", "John", "Smith")), false);
+        assertNotNull(index.searchLocally("jo", null));
+        assertNull(index.searchLocally("joh", null));
+
+        index.cachePage("ma", Collections.singletonList(participant("maria", "Maria", "Park")), true);
+        now.addAndGet(TTL_MS);
+        assertNull(index.searchLocally("mar", null));
+    }
+
+    @Test
+    public void testRank_ToleratesTyposAmongSeenParticipants() {
+        index.remember(participant("jonathan", "Jonathan", "Smith"));
+        index.remember(participant("smithers", "Waylon", "Smithers"));
+        index.remember(participant("bob", "Bob", "Jones"));
+
+        // "jonht" is one substitution from "jonat"; short queries stay exact
+        assertEquals(Collections.singletonList("jonathan"), usernames(index.rank("jonht", Collections.emptyList(), null)));
+        assertTrue(index.rank("jnn", Collections.emptyList(), null).isEmpty());
+        // Exact prefixes of a later name word rank ahead of typos
+        assertEquals(Arrays.asList("smithers", "jonathan"), usernames(index.rank("smithe", Collections.emptyList(), null)));
+    }
+
+    @Test
+    public void testRank_PrefersExactMatchThenFollowProximity() {
+        List<Participant> results = Arrays.asList(participant("annabel", "A", "B"), participant("annie", "A", "B"),
+                participant("ann", "A", "B"), participant("anna", "A", "B"), participant("viewer", "Ann", "Viewer"));
+        index.setConnections("viewer", Collections.singletonList("annabel"), Collections.singletonList("annie"));
+
+        assertEquals(Arrays.asList("ann", "annabel", "annie", "anna"), usernames(index.rank("ann", results, "viewer")));
+    }
+
+    @Test
+    public void testRemember_ReplacesOldNamesAndEvictsLeastRecent() {
+        UserSearchIndex small = new UserSearchIndex(2, 10, TTL_MS, now::get);
+        small.remember(participant("first", "Alice", "Adams"));
+        small.remember(participant("first", "Beatrice", "Brown"));
+        assertTrue(small.rank("alice", Collections.emptyList(), null).isEmpty());
+        assertEquals(Collections.singletonList("first"), usernames(small.rank("beatrice", Collections.emptyList(), null)));
+
+        small.remember(participant("second", "Carla", "Cole"));
+        small.remember(participant("third", "Carmen", "Cruz"));
+        assertEquals(Arrays.asList("third", "second"), usernames(small.rank("car", Collections.emptyList(), null)));
+        assertTrue(small.rank("beatrice", Collections.emptyList(), null).isEmpty());
+    }
+
+    @Test
+    public void testRank_IsBoundedOverManySeenParticipants() {
+        UserSearchIndex large = new UserSearchIndex(20_000, 10, TTL_MS, now::get);
+        for (int i = 0; i < 20_000; i++) {
+            large.remember(participant("user" + i, "Name" + (i % 97), "Family" + (i % 89)));
+        }
+        List<Participant> ranked = large.rank("usar12", Collections.emptyList(), null);
+
+        assertEquals(UserSearchIndex.RESULT_LIMIT, ranked.size());
+        assertEquals("user12", ranked.get(0).getUsername());
+    }
+}
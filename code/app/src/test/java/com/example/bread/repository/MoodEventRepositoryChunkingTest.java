@@ -0,0 +1,161 @@
+package com.example.bread.repository;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import com.example.bread.model.MoodEvent;
+import com.google.firebase.firestore.DocumentReference;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the package-private chunking and trimming helpers behind the following feed
+ */
+public class MoodEventRepositoryChunkingTest {
+
+    private static DocumentReference ref(String username) {
+        DocumentReference ref = mock(DocumentReference.class);
+        when(ref.getPath()).thenReturn("participants/" + username);
+        return ref;
+    }
+
+    private static MoodEvent event(String id, DocumentReference participantRef, long millis) {
+        MoodEvent event = new MoodEvent("title", "reason", MoodEvent.EmotionalState.HAPPY, participantRef);
+        event.setId(id);
+        event.setTimestamp(new Date(millis));
+        return event;
+    }
+
+    private static List<Integer> range(int size) {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    private static List<String> ids(List<MoodEvent> events) {
+        List<String> ids = new ArrayList<>();
+        for (MoodEvent event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPartition_EmptyInputHasNoChunks() {
+        assertTrue(MoodEventRepository.partition(Collections.emptyList(), 30).isEmpty());
+    }
+
+    @Test
+    public void testPartition_ExactMultipleHasFullChunksOnly() {
+        List<List<Integer>> chunks = MoodEventRepository.partition(range(60), 30);
+        assertEquals(2, chunks.size());
+        assertEquals(range(30), chunks.get(0));
+        assertEquals(30, chunks.get(1).size());
+        assertEquals(Integer.valueOf(59), chunks.get(1).get(29));
+    }
+
+    @Test
+    public void testPartition_RemainderGoesInLastChunk() {
+        List<List<Integer>> chunks = MoodEventRepository.partition(range(61), MoodEventRepository.MAX_IN_QUERY_SIZE);
+        assertEquals(3, chunks.size());
+        assertEquals(Collections.singletonList(60), chunks.get(2));
+        // Chunks are copies, so later changes to the input do not leak into queries
+        List<Integer> items = range(5);
+        List<List<Integer>> copies = MoodEventRepository.partition(items, 5);
+        items.set(0, 99);
+        assertEquals(Integer.valueOf(0), copies.get(0).get(0));
+    }
+
+    @Test
+    public void testTrim_EmptyInput() {
+        assertTrue(MoodEventRepository.trimToMostRecentPerUser(Collections.emptyList(), 3).isEmpty());
+    }
+
+    @Test
+    public void testTrim_KeepsNewestPerUserNewestFirst() {
+        DocumentReference alice = ref("alice");
+        DocumentReference bob = ref("bob");
+        List<MoodEvent> events = Arrays.asList(
+                event("a1", alice, 1000), event("b1", bob, 1500), event("a3", alice, 3000),
+                event("a2", alice, 2000), event("a4", alice, 4000), event("b2", bob, 2500));
+
+        List<MoodEvent> trimmed = MoodEventRepository.trimToMostRecentPerUser(events, 3);
+        assertEquals(Arrays.asList("a4", "a3", "b2", "a2", "b1"), ids(trimmed));
+    }
+
+    @Test
+    public void testTrim_TiesOnTimestampKeepInputOrderAndCount() {
+        DocumentReference alice = ref("alice");
+        List<MoodEvent> events = Arrays.asList(
+                event("first", alice, 5000), event("second", alice, 5000), event("third", alice, 5000));
+
+        List<MoodEvent> trimmed = MoodEventRepository.trimToMostRecentPerUser(events, 2);
+        assertEquals(Arrays.asList("first", "second"), ids(trimmed));
+    }
+
+    @Test
+    public void testUnderfilled_ChunkBelowItsLimitNeedsNoFollowUp() {
+        DocumentReference alice = ref("alice");
+        DocumentReference bob = ref("bob");
+        List<MoodEvent> events = Arrays.asList(event("a1", alice, 1000), event("a2", alice, 2000), event("a3", alice, 3000));
+        assertTrue(MoodEventRepository.underfilledParticipants(Arrays.asList(alice, bob), events, 3).isEmpty());
+    }
+
+    @Test
+    public void testUnderfilled_BusyUserFillingFullChunkLeavesNoUserOut() {
+        List<DocumentReference> chunk = new ArrayList<>();
+        for (int i = 0; i < MoodEventRepository.MAX_IN_QUERY_SIZE; i++) {
+            chunk.add(ref("user" + i));
+        }
+        // The busy user posted the 90 most recent events, so the chunk's limit of 30 * 3 holds only theirs
+        DocumentReference busy = chunk.get(7);
+        List<MoodEvent> chunkEvents = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            chunkEvents.add(event("busy" + i, busy, 100_000 - i));
+        }
+        List<DocumentReference> underfilled = MoodEventRepository.underfilledParticipants(chunk, chunkEvents, 3);
+        assertEquals(29, underfilled.size());
+        assertFalse(underfilled.contains(busy));
+
+        // The follow-ups return each quiet user's three newest events, older than all of the busy user's
+        List<MoodEvent> merged = new ArrayList<>(chunkEvents);
+        for (DocumentReference quiet : underfilled) {
+            String name = quiet.getPath();
+            MoodEventRepository.addMissingEvents(merged, Arrays.asList(
+                    event(name + "-1", quiet, 300), event(name + "-2", quiet, 200), event(name + "-3", quiet, 100)));
+        }
+        List<MoodEvent> feed = MoodEventRepository.trimToMostRecentPerUser(merged, 3);
+        assertEquals(90, feed.size());
+        for (DocumentReference participant : chunk) {
+            int count = 0;
+            for (MoodEvent event : feed) {
+                if (event.getParticipantRef() == participant) {
+                    count++;
+                }
+            }
+            assertEquals(participant.getPath(), 3, count);
+        }
+    }
+
+    @Test
+    public void testAddMissingEvents_SkipsEventsAlreadyPresent() {
+        DocumentReference alice = ref("alice");
+        List<MoodEvent> events = new ArrayList<>(Arrays.asList(event("a1", alice, 1000), event("a2", alice, 2000)));
+        MoodEventRepository.addMissingEvents(events, Arrays.asList(event("a2", alice, 2000), event("a3", alice, 3000)));
+        assertEquals(Arrays.asList("a1", "a2", "a3"), ids(events));
+    }
+
+    @Test
+    public void testTrim_EventsWithoutParticipantShareOneBucket() {
+        List<MoodEvent> events = Arrays.asList(event("x", null, 1000), event("y", null, 2000));
+        assertEquals(Collections.singletonList("y"), ids(MoodEventRepository.trimToMostRecentPerUser(events, 1)));
+    }
+}